@@ -0,0 +1,69 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.common.cc.sdk;
+
+import com.tencent.bk.job.common.redis.util.LockUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Redis的业务拓扑共享存储
+ */
+public class RedisBizTopologySharedStore implements BizTopologySharedStore {
+    private static final String KEY_PREFIX = "job:cmdb:biz-topo:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisBizTopologySharedStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public String getVersion(String key) {
+        return redisTemplate.opsForValue().get(KEY_PREFIX + "version:" + key);
+    }
+
+    @Override
+    public String getSnapshot(String key) {
+        return redisTemplate.opsForValue().get(KEY_PREFIX + "snapshot:" + key);
+    }
+
+    @Override
+    public void putSnapshot(String key, String version, String snapshot, long expireSeconds) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + "snapshot:" + key, snapshot, expireSeconds, TimeUnit.SECONDS);
+        redisTemplate.opsForValue().set(KEY_PREFIX + "version:" + key, version, expireSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean tryLockRefresh(String key, String requestId, long expireTimeMillis) {
+        return LockUtils.tryGetDistributedLock(KEY_PREFIX + "refresh:" + key, requestId, expireTimeMillis);
+    }
+
+    @Override
+    public void unlockRefresh(String key, String requestId) {
+        LockUtils.releaseDistributedLock(KEY_PREFIX + "refresh:" + key, requestId);
+    }
+}
@@ -61,4 +61,22 @@ public class CcConfig {
 
     @Value("${cmdb.interface.flowControl.resources:get_biz_brief_cache_topo:1500}")
     private String flowControlResourcesStr;
+
+    /**
+     * 业务拓扑缓存过期时间(秒)
+     */
+    @Value("${cmdb.topoCache.expireSeconds:30}")
+    private Integer topoCacheExpireSeconds;
+
+    /**
+     * 业务拓扑过期后仍可直接返回旧拓扑并异步刷新的最大时间(秒)
+     */
+    @Value("${cmdb.topoCache.maxStaleSeconds:300}")
+    private Integer topoCacheMaxStaleSeconds;
+
+    /**
+     * 是否通过Redis在集群内共享业务拓扑
+     */
+    @Value("${cmdb.topoCache.shared.enable:true}")
+    private Boolean enableSharedTopoCache;
 }
@@ -0,0 +1,348 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.common.cc.sdk;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tencent.bk.job.common.cc.model.InstanceTopologyDTO;
+import com.tencent.bk.job.common.constant.ErrorCode;
+import com.tencent.bk.job.common.exception.ServiceException;
+import com.tencent.bk.job.common.util.json.JsonUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 业务拓扑两级缓存
+ * <p>
+ * 一级为节点本地缓存，同一Key并发加载时只有一个线程执行加载；拓扑过期但未超过最大容忍时间时直接返回旧拓扑并异步刷新。
+ * 二级为集群共享存储(可选)，保存拓扑快照及版本：本地拓扑过期后先比较共享版本，共享快照未过期时直接拉取快照，
+ * 否则只有获取到刷新锁的节点从CMDB拉取拓扑并写入共享存储，其他节点继续使用旧拓扑(共享快照)或短暂等待新快照，
+ * 未获取到刷新锁时在退避时间内不再重复检查共享存储。
+ */
+@Slf4j
+public class BizTopologyCache {
+    /**
+     * 没有可用拓扑且其他节点正在刷新时，等待新快照的最大次数及间隔
+     */
+    private static final int WAIT_SNAPSHOT_TIMES = 5;
+    private static final long WAIT_SNAPSHOT_INTERVAL_MILLIS = 100;
+    private static final long REFRESH_LOCK_EXPIRE_MILLIS = 30_000L;
+    /**
+     * 其他节点正在刷新时，本节点再次检查共享存储前的退避时间
+     */
+    private static final long REFRESH_BACKOFF_MILLIS = 1_000L;
+    private static final long MAX_ENTRY_SIZE = 1000;
+
+    private volatile Cache<String, Entry> entries = buildEntryCache(300_000L);
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> loadings = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(1000), r -> {
+        Thread thread = new Thread(r, "biz-topology-refresh");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+
+    private volatile BizTopologySharedStore sharedStore;
+    private volatile long expireMillis = 30_000L;
+    private volatile long maxStaleMillis = 300_000L;
+
+    public void setSharedStore(BizTopologySharedStore sharedStore) {
+        this.sharedStore = sharedStore;
+    }
+
+    /**
+     * @param expireSeconds   拓扑过期时间(秒)
+     * @param maxStaleSeconds 拓扑过期后仍可直接返回的最大时间(秒)，超过后需等待刷新完成
+     */
+    public void configure(long expireSeconds, long maxStaleSeconds) {
+        this.expireMillis = expireSeconds * 1000L;
+        this.maxStaleMillis = Math.max(maxStaleSeconds, expireSeconds) * 1000L;
+        Cache<String, Entry> newEntries = buildEntryCache(maxStaleMillis);
+        newEntries.putAll(entries.asMap());
+        this.entries = newEntries;
+    }
+
+    private static Cache<String, Entry> buildEntryCache(long maxStaleMillis) {
+        return CacheBuilder.newBuilder()
+            .maximumSize(MAX_ENTRY_SIZE)
+            .expireAfterWrite(maxStaleMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    /**
+     * 获取拓扑
+     *
+     * @param key    拓扑Key
+     * @param loader 从CMDB加载拓扑
+     * @return 拓扑
+     */
+    public InstanceTopologyDTO get(String key, Supplier<InstanceTopologyDTO> loader) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null) {
+            long now = System.currentTimeMillis();
+            long age = now - entry.loadTime;
+            if (age > maxStaleMillis) {
+                // 退避时重新写入的旧拓扑会刷新写入时间，这里按加载时间淘汰
+                entries.invalidate(key);
+            } else {
+                if (age > expireMillis && now >= entry.refreshBackoffUntil && !loadings.containsKey(key)) {
+                    refreshExecutor.execute(() -> refreshQuietly(key, loader));
+                }
+                return entry.topology;
+            }
+        }
+        try {
+            return refresh(key, loader).get().topology;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(e, ErrorCode.CMDB_API_DATA_ERROR, "Interrupted while loading topology");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ServiceException) {
+                throw (ServiceException) e.getCause();
+            }
+            throw new ServiceException(e.getCause(), ErrorCode.CMDB_API_DATA_ERROR, "Fail to load topology");
+        }
+    }
+
+    private void refreshQuietly(String key, Supplier<InstanceTopologyDTO> loader) {
+        try {
+            refresh(key, loader).get();
+        } catch (Exception e) {
+            log.warn("Fail to refresh topology in background, key={}", key, e);
+        }
+    }
+
+    /**
+     * 刷新拓扑，同一Key同时只有一个线程执行刷新，其他线程等待同一结果
+     */
+    private CompletableFuture<Entry> refresh(String key, Supplier<InstanceTopologyDTO> loader) {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existFuture = loadings.putIfAbsent(key, future);
+        if (existFuture != null) {
+            return existFuture;
+        }
+        try {
+            Entry entry = doRefresh(key, loader);
+            entries.put(key, entry);
+            future.complete(entry);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        } finally {
+            loadings.remove(key, future);
+        }
+        return future;
+    }
+
+    private Entry doRefresh(String key, Supplier<InstanceTopologyDTO> loader) {
+        BizTopologySharedStore store = sharedStore;
+        if (store == null) {
+            return loadFromCmdb(loader);
+        }
+        Entry localEntry = getAvailableEntry(key);
+        String requestId = UUID.randomUUID().toString();
+        boolean locked;
+        try {
+            String sharedVersion = store.getVersion(key);
+            if (sharedVersion != null && !isExpired(sharedVersion)) {
+                Entry sharedEntry = pullSnapshot(store, key, localEntry, sharedVersion);
+                if (sharedEntry != null) {
+                    return sharedEntry;
+                }
+            }
+            locked = store.tryLockRefresh(key, requestId, REFRESH_LOCK_EXPIRE_MILLIS);
+            if (!locked) {
+                // 其他节点正在刷新，优先使用已有拓扑，退避时间内不再检查共享存储
+                long backoffUntil = System.currentTimeMillis() + REFRESH_BACKOFF_MILLIS;
+                if (localEntry != null) {
+                    return localEntry.withRefreshBackoff(backoffUntil);
+                }
+                if (sharedVersion != null && !isTooStale(sharedVersion)) {
+                    Entry sharedEntry = pullSnapshot(store, key, null, sharedVersion);
+                    if (sharedEntry != null) {
+                        return sharedEntry.withRefreshBackoff(backoffUntil);
+                    }
+                }
+                Entry sharedEntry = waitSnapshot(store, key, sharedVersion);
+                if (sharedEntry != null) {
+                    return sharedEntry;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(e, ErrorCode.CMDB_API_DATA_ERROR, "Interrupted while waiting shared topology");
+        } catch (Exception e) {
+            log.warn("Fail to read shared topology, load from cmdb directly, key={}", key, e);
+            return loadFromCmdb(loader);
+        }
+        if (!locked) {
+            log.info("Wait shared topology timeout, load from cmdb directly, key={}", key);
+            return loadFromCmdb(loader);
+        }
+        try {
+            Entry entry = loadFromCmdb(loader);
+            try {
+                store.putSnapshot(key, entry.version, serialize(entry.topology),
+                    TimeUnit.MILLISECONDS.toSeconds(maxStaleMillis));
+            } catch (Exception e) {
+                log.warn("Fail to save shared topology, key={}", key, e);
+            }
+            return entry;
+        } finally {
+            try {
+                store.unlockRefresh(key, requestId);
+            } catch (Exception e) {
+                log.warn("Fail to unlock topology refresh, key={}", key, e);
+            }
+        }
+    }
+
+    /**
+     * 获取未超过最大容忍时间的本地拓扑
+     */
+    private Entry getAvailableEntry(String key) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null || System.currentTimeMillis() - entry.loadTime > maxStaleMillis) {
+            return null;
+        }
+        return entry;
+    }
+
+    private Entry waitSnapshot(BizTopologySharedStore store, String key, String oldVersion)
+        throws InterruptedException {
+        for (int i = 0; i < WAIT_SNAPSHOT_TIMES; i++) {
+            Thread.sleep(WAIT_SNAPSHOT_INTERVAL_MILLIS);
+            String sharedVersion = store.getVersion(key);
+            if (sharedVersion != null && !sharedVersion.equals(oldVersion)) {
+                return pullSnapshot(store, key, null, sharedVersion);
+            }
+        }
+        return null;
+    }
+
+    private Entry pullSnapshot(BizTopologySharedStore store, String key, Entry localEntry, String sharedVersion) {
+        if (localEntry != null && sharedVersion.equals(localEntry.version)) {
+            return localEntry;
+        }
+        String snapshot = store.getSnapshot(key);
+        if (snapshot == null) {
+            return null;
+        }
+        InstanceTopologyDTO topology = deserialize(snapshot);
+        log.debug("Pull shared topology, key={}, version={}", key, sharedVersion);
+        return new Entry(topology, sharedVersion, Long.parseLong(sharedVersion));
+    }
+
+    private Entry loadFromCmdb(Supplier<InstanceTopologyDTO> loader) {
+        long loadTime = System.currentTimeMillis();
+        InstanceTopologyDTO topology = loader.get();
+        return new Entry(topology, String.valueOf(loadTime), loadTime);
+    }
+
+    private boolean isExpired(String version) {
+        return isOlderThan(version, expireMillis);
+    }
+
+    private boolean isTooStale(String version) {
+        return isOlderThan(version, maxStaleMillis);
+    }
+
+    private boolean isOlderThan(String version, long millis) {
+        try {
+            return System.currentTimeMillis() - Long.parseLong(version) > millis;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    static String serialize(InstanceTopologyDTO topology) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+            gzip.write(JsonUtils.toJson(topology).getBytes(StandardCharsets.UTF_8));
+        }
+        return Base64.getEncoder().encodeToString(bos.toByteArray());
+    }
+
+    static InstanceTopologyDTO deserialize(String snapshot) {
+        byte[] bytes = Base64.getDecoder().decode(snapshot);
+        StringWriter writer = new StringWriter();
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes)),
+            StandardCharsets.UTF_8)) {
+            char[] buffer = new char[8192];
+            int len;
+            while ((len = reader.read(buffer)) != -1) {
+                writer.write(buffer, 0, len);
+            }
+        } catch (IOException e) {
+            throw new ServiceException(e, ErrorCode.CMDB_API_DATA_ERROR, "Fail to deserialize shared topology");
+        }
+        return JsonUtils.fromJson(writer.toString(), InstanceTopologyDTO.class);
+    }
+
+    private static class Entry {
+        private final InstanceTopologyDTO topology;
+        /**
+         * 拓扑版本，为拓扑从CMDB加载的时间
+         */
+        private final String version;
+        private final long loadTime;
+        /**
+         * 在该时间之前拓扑过期也不再触发刷新
+         */
+        private final long refreshBackoffUntil;
+
+        private Entry(InstanceTopologyDTO topology, String version, long loadTime) {
+            this(topology, version, loadTime, 0L);
+        }
+
+        private Entry(InstanceTopologyDTO topology, String version, long loadTime, long refreshBackoffUntil) {
+            this.topology = topology;
+            this.version = version;
+            this.loadTime = loadTime;
+            this.refreshBackoffUntil = refreshBackoffUntil;
+        }
+
+        private Entry withRefreshBackoff(long refreshBackoffUntil) {
+            return new Entry(topology, version, loadTime, refreshBackoffUntil);
+        }
+    }
+}
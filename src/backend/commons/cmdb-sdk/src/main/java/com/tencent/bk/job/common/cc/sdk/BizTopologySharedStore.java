@@ -0,0 +1,75 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.common.cc.sdk;
+
+/**
+ * 集群内共享的业务拓扑存储，用于多个节点共享从CMDB拉取的拓扑快照
+ */
+public interface BizTopologySharedStore {
+
+    /**
+     * 获取拓扑快照版本
+     *
+     * @param key 拓扑Key
+     * @return 快照版本，不存在时返回 null
+     */
+    String getVersion(String key);
+
+    /**
+     * 获取拓扑快照
+     *
+     * @param key 拓扑Key
+     * @return 序列化后的拓扑快照，不存在时返回 null
+     */
+    String getSnapshot(String key);
+
+    /**
+     * 保存拓扑快照，先写入快照再写入版本
+     *
+     * @param key           拓扑Key
+     * @param version       快照版本
+     * @param snapshot      序列化后的拓扑快照
+     * @param expireSeconds 过期时间(秒)
+     */
+    void putSnapshot(String key, String version, String snapshot, long expireSeconds);
+
+    /**
+     * 尝试获取拓扑刷新锁，同一时刻只有一个节点从CMDB刷新拓扑
+     *
+     * @param key              拓扑Key
+     * @param requestId        请求标识
+     * @param expireTimeMillis 锁超时时间(毫秒)
+     * @return 是否获取成功
+     */
+    boolean tryLockRefresh(String key, String requestId, long expireTimeMillis);
+
+    /**
+     * 释放拓扑刷新锁
+     *
+     * @param key       拓扑Key
+     * @param requestId 请求标识
+     */
+    void unlockRefresh(String key, String requestId);
+}
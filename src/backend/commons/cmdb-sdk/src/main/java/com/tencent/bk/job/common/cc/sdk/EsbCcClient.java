@@ -25,9 +25,6 @@
 package com.tencent.bk.job.common.cc.sdk;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.tencent.bk.job.common.cc.config.CcConfig;
 import com.tencent.bk.job.common.cc.model.*;
 import com.tencent.bk.job.common.cc.model.req.*;
@@ -106,6 +103,10 @@ public class EsbCcClient extends AbstractEsbSdkClient implements CcClient {
     private static final ConcurrentHashMap<String, Pair<InstanceTopologyDTO, Long>> bizInternalTopoMap =
         new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<String, ReentrantLock> bizInternalTopoLockMap = new ConcurrentHashMap<>();
+    /**
+     * 业务完整拓扑缓存，所有客户端实例共用
+     */
+    private static final BizTopologyCache bizInstCompleteTopologyCache = new BizTopologyCache();
     public static ThreadPoolExecutor threadPoolExecutor = null;
     public static ThreadPoolExecutor longTermThreadPoolExecutor = null;
     public static CcConfig ccConfig = null;
@@ -136,16 +137,10 @@ public class EsbCcClient extends AbstractEsbSdkClient implements CcClient {
     protected String defaultUin = "admin";
     private QueryAgentStatusClient queryAgentStatusClient;
     private MeterRegistry meterRegistry;
-    private LoadingCache<String, InstanceTopologyDTO> bizInstCompleteTopologyCache = CacheBuilder.newBuilder()
-        .maximumSize(1000).expireAfterWrite(30, TimeUnit.SECONDS).
-            build(new CacheLoader<String, InstanceTopologyDTO>() {
-                      @Override
-                      public InstanceTopologyDTO load(String searchKey) throws Exception {
-                          String[] keys = searchKey.split(":");
-                          return getBizInstCompleteTopology(Long.parseLong(keys[0]), keys[1], keys[2]);
-                      }
-                  }
-            );
+    /**
+     * CMDB 返回的内置模块名称与语言相关，拓扑缓存按语言区分
+     */
+    private final String lang;
 
     public EsbCcClient(EsbConfig esbConfig, CcConfig ccConfig, QueryAgentStatusClient queryAgentStatusClient,
                        MeterRegistry meterRegistry) {
@@ -159,6 +154,14 @@ public class EsbCcClient extends AbstractEsbSdkClient implements CcClient {
         this.defaultSupplierAccount = ccConfig.getDefaultSupplierAccount();
         this.queryAgentStatusClient = queryAgentStatusClient;
         this.meterRegistry = meterRegistry;
+        this.lang = lang;
+    }
+
+    /**
+     * 设置集群共享的拓扑存储，未设置时每个节点独立从CMDB拉取拓扑
+     */
+    public static void setBizTopologySharedStore(BizTopologySharedStore sharedStore) {
+        bizInstCompleteTopologyCache.setSharedStore(sharedStore);
     }
 
     public static void setGlobalFlowController(FlowController flowController) {
@@ -195,6 +198,8 @@ public class EsbCcClient extends AbstractEsbSdkClient implements CcClient {
 
     public static void setCcConfig(CcConfig ccConfig) {
         EsbCcClient.ccConfig = ccConfig;
+        bizInstCompleteTopologyCache.configure(ccConfig.getTopoCacheExpireSeconds(),
+            ccConfig.getTopoCacheMaxStaleSeconds());
     }
 
     public void setQueryAgentStatusClient(QueryAgentStatusClient queryAgentStatusClient) {
@@ -327,12 +332,8 @@ public class EsbCcClient extends AbstractEsbSdkClient implements CcClient {
 
     public InstanceTopologyDTO getCachedBizInstCompleteTopology(long appId, String owner,
                                                                 String uin) throws ServiceException {
-        try {
-            return bizInstCompleteTopologyCache.get("" + appId + ":" + owner + ":" + uin);
-        } catch (ExecutionException e) {
-            throw new ServiceException(e, ErrorCode.CMDB_API_DATA_ERROR, "Fail to get " +
-                "getCachedBizInstCompleteTopology");
-        }
+        String key = "" + appId + ":" + (owner == null ? defaultSupplierAccount : owner) + ":" + lang;
+        return bizInstCompleteTopologyCache.get(key, () -> getBizInstCompleteTopology(appId, owner, uin));
     }
 
     @Override
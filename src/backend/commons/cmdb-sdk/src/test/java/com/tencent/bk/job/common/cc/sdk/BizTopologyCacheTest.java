@@ -0,0 +1,224 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.common.cc.sdk;
+
+import com.tencent.bk.job.common.cc.model.InstanceTopologyDTO;
+import com.tencent.bk.job.common.exception.ServiceException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BizTopologyCacheTest {
+    private static final String KEY = "biz:2";
+
+    private static InstanceTopologyDTO buildTopology(long instanceId, String instanceName) {
+        InstanceTopologyDTO topology = new InstanceTopologyDTO();
+        topology.setObjectId("biz");
+        topology.setInstanceId(instanceId);
+        topology.setInstanceName(instanceName);
+        return topology;
+    }
+
+    private static Supplier<InstanceTopologyDTO> failLoader(AtomicInteger loadCount) {
+        return () -> {
+            loadCount.incrementAndGet();
+            throw new RuntimeException("cmdb unavailable");
+        };
+    }
+
+    private static void waitUntil(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testConcurrentGetLoadOnlyOnce() throws Exception {
+        BizTopologyCache cache = new BizTopologyCache();
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loaderEntered = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        Supplier<InstanceTopologyDTO> loader = () -> {
+            loadCount.incrementAndGet();
+            loaderEntered.countDown();
+            try {
+                releaseLoader.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return buildTopology(2L, "blueking");
+        };
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<InstanceTopologyDTO>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> cache.get(KEY, loader)));
+            }
+            assertThat(loaderEntered.await(5, TimeUnit.SECONDS)).isTrue();
+            // 其他线程等待正在进行的加载
+            Thread.sleep(100);
+            releaseLoader.countDown();
+            InstanceTopologyDTO first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<InstanceTopologyDTO> future : futures) {
+                assertThat(future.get(5, TimeUnit.SECONDS)).isSameAs(first);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loadCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testServeStaleTopologyWhenRefreshFail() throws Exception {
+        BizTopologyCache cache = new BizTopologyCache();
+        cache.configure(1, 60);
+        InstanceTopologyDTO topology = buildTopology(2L, "blueking");
+        assertThat(cache.get(KEY, () -> topology)).isSameAs(topology);
+
+        Thread.sleep(1100);
+        AtomicInteger failCount = new AtomicInteger();
+        // 拓扑已过期但未超过最大容忍时间，直接返回旧拓扑并在后台刷新
+        assertThat(cache.get(KEY, failLoader(failCount))).isSameAs(topology);
+        waitUntil(() -> failCount.get() > 0);
+        assertThat(failCount.get()).isEqualTo(1);
+        // 后台刷新失败后仍然返回旧拓扑
+        assertThat(cache.get(KEY, failLoader(failCount))).isSameAs(topology);
+    }
+
+    @Test
+    void testThrowWhenTopologyTooStaleAndRefreshFail() throws Exception {
+        BizTopologyCache cache = new BizTopologyCache();
+        cache.configure(1, 1);
+        cache.get(KEY, () -> buildTopology(2L, "blueking"));
+
+        Thread.sleep(1100);
+        AtomicInteger failCount = new AtomicInteger();
+        assertThatThrownBy(() -> cache.get(KEY, failLoader(failCount))).isInstanceOf(ServiceException.class);
+        assertThat(failCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testSharedStoreHit() throws Exception {
+        FakeSharedStore store = new FakeSharedStore();
+        store.putSnapshot(KEY, String.valueOf(System.currentTimeMillis()),
+            BizTopologyCache.serialize(buildTopology(2L, "shared")), 60);
+        BizTopologyCache cache = new BizTopologyCache();
+        cache.setSharedStore(store);
+
+        AtomicInteger loadCount = new AtomicInteger();
+        InstanceTopologyDTO topology = cache.get(KEY, failLoader(loadCount));
+        assertThat(topology.getInstanceId()).isEqualTo(2L);
+        assertThat(topology.getInstanceName()).isEqualTo("shared");
+        assertThat(loadCount.get()).isZero();
+        assertThat(store.lockCount.get()).isZero();
+    }
+
+    @Test
+    void testSharedStoreMiss() {
+        FakeSharedStore store = new FakeSharedStore();
+        BizTopologyCache cache = new BizTopologyCache();
+        cache.setSharedStore(store);
+
+        AtomicInteger loadCount = new AtomicInteger();
+        InstanceTopologyDTO topology = cache.get(KEY, () -> {
+            loadCount.incrementAndGet();
+            return buildTopology(2L, "cmdb");
+        });
+        assertThat(topology.getInstanceName()).isEqualTo("cmdb");
+        assertThat(loadCount.get()).isEqualTo(1);
+        assertThat(store.lockCount.get()).isEqualTo(1);
+        assertThat(store.locks).isEmpty();
+        assertThat(store.versions).containsKey(KEY);
+
+        // 其他节点直接使用共享快照，不再从CMDB加载
+        BizTopologyCache otherNodeCache = new BizTopologyCache();
+        otherNodeCache.setSharedStore(store);
+        AtomicInteger otherLoadCount = new AtomicInteger();
+        assertThat(otherNodeCache.get(KEY, failLoader(otherLoadCount)).getInstanceName()).isEqualTo("cmdb");
+        assertThat(otherLoadCount.get()).isZero();
+    }
+
+    @Test
+    void testLoadFromCmdbWhenSharedStoreFail() {
+        BizTopologyCache cache = new BizTopologyCache();
+        cache.setSharedStore(new FakeSharedStore() {
+            @Override
+            public String getVersion(String key) {
+                throw new RuntimeException("redis unavailable");
+            }
+        });
+        assertThat(cache.get(KEY, () -> buildTopology(2L, "cmdb")).getInstanceName()).isEqualTo("cmdb");
+    }
+
+    private static class FakeSharedStore implements BizTopologySharedStore {
+        private final Map<String, String> versions = new ConcurrentHashMap<>();
+        private final Map<String, String> snapshots = new ConcurrentHashMap<>();
+        private final Map<String, String> locks = new ConcurrentHashMap<>();
+        private final AtomicInteger lockCount = new AtomicInteger();
+
+        @Override
+        public String getVersion(String key) {
+            return versions.get(key);
+        }
+
+        @Override
+        public String getSnapshot(String key) {
+            return snapshots.get(key);
+        }
+
+        @Override
+        public void putSnapshot(String key, String version, String snapshot, long expireSeconds) {
+            snapshots.put(key, snapshot);
+            versions.put(key, version);
+        }
+
+        @Override
+        public boolean tryLockRefresh(String key, String requestId, long expireTimeMillis) {
+            lockCount.incrementAndGet();
+            return locks.putIfAbsent(key, requestId) == null;
+        }
+
+        @Override
+        public void unlockRefresh(String key, String requestId) {
+            locks.remove(key, requestId);
+        }
+    }
+}
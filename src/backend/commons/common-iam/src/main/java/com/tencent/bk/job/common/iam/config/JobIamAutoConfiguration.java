@@ -25,14 +25,16 @@
 package com.tencent.bk.job.common.iam.config;
 
 import com.tencent.bk.job.common.iam.util.BusinessAuthHelper;
+import com.tencent.bk.job.common.iam.util.CachedAuthHelper;
 import com.tencent.bk.sdk.iam.config.IamConfiguration;
-import com.tencent.bk.sdk.iam.helper.AuthHelper;
 import com.tencent.bk.sdk.iam.service.HttpClientService;
 import com.tencent.bk.sdk.iam.service.PolicyService;
 import com.tencent.bk.sdk.iam.service.TokenService;
 import com.tencent.bk.sdk.iam.service.impl.DefaultHttpClientServiceImpl;
 import com.tencent.bk.sdk.iam.service.impl.PolicyServiceImpl;
 import com.tencent.bk.sdk.iam.service.impl.TokenServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -76,6 +78,30 @@ public class JobIamAutoConfiguration {
     @Value("${esb.use.test.env:false}")
     private boolean useEsbTestEnv;
 
+    /**
+     * 是否缓存鉴权结果
+     */
+    @Value("${iam.auth-cache.enabled:true}")
+    private boolean authCacheEnabled;
+
+    /**
+     * 鉴权通过结果的缓存时间，权限回收后最长在该时间内仍然生效
+     */
+    @Value("${iam.auth-cache.allow-ttl-seconds:30}")
+    private int authCacheAllowTtlSeconds;
+
+    /**
+     * 鉴权拒绝结果的缓存时间，也是用户获得权限后生效的最长延迟
+     */
+    @Value("${iam.auth-cache.deny-ttl-seconds:10}")
+    private int authCacheDenyTtlSeconds;
+
+    /**
+     * 鉴权结果缓存的最大条目数
+     */
+    @Value("${iam.auth-cache.max-size:100000}")
+    private int authCacheMaxSize;
+
     @Bean
     public IamConfiguration iamConfiguration() {
         return new IamConfiguration(systemId, appCode, appSecret, iamBaseUrl);
@@ -102,8 +128,10 @@ public class JobIamAutoConfiguration {
     }
 
     @Bean
-    public AuthHelper authHelper() {
-        return new AuthHelper(tokenService(), policyService(), iamConfiguration());
+    public CachedAuthHelper authHelper(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        return new CachedAuthHelper(tokenService(), policyService(), iamConfiguration(), authCacheEnabled,
+            authCacheAllowTtlSeconds, authCacheDenyTtlSeconds, authCacheMaxSize,
+            meterRegistryProvider.getIfAvailable());
     }
 
     @Bean
@@ -0,0 +1,265 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.common.iam.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.tencent.bk.sdk.iam.config.IamConfiguration;
+import com.tencent.bk.sdk.iam.dto.InstanceDTO;
+import com.tencent.bk.sdk.iam.dto.PathInfoDTO;
+import com.tencent.bk.sdk.iam.helper.AuthHelper;
+import com.tencent.bk.sdk.iam.service.PolicyService;
+import com.tencent.bk.sdk.iam.service.TokenService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 带鉴权结果缓存的 AuthHelper。
+ * 按 (用户, 操作, 资源) 缓存权限中心的鉴权结果，通过与拒绝的结果分别使用较短的过期时间；
+ * 批量鉴权时按单个资源缓存，只对未命中的资源合并发起一次鉴权请求。
+ * 权限中心不会通知授权变化，Job 的权限申请也只是跳转到权限中心，没有可靠的授权信号，因此不提供主动失效：
+ * 用户获得权限后，缓存的拒绝结果最长在拒绝结果的缓存时间内失效
+ */
+public class CachedAuthHelper extends AuthHelper {
+    private static final String METRIC_CACHE_REQUESTS = "job.iam.auth.cache.requests";
+    private static final String METRIC_IAM_REQUEST_LATENCY = "job.iam.auth.request.latency";
+    private static final String TAG_RESULT = "result";
+    private static final String TAG_TYPE = "type";
+
+    private final boolean enabled;
+    private final long allowTtlMills;
+    private final long denyTtlMills;
+    private final MeterRegistry meterRegistry;
+    private final Cache<DecisionKey, Decision> decisionCache;
+
+    public CachedAuthHelper(TokenService tokenService,
+                            PolicyService policyService,
+                            IamConfiguration iamConfiguration,
+                            boolean enabled,
+                            int allowTtlSeconds,
+                            int denyTtlSeconds,
+                            int maxSize,
+                            MeterRegistry meterRegistry) {
+        super(tokenService, policyService, iamConfiguration);
+        this.enabled = enabled && (allowTtlSeconds > 0 || denyTtlSeconds > 0);
+        this.allowTtlMills = TimeUnit.SECONDS.toMillis(Math.max(allowTtlSeconds, 0));
+        this.denyTtlMills = TimeUnit.SECONDS.toMillis(Math.max(denyTtlSeconds, 0));
+        this.meterRegistry = meterRegistry;
+        this.decisionCache = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Math.max(Math.max(allowTtlMills, denyTtlMills), 1L), TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    @Override
+    public boolean isAllowed(String username, String actionId) {
+        if (!enabled) {
+            return super.isAllowed(username, actionId);
+        }
+        DecisionKey key = new DecisionKey(username, actionId, "");
+        Boolean cachedDecision = getCachedDecision(key);
+        recordCacheRequests(cachedDecision == null ? 0 : 1, cachedDecision == null ? 1 : 0);
+        if (cachedDecision != null) {
+            return cachedDecision;
+        }
+        boolean allowed = timedRequest("action", () -> super.isAllowed(username, actionId));
+        cacheDecision(key, allowed);
+        return allowed;
+    }
+
+    /**
+     * 单个资源鉴权，与批量鉴权共用按资源缓存的结果
+     */
+    @Override
+    public boolean isAllowed(String username, String actionId, InstanceDTO instance) {
+        if (!enabled || instance == null) {
+            return super.isAllowed(username, actionId, instance);
+        }
+        DecisionKey key = new DecisionKey(username, actionId, buildInstanceKey(instance));
+        Boolean cachedDecision = getCachedDecision(key);
+        recordCacheRequests(cachedDecision == null ? 0 : 1, cachedDecision == null ? 1 : 0);
+        if (cachedDecision != null) {
+            return cachedDecision;
+        }
+        // 直接调用 SDK 的批量鉴权，避免再次经过缓存
+        boolean allowed = timedRequest("instance",
+            () -> super.isAllowed(username, actionId, Collections.singletonList(instance)).contains(instance.getId()));
+        cacheDecision(key, allowed);
+        return allowed;
+    }
+
+    /**
+     * 批量鉴权，按单个资源缓存结果；未命中的资源合并为一次鉴权请求（批量预取），例如主机列表
+     */
+    @Override
+    public List<String> isAllowed(String username, String actionId, List<InstanceDTO> instanceList) {
+        if (!enabled || instanceList == null || instanceList.isEmpty()) {
+            return super.isAllowed(username, actionId, instanceList);
+        }
+        Set<String> allowedIds = new LinkedHashSet<>();
+        List<InstanceDTO> missInstances = new ArrayList<>();
+        List<DecisionKey> missKeys = new ArrayList<>();
+        for (InstanceDTO instance : instanceList) {
+            DecisionKey key = new DecisionKey(username, actionId, buildInstanceKey(instance));
+            Boolean cachedDecision = getCachedDecision(key);
+            if (cachedDecision == null) {
+                missInstances.add(instance);
+                missKeys.add(key);
+            } else if (cachedDecision) {
+                allowedIds.add(instance.getId());
+            }
+        }
+        recordCacheRequests(instanceList.size() - missInstances.size(), missInstances.size());
+        if (!missInstances.isEmpty()) {
+                Set<String> missAllowedIds = new HashSet<>(
+                timedRequest("batch", () -> super.isAllowed(username, actionId, missInstances)));
+            for (int i = 0; i < missInstances.size(); i++) {
+                String instanceId = missInstances.get(i).getId();
+                boolean allowed = missAllowedIds.contains(instanceId);
+                cacheDecision(missKeys.get(i), allowed);
+                if (allowed) {
+                    allowedIds.add(instanceId);
+                }
+            }
+        }
+        return new ArrayList<>(allowedIds);
+    }
+
+    /**
+     * 依赖多个资源的鉴权，需要作为整体计算，按资源集合的摘要缓存
+     */
+    @Override
+    public boolean isAllowed(String username, String actionId, InstanceDTO selfInstance,
+                             List<InstanceDTO> dependentInstanceList) {
+        if (!enabled) {
+            return super.isAllowed(username, actionId, selfInstance, dependentInstanceList);
+        }
+        DecisionKey key = new DecisionKey(username, actionId,
+            buildResourceSetKey(selfInstance, dependentInstanceList));
+        Boolean cachedDecision = getCachedDecision(key);
+        recordCacheRequests(cachedDecision == null ? 0 : 1, cachedDecision == null ? 1 : 0);
+        if (cachedDecision != null) {
+            return cachedDecision;
+        }
+        boolean allowed = timedRequest("dependent",
+            () -> super.isAllowed(username, actionId, selfInstance, dependentInstanceList));
+        cacheDecision(key, allowed);
+        return allowed;
+    }
+
+    private Boolean getCachedDecision(DecisionKey key) {
+        Decision decision = decisionCache.getIfPresent(key);
+        if (decision == null || decision.getExpireAtMills() < System.currentTimeMillis()) {
+            return null;
+        }
+        return decision.isAllowed();
+    }
+
+    private void cacheDecision(DecisionKey key, boolean allowed) {
+        long ttlMills = allowed ? allowTtlMills : denyTtlMills;
+        if (ttlMills <= 0) {
+            return;
+        }
+        decisionCache.put(key, new Decision(allowed, System.currentTimeMillis() + ttlMills));
+    }
+
+    private String buildResourceSetKey(InstanceDTO selfInstance, List<InstanceDTO> dependentInstanceList) {
+        List<String> dependentKeys = new ArrayList<>();
+        if (dependentInstanceList != null) {
+            dependentInstanceList.forEach(instance -> dependentKeys.add(buildInstanceKey(instance)));
+            Collections.sort(dependentKeys);
+        }
+        StringJoiner joiner = new StringJoiner("|");
+        joiner.add(selfInstance == null ? "" : buildInstanceKey(selfInstance));
+        dependentKeys.forEach(joiner::add);
+        return "set:" + Hashing.sha256().hashString(joiner.toString(), StandardCharsets.UTF_8).toString();
+    }
+
+    private String buildInstanceKey(InstanceDTO instance) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(instance.getSystem()).append(':').append(instance.getType()).append(':').append(instance.getId());
+        PathInfoDTO path = instance.getPath();
+        while (path != null) {
+            sb.append('/').append(path.getType()).append(':').append(path.getId());
+            path = path.getChild();
+        }
+        if (instance.getAttribute() != null && !instance.getAttribute().isEmpty()) {
+            sb.append('#').append(new TreeMap<>(instance.getAttribute()));
+        }
+        return sb.toString();
+    }
+
+    private void recordCacheRequests(int hits, int misses) {
+        if (meterRegistry == null) {
+            return;
+        }
+        if (hits > 0) {
+            meterRegistry.counter(METRIC_CACHE_REQUESTS, TAG_RESULT, "hit").increment(hits);
+        }
+        if (misses > 0) {
+            meterRegistry.counter(METRIC_CACHE_REQUESTS, TAG_RESULT, "miss").increment(misses);
+        }
+    }
+
+    private <T> T timedRequest(String type, Supplier<T> request) {
+        long start = System.nanoTime();
+        try {
+            return request.get();
+        } finally {
+            if (meterRegistry != null) {
+                Timer.builder(METRIC_IAM_REQUEST_LATENCY)
+                    .tag(TAG_TYPE, type)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class DecisionKey {
+        private String username;
+        private String actionId;
+        /**
+         * 资源标识，单个资源为 系统:类型:ID/路径，多个资源为集合摘要，不依赖资源为空字符串
+         */
+        private String resourceKey;
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class Decision {
+        private boolean allowed;
+        private long expireAtMills;
+    }
+}
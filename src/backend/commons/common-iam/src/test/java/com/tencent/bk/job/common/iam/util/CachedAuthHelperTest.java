@@ -0,0 +1,204 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.tencent.bk.job.common.iam.util;
+
+import com.tencent.bk.sdk.iam.config.IamConfiguration;
+import com.tencent.bk.sdk.iam.constants.ExpressionOperationEnum;
+import com.tencent.bk.sdk.iam.dto.ExpressionWithResourceDTO;
+import com.tencent.bk.sdk.iam.dto.InstanceDTO;
+import com.tencent.bk.sdk.iam.dto.PathInfoDTO;
+import com.tencent.bk.sdk.iam.dto.action.ActionDTO;
+import com.tencent.bk.sdk.iam.dto.action.ActionPolicyDTO;
+import com.tencent.bk.sdk.iam.dto.expression.ExpressionDTO;
+import com.tencent.bk.sdk.iam.dto.resource.ResourceDTO;
+import com.tencent.bk.sdk.iam.service.PolicyService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachedAuthHelperTest {
+
+    private static final String SYSTEM_ID = "bk_job";
+    private static final String USERNAME = "admin";
+    private static final String ACTION_ID = "view_host";
+    private static final String HOST_TYPE = "host";
+
+    private final FakePolicyService policyService = new FakePolicyService();
+
+    private CachedAuthHelper buildAuthHelper(int allowTtlSeconds, int denyTtlSeconds) {
+        IamConfiguration iamConfiguration = new IamConfiguration(SYSTEM_ID, "bk_job", "secret", "http://iam");
+        return new CachedAuthHelper(null, policyService, iamConfiguration, true, allowTtlSeconds, denyTtlSeconds,
+            1000, null);
+    }
+
+    @Test
+    void testCacheAllowedAndDeniedDecisionsWithSeparateTtl() throws InterruptedException {
+        CachedAuthHelper authHelper = buildAuthHelper(30, 1);
+        policyService.allow("1");
+
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, host("1"))).isTrue();
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, host("2"))).isFalse();
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, host("1"))).isTrue();
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, host("2"))).isFalse();
+        assertThat(policyService.getRequestCount()).isEqualTo(2);
+
+        Thread.sleep(1100);
+
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, host("1"))).isTrue();
+        assertThat(policyService.getRequestCount()).isEqualTo(2);
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, host("2"))).isFalse();
+        assertThat(policyService.getRequestCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testNotCacheDeniedDecisionWhenDenyTtlIsZero() {
+        CachedAuthHelper authHelper = buildAuthHelper(30, 0);
+        policyService.allow("1");
+
+        authHelper.isAllowed(USERNAME, ACTION_ID, host("1"));
+        authHelper.isAllowed(USERNAME, ACTION_ID, host("1"));
+        authHelper.isAllowed(USERNAME, ACTION_ID, host("2"));
+        authHelper.isAllowed(USERNAME, ACTION_ID, host("2"));
+
+        assertThat(policyService.getRequestCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testBatchRequestsOnlyMissedInstances() {
+        CachedAuthHelper authHelper = buildAuthHelper(30, 30);
+        policyService.allow("1");
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, Collections.singletonList(host("1"))))
+            .containsExactly("1");
+
+        // 权限变化后，已缓存的主机仍使用缓存结果，只有未命中的主机重新鉴权
+        policyService.allow("2");
+        List<InstanceDTO> hosts = Arrays.asList(host("1"), host("2"), host("3"));
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, hosts)).containsExactlyInAnyOrder("1", "2");
+        assertThat(policyService.getRequestCount()).isEqualTo(2);
+
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, hosts)).containsExactlyInAnyOrder("1", "2");
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, host("3"))).isFalse();
+        assertThat(policyService.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testCacheDependentDecisionByResourceSet() {
+        CachedAuthHelper authHelper = buildAuthHelper(30, 30);
+        policyService.allowAny();
+        InstanceDTO plan = instance("plan", "1", null);
+        PathInfoDTO otherPath = new PathInfoDTO();
+        otherPath.setType("biz");
+        otherPath.setId("2");
+        InstanceDTO planInOtherBiz = instance("plan", "1", otherPath);
+
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, plan, Arrays.asList(host("1"), host("2")))).isTrue();
+        assertThat(authHelper.isAllowed(USERNAME, ACTION_ID, plan, Arrays.asList(host("2"), host("1")))).isTrue();
+        assertThat(policyService.getRequestCount()).isEqualTo(1);
+
+        authHelper.isAllowed(USERNAME, ACTION_ID, plan, Arrays.asList(host("1"), host("3")));
+        assertThat(policyService.getRequestCount()).isEqualTo(2);
+        authHelper.isAllowed(USERNAME, ACTION_ID, planInOtherBiz, Arrays.asList(host("1"), host("2")));
+        assertThat(policyService.getRequestCount()).isEqualTo(3);
+    }
+
+    private static InstanceDTO host(String id) {
+        InstanceDTO instance = instance(HOST_TYPE, id, null);
+        Map<String, Object> attribute = new HashMap<>();
+        attribute.put("os", "linux");
+        instance.setAttribute(attribute);
+        return instance;
+    }
+
+    private static InstanceDTO instance(String type, String id, PathInfoDTO path) {
+        InstanceDTO instance = new InstanceDTO();
+        instance.setSystem(SYSTEM_ID);
+        instance.setType(type);
+        instance.setId(id);
+        instance.setPath(path);
+        return instance;
+    }
+
+    private static class FakePolicyService implements PolicyService {
+        private final AtomicInteger requestCount = new AtomicInteger(0);
+        private final Set<String> allowedHostIds = new HashSet<>();
+        private boolean allowAny;
+
+        void allow(String... hostIds) {
+            allowedHostIds.clear();
+            allowedHostIds.addAll(Arrays.asList(hostIds));
+        }
+
+        void allowAny() {
+            allowAny = true;
+        }
+
+        int getRequestCount() {
+            return requestCount.get();
+        }
+
+        @Override
+        public ExpressionDTO getPolicyByAction(String username, ActionDTO action, List<ResourceDTO> resourceList) {
+            requestCount.incrementAndGet();
+            ExpressionDTO expression = new ExpressionDTO();
+            if (allowAny) {
+                expression.setOperator(ExpressionOperationEnum.ANY);
+                expression.setField(HOST_TYPE + ".id");
+                expression.setValue(Collections.emptyList());
+            } else if (!allowedHostIds.isEmpty()) {
+                expression.setOperator(ExpressionOperationEnum.IN);
+                expression.setField(HOST_TYPE + ".id");
+                expression.setValue(new ArrayList<>(allowedHostIds));
+            }
+            return expression;
+        }
+
+        @Override
+        public List<ActionPolicyDTO> batchGetPolicyByActionList(String username,
+                                                                List<ActionDTO> actionList,
+                                                                List<ResourceDTO> resourceList) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ExpressionWithResourceDTO batchGetPolicyAndAttribute(String username,
+                                                                    ActionDTO action,
+                                                                    ResourceDTO selfResource,
+                                                                    List<ResourceDTO> dependentResources) {
+            ExpressionWithResourceDTO expressionWithResource = new ExpressionWithResourceDTO();
+            expressionWithResource.setExpression(getPolicyByAction(username, action, null));
+            expressionWithResource.setInstanceMap(Collections.emptyMap());
+            return expressionWithResource;
+        }
+    }
+}
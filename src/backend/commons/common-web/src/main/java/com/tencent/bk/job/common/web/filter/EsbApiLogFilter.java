@@ -24,8 +24,8 @@
 
 package com.tencent.bk.job.common.web.filter;
 
-import com.tencent.bk.job.common.web.model.RepeatableReadHttpServletRequest;
-import com.tencent.bk.job.common.web.model.RepeatableReadHttpServletResponse;
+import com.tencent.bk.job.common.web.model.BodyCapturingHttpServletRequest;
+import com.tencent.bk.job.common.web.model.BodyCapturingHttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.servlet.*;
@@ -33,8 +33,26 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
+/**
+ * ESB API 日志过滤器：请求与响应 body 直接透传，仅复制有上限的前缀供 EsbApiLogInterceptor 记录日志
+ */
 @Slf4j
-public class RepeatableReadServletRequestResponseFilter implements Filter {
+public class EsbApiLogFilter implements Filter {
+    /**
+     * 默认记录日志的 body 前缀上限
+     */
+    public static final int DEFAULT_MAX_LOG_BODY_BYTES = 10 * 1024;
+
+    private final int maxLogBodyBytes;
+
+    public EsbApiLogFilter() {
+        this(DEFAULT_MAX_LOG_BODY_BYTES);
+    }
+
+    public EsbApiLogFilter(int maxLogBodyBytes) {
+        this.maxLogBodyBytes = maxLogBodyBytes;
+    }
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
 
@@ -43,8 +61,14 @@ public class RepeatableReadServletRequestResponseFilter implements Filter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
         ServletException {
-        ServletRequest requestWrapper = new RepeatableReadHttpServletRequest((HttpServletRequest) request);
-        ServletResponse responseWrapper = new RepeatableReadHttpServletResponse((HttpServletResponse) response);
+        if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ServletRequest requestWrapper = new BodyCapturingHttpServletRequest((HttpServletRequest) request,
+            maxLogBodyBytes);
+        ServletResponse responseWrapper = new BodyCapturingHttpServletResponse((HttpServletResponse) response,
+            maxLogBodyBytes);
         chain.doFilter(requestWrapper, responseWrapper);
     }
 
@@ -24,32 +24,68 @@
 
 package com.tencent.bk.job.common.web.interceptor;
 
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
-import com.tencent.bk.job.common.util.json.JsonUtils;
-import com.tencent.bk.job.common.web.model.RepeatableReadHttpServletRequest;
-import com.tencent.bk.job.common.web.model.RepeatableReadHttpServletResponse;
+import com.tencent.bk.job.common.web.model.BodyCapture;
+import com.tencent.bk.job.common.web.model.BodyCapturingHttpServletRequest;
+import com.tencent.bk.job.common.web.model.BodyCapturingHttpServletResponse;
+import com.tencent.bk.job.common.web.util.JsonLogDesensitizer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
 public class EsbApiLogInterceptor extends HandlerInterceptorAdapter {
+    /**
+     * 透传的 body 字节数
+     */
+    private static final String METRIC_BODY_BYTES = "job.esb.api.log.body.bytes";
+    /**
+     * 复制到日志缓冲区的 body 字节数
+     */
+    private static final String METRIC_BUFFERED_BYTES = "job.esb.api.log.buffered.bytes";
+    /**
+     * 超过日志上限被截断的 body 数量
+     */
+    private static final String METRIC_TRUNCATED = "job.esb.api.log.truncated";
+    /**
+     * 脱敏并格式化日志 body 的耗时
+     */
+    private static final String METRIC_DESENSITIZE_TIME = "job.esb.api.log.desensitize.time";
+    private static final String TAG_DIRECTION = "direction";
+    private static final String DIRECTION_REQUEST = "request";
+    private static final String DIRECTION_RESPONSE = "response";
+
+    private static final JsonLogDesensitizer REQUEST_DESENSITIZER = new JsonLogDesensitizer(
+        Collections.singleton("bk_app_secret"), new HashSet<>(Arrays.asList("bk_username", "bk_app_code")));
+    private static final JsonLogDesensitizer RESPONSE_DESENSITIZER = new JsonLogDesensitizer(
+        Collections.singleton("bk_app_secret"), null);
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public EsbApiLogInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        if (!(request instanceof RepeatableReadHttpServletRequest)) {
+        if (!(request instanceof BodyCapturingHttpServletRequest)) {
             return true;
         }
-        RepeatableReadHttpServletRequest wrapperRequest = (RepeatableReadHttpServletRequest) request;
-        String desensitizedBody = "";
         String desensitizedQueryParams = "";
         String username = "";
         String appCode = "";
@@ -59,22 +95,11 @@ public class EsbApiLogInterceptor extends HandlerInterceptorAdapter {
 
         try {
             request.setAttribute("request-start", System.currentTimeMillis());
-            apiName = getAPIName(wrapperRequest.getRequestURI());
+            apiName = getAPIName(request.getRequestURI());
             request.setAttribute("api-name", apiName);
-            if (request.getMethod().equals(HttpMethod.POST.name())
-                || request.getMethod().equals(HttpMethod.PUT.name())) {
-                if (StringUtils.isNotBlank(wrapperRequest.getBody())) {
-                    ObjectNode jsonBody = (ObjectNode) JsonUtils.toJsonNode(wrapperRequest.getBody());
-                    if (jsonBody == null) {
-                        return true;
-                    }
-                    username = jsonBody.get("bk_username") == null ? null : jsonBody.get("bk_username").asText();
-                    appCode = jsonBody.get("bk_app_code") == null ? null : jsonBody.get("bk_app_code").asText();
-
-                    // hidden sensitive data
-                    jsonBody.set("bk_app_secret", TextNode.valueOf("***"));
-                    desensitizedBody = jsonBody.toString();
-                }
+            if (isBodyRequest(request)) {
+                // body 尚未被读取，在下游读取 body 时复制前缀，请求日志在请求处理完成后输出
+                return true;
             } else if (request.getMethod().equals(HttpMethod.GET.name())) {
                 username = request.getParameter("bk_username");
                 appCode = request.getParameter("bk_app_code");
@@ -85,14 +110,56 @@ public class EsbApiLogInterceptor extends HandlerInterceptorAdapter {
             }
         } catch (Throwable e) {
             return true;
-        } finally {
-            log.info("request-id:{}|lang:{}|API:{}|uri:{}|appCode:{}|username:{}|body:{}|queryParams:{}", requestId,
-                lang, apiName,
-                request.getRequestURI(), appCode, username, desensitizedBody, desensitizedQueryParams);
         }
+        log.info("request-id:{}|lang:{}|API:{}|uri:{}|appCode:{}|username:{}|body:{}|queryParams:{}", requestId,
+            lang, apiName, request.getRequestURI(), appCode, username, "", desensitizedQueryParams);
         return true;
     }
 
+    private boolean isBodyRequest(HttpServletRequest request) {
+        return request.getMethod().equals(HttpMethod.POST.name())
+            || request.getMethod().equals(HttpMethod.PUT.name());
+    }
+
+    private void logBodyRequest(BodyCapturingHttpServletRequest request) {
+        JsonLogDesensitizer.DesensitizedJson desensitizedBody =
+            desensitize(REQUEST_DESENSITIZER, request.getBodyCapture(), DIRECTION_REQUEST);
+        String username = desensitizedBody.getExtractedFields().get("bk_username");
+        String appCode = desensitizedBody.getExtractedFields().get("bk_app_code");
+        request.setAttribute("username", username);
+        request.setAttribute("app-code", appCode);
+        log.info("request-id:{}|lang:{}|API:{}|uri:{}|appCode:{}|username:{}|body:{}|queryParams:{}",
+            request.getHeader("x-bkapi-request-id"), request.getHeader("blueking-language"),
+            request.getAttribute("api-name"), request.getRequestURI(), appCode, username,
+            desensitizedBody.getText(), "");
+    }
+
+    private JsonLogDesensitizer.DesensitizedJson desensitize(JsonLogDesensitizer desensitizer,
+                                                             BodyCapture bodyCapture,
+                                                             String direction) {
+        long start = System.nanoTime();
+        JsonLogDesensitizer.DesensitizedJson desensitizedJson =
+            desensitizer.desensitize(bodyCapture.getCapturedBytes(), bodyCapture.isTruncated());
+        Timer.builder(METRIC_DESENSITIZE_TIME)
+            .tag(TAG_DIRECTION, direction)
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder(METRIC_BODY_BYTES)
+            .baseUnit("bytes")
+            .tag(TAG_DIRECTION, direction)
+            .register(meterRegistry)
+            .record(bodyCapture.getTotalBytes());
+        DistributionSummary.builder(METRIC_BUFFERED_BYTES)
+            .baseUnit("bytes")
+            .tag(TAG_DIRECTION, direction)
+            .register(meterRegistry)
+            .record(bodyCapture.getCapturedSize());
+        if (bodyCapture.isTruncated()) {
+            meterRegistry.counter(METRIC_TRUNCATED, TAG_DIRECTION, direction).increment();
+        }
+        return desensitizedJson;
+    }
+
     private String desensitizeQueryParams(String queryParams) {
         String desensitizedQueryParams = queryParams;
         if (StringUtils.isNotEmpty(queryParams)) {
@@ -124,11 +191,14 @@ public class EsbApiLogInterceptor extends HandlerInterceptorAdapter {
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception
         ex) throws Exception {
-        if (!(response instanceof RepeatableReadHttpServletResponse)) {
+        if (!(response instanceof BodyCapturingHttpServletResponse)) {
             return;
         }
-        RepeatableReadHttpServletResponse wrapperResponse = (RepeatableReadHttpServletResponse) response;
+        BodyCapturingHttpServletResponse wrapperResponse = (BodyCapturingHttpServletResponse) response;
         try {
+            if (request instanceof BodyCapturingHttpServletRequest && isBodyRequest(request)) {
+                logBodyRequest((BodyCapturingHttpServletRequest) request);
+            }
             Long startTimeInMills = (Long) request.getAttribute("request-start");
             String apiName = (String) request.getAttribute("api-name");
             String appCode = (String) request.getAttribute("app-code");
@@ -136,8 +206,10 @@ public class EsbApiLogInterceptor extends HandlerInterceptorAdapter {
             String requestId = request.getHeader("x-bkapi-request-id");
             int respStatus = response.getStatus();
             long cost = System.currentTimeMillis() - startTimeInMills;
+            String desensitizedResp =
+                desensitize(RESPONSE_DESENSITIZER, wrapperResponse.getBodyCapture(), DIRECTION_RESPONSE).getText();
             log.info("request-id:{}|API:{}|uri:{}|appCode:{}|username:{}|status:{}|resp:{}|cost:{}", requestId, apiName,
-                request.getRequestURI(), appCode, username, respStatus, wrapperResponse.getBodyAsText(), cost);
+                request.getRequestURI(), appCode, username, respStatus, desensitizedResp, cost);
         } catch (Throwable e) {
             log.warn("Handle after completion fail", e);
         } finally {
@@ -0,0 +1,78 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.common.web.model;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 请求/响应 body 的日志副本，只保留不超过上限的前缀，其余字节直接透传不做缓存
+ */
+public class BodyCapture {
+    private final int maxCaptureBytes;
+    private final ByteArrayOutputStream buffer;
+    /**
+     * 透传的 body 总字节数
+     */
+    private long totalBytes;
+
+    public BodyCapture(int maxCaptureBytes) {
+        this.maxCaptureBytes = maxCaptureBytes;
+        this.buffer = new ByteArrayOutputStream(Math.min(maxCaptureBytes, 1024));
+    }
+
+    public void capture(int b) {
+        totalBytes++;
+        if (buffer.size() < maxCaptureBytes) {
+            buffer.write(b);
+        }
+    }
+
+    public void capture(byte[] b, int off, int len) {
+        if (len <= 0) {
+            return;
+        }
+        totalBytes += len;
+        int remain = maxCaptureBytes - buffer.size();
+        if (remain > 0) {
+            buffer.write(b, off, Math.min(remain, len));
+        }
+    }
+
+    public byte[] getCapturedBytes() {
+        return buffer.toByteArray();
+    }
+
+    public int getCapturedSize() {
+        return buffer.size();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public boolean isTruncated() {
+        return totalBytes > buffer.size();
+    }
+}
@@ -24,103 +24,104 @@
 
 package com.tencent.bk.job.common.web.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
-
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
 
 /**
- * 由于HttpServletRequest的InputStream只允许读取一次，为了能够重复读取body，需要用装饰模式来包装
+ * 响应 body 直接写入底层输出流，同时复制一份有上限的前缀用于日志，避免在内存中缓存整个响应
  */
-public class RepeatableReadHttpServletResponse extends HttpServletResponseWrapper {
-    private ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-    private HttpServletResponse response;
+public class BodyCapturingHttpServletResponse extends HttpServletResponseWrapper {
+    private final BodyCapture bodyCapture;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
 
-    public RepeatableReadHttpServletResponse(HttpServletResponse response) {
+    public BodyCapturingHttpServletResponse(HttpServletResponse response, int maxCaptureBytes) {
         super(response);
-        this.response = response;
-    }
-
-    public byte[] getBody() {
-        return byteArrayOutputStream.toByteArray();
-    }
-
-    public String getBodyAsText() {
-        return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+        this.bodyCapture = new BodyCapture(maxCaptureBytes);
     }
 
     @Override
-    public ServletOutputStream getOutputStream() {
-        return new ServletOutputStreamWrapper(this.byteArrayOutputStream, this.response);
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called on this response");
+        }
+        if (outputStream == null) {
+            outputStream = new CapturingServletOutputStream(super.getOutputStream(), bodyCapture);
+        }
+        return outputStream;
     }
 
     @Override
     public PrintWriter getWriter() throws IOException {
-        return new PrintWriter(new OutputStreamWriter(this.byteArrayOutputStream,
-            this.response.getCharacterEncoding()));
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called on this response");
+            }
+            ServletOutputStream capturingStream = new CapturingServletOutputStream(super.getOutputStream(),
+                bodyCapture);
+            writer = new PrintWriter(new OutputStreamWriter(capturingStream, getCharacterEncoding()));
+        }
+        return writer;
     }
 
     @Override
     public void flushBuffer() throws IOException {
-        if (byteArrayOutputStream != null) {
-            byteArrayOutputStream.flush();
+        if (writer != null) {
+            writer.flush();
+        } else if (outputStream != null) {
+            outputStream.flush();
         }
+        super.flushBuffer();
     }
 
-    @Data
-    @EqualsAndHashCode(callSuper = true)
-    @AllArgsConstructor
-    private static class ServletOutputStreamWrapper extends ServletOutputStream {
+    public BodyCapture getBodyCapture() {
+        return bodyCapture;
+    }
 
-        private ByteArrayOutputStream outputStream;
-        private HttpServletResponse response;
+    private static class CapturingServletOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+        private final BodyCapture bodyCapture;
 
-        @Override
-        public boolean isReady() {
-            return true;
+        CapturingServletOutputStream(ServletOutputStream delegate, BodyCapture bodyCapture) {
+            this.delegate = delegate;
+            this.bodyCapture = bodyCapture;
         }
 
         @Override
-        public void setWriteListener(WriteListener listener) {
-
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            bodyCapture.capture(b);
         }
 
         @Override
-        public void write(int b) throws IOException {
-            this.outputStream.write(b);
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            bodyCapture.capture(b, off, len);
         }
 
         @Override
-        public void write(byte[] b) throws IOException {
-            this.outputStream.write(b);
+        public boolean isReady() {
+            return delegate.isReady();
         }
 
         @Override
-        public void write(byte[] b, int off, int len) throws IOException {
-            this.outputStream.write(b, off, len);
+        public void setWriteListener(WriteListener listener) {
+            delegate.setWriteListener(listener);
         }
 
         @Override
         public void flush() throws IOException {
-            if (!this.response.isCommitted()) {
-                byte[] body = this.outputStream.toByteArray();
-                ServletOutputStream outputStream = this.response.getOutputStream();
-                outputStream.write(body);
-                outputStream.flush();
-            }
+            delegate.flush();
         }
 
-
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
     }
-
-
 }
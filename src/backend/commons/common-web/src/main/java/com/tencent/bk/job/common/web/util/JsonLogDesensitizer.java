@@ -0,0 +1,151 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.common.web.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于 Jackson 流式解析对 JSON body 脱敏，逐个 token 复制到输出，敏感字段的值替换为 ***；
+ * 不构建 JSON 树，可以处理被截断的 body 前缀
+ */
+@Slf4j
+public class JsonLogDesensitizer {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String MASK = "***";
+    private static final String TRUNCATED_SUFFIX = "...(truncated)";
+
+    /**
+     * 需要脱敏的字段名，任意层级生效
+     */
+    private final Set<String> sensitiveFieldNames;
+    /**
+     * 需要提取值的顶层字段名
+     */
+    private final Set<String> extractFieldNames;
+
+    public JsonLogDesensitizer(Set<String> sensitiveFieldNames, Set<String> extractFieldNames) {
+        this.sensitiveFieldNames = sensitiveFieldNames;
+        this.extractFieldNames = extractFieldNames == null ? Collections.emptySet() : extractFieldNames;
+    }
+
+    /**
+     * 脱敏 JSON body
+     *
+     * @param body      body 内容，可以是截断的前缀
+     * @param truncated body 是否被截断
+     * @return 脱敏结果
+     */
+    public DesensitizedJson desensitize(byte[] body, boolean truncated) {
+        Map<String, String> extractedFields = new HashMap<>();
+        if (body == null || body.length == 0) {
+            return new DesensitizedJson("", extractedFields);
+        }
+        StringWriter writer = new StringWriter(body.length + TRUNCATED_SUFFIX.length());
+        try (JsonParser parser = JSON_FACTORY.createParser(body);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            // 截断的 body 不自动补全括号，保持与原始内容一致
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            try {
+                copyTokens(parser, generator, extractedFields);
+            } finally {
+                generator.flush();
+            }
+        } catch (JsonProcessingException e) {
+            // 截断或非 JSON 内容，保留已解析的部分
+            if (!truncated) {
+                log.debug("Desensitize json body fail", e);
+            }
+        } catch (IOException e) {
+            log.warn("Desensitize json body fail", e);
+        }
+        String text = writer.toString();
+        if (truncated) {
+            text = text + TRUNCATED_SUFFIX;
+        }
+        return new DesensitizedJson(text, extractedFields);
+    }
+
+    private void copyTokens(JsonParser parser,
+                            JsonGenerator generator,
+                            Map<String, String> extractedFields) throws IOException {
+        int depth = 0;
+        String fieldName = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token == JsonToken.FIELD_NAME) {
+                fieldName = parser.getCurrentName();
+                generator.copyCurrentEvent(parser);
+                if (sensitiveFieldNames.contains(fieldName)) {
+                    // 跳过原始值（包括对象、数组），值未完整读取前不会输出任何内容
+                    parser.nextToken();
+                    parser.skipChildren();
+                    generator.writeString(MASK);
+                    fieldName = null;
+                }
+                continue;
+            }
+            if (depth == 1 && fieldName != null && token.isScalarValue() && extractFieldNames.contains(fieldName)) {
+                extractedFields.put(fieldName, parser.getValueAsString());
+            }
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                depth++;
+            } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                depth--;
+            }
+            generator.copyCurrentEvent(parser);
+            fieldName = null;
+        }
+    }
+
+    @Getter
+    public static class DesensitizedJson {
+        /**
+         * 脱敏后的文本
+         */
+        private final String text;
+        /**
+         * 提取的顶层字段值
+         */
+        private final Map<String, String> extractedFields;
+
+        DesensitizedJson(String text, Map<String, String> extractedFields) {
+            this.text = text;
+            this.extractedFields = extractedFields;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.tencent.bk.job.common.web.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BodyCaptureTest {
+
+    private static final byte[] BODY = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testCaptureExactlyLimit() {
+        BodyCapture bodyCapture = new BodyCapture(BODY.length);
+        bodyCapture.capture(BODY, 0, BODY.length);
+
+        assertThat(bodyCapture.getCapturedBytes()).isEqualTo(BODY);
+        assertThat(bodyCapture.getTotalBytes()).isEqualTo(BODY.length);
+        assertThat(bodyCapture.isTruncated()).isFalse();
+    }
+
+    @Test
+    void testCaptureOneByteOverLimit() {
+        BodyCapture bodyCapture = new BodyCapture(BODY.length - 1);
+        bodyCapture.capture(BODY, 0, BODY.length);
+
+        assertThat(bodyCapture.getCapturedSize()).isEqualTo(BODY.length - 1);
+        assertThat(new String(bodyCapture.getCapturedBytes(), StandardCharsets.UTF_8)).isEqualTo("012345678");
+        assertThat(bodyCapture.getTotalBytes()).isEqualTo(BODY.length);
+        assertThat(bodyCapture.isTruncated()).isTrue();
+    }
+
+    @Test
+    void testCaptureMixedSingleByteAndArrayWrites() {
+        BodyCapture bodyCapture = new BodyCapture(4);
+        bodyCapture.capture(BODY[0]);
+        bodyCapture.capture(BODY, 1, 2);
+        bodyCapture.capture(BODY, 3, 0);
+        bodyCapture.capture(BODY, 3, 3);
+        bodyCapture.capture(BODY[6]);
+
+        assertThat(new String(bodyCapture.getCapturedBytes(), StandardCharsets.UTF_8)).isEqualTo("0123");
+        assertThat(bodyCapture.getTotalBytes()).isEqualTo(7);
+        assertThat(bodyCapture.isTruncated()).isTrue();
+    }
+
+    @Test
+    void testCaptureNothingWhenLimitIsZero() {
+        BodyCapture bodyCapture = new BodyCapture(0);
+        bodyCapture.capture(BODY, 0, BODY.length);
+
+        assertThat(bodyCapture.getCapturedSize()).isZero();
+        assertThat(bodyCapture.getTotalBytes()).isEqualTo(BODY.length);
+        assertThat(bodyCapture.isTruncated()).isTrue();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.tencent.bk.job.common.web.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BodyCapturingHttpServletTest {
+
+    private static final String BODY = "{\"bk_app_code\":\"job\",\"bk_username\":\"admin\"}";
+
+    @Test
+    void testRequestPassesWholeBodyAndCapturesPrefix() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+        BodyCapturingHttpServletRequest capturingRequest = new BodyCapturingHttpServletRequest(request, 10);
+
+        ServletInputStream inputStream = capturingRequest.getInputStream();
+        StringBuilder readBody = new StringBuilder();
+        readBody.append((char) inputStream.read());
+        byte[] buffer = new byte[7];
+        int length;
+        while ((length = inputStream.read(buffer, 0, buffer.length)) != -1) {
+            readBody.append(new String(buffer, 0, length, StandardCharsets.UTF_8));
+        }
+
+        assertThat(readBody.toString()).isEqualTo(BODY);
+        BodyCapture bodyCapture = capturingRequest.getBodyCapture();
+        assertThat(new String(bodyCapture.getCapturedBytes(), StandardCharsets.UTF_8))
+            .isEqualTo(BODY.substring(0, 10));
+        assertThat(bodyCapture.getTotalBytes()).isEqualTo(BODY.length());
+        assertThat(bodyCapture.isTruncated()).isTrue();
+    }
+
+    @Test
+    void testRequestReaderCapturesBody() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+        BodyCapturingHttpServletRequest capturingRequest = new BodyCapturingHttpServletRequest(request,
+            BODY.length());
+
+        BufferedReader reader = capturingRequest.getReader();
+
+        assertThat(reader.readLine()).isEqualTo(BODY);
+        assertThat(capturingRequest.getReader()).isSameAs(reader);
+        assertThat(new String(capturingRequest.getBodyCapture().getCapturedBytes(), StandardCharsets.UTF_8))
+            .isEqualTo(BODY);
+        assertThat(capturingRequest.getBodyCapture().isTruncated()).isFalse();
+    }
+
+    @Test
+    void testResponseWritesThroughAndCapturesPrefix() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        BodyCapturingHttpServletResponse capturingResponse = new BodyCapturingHttpServletResponse(response, 10);
+
+        ServletOutputStream outputStream = capturingResponse.getOutputStream();
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        outputStream.write(body[0]);
+        outputStream.write(body, 1, body.length - 1);
+        capturingResponse.flushBuffer();
+
+        assertThat(response.getContentAsString()).isEqualTo(BODY);
+        BodyCapture bodyCapture = capturingResponse.getBodyCapture();
+        assertThat(new String(bodyCapture.getCapturedBytes(), StandardCharsets.UTF_8))
+            .isEqualTo(BODY.substring(0, 10));
+        assertThat(bodyCapture.getTotalBytes()).isEqualTo(body.length);
+        assertThat(bodyCapture.isTruncated()).isTrue();
+    }
+
+    @Test
+    void testResponseWriterCapturesBodyOnFlush() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding("UTF-8");
+        BodyCapturingHttpServletResponse capturingResponse = new BodyCapturingHttpServletResponse(response,
+            BODY.length());
+
+        PrintWriter writer = capturingResponse.getWriter();
+        writer.write(BODY);
+        capturingResponse.flushBuffer();
+
+        assertThat(response.getContentAsString()).isEqualTo(BODY);
+        assertThat(new String(capturingResponse.getBodyCapture().getCapturedBytes(), StandardCharsets.UTF_8))
+            .isEqualTo(BODY);
+        assertThat(capturingResponse.getBodyCapture().isTruncated()).isFalse();
+        assertThatThrownBy(capturingResponse::getOutputStream).isInstanceOf(IllegalStateException.class);
+    }
+}
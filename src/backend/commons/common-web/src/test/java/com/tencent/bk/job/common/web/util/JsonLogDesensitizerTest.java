@@ -0,0 +1,116 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.tencent.bk.job.common.web.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonLogDesensitizerTest {
+
+    private static final String SECRET = "zq9Secret";
+
+    private final JsonLogDesensitizer desensitizer = new JsonLogDesensitizer(
+        Collections.singleton("bk_app_secret"), new HashSet<>(Arrays.asList("bk_username", "bk_app_code")));
+
+    private JsonLogDesensitizer.DesensitizedJson desensitize(String body, boolean truncated) {
+        return desensitizer.desensitize(body.getBytes(StandardCharsets.UTF_8), truncated);
+    }
+
+    @Test
+    void testMaskSecretAtAnyDepth() {
+        String body = "{\"bk_app_secret\":\"" + SECRET + "1\",\"data\":{\"list\":[{\"bk_app_secret\":\"" + SECRET
+            + "2\",\"name\":\"job\"}]}}";
+
+        assertThat(desensitize(body, false).getText()).isEqualTo(
+            "{\"bk_app_secret\":\"***\",\"data\":{\"list\":[{\"bk_app_secret\":\"***\",\"name\":\"job\"}]}}");
+    }
+
+    @Test
+    void testMaskObjectAndArraySecretValue() {
+        String objectBody = "{\"bk_app_secret\":{\"value\":\"" + SECRET + "\",\"nested\":[\"" + SECRET
+            + "\"]},\"id\":1}";
+        String arrayBody = "{\"bk_app_secret\":[\"" + SECRET + "\",{\"value\":\"" + SECRET + "\"}],\"id\":1}";
+
+        assertThat(desensitize(objectBody, false).getText()).isEqualTo("{\"bk_app_secret\":\"***\",\"id\":1}");
+        assertThat(desensitize(arrayBody, false).getText()).isEqualTo("{\"bk_app_secret\":\"***\",\"id\":1}");
+    }
+
+    @Test
+    void testTruncatedBodyNeverContainsPartialSecret() {
+        String[] bodies = {
+            "{\"id\":1,\"bk_app_secret\":\"" + SECRET + "\",\"name\":\"job\"}",
+            "{\"data\":{\"bk_app_secret\":{\"value\":\"" + SECRET + "\"}},\"name\":\"job\"}",
+            "{\"bk_app_secret\":[\"" + SECRET + "\",\"" + SECRET + "\"],\"name\":\"job\"}"
+        };
+        for (String body : bodies) {
+            for (int length = 1; length < body.length(); length++) {
+                String text = desensitize(body.substring(0, length), true).getText();
+                assertThat(text).as("prefix length %d of %s", length, body)
+                    .doesNotContain("zq9")
+                    .endsWith("...(truncated)");
+            }
+        }
+    }
+
+    @Test
+    void testTruncatedBodyKeepsParsedPrefix() {
+        String text = desensitize("{\"bk_app_secret\":\"" + SECRET + "\",\"name\":\"jo", true).getText();
+
+        assertThat(text).startsWith("{\"bk_app_secret\":\"***\",\"name\"").doesNotContain(SECRET);
+    }
+
+    @Test
+    void testExtractTopLevelFieldsOnly() {
+        String body = "{\"data\":{\"bk_username\":\"nested_user\",\"bk_app_code\":\"nested_app\"},"
+            + "\"bk_username\":\"admin\",\"list\":[{\"bk_app_code\":\"item_app\"}]}";
+
+        JsonLogDesensitizer.DesensitizedJson result = desensitize(body, false);
+
+        assertThat(result.getExtractedFields()).containsOnlyKeys("bk_username");
+        assertThat(result.getExtractedFields()).containsEntry("bk_username", "admin");
+    }
+
+    @Test
+    void testExtractScalarValuesOnly() {
+        String body = "{\"bk_app_code\":{\"value\":\"app\"},\"bk_username\":123}";
+
+        JsonLogDesensitizer.DesensitizedJson result = desensitize(body, false);
+
+        assertThat(result.getExtractedFields()).containsOnlyKeys("bk_username");
+        assertThat(result.getExtractedFields()).containsEntry("bk_username", "123");
+    }
+
+    @Test
+    void testEmptyAndInvalidBody() {
+        assertThat(desensitizer.desensitize(null, false).getText()).isEmpty();
+        assertThat(desensitizer.desensitize(new byte[0], false).getText()).isEmpty();
+        assertThat(desensitize("bk_app_secret=" + SECRET, false).getText()).doesNotContain(SECRET);
+    }
+}
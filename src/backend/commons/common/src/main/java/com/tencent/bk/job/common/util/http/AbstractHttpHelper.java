@@ -209,6 +209,17 @@ public abstract class AbstractHttpHelper {
         return getHttpClient().execute(get);
     }
 
+    /**
+     * POST请求，返回原始响应，由调用方根据状态码处理并负责关闭响应
+     */
+    public CloseableHttpResponse postRawResp(String url, String content, Header... headers) throws IOException {
+        HttpPost post = new HttpPost(url);
+        post.setHeader("Connection", "Keep-Alive");
+        post.setHeaders(headers);
+        post.setEntity(new ByteArrayEntity(content.getBytes(CHARSET)));
+        return getHttpClient().execute(post);
+    }
+
     public String delete(String url, String content, Header... headers) throws Exception {
         FakeHttpDelete delete = new FakeHttpDelete(url);
         HttpEntity requestEntity = new ByteArrayEntity(content.getBytes(CHARSET));
@@ -79,7 +79,11 @@ public interface WebTaskExecutionResultResource {
         @ApiParam(value = "执行方式,1-页面执行,2-API调用,3-定时任务。如果传多个用,分隔，比如:1,2", name = "startupModes", required = false)
         @RequestParam(value = "startupModes", required = false) String startupModes,
         @ApiParam(value = "ip", name = "ip", required = false)
-        @RequestParam(value = "ip", required = false) String ip);
+        @RequestParam(value = "ip", required = false) String ip,
+        @ApiParam(value = "游标分页-上一页最后一条记录的创建时间，与cursorId同时传入时按游标分页，忽略start", required = false)
+        @RequestParam(value = "cursorCreateTime", required = false) Long cursorCreateTime,
+        @ApiParam(value = "游标分页-上一页最后一条记录的作业实例ID", required = false)
+        @RequestParam(value = "cursorId", required = false) Long cursorId);
 
     @ApiOperation(value = "获取作业执行信息", produces = "application/json")
     @GetMapping("/app/{appId}/task-execution-result/{taskInstanceId}")
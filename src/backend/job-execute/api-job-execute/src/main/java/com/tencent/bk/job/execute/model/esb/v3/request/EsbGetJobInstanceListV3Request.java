@@ -102,4 +102,20 @@ public class EsbGetJobInstanceListV3Request extends EsbReq {
      * 返回记录数量
      */
     private Integer length;
+
+    /**
+     * 游标分页-上一页最后一条记录的创建时间，与 cursor_job_instance_id 同时传入时按游标分页，忽略 start
+     */
+    @JsonProperty("cursor_create_time")
+    private Long cursorCreateTime;
+
+    /**
+     * 游标分页-上一页最后一条记录的作业执行实例 ID
+     */
+    @JsonProperty("cursor_job_instance_id")
+    private Long cursorTaskInstanceId;
+
+    public boolean isCursorMode() {
+        return cursorCreateTime != null && cursorTaskInstanceId != null;
+    }
 }
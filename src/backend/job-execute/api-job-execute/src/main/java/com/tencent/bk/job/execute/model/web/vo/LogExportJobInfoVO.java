@@ -37,4 +37,10 @@ public class LogExportJobInfoVO {
 
     @ApiModelProperty("文件大小")
     private Long fileSize;
+
+    @ApiModelProperty("需要导出日志的主机数量")
+    private Integer totalHosts;
+
+    @ApiModelProperty("已导出日志的主机数量")
+    private Integer finishedHosts;
 }
@@ -25,6 +25,8 @@
 package com.tencent.bk.job.execute.config;
 
 import com.tencent.bk.job.common.redis.util.LockUtils;
+import com.tencent.bk.job.execute.cache.HostNearCache;
+import com.tencent.bk.job.manage.model.inner.ServiceHostChangedMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,6 +35,8 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
 @Configuration
@@ -64,4 +68,18 @@ public class RedisConfig {
 
         return redisTemplate;
     }
+
+    /**
+     * 订阅 job-manage 发布的主机变更，失效主机近端缓存
+     */
+    @Bean
+    public RedisMessageListenerContainer hostChangedListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                      HostNearCache hostNearCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        if (hostNearCache.isEnabled()) {
+            container.addMessageListener(hostNearCache, new ChannelTopic(ServiceHostChangedMessage.CHANNEL));
+        }
+        return container;
+    }
 }
@@ -24,8 +24,6 @@
 
 package com.tencent.bk.job.execute.dao.impl;
 
-import com.tencent.bk.job.common.model.BaseSearchCondition;
-import com.tencent.bk.job.common.model.PageData;
 import com.tencent.bk.job.execute.common.constants.RunStatusEnum;
 import com.tencent.bk.job.execute.common.constants.TaskStartupModeEnum;
 import com.tencent.bk.job.execute.common.constants.TaskTypeEnum;
@@ -232,16 +230,11 @@ class TaskInstanceDAOImplIntegrationTest {
         taskQuery.setTaskInstanceId(1L);
         taskQuery.setAppId(2L);
 
-        BaseSearchCondition baseSearchCondition = new BaseSearchCondition();
-        baseSearchCondition.setStart(0);
-        baseSearchCondition.setLength(10);
+        List<TaskInstanceDTO> taskInstanceDTOS = taskInstanceDAO.listTaskInstance(taskQuery, 0, 10);
 
-        PageData<TaskInstanceDTO> taskInstanceDTOS = taskInstanceDAO.listPageTaskInstance(taskQuery,
-            baseSearchCondition);
-
-        assertThat(taskInstanceDTOS.getTotal()).isEqualTo(1);
-        assertThat(taskInstanceDTOS.getData().size()).isEqualTo(1);
-        assertThat(taskInstanceDTOS.getData().get(0).getId()).isEqualTo(1L);
+        assertThat(taskInstanceDAO.countTaskInstance(taskQuery, null)).isEqualTo(1);
+        assertThat(taskInstanceDTOS.size()).isEqualTo(1);
+        assertThat(taskInstanceDTOS.get(0).getId()).isEqualTo(1L);
 
     }
 
@@ -258,16 +251,11 @@ class TaskInstanceDAOImplIntegrationTest {
         taskQuery.setEndTime(1572868802000L);
         taskQuery.setTaskName("task1");
 
-        BaseSearchCondition baseSearchCondition = new BaseSearchCondition();
-        baseSearchCondition.setStart(0);
-        baseSearchCondition.setLength(10);
-
-        PageData<TaskInstanceDTO> taskInstanceDTOS = taskInstanceDAO.listPageTaskInstance(taskQuery,
-            baseSearchCondition);
+        List<TaskInstanceDTO> taskInstanceDTOS = taskInstanceDAO.listTaskInstance(taskQuery, 0, 10);
 
-        assertThat(taskInstanceDTOS.getTotal()).isEqualTo(1);
-        assertThat(taskInstanceDTOS.getData().size()).isEqualTo(1);
-        assertThat(taskInstanceDTOS.getData().get(0).getId()).isEqualTo(1L);
+        assertThat(taskInstanceDAO.countTaskInstance(taskQuery, null)).isEqualTo(1);
+        assertThat(taskInstanceDTOS.size()).isEqualTo(1);
+        assertThat(taskInstanceDTOS.get(0).getId()).isEqualTo(1L);
 
     }
 
@@ -279,16 +267,29 @@ class TaskInstanceDAOImplIntegrationTest {
         taskQuery.setOperator("admin");
         taskQuery.setIp("10.0.0.2");
 
-        BaseSearchCondition baseSearchCondition = new BaseSearchCondition();
-        baseSearchCondition.setStart(0);
-        baseSearchCondition.setLength(10);
+        List<TaskInstanceDTO> taskInstanceDTOS = taskInstanceDAO.listTaskInstance(taskQuery, 0, 10);
+
+        assertThat(taskInstanceDAO.countTaskInstance(taskQuery, null)).isEqualTo(2);
+        assertThat(taskInstanceDTOS.size()).isEqualTo(2);
+        assertThat(taskInstanceDTOS).extracting("id").containsOnly(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("测试游标分页查询执行实例-创建时间相同时按ID倒序")
+    void testQueryListByCursor() {
+        TaskInstanceQuery taskQuery = new TaskInstanceQuery();
+        taskQuery.setAppId(2L);
+
+        List<TaskInstanceDTO> firstPage = taskInstanceDAO.listTaskInstanceByCursor(taskQuery, null, null, 2);
+        assertThat(firstPage).extracting("id").containsExactly(3L, 2L);
 
-        PageData<TaskInstanceDTO> taskInstanceDTOS = taskInstanceDAO.listPageTaskInstance(taskQuery,
-            baseSearchCondition);
+        TaskInstanceDTO last = firstPage.get(firstPage.size() - 1);
+        List<TaskInstanceDTO> secondPage = taskInstanceDAO.listTaskInstanceByCursor(taskQuery, last.getCreateTime(),
+            last.getId(), 2);
+        assertThat(secondPage).extracting("id").containsExactly(1L);
 
-        assertThat(taskInstanceDTOS.getTotal()).isEqualTo(2);
-        assertThat(taskInstanceDTOS.getData().size()).isEqualTo(2);
-        assertThat(taskInstanceDTOS.getData()).extracting("id").containsOnly(1L, 2L);
+        assertThat(taskInstanceDAO.countTaskInstance(taskQuery, null)).isEqualTo(3);
+        assertThat(taskInstanceDAO.countTaskInstance(taskQuery, 2)).isEqualTo(2);
     }
 
     @Test
@@ -53,7 +53,8 @@ CREATE TABLE IF NOT EXISTS `task_instance`
     KEY (`operator`),
     KEY (`task_id`),
     KEY (`status`),
-    KEY (`create_time`)
+    KEY (`create_time`),
+    KEY `idx_create_time_app_name` (`app_id`, `create_time`, `name`)
 ) ENGINE = InnoDB
   AUTO_INCREMENT = 1000000
   DEFAULT CHARSET = utf8mb4;
@@ -95,11 +95,17 @@ public class EsbGetJobInstanceListV3ResourceImpl implements EsbGetJobInstanceLis
             taskQuery.setStatus(RunStatusEnum.valueOf(request.getTaskStatus()));
         }
         taskQuery.setIp(request.getIp());
-        BaseSearchCondition baseSearchCondition = new BaseSearchCondition();
-        baseSearchCondition.setStart(request.getStart());
-        baseSearchCondition.setLength(request.getLength());
 
-        PageData<TaskInstanceDTO> pageData = taskResultService.listPageTaskInstance(taskQuery, baseSearchCondition);
+        PageData<TaskInstanceDTO> pageData;
+        if (request.isCursorMode()) {
+            pageData = taskResultService.listPageTaskInstanceByCursor(taskQuery, request.getCursorCreateTime(),
+                request.getCursorTaskInstanceId(), request.getLength());
+        } else {
+            BaseSearchCondition baseSearchCondition = new BaseSearchCondition();
+            baseSearchCondition.setStart(request.getStart());
+            baseSearchCondition.setLength(request.getLength());
+            pageData = taskResultService.listPageTaskInstance(taskQuery, baseSearchCondition);
+        }
         return EsbResp.buildSuccessResp(convertToEsbTaskInstancePageData(pageData));
     }
 
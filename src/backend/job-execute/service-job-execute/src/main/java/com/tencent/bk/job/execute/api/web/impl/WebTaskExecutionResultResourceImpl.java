@@ -174,7 +174,9 @@ public class WebTaskExecutionResultResourceImpl
                                                                         Integer pageSize,
                                                                         Long cronTaskId,
                                                                         String startupModes,
-                                                                        String ip) {
+                                                                        String ip,
+                                                                        Long cursorCreateTime,
+                                                                        Long cursorId) {
         TaskInstanceQuery taskQuery = new TaskInstanceQuery();
         taskQuery.setTaskInstanceId(taskInstanceId);
         taskQuery.setAppId(appId);
@@ -196,12 +198,17 @@ public class WebTaskExecutionResultResourceImpl
             taskQuery.setStatus(RunStatusEnum.valueOf(status));
         }
         taskQuery.setIp(ip);
-        BaseSearchCondition baseSearchCondition = new BaseSearchCondition();
-        baseSearchCondition.setStart(start);
-        baseSearchCondition.setLength(pageSize);
 
-
-        PageData<TaskInstanceDTO> pageData = taskResultService.listPageTaskInstance(taskQuery, baseSearchCondition);
+        PageData<TaskInstanceDTO> pageData;
+        if (cursorCreateTime != null && cursorId != null) {
+            pageData = taskResultService.listPageTaskInstanceByCursor(taskQuery, cursorCreateTime, cursorId,
+                pageSize);
+        } else {
+            BaseSearchCondition baseSearchCondition = new BaseSearchCondition();
+            baseSearchCondition.setStart(start);
+            baseSearchCondition.setLength(pageSize);
+            pageData = taskResultService.listPageTaskInstance(taskQuery, baseSearchCondition);
+        }
         if (pageData == null) {
             return ServiceResponse.buildSuccessResp(PageData.emptyPageData(start, pageSize));
         }
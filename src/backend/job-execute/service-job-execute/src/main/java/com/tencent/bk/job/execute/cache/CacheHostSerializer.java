@@ -0,0 +1,129 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.cache;
+
+import com.tencent.bk.job.execute.model.db.CacheHostDO;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Redis 缓存主机的二进制编码
+ * <p>
+ * 格式：版本号(1字节) + 字段存在标记(1字节) + 存在的 appId/hostId/cloudAreaId (varint) + ip (UTF-8，占用剩余字节)。
+ * 相比 JSON 编码（包含类名与字段名）单个主机约节省 80% 的存储与网络开销。
+ */
+public class CacheHostSerializer implements RedisSerializer<CacheHostDO> {
+    private static final byte VERSION = 1;
+    private static final int FLAG_APP_ID = 1;
+    private static final int FLAG_HOST_ID = 1 << 1;
+    private static final int FLAG_CLOUD_AREA_ID = 1 << 2;
+    private static final int FLAG_IP = 1 << 3;
+
+    @Override
+    public byte[] serialize(CacheHostDO host) throws SerializationException {
+        if (host == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        out.write(VERSION);
+        int flags = (host.getAppId() != null ? FLAG_APP_ID : 0)
+            | (host.getHostId() != null ? FLAG_HOST_ID : 0)
+            | (host.getCloudAreaId() != null ? FLAG_CLOUD_AREA_ID : 0)
+            | (host.getIp() != null ? FLAG_IP : 0);
+        out.write(flags);
+        if (host.getAppId() != null) {
+            writeVarLong(out, host.getAppId());
+        }
+        if (host.getHostId() != null) {
+            writeVarLong(out, host.getHostId());
+        }
+        if (host.getCloudAreaId() != null) {
+            writeVarLong(out, host.getCloudAreaId());
+        }
+        if (host.getIp() != null) {
+            byte[] ipBytes = host.getIp().getBytes(StandardCharsets.UTF_8);
+            out.write(ipBytes, 0, ipBytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 反序列化
+     *
+     * @return 数据为空或版本不匹配时返回 null，按缓存未命中处理
+     */
+    @Override
+    public CacheHostDO deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length < 2 || bytes[0] != VERSION) {
+            return null;
+        }
+        int flags = bytes[1];
+        int[] position = {2};
+        CacheHostDO host = new CacheHostDO();
+        try {
+            if ((flags & FLAG_APP_ID) != 0) {
+                host.setAppId(readVarLong(bytes, position));
+            }
+            if ((flags & FLAG_HOST_ID) != 0) {
+                host.setHostId(readVarLong(bytes, position));
+            }
+            if ((flags & FLAG_CLOUD_AREA_ID) != 0) {
+                host.setCloudAreaId(readVarLong(bytes, position));
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new SerializationException("Invalid cache host bytes", e);
+        }
+        if ((flags & FLAG_IP) != 0) {
+            host.setIp(new String(bytes, position[0], bytes.length - position[0], StandardCharsets.UTF_8));
+        }
+        return host;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new SerializationException("Invalid varint in cache host bytes");
+            }
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
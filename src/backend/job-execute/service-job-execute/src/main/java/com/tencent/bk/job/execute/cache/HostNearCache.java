@@ -0,0 +1,296 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.cache;
+
+import com.tencent.bk.job.common.util.json.JsonUtils;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
+import com.tencent.bk.job.execute.model.db.CacheHostDO;
+import com.tencent.bk.job.execute.monitor.ExecuteMetricNames;
+import com.tencent.bk.job.manage.model.inner.ServiceHostChangedMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 主机近端缓存：位于 Redis 主机缓存之前的节点本地缓存。
+ * <p>
+ * 以 (云区域ID, IPv4) 压缩成的 long 作为 key，直接映射到定长槽位数组，容量固定、查询不产生装箱与字符串拼接；
+ * 槽位冲突时后写入者覆盖。job-manage 主机变更时通过 Redis 频道通知，收到通知后先删除 Redis 中对应的主机缓存
+ * （所属业务在下一轮同步时全量同步，重新写入被删除的主机），再失效近端缓存条目，避免随后又从 Redis 读回变更前的主机；
+ * 过期时间兜底丢失的通知。
+ * 无法压缩的主机（IPv6、超范围云区域ID）不经过近端缓存。
+ */
+@Slf4j
+@Component
+public class HostNearCache implements MessageListener {
+    private static final long NOT_CACHEABLE = -1L;
+    private static final int MAX_VERSION_STRIPES = 4096;
+
+    private final RedisHostCache redisHostCache;
+    private final boolean enabled;
+    private final long expireMills;
+    private final int mask;
+    private final AtomicReferenceArray<Entry> slots;
+    private final int versionMask;
+    /**
+     * 按槽位分段的失效版本号，失效时递增所在分段的版本。加载期间所在分段发生过失效的结果不回填，
+     * 避免把失效前读到的旧值写回缓存，其他分段的失效不影响回填
+     */
+    private final AtomicLongArray invalidationVersions;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter invalidationCounter;
+    private final DistributionSummary hitAgeSummary;
+    private final Timer invalidationLagTimer;
+
+    @Autowired
+    public HostNearCache(JobExecuteConfig jobExecuteConfig, MeterRegistry meterRegistry,
+                         RedisHostCache redisHostCache) {
+        this.redisHostCache = redisHostCache;
+        this.enabled = jobExecuteConfig.isHostNearCacheEnabled();
+        this.expireMills = TimeUnit.SECONDS.toMillis(jobExecuteConfig.getHostNearCacheExpireSeconds());
+        int capacity = tableSizeFor(jobExecuteConfig.getHostNearCacheCapacity());
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(enabled ? capacity : 1);
+        this.versionMask = Math.min(capacity, MAX_VERSION_STRIPES) - 1;
+        this.invalidationVersions = new AtomicLongArray(enabled ? versionMask + 1 : 1);
+        this.hitCounter = meterRegistry.counter(ExecuteMetricNames.HOST_NEAR_CACHE_REQUESTS_TOTAL,
+            "result", "hit");
+        this.missCounter = meterRegistry.counter(ExecuteMetricNames.HOST_NEAR_CACHE_REQUESTS_TOTAL,
+            "result", "miss");
+        this.invalidationCounter = meterRegistry.counter(ExecuteMetricNames.HOST_NEAR_CACHE_INVALIDATIONS_TOTAL);
+        this.hitAgeSummary = meterRegistry.summary(ExecuteMetricNames.HOST_NEAR_CACHE_HIT_AGE);
+        this.invalidationLagTimer = meterRegistry.timer(ExecuteMetricNames.HOST_NEAR_CACHE_INVALIDATION_LAG);
+        log.info("Host near cache enabled: {}, capacity: {}, expireSeconds: {}", enabled, capacity,
+            jobExecuteConfig.getHostNearCacheExpireSeconds());
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Math.max(16, Math.min(capacity, 1 << 24));
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * 将 云区域ID + IPv4 压缩为 long：高32位为云区域ID，低32位为IP
+     *
+     * @return 压缩后的key；无法压缩时返回 -1
+     */
+    public static long packKey(long cloudAreaId, String ip) {
+        if (cloudAreaId < 0 || cloudAreaId > Integer.MAX_VALUE || ip == null) {
+            return NOT_CACHEABLE;
+        }
+        long ipValue = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    return NOT_CACHEABLE;
+                }
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                ipValue = (ipValue << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return NOT_CACHEABLE;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return NOT_CACHEABLE;
+        }
+        ipValue = (ipValue << 8) | octet;
+        return (cloudAreaId << 32) | ipValue;
+    }
+
+    /**
+     * 将 云区域ID:IP 格式的主机压缩为 long
+     */
+    static long packKey(String cloudIp) {
+        int separatorIndex = cloudIp == null ? -1 : cloudIp.indexOf(':');
+        if (separatorIndex <= 0) {
+            return NOT_CACHEABLE;
+        }
+        try {
+            return packKey(Long.parseLong(cloudIp.substring(0, separatorIndex)),
+                cloudIp.substring(separatorIndex + 1));
+        } catch (NumberFormatException e) {
+            return NOT_CACHEABLE;
+        }
+    }
+
+    private int indexOf(long key) {
+        int h = (int) (key ^ (key >>> 32));
+        h *= 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取主机所在分段的当前失效版本号，需要在从 Redis 加载主机之前获取，并在回填时传入
+     */
+    public long currentVersion(Long cloudAreaId, String ip) {
+        if (!enabled || cloudAreaId == null) {
+            return 0L;
+        }
+        long key = packKey(cloudAreaId, ip);
+        return key == NOT_CACHEABLE ? 0L : invalidationVersions.get(indexOf(key) & versionMask);
+    }
+
+    /**
+     * 查询缓存的主机
+     *
+     * @return 未命中、已过期或主机不可缓存时返回 null
+     */
+    public CacheHostDO get(Long cloudAreaId, String ip) {
+        if (!enabled || cloudAreaId == null) {
+            return null;
+        }
+        long key = packKey(cloudAreaId, ip);
+        if (key == NOT_CACHEABLE) {
+            return null;
+        }
+        Entry entry = slots.get(indexOf(key));
+        if (entry != null && entry.key == key) {
+            long age = System.currentTimeMillis() - entry.loadTime;
+            if (age < expireMills) {
+                hitCounter.increment();
+                hitAgeSummary.record(age);
+                return entry.host;
+            }
+        }
+        missCounter.increment();
+        return null;
+    }
+
+    /**
+     * 回填从 Redis 加载的主机
+     *
+     * @param host        主机
+     * @param loadVersion 加载前通过 {@link #currentVersion(Long, String)} 获取的版本号
+     */
+    public void put(CacheHostDO host, long loadVersion) {
+        if (!enabled || host == null) {
+            return;
+        }
+        if (host.getCloudAreaId() == null) {
+            return;
+        }
+        long key = packKey(host.getCloudAreaId(), host.getIp());
+        if (key == NOT_CACHEABLE) {
+            return;
+        }
+        int index = indexOf(key);
+        int versionIndex = index & versionMask;
+        if (invalidationVersions.get(versionIndex) != loadVersion) {
+            return;
+        }
+        Entry entry = new Entry(key, host, System.currentTimeMillis());
+        slots.set(index, entry);
+        if (invalidationVersions.get(versionIndex) != loadVersion) {
+            // 写入期间发生了失效，撤销本次回填
+            slots.compareAndSet(index, entry, null);
+        }
+    }
+
+    /**
+     * 失效主机
+     *
+     * @param key {@link #packKey(long, String)} 压缩后的主机
+     */
+    public void invalidate(long key) {
+        if (!enabled || key == NOT_CACHEABLE) {
+            return;
+        }
+        int index = indexOf(key);
+        invalidationVersions.incrementAndGet(index & versionMask);
+        Entry entry = slots.get(index);
+        if (entry != null && entry.key == key && slots.compareAndSet(index, entry, null)) {
+            invalidationCounter.increment();
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            ServiceHostChangedMessage hostChangedMessage = JsonUtils.fromJson(
+                new String(message.getBody(), StandardCharsets.UTF_8), ServiceHostChangedMessage.class);
+            if (hostChangedMessage == null || hostChangedMessage.getHosts() == null) {
+                return;
+            }
+            List<String> cloudIps = hostChangedMessage.getHosts();
+            try {
+                // 先删除 Redis 中的主机缓存，未命中的主机会回源查询，直到所属业务下一轮全量同步重新写入
+                redisHostCache.deleteHosts(cloudIps);
+            } catch (Throwable e) {
+                log.warn("Fail to delete {} changed hosts in redis", cloudIps.size(), e);
+            }
+            for (String cloudIp : cloudIps) {
+                invalidate(packKey(cloudIp));
+            }
+            if (hostChangedMessage.getPublishTime() != null) {
+                invalidationLagTimer.record(
+                    Math.max(0L, System.currentTimeMillis() - hostChangedMessage.getPublishTime()),
+                    TimeUnit.MILLISECONDS);
+            }
+        } catch (Throwable e) {
+            log.warn("Fail to handle host changed message", e);
+        }
+    }
+
+    private static final class Entry {
+        private final long key;
+        private final CacheHostDO host;
+        private final long loadTime;
+
+        private Entry(long key, CacheHostDO host, long loadTime) {
+            this.key = key;
+            this.host = host;
+            this.loadTime = loadTime;
+        }
+    }
+}
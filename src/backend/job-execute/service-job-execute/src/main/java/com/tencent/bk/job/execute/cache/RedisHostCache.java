@@ -0,0 +1,302 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.cache;
+
+import com.tencent.bk.job.common.model.dto.IpDTO;
+import com.tencent.bk.job.execute.model.db.CacheHostDO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 主机缓存
+ * <p>
+ * 每个主机以 云区域ID:IP 为 key 单独存储，值为 {@link CacheHostSerializer} 编码的二进制数据；
+ * 同步得到的主机同时记录在业务的主机集合中，用于发现并清理业务下已删除的主机。写入均按批次 pipeline 提交。
+ * 主机变更时删除的主机缓存，其所属业务会被标记为待全量同步，由下一轮同步重新写入。
+ */
+@Slf4j
+@Component
+public class RedisHostCache {
+    private static final String HOST_KEY_PREFIX = "job:execute:host:v2:";
+    private static final String APP_HOSTS_KEY_PREFIX = "job:execute:app:hosts:";
+    private static final String FULL_SYNC_APPS_KEY = "job:execute:host:sync:full-sync-apps";
+    private static final int BATCH_SIZE = 1000;
+    private static final CacheHostSerializer SERIALIZER = new CacheHostSerializer();
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Autowired
+    public RedisHostCache(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public static String buildCloudIp(Long cloudAreaId, String ip) {
+        return cloudAreaId + ":" + ip;
+    }
+
+    private static byte[] buildHostKey(String cloudIp) {
+        return (HOST_KEY_PREFIX + cloudIp).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String buildAppHostsKey(long appId) {
+        return APP_HOSTS_KEY_PREFIX + appId;
+    }
+
+    /**
+     * 获取缓存的主机
+     *
+     * @return 未缓存时返回 null
+     */
+    public CacheHostDO getHost(long cloudAreaId, String ip) {
+        byte[] hostKey = buildHostKey(buildCloudIp(cloudAreaId, ip));
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(hostKey));
+        return SERIALIZER.deserialize(value);
+    }
+
+    /**
+     * 批量获取缓存的主机
+     *
+     * @param hosts 主机列表
+     * @return 与 hosts 一一对应的缓存主机，未缓存的主机为 null
+     */
+    public List<CacheHostDO> batchGetHosts(List<IpDTO> hosts) {
+        List<String> cloudIps = new ArrayList<>(hosts.size());
+        for (IpDTO host : hosts) {
+            cloudIps.add(buildCloudIp(host.getCloudAreaId(), host.getIp()));
+        }
+        return batchGetHostsByCloudIps(cloudIps);
+    }
+
+    private List<CacheHostDO> batchGetHostsByCloudIps(List<String> cloudIps) {
+        List<CacheHostDO> cacheHosts = new ArrayList<>(cloudIps.size());
+        for (int start = 0; start < cloudIps.size(); start += BATCH_SIZE) {
+            List<String> batchCloudIps = cloudIps.subList(start, Math.min(start + BATCH_SIZE, cloudIps.size()));
+            byte[][] hostKeys = new byte[batchCloudIps.size()][];
+            for (int i = 0; i < batchCloudIps.size(); i++) {
+                hostKeys[i] = buildHostKey(batchCloudIps.get(i));
+            }
+            List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.mGet(hostKeys));
+            for (int i = 0; i < batchCloudIps.size(); i++) {
+                cacheHosts.add(values == null || i >= values.size() ? null : SERIALIZER.deserialize(values.get(i)));
+            }
+        }
+        return cacheHosts;
+    }
+
+    /**
+     * 批量写入主机
+     *
+     * @param hosts         主机
+     * @param expireSeconds 过期时间
+     */
+    public void addHosts(List<CacheHostDO> hosts, long expireSeconds) {
+        pipelineSetHosts(hosts, expireSeconds, null);
+    }
+
+    /**
+     * 批量写入业务下同步得到的主机，并记录到业务的主机集合中
+     *
+     * @param appId         业务ID
+     * @param hosts         主机
+     * @param expireSeconds 过期时间
+     * @return 新加入业务主机集合的主机，云区域ID:IP
+     */
+    public List<String> saveAppHosts(long appId, List<CacheHostDO> hosts, long expireSeconds) {
+        if (hosts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String appHostsKey = buildAppHostsKey(appId);
+        List<String> addedCloudIps = pipelineSetHosts(hosts, expireSeconds,
+            appHostsKey.getBytes(StandardCharsets.UTF_8));
+        redisTemplate.expire(appHostsKey, expireSeconds, TimeUnit.SECONDS);
+        return addedCloudIps;
+    }
+
+    private List<String> pipelineSetHosts(List<CacheHostDO> hosts, long expireSeconds, byte[] appHostsKey) {
+        Expiration expiration = Expiration.seconds(expireSeconds);
+        List<String> addedCloudIps = new ArrayList<>();
+        for (int start = 0; start < hosts.size(); start += BATCH_SIZE) {
+            List<CacheHostDO> batchHosts = hosts.subList(start, Math.min(start + BATCH_SIZE, hosts.size()));
+            List<String> batchCloudIps = new ArrayList<>(batchHosts.size());
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (CacheHostDO host : batchHosts) {
+                    String cloudIp = buildCloudIp(host.getCloudAreaId(), host.getIp());
+                    batchCloudIps.add(cloudIp);
+                    connection.set(buildHostKey(cloudIp), SERIALIZER.serialize(host), expiration,
+                        RedisStringCommands.SetOption.upsert());
+                    if (appHostsKey != null) {
+                        // 逐个加入集合，根据返回值得到新加入的主机
+                        connection.sAdd(appHostsKey, cloudIp.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                return null;
+            });
+            if (appHostsKey != null) {
+                for (int i = 0; i < batchCloudIps.size(); i++) {
+                    Object added = results.get(2 * i + 1);
+                    if (added instanceof Long && (Long) added > 0) {
+                        addedCloudIps.add(batchCloudIps.get(i));
+                    }
+                }
+            }
+        }
+        return addedCloudIps;
+    }
+
+    /**
+     * 批量删除主机缓存，并将被删除主机所属的业务标记为待全量同步
+     * <p>
+     * 删除可能晚于增量同步写入变更后的主机，而业务主机集合摘要并不会因此变化，只能由全量同步重新写入。
+     * 读取与删除在同一事务中执行，保证被删除的主机所属业务一定会被标记
+     *
+     * @param cloudIps 云区域ID:IP
+     */
+    public void deleteHosts(List<String> cloudIps) {
+        Set<Long> appIds = new HashSet<>();
+        for (int start = 0; start < cloudIps.size(); start += BATCH_SIZE) {
+            List<String> batchCloudIps = cloudIps.subList(start, Math.min(start + BATCH_SIZE, cloudIps.size()));
+            byte[][] hostKeys = new byte[batchCloudIps.size()][];
+            for (int i = 0; i < batchCloudIps.size(); i++) {
+                hostKeys[i] = buildHostKey(batchCloudIps.get(i));
+            }
+            List<Object> results = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+                connection.multi();
+                connection.mGet(hostKeys);
+                connection.del(hostKeys);
+                return connection.exec();
+            });
+            if (results == null || results.isEmpty() || !(results.get(0) instanceof List)) {
+                continue;
+            }
+            for (Object value : (List<?>) results.get(0)) {
+                CacheHostDO deletedHost = value instanceof byte[] ? SERIALIZER.deserialize((byte[]) value) : null;
+                if (deletedHost != null && deletedHost.getAppId() != null) {
+                    appIds.add(deletedHost.getAppId());
+                }
+            }
+        }
+        markAppsFullSync(appIds);
+    }
+
+    /**
+     * 标记业务在下一轮同步时全量同步
+     *
+     * @param appIds 业务ID
+     */
+    public void markAppsFullSync(Collection<Long> appIds) {
+        if (appIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.opsForSet().add(FULL_SYNC_APPS_KEY, appIds.stream().map(String::valueOf).toArray(String[]::new));
+    }
+
+    /**
+     * 获取被标记为待全量同步的业务
+     */
+    public Set<Long> listMarkedFullSyncApps() {
+        Set<String> members = redisTemplate.opsForSet().members(FULL_SYNC_APPS_KEY);
+        Set<Long> appIds = new HashSet<>();
+        if (members != null) {
+            members.forEach(member -> appIds.add(Long.valueOf(member)));
+        }
+        return appIds;
+    }
+
+    /**
+     * 取出业务的全量同步标记
+     *
+     * @param appId 业务ID
+     * @return 业务被标记过时返回 true，同时清除标记
+     */
+    public boolean takeAppFullSyncMark(long appId) {
+        Long removed = redisTemplate.opsForSet().remove(FULL_SYNC_APPS_KEY, String.valueOf(appId));
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * 获取业务主机集合中的主机数量
+     */
+    public long countAppHosts(long appId) {
+        Long count = redisTemplate.opsForSet().size(buildAppHostsKey(appId));
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * 清理业务主机集合中已不属于业务的主机。主机缓存仍属于该业务时一并删除，已被其他业务重新写入的主机缓存保留
+     *
+     * @param appId    业务ID
+     * @param cloudIps 业务当前的全部主机，云区域ID:IP
+     * @return 清理的主机数量
+     */
+    public int removeStaleAppHosts(long appId, Collection<String> cloudIps) {
+        String appHostsKey = buildAppHostsKey(appId);
+        Set<String> members = redisTemplate.opsForSet().members(appHostsKey);
+        if (members == null || members.isEmpty()) {
+            return 0;
+        }
+        members.removeAll(new HashSet<>(cloudIps));
+        if (members.isEmpty()) {
+            return 0;
+        }
+        List<String> staleCloudIps = new ArrayList<>(members);
+        List<CacheHostDO> staleHosts = batchGetHostsByCloudIps(staleCloudIps);
+        byte[] appHostsKeyBytes = appHostsKey.getBytes(StandardCharsets.UTF_8);
+        for (int start = 0; start < staleCloudIps.size(); start += BATCH_SIZE) {
+            int end = Math.min(start + BATCH_SIZE, staleCloudIps.size());
+            List<byte[]> deleteHostKeys = new ArrayList<>();
+            byte[][] removeMembers = new byte[end - start][];
+            for (int i = start; i < end; i++) {
+                CacheHostDO staleHost = staleHosts.get(i);
+                if (staleHost == null || staleHost.getAppId() == null || staleHost.getAppId() == appId) {
+                    deleteHostKeys.add(buildHostKey(staleCloudIps.get(i)));
+                }
+                removeMembers[i - start] = staleCloudIps.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                if (!deleteHostKeys.isEmpty()) {
+                    connection.del(deleteHostKeys.toArray(new byte[0][]));
+                }
+                connection.sRem(appHostsKeyBytes, removeMembers);
+                return null;
+            });
+        }
+        log.info("Remove stale app hosts, appId:{}, hosts:{}", appId, staleCloudIps);
+        return staleCloudIps.size();
+    }
+}
@@ -76,4 +76,58 @@ public class GseConfig {
 
     @Value("${gse.query.batchSize:5000}")
     private int gseQueryBatchSize;
+
+    /**
+     * 是否启用 GSE TaskServer 连接池
+     */
+    @Value("${gse.taskserver.pool.enabled:true}")
+    private boolean gseClientPoolEnabled;
+
+    /**
+     * 每个 GSE TaskServer 的最大连接数
+     */
+    @Value("${gse.taskserver.pool.maxTotalPerServer:64}")
+    private int gseClientPoolMaxTotalPerServer;
+
+    /**
+     * 每个 GSE TaskServer 的最大空闲连接数
+     */
+    @Value("${gse.taskserver.pool.maxIdlePerServer:32}")
+    private int gseClientPoolMaxIdlePerServer;
+
+    /**
+     * 每个 GSE TaskServer 的最小空闲连接数
+     */
+    @Value("${gse.taskserver.pool.minIdlePerServer:2}")
+    private int gseClientPoolMinIdlePerServer;
+
+    /**
+     * 从连接池获取连接的最大等待时间，单位毫秒
+     */
+    @Value("${gse.taskserver.pool.maxWaitMills:3000}")
+    private long gseClientPoolMaxWaitMills;
+
+    /**
+     * 空闲连接被回收前的最小空闲时间，单位毫秒
+     */
+    @Value("${gse.taskserver.pool.minEvictableIdleMills:120000}")
+    private long gseClientPoolMinEvictableIdleMills;
+
+    /**
+     * 空闲连接检测周期，单位毫秒
+     */
+    @Value("${gse.taskserver.pool.evictionRunIntervalMills:30000}")
+    private long gseClientPoolEvictionRunIntervalMills;
+
+    /**
+     * 连接空闲超过该时长后，借出时不再复用（服务端可能已主动断开），单位毫秒
+     */
+    @Value("${gse.taskserver.pool.maxReuseIdleMills:30000}")
+    private long gseClientPoolMaxReuseIdleMills;
+
+    /**
+     * 连接最大存活时长，超过后借出或空闲检测时销毁，单位毫秒
+     */
+    @Value("${gse.taskserver.pool.maxLifeMills:600000}")
+    private long gseClientPoolMaxLifeMills;
 }
@@ -31,6 +31,22 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @Data
 public class JobExecuteConfig {
+    /**
+     * 结果处理任务调度器类型-DelayQueue
+     */
+    public static final String RESULT_HANDLE_SCHEDULER_DELAY_QUEUE = "delay-queue";
+    /**
+     * 结果处理任务调度器类型-时间轮
+     */
+    public static final String RESULT_HANDLE_SCHEDULER_HASHED_WHEEL = "hashed-wheel";
+    /**
+     * 结果处理任务调度策略-固定的分段间隔
+     */
+    public static final String RESULT_HANDLE_SCHEDULE_STRATEGY_FIXED = "fixed";
+    /**
+     * 结果处理任务调度策略-根据拉取进展与历史执行时长自适应调整间隔
+     */
+    public static final String RESULT_HANDLE_SCHEDULE_STRATEGY_ADAPTIVE = "adaptive";
 
     @Value("${job.execute.swagger.url:execute.swagger.com}")
     private String swaggerUrl;
@@ -50,6 +66,216 @@ public class JobExecuteConfig {
     @Value("${job.execute.result.handle.tasks.limit: 2000}")
     private int resultHandleTasksLimit;
 
+    /**
+     * 结果处理任务调度器类型：delay-queue/hashed-wheel
+     */
+    @Value("${job.execute.result.handle.scheduler.type:delay-queue}")
+    private String resultHandleSchedulerType;
+
+    /**
+     * 时间轮调度器 tick 时长，单位毫秒
+     */
+    @Value("${job.execute.result.handle.scheduler.wheel.tick-mills:50}")
+    private long resultHandleWheelTickMills;
+
+    /**
+     * 时间轮调度器槽位数
+     */
+    @Value("${job.execute.result.handle.scheduler.wheel.size:512}")
+    private int resultHandleWheelSize;
+
+    /**
+     * 结果处理任务调度策略：fixed/adaptive
+     */
+    @Value("${job.execute.result.handle.schedule.strategy:fixed}")
+    private String resultHandleScheduleStrategy;
+
+    /**
+     * 自适应调度策略-脚本任务最小调度间隔，单位毫秒
+     */
+    @Value("${job.execute.result.handle.schedule.adaptive.script.min-delay-mills:200}")
+    private long adaptiveScriptMinDelayMills;
+
+    /**
+     * 自适应调度策略-脚本任务最大调度间隔，单位毫秒
+     */
+    @Value("${job.execute.result.handle.schedule.adaptive.script.max-delay-mills:10000}")
+    private long adaptiveScriptMaxDelayMills;
+
+    /**
+     * 自适应调度策略-文件任务最小调度间隔，单位毫秒
+     */
+    @Value("${job.execute.result.handle.schedule.adaptive.file.min-delay-mills:500}")
+    private long adaptiveFileMinDelayMills;
+
+    /**
+     * 自适应调度策略-文件任务最大调度间隔，单位毫秒
+     */
+    @Value("${job.execute.result.handle.schedule.adaptive.file.max-delay-mills:10000}")
+    private long adaptiveFileMaxDelayMills;
+
+    /**
+     * 是否合并多个任务的GSE脚本日志拉取请求
+     */
+    @Value("${job.execute.result.handle.gse-log-pull.coalesce.enabled:true}")
+    private boolean gseLogPullCoalesceEnabled;
+
+    /**
+     * GSE脚本日志拉取请求合并窗口，单位毫秒
+     */
+    @Value("${job.execute.result.handle.gse-log-pull.coalesce.window-mills:20}")
+    private int gseLogPullCoalesceWindowMills;
+
+    /**
+     * 单次合并的最大GSE脚本日志拉取请求数
+     */
+    @Value("${job.execute.result.handle.gse-log-pull.coalesce.max-batch-size:50}")
+    private int gseLogPullCoalesceMaxBatchSize;
+
+    /**
+     * 执行合并后GSE脚本日志拉取请求的线程数
+     */
+    @Value("${job.execute.result.handle.gse-log-pull.coalesce.threads:10}")
+    private int gseLogPullCoalesceThreads;
+
+    /**
+     * 结果处理任务keepalive信息在Redis中的ZSET分片数，集群内所有实例必须一致
+     */
+    @Value("${job.execute.result.handle.keepalive.shards:16}")
+    private int resultHandleKeepaliveShards;
+
+    /**
+     * 单条ZADD命令写入的最大任务数
+     */
+    @Value("${job.execute.result.handle.keepalive.batch-size:500}")
+    private int resultHandleKeepaliveBatchSize;
+
+    /**
+     * 单个脚本任务同时拉取GSE日志的IP批次数，1表示依次拉取
+     */
+    @Value("${job.execute.result.handle.script-log-pull.parallelism:1}")
+    private int scriptLogPullParallelism;
+
+    /**
+     * 并行拉取脚本任务IP批次日志的共享线程数
+     */
+    @Value("${job.execute.result.handle.script-log-pull.threads:20}")
+    private int scriptLogPullThreads;
+
+    /**
+     * 是否启用主机任务执行结果 write-behind 批量写入
+     */
+    @Value("${job.execute.result.handle.ip-log.write-behind.enabled:true}")
+    private boolean ipLogWriteBehindEnabled;
+
+    /**
+     * 主机任务执行结果批量写入的时间间隔，单位毫秒
+     */
+    @Value("${job.execute.result.handle.ip-log.write-behind.flush-interval-mills:500}")
+    private long ipLogWriteBehindFlushIntervalMills;
+
+    /**
+     * 积压的主机任务执行结果达到该数量时提前写入
+     */
+    @Value("${job.execute.result.handle.ip-log.write-behind.max-batch-size:2000}")
+    private int ipLogWriteBehindMaxBatchSize;
+
+    /**
+     * 是否启用脚本日志异步批量写入
+     */
+    @Value("${job.execute.result.handle.script-log.write-behind.enabled:true}")
+    private boolean scriptLogWriteBehindEnabled;
+
+    /**
+     * 脚本日志批量写入的时间间隔，单位毫秒
+     */
+    @Value("${job.execute.result.handle.script-log.write-behind.flush-interval-mills:200}")
+    private long scriptLogWriteBehindFlushIntervalMills;
+
+    /**
+     * 单次批量写入的最大脚本日志数
+     */
+    @Value("${job.execute.result.handle.script-log.write-behind.max-batch-size:1000}")
+    private int scriptLogWriteBehindMaxBatchSize;
+
+    /**
+     * 待写入脚本日志队列容量
+     */
+    @Value("${job.execute.result.handle.script-log.write-behind.queue-capacity:20000}")
+    private int scriptLogWriteBehindQueueCapacity;
+
+    /**
+     * 待写入脚本日志队列满时，提交日志的最大等待时间，单位毫秒；超时后同步写入
+     */
+    @Value("${job.execute.result.handle.script-log.write-behind.max-block-mills:1000}")
+    private long scriptLogWriteBehindMaxBlockMills;
+
+    /**
+     * 导出执行日志时，每次从 job-logsvr 拉取日志的主机数量
+     */
+    @Value("${job.execute.log-export.batch-size:200}")
+    private int logExportBatchSize;
+
+    /**
+     * 导出执行日志时，预先并行拉取的主机批次数量。预取的日志保存在内存中，用于限制单个导出任务占用的内存
+     */
+    @Value("${job.execute.log-export.prefetch-batches:4}")
+    private int logExportPrefetchBatches;
+
+    /**
+     * 创建任务时是否通过 job-manage 一次性解析拓扑节点与动态分组主机，失败时回退到逐个节点查询CMDB
+     */
+    @Value("${job.execute.host.resolve.batch.enabled:true}")
+    private boolean batchResolveHostsEnabled;
+
+    /**
+     * 是否启用主机近端缓存（Redis 主机缓存之前的节点本地缓存）
+     */
+    @Value("${job.execute.host.near-cache.enabled:true}")
+    private boolean hostNearCacheEnabled;
+
+    /**
+     * 主机近端缓存槽位数，向上取整为2的幂
+     */
+    @Value("${job.execute.host.near-cache.capacity:65536}")
+    private int hostNearCacheCapacity;
+
+    /**
+     * 主机近端缓存过期时间，用于兜底丢失的主机变更通知
+     */
+    @Value("${job.execute.host.near-cache.expire-seconds:60}")
+    private int hostNearCacheExpireSeconds;
+
+    /**
+     * 是否按变更水位增量同步主机缓存，关闭时每次全量同步
+     */
+    @Value("${job.execute.host.cache.incremental-sync.enabled:true}")
+    private boolean hostCacheIncrementalSyncEnabled;
+
+    /**
+     * 主机缓存全量同步周期，到期的业务全量同步并清理已删除的主机
+     */
+    @Value("${job.execute.host.cache.full-sync-interval-hours:24}")
+    private int hostCacheFullSyncIntervalHours;
+
+    /**
+     * Redis 主机缓存过期时间，需大于全量同步周期
+     */
+    @Value("${job.execute.host.cache.expire-hours:48}")
+    private int hostCacheExpireHours;
+
+    /**
+     * 作业执行历史总数缓存时间，翻页时复用同一查询条件的计数结果
+     */
+    @Value("${job.execute.task-instance.count-cache-seconds:30}")
+    private int taskInstanceCountCacheSeconds;
+
+    /**
+     * 游标分页模式下作业执行历史总数的计数上限，超过上限时仅返回上限值
+     */
+    @Value("${job.execute.task-instance.cursor-count-limit:10000}")
+    private int taskInstanceCursorCountLimit;
+
     /**
      * 作业平台web访问地址
      */
@@ -37,4 +37,10 @@ public class StatisticConfig {
 
     @Value("${job.execute.statistics.expire.days:30}")
     private Integer expireDays;
+
+    /**
+     * 统计数据写入DB时单条 SQL 包含的最大统计维度数量
+     */
+    @Value("${job.execute.statistics.flush.batch-size:500}")
+    private Integer flushBatchSize;
 }
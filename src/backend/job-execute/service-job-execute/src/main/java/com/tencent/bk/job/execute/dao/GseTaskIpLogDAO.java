@@ -38,6 +38,13 @@ import java.util.List;
 public interface GseTaskIpLogDAO {
     void batchSaveIpLog(List<GseTaskIpLogDTO> ipLogList);
 
+    /**
+     * 使用单条多行 INSERT ... ON DUPLICATE KEY UPDATE 语句保存主机任务执行结果
+     *
+     * @param ipLogList 主机任务执行结果
+     */
+    void batchUpsertIpLog(List<GseTaskIpLogDTO> ipLogList);
+
     void batchUpdateIpLog(long stepInstanceId, int executeCount, Collection<String> cloudAreaAndIps, Long startTime,
                           Long endTime, IpStatus ipStatus);
 
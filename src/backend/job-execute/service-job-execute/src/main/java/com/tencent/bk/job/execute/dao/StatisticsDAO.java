@@ -36,6 +36,17 @@ public interface StatisticsDAO {
 
     int updateStatisticsById(DSLContext dslContext, StatisticsDTO statisticsDTO);
 
+    /**
+     * 批量累加统计值，批次记录与统计值在同一事务内写入，同一批次重复提交(如提交结果未知时的重试)不会重复累加
+     *
+     * @param batchId    批次ID
+     * @param increments 统计增量，value 为增量值
+     * @return 是否累加成功；批次已经写入过时返回 false
+     */
+    boolean batchIncreaseStatistics(String batchId, List<StatisticsDTO> increments);
+
+    int deleteFlushBatchBefore(long createTime);
+
     int deleteStatisticsById(DSLContext dslContext, Long id);
 
     int deleteStatisticsByDate(String date);
@@ -24,8 +24,6 @@
 
 package com.tencent.bk.job.execute.dao;
 
-import com.tencent.bk.job.common.model.BaseSearchCondition;
-import com.tencent.bk.job.common.model.PageData;
 import com.tencent.bk.job.execute.common.constants.RunStatusEnum;
 import com.tencent.bk.job.execute.common.constants.TaskStartupModeEnum;
 import com.tencent.bk.job.execute.common.constants.TaskTypeEnum;
@@ -61,14 +59,35 @@ public interface TaskInstanceDAO {
     void updateTaskTotalTime(Long taskInstanceId, Long totalTime);
 
     /**
-     * 分页查询作业执行实例
+     * 按偏移量分页查询作业执行实例，按创建时间、ID 倒序
      *
-     * @param taskQuery
-     * @param baseSearchCondition
-     * @return
+     * @param taskQuery 查询条件
+     * @param start     起始位置
+     * @param length    查询数量
+     * @return 作业执行实例列表
+     */
+    List<TaskInstanceDTO> listTaskInstance(TaskInstanceQuery taskQuery, int start, int length);
+
+    /**
+     * 按游标分页查询作业执行实例，返回 (create_time, id) 严格小于游标的记录，按创建时间、ID 倒序
+     *
+     * @param taskQuery        查询条件
+     * @param cursorCreateTime 游标-上一页最后一条记录的创建时间，为空表示从第一页开始
+     * @param cursorId         游标-上一页最后一条记录的ID，为空表示从第一页开始
+     * @param length           查询数量
+     * @return 作业执行实例列表
+     */
+    List<TaskInstanceDTO> listTaskInstanceByCursor(TaskInstanceQuery taskQuery, Long cursorCreateTime, Long cursorId,
+                                                   int length);
+
+    /**
+     * 统计作业执行实例数量
+     *
+     * @param taskQuery 查询条件
+     * @param limit     计数上限，超过上限时返回上限值；为空表示精确计数
+     * @return 作业执行实例数量
      */
-    PageData<TaskInstanceDTO> listPageTaskInstance(TaskInstanceQuery taskQuery,
-                                                   BaseSearchCondition baseSearchCondition);
+    long countTaskInstance(TaskInstanceQuery taskQuery, Integer limit);
 
     void addCallbackUrl(long taskInstanceId, String callBackUrl);
 
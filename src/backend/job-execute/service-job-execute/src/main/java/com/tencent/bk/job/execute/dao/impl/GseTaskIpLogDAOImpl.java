@@ -32,6 +32,7 @@ import com.tencent.bk.job.execute.model.ResultGroupBaseDTO;
 import org.apache.commons.lang3.StringUtils;
 import org.jooq.*;
 import org.jooq.generated.tables.GseTaskIpLog;
+import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
@@ -82,6 +83,43 @@ public class GseTaskIpLogDAOImpl implements GseTaskIpLogDAO {
         create.batch(sql, params).execute();
     }
 
+    @Override
+    public void batchUpsertIpLog(List<GseTaskIpLogDTO> ipLogList) {
+        if (ipLogList.isEmpty()) {
+            return;
+        }
+        GseTaskIpLog t = GseTaskIpLog.GSE_TASK_IP_LOG;
+        InsertValuesStepN<?> insert = create.insertInto(t).columns(t.STEP_INSTANCE_ID, t.EXECUTE_COUNT, t.IP,
+            t.STATUS, t.START_TIME, t.END_TIME, t.TOTAL_TIME, t.ERROR_CODE, t.EXIT_CODE, t.TAG, t.LOG_OFFSET,
+            t.DISPLAY_IP, t.IS_TARGET, t.IS_SOURCE);
+        for (GseTaskIpLogDTO ipLog : ipLogList) {
+            insert = insert.values(ipLog.getStepInstanceId(), ipLog.getExecuteCount(), ipLog.getCloudAreaAndIp(),
+                ipLog.getStatus(), ipLog.getStartTime(), ipLog.getEndTime(), ipLog.getTotalTime(),
+                ipLog.getErrCode(), ipLog.getExitCode(), ipLog.getTag(), ipLog.getOffset(), ipLog.getDisplayIp(),
+                ipLog.isTargetServer() ? 1 : 0, ipLog.isSourceServer() ? 1 : 0);
+        }
+        insert.onDuplicateKeyUpdate()
+            .set(t.STATUS, valuesOf(t.STATUS))
+            .set(t.START_TIME, valuesOf(t.START_TIME))
+            .set(t.END_TIME, valuesOf(t.END_TIME))
+            .set(t.TOTAL_TIME, valuesOf(t.TOTAL_TIME))
+            .set(t.ERROR_CODE, valuesOf(t.ERROR_CODE))
+            .set(t.EXIT_CODE, valuesOf(t.EXIT_CODE))
+            .set(t.TAG, valuesOf(t.TAG))
+            .set(t.LOG_OFFSET, valuesOf(t.LOG_OFFSET))
+            .set(t.DISPLAY_IP, valuesOf(t.DISPLAY_IP))
+            .set(t.IS_TARGET, valuesOf(t.IS_TARGET))
+            .set(t.IS_SOURCE, valuesOf(t.IS_SOURCE))
+            .execute();
+    }
+
+    /**
+     * MySQL ON DUPLICATE KEY UPDATE 语句中引用待插入行的值
+     */
+    private static <T> Field<T> valuesOf(Field<T> field) {
+        return DSL.field("VALUES({0})", field.getDataType(), field);
+    }
+
     @Override
     public void batchUpdateIpLog(long stepInstanceId, int executeCount, Collection<String> cloudAreaAndIps,
                                  Long startTime, Long endTime, IpStatus ipStatus) {
@@ -34,6 +34,7 @@ import org.apache.commons.lang.StringUtils;
 import org.jooq.*;
 import org.jooq.conf.ParamType;
 import org.jooq.generated.tables.Statistics;
+import org.jooq.generated.tables.StatisticsFlushBatch;
 import org.jooq.generated.tables.records.StatisticsRecord;
 import org.jooq.impl.DSL;
 import org.jooq.types.ULong;
@@ -56,6 +57,7 @@ import java.util.List;
 public class StatisticsDAOImpl implements StatisticsDAO {
 
     private static final Statistics defaultTable = Statistics.STATISTICS;
+    private static final StatisticsFlushBatch flushBatchTable = StatisticsFlushBatch.STATISTICS_FLUSH_BATCH;
     private final DSLContext defaultDSLContext;
 
     @Autowired
@@ -161,6 +163,63 @@ public class StatisticsDAOImpl implements StatisticsDAO {
         }
     }
 
+    @Override
+    public boolean batchIncreaseStatistics(String batchId, List<StatisticsDTO> increments) {
+        if (increments.isEmpty()) {
+            return true;
+        }
+        return defaultDSLContext.transactionResult(configuration -> {
+            DSLContext context = DSL.using(configuration);
+            ULong now = ULong.valueOf(System.currentTimeMillis());
+            int insertedBatches = context.insertInto(flushBatchTable, flushBatchTable.BATCH_ID,
+                flushBatchTable.CREATE_TIME)
+                .values(batchId, now)
+                .onDuplicateKeyIgnore()
+                .execute();
+            if (insertedBatches == 0) {
+                log.info("Statistics batch {} already flushed, ignore", batchId);
+                return false;
+            }
+            InsertValuesStep8<StatisticsRecord, Long, String, String, String, String, String, ULong, ULong> insert =
+                context.insertInto(defaultTable,
+                    defaultTable.APP_ID,
+                    defaultTable.RESOURCE,
+                    defaultTable.DIMENSION,
+                    defaultTable.DIMENSION_VALUE,
+                    defaultTable.DATE,
+                    defaultTable.VALUE,
+                    defaultTable.CREATE_TIME,
+                    defaultTable.LAST_MODIFY_TIME);
+            for (StatisticsDTO increment : increments) {
+                insert = insert.values(
+                    increment.getAppId(),
+                    increment.getResource(),
+                    increment.getDimension(),
+                    increment.getDimensionValue(),
+                    increment.getDate(),
+                    increment.getValue(),
+                    now,
+                    now
+                );
+            }
+            // 统计值累加在 MySQL 中完成，不需要先查询再更新
+            insert.onDuplicateKeyUpdate()
+                .set(defaultTable.VALUE, DSL.field("CAST({0} AS SIGNED) + CAST(VALUES({0}) AS SIGNED)",
+                    defaultTable.VALUE.getDataType(), defaultTable.VALUE))
+                .set(defaultTable.LAST_MODIFY_TIME, DSL.field("VALUES({0})",
+                    defaultTable.LAST_MODIFY_TIME.getDataType(), defaultTable.LAST_MODIFY_TIME))
+                .execute();
+            return true;
+        });
+    }
+
+    @Override
+    public int deleteFlushBatchBefore(long createTime) {
+        return defaultDSLContext.deleteFrom(flushBatchTable)
+            .where(flushBatchTable.CREATE_TIME.lessThan(ULong.valueOf(createTime)))
+            .execute();
+    }
+
     @Override
     public int deleteStatisticsById(DSLContext dslContext, Long id) {
         return dslContext.deleteFrom(defaultTable).where(
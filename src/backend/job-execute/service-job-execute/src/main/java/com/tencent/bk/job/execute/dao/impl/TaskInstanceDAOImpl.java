@@ -24,8 +24,6 @@
 
 package com.tencent.bk.job.execute.dao.impl;
 
-import com.tencent.bk.job.common.model.BaseSearchCondition;
-import com.tencent.bk.job.common.model.PageData;
 import com.tencent.bk.job.execute.common.constants.RunStatusEnum;
 import com.tencent.bk.job.execute.common.constants.TaskStartupModeEnum;
 import com.tencent.bk.job.execute.common.constants.TaskTypeEnum;
@@ -212,82 +210,89 @@ public class TaskInstanceDAOImpl implements TaskInstanceDAO {
     }
 
     @Override
-    public PageData<TaskInstanceDTO> listPageTaskInstance(TaskInstanceQuery taskQuery,
-                                                          BaseSearchCondition baseSearchCondition) {
-        if (StringUtils.isNotEmpty(taskQuery.getIp())) {
-            return listPageTaskInstanceByIp(taskQuery, baseSearchCondition);
-        } else {
-            return listPageTaskInstanceByBasicInfo(taskQuery, baseSearchCondition);
-        }
-    }
-
-    private PageData<TaskInstanceDTO> listPageTaskInstanceByBasicInfo(TaskInstanceQuery taskQuery,
-                                                                      BaseSearchCondition baseSearchCondition) {
-        int count = getPageTaskInstanceCount(taskQuery);
-
-        Collection<SortField<?>> orderFields = new ArrayList<>();
-        orderFields.add(TABLE.CREATE_TIME.desc());
-        int start = baseSearchCondition.getStartOrDefault(0);
-        int length = baseSearchCondition.getLengthOrDefault(10);
-        Result result = ctx.select(TABLE.ID, TABLE.TASK_ID, TABLE.CRON_TASK_ID, TABLE.TASK_TEMPLATE_ID,
-            TABLE.IS_DEBUG_TASK, TABLE.APP_ID, TABLE.NAME, TABLE.OPERATOR, TABLE.STARTUP_MODE, TABLE.CURRENT_STEP_ID,
-            TABLE.STATUS,
-            TABLE.START_TIME, TABLE.END_TIME, TABLE.TOTAL_TIME, TABLE.CREATE_TIME, TABLE.CALLBACK_URL, TABLE.TYPE,
-            TABLE.APP_CODE)
-            .from(TaskInstanceDAOImpl.TABLE)
-            .where(buildSearchCondition(taskQuery))
-            .orderBy(orderFields)
+    public List<TaskInstanceDTO> listTaskInstance(TaskInstanceQuery taskQuery, int start, int length) {
+        // 按 id 作为同一创建时间下的次级排序，保证分页结果稳定
+        Result<? extends Record> result = selectTaskInstance(taskQuery, buildSearchCondition(taskQuery))
+            .orderBy(TABLE.CREATE_TIME.desc(), TABLE.ID.desc())
             .limit(start, length)
             .fetch();
-        return buildTaskInstancePageData(start, length, count, result);
+        return extractInfoList(result);
     }
 
-    private PageData<TaskInstanceDTO> listPageTaskInstanceByIp(TaskInstanceQuery taskQuery,
-                                                               BaseSearchCondition baseSearchCondition) {
+    @Override
+    public List<TaskInstanceDTO> listTaskInstanceByCursor(TaskInstanceQuery taskQuery, Long cursorCreateTime,
+                                                          Long cursorId, int length) {
         List<Condition> conditions = buildSearchCondition(taskQuery);
-        conditions.add(GseTaskIpLog.GSE_TASK_IP_LOG.DISPLAY_IP.eq(taskQuery.getIp()));
-        int count = ctx.selectCount().from(TaskInstance.TASK_INSTANCE)
-            .leftJoin(StepInstance.STEP_INSTANCE).on(TaskInstance.TASK_INSTANCE.ID.eq(StepInstance.STEP_INSTANCE.TASK_INSTANCE_ID))
-            .leftJoin(GseTaskIpLog.GSE_TASK_IP_LOG).on(GseTaskIpLog.GSE_TASK_IP_LOG.STEP_INSTANCE_ID.eq(StepInstance.STEP_INSTANCE.ID))
-            .where(conditions)
-            .fetchOne(0, Integer.class);
-        Collection<SortField<?>> orderFields = new ArrayList<>();
-        orderFields.add(TABLE.ID.desc());
-        int start = baseSearchCondition.getStartOrDefault(0);
-        int length = baseSearchCondition.getLengthOrDefault(10);
-        Result result = ctx.select(TABLE.ID, TABLE.TASK_ID, TABLE.CRON_TASK_ID, TABLE.TASK_TEMPLATE_ID,
-            TABLE.IS_DEBUG_TASK, TABLE.APP_ID, TABLE.NAME, TABLE.OPERATOR, TABLE.STARTUP_MODE, TABLE.CURRENT_STEP_ID,
-            TABLE.STATUS,
-            TABLE.START_TIME, TABLE.END_TIME, TABLE.TOTAL_TIME, TABLE.CREATE_TIME, TABLE.CALLBACK_URL, TABLE.TYPE,
-            TABLE.APP_CODE, GseTaskIpLog.GSE_TASK_IP_LOG.DISPLAY_IP)
-            .from(TaskInstanceDAOImpl.TABLE)
-            .leftJoin(StepInstance.STEP_INSTANCE).on(TaskInstance.TASK_INSTANCE.ID.eq(StepInstance.STEP_INSTANCE.TASK_INSTANCE_ID))
-            .leftJoin(GseTaskIpLog.GSE_TASK_IP_LOG).on(GseTaskIpLog.GSE_TASK_IP_LOG.STEP_INSTANCE_ID.eq(StepInstance.STEP_INSTANCE.ID))
-            .where(conditions)
-            .groupBy(TaskInstance.TASK_INSTANCE.ID)
-            .orderBy(orderFields)
-            .limit(start, length)
+        if (cursorCreateTime != null && cursorId != null) {
+            // (create_time, id) < (cursorCreateTime, cursorId)，可直接沿 idx_app_create_time 索引定位，无需跳过 offset 行
+            conditions.add(TABLE.CREATE_TIME.lt(cursorCreateTime)
+                .or(TABLE.CREATE_TIME.eq(cursorCreateTime).and(TABLE.ID.lt(cursorId))));
+        }
+        Result<? extends Record> result = selectTaskInstance(taskQuery, conditions)
+            .orderBy(TABLE.CREATE_TIME.desc(), TABLE.ID.desc())
+            .limit(length)
             .fetch();
-        return buildTaskInstancePageData(start, length, count, result);
+        return extractInfoList(result);
+    }
+
+    private SelectHavingStep<? extends Record> selectTaskInstance(TaskInstanceQuery taskQuery,
+                                                                  List<Condition> conditions) {
+        if (StringUtils.isNotEmpty(taskQuery.getIp())) {
+            conditions.add(GseTaskIpLog.GSE_TASK_IP_LOG.DISPLAY_IP.eq(taskQuery.getIp()));
+            return ctx.select(TABLE.ID, TABLE.TASK_ID, TABLE.CRON_TASK_ID, TABLE.TASK_TEMPLATE_ID,
+                TABLE.IS_DEBUG_TASK, TABLE.APP_ID, TABLE.NAME, TABLE.OPERATOR, TABLE.STARTUP_MODE,
+                TABLE.CURRENT_STEP_ID, TABLE.STATUS, TABLE.START_TIME, TABLE.END_TIME, TABLE.TOTAL_TIME,
+                TABLE.CREATE_TIME, TABLE.CALLBACK_URL, TABLE.TYPE, TABLE.APP_CODE)
+                .from(joinIpLogTable())
+                .where(conditions)
+                .groupBy(TABLE.ID);
+        }
+        return ctx.select(TABLE.ID, TABLE.TASK_ID, TABLE.CRON_TASK_ID, TABLE.TASK_TEMPLATE_ID,
+            TABLE.IS_DEBUG_TASK, TABLE.APP_ID, TABLE.NAME, TABLE.OPERATOR, TABLE.STARTUP_MODE, TABLE.CURRENT_STEP_ID,
+            TABLE.STATUS, TABLE.START_TIME, TABLE.END_TIME, TABLE.TOTAL_TIME, TABLE.CREATE_TIME, TABLE.CALLBACK_URL,
+            TABLE.TYPE, TABLE.APP_CODE)
+            .from(TABLE)
+            .where(conditions);
+    }
+
+    private Table<?> joinIpLogTable() {
+        return TABLE
+            .leftJoin(StepInstance.STEP_INSTANCE).on(TABLE.ID.eq(StepInstance.STEP_INSTANCE.TASK_INSTANCE_ID))
+            .leftJoin(GseTaskIpLog.GSE_TASK_IP_LOG)
+            .on(GseTaskIpLog.GSE_TASK_IP_LOG.STEP_INSTANCE_ID.eq(StepInstance.STEP_INSTANCE.ID));
     }
 
-    private PageData<TaskInstanceDTO> buildTaskInstancePageData(int start, int length, int count, Result result) {
+    private List<TaskInstanceDTO> extractInfoList(Result<? extends Record> result) {
         List<TaskInstanceDTO> taskInstances = new ArrayList<>();
         if (result != null && result.size() > 0) {
-            result.into(record -> taskInstances.add(extractInfo(record)));
-        }
-        PageData<TaskInstanceDTO> pageData = new PageData<>();
-        pageData.setData(taskInstances);
-        pageData.setStart(start);
-        pageData.setPageSize(length);
-        pageData.setTotal(Long.valueOf(String.valueOf(count)));
-        return pageData;
+            result.forEach(record -> taskInstances.add(extractInfo(record)));
+        }
+        return taskInstances;
     }
 
-    @SuppressWarnings("all")
-    private int getPageTaskInstanceCount(TaskInstanceQuery taskQuery) {
+    @Override
+    public long countTaskInstance(TaskInstanceQuery taskQuery, Integer limit) {
         List<Condition> conditions = buildSearchCondition(taskQuery);
-        return ctx.selectCount().from(TABLE).where(conditions).fetchOne(0, Integer.class);
+        SelectLimitStep<? extends Record> countSelect;
+        if (StringUtils.isNotEmpty(taskQuery.getIp())) {
+            conditions.add(GseTaskIpLog.GSE_TASK_IP_LOG.DISPLAY_IP.eq(taskQuery.getIp()));
+            countSelect = ctx.selectDistinct(TABLE.ID).from(joinIpLogTable()).where(conditions);
+        } else if (isNameSearch(taskQuery)) {
+            // 名称模糊匹配无法利用索引前缀，指定 (app_id,create_time,name) 索引，使 LIKE 在索引上过滤；
+            // 仅有业务、时间与名称条件时计数无需回表，存在执行人、状态、类型等其他条件时只对名称匹配的行回表
+            countSelect = ctx.selectOne().from(TABLE.useIndex("idx_create_time_app_name")).where(conditions);
+        } else {
+            countSelect = ctx.selectOne().from(TABLE).where(conditions);
+        }
+        // 限制子查询扫描行数，超过上限时计数结果即为上限值
+        Select<? extends Record> limitedSelect = (limit != null && limit > 0) ? countSelect.limit(limit) : countSelect;
+        Integer count = ctx.selectCount().from(limitedSelect.asTable("t")).fetchOne(0, Integer.class);
+        return count == null ? 0L : count.longValue();
+    }
+
+    private boolean isNameSearch(TaskInstanceQuery taskQuery) {
+        return StringUtils.isNotBlank(taskQuery.getTaskName())
+            && (taskQuery.getTaskInstanceId() == null || taskQuery.getTaskInstanceId() <= 0);
     }
 
     private List<Condition> buildSearchCondition(TaskInstanceQuery taskQuery) {
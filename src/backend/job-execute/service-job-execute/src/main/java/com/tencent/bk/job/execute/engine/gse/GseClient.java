@@ -28,6 +28,7 @@ import com.tencent.bk.gse.taskapi.doSomeCmdV3;
 import com.tencent.bk.job.common.util.ApplicationContextRegister;
 import com.tencent.bk.job.execute.config.GseConfig;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.KeyedObjectPool;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.transport.TSocket;
@@ -63,8 +64,25 @@ public class GseClient implements Closeable {
      */
     private doSomeCmdV3.Client gseAgentClient;
     private TTransport transport;
+    /**
+     * GSE 服务端地址，格式 ip:port
+     */
+    private final String server;
+    /**
+     * 客户端所属的连接池；为空表示非池化连接，关闭时直接断开
+     */
+    private volatile KeyedObjectPool<String, GseClient> pool;
+    /**
+     * 连接是否已损坏。损坏的连接归还时会被连接池销毁，而不是复用
+     */
+    private volatile boolean broken;
+    /**
+     * 连接已被服务端断开。同一服务端的其它空闲连接大概率也已失效，归还时一并清理
+     */
+    private volatile boolean serverDisconnected;
 
     private GseClient(String ip, int port) throws TException {
+        this.server = ip + ":" + port;
         if (ENABLE_SSL) {
             BKTSSLTransportFactory.TSSLTransportParameters params =
                 new BKTSSLTransportFactory.TSSLTransportParameters();
@@ -105,6 +123,39 @@ public class GseClient implements Closeable {
         return gseAgentClient;
     }
 
+    public String getServer() {
+        return server;
+    }
+
+    /**
+     * 连接是否可用
+     */
+    boolean isAvailable() {
+        return !broken && transport != null && transport.isOpen();
+    }
+
+    /**
+     * 标记连接已损坏（例如发生传输异常，连接中可能残留未读取的响应数据），归还时将被销毁
+     */
+    public void markBroken() {
+        this.broken = true;
+    }
+
+    /**
+     * 标记连接已被服务端断开（例如服务端重启），归还时清理同一服务端的全部空闲连接
+     */
+    public void markServerDisconnected() {
+        this.broken = true;
+        this.serverDisconnected = true;
+    }
+
+    /**
+     * 从连接池借出时绑定连接池
+     */
+    void attachPool(KeyedObjectPool<String, GseClient> pool) {
+        this.pool = pool;
+    }
+
     /**
      * 关闭连接
      */
@@ -115,9 +166,31 @@ public class GseClient implements Closeable {
         }
     }
 
+    /**
+     * 释放连接。池化连接归还到连接池，非池化连接直接断开
+     */
     @Override
     public void close() {
-        tearDown();
+        KeyedObjectPool<String, GseClient> ownerPool = this.pool;
+        if (ownerPool == null) {
+            tearDown();
+            return;
+        }
+        this.pool = null;
+        try {
+            if (broken) {
+                ownerPool.invalidateObject(server, this);
+                if (serverDisconnected) {
+                    log.info("Gse server disconnected, clear idle gse clients, server: {}", server);
+                    ownerPool.clear(server);
+                }
+            } else {
+                ownerPool.returnObject(server, this);
+            }
+        } catch (Exception e) {
+            log.warn("Release gse client to pool fail, server: {}", server, e);
+            tearDown();
+        }
     }
 }
 
@@ -0,0 +1,101 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.gse;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GSE 客户端连接池对象工厂，key 为 GSE 服务端地址(ip:port)
+ */
+@Slf4j
+public class GseClientPooledObjectFactory extends BaseKeyedPooledObjectFactory<String, GseClient> {
+
+    /**
+     * 建立连接(含 SSL 握手)的次数
+     */
+    private final AtomicLong handshakeCount = new AtomicLong(0);
+
+    /**
+     * 连接空闲超过该时长后不再复用，单位毫秒；小于等于0表示不限制
+     */
+    private final long maxReuseIdleMills;
+
+    /**
+     * 连接最大存活时长，单位毫秒；小于等于0表示不限制
+     */
+    private final long maxLifeMills;
+
+    public GseClientPooledObjectFactory(long maxReuseIdleMills, long maxLifeMills) {
+        this.maxReuseIdleMills = maxReuseIdleMills;
+        this.maxLifeMills = maxLifeMills;
+    }
+
+    @Override
+    public GseClient create(String server) throws Exception {
+        int separatorIndex = server.lastIndexOf(":");
+        String ip = server.substring(0, separatorIndex);
+        int port = Integer.parseInt(server.substring(separatorIndex + 1));
+        GseClient gseClient = GseClient.getClient(ip, port);
+        handshakeCount.incrementAndGet();
+        log.debug("Create gse client, server: {}", server);
+        return gseClient;
+    }
+
+    @Override
+    public PooledObject<GseClient> wrap(GseClient gseClient) {
+        return new DefaultPooledObject<>(gseClient);
+    }
+
+    @Override
+    public boolean validateObject(String server, PooledObject<GseClient> pooledObject) {
+        // 服务端主动断开后 transport.isOpen() 仍然返回 true，只能依据连接的空闲时长与存活时长淘汰可能失效的连接
+        long now = System.currentTimeMillis();
+        if (maxLifeMills > 0 && now - pooledObject.getCreateTime() > maxLifeMills) {
+            log.debug("Gse client exceed max life, server: {}", server);
+            return false;
+        }
+        long lastUsedTime = Math.max(pooledObject.getLastReturnTime(), pooledObject.getCreateTime());
+        if (maxReuseIdleMills > 0 && now - lastUsedTime > maxReuseIdleMills) {
+            log.debug("Gse client exceed max reuse idle time, server: {}", server);
+            return false;
+        }
+        return pooledObject.getObject().isAvailable();
+    }
+
+    @Override
+    public void destroyObject(String server, PooledObject<GseClient> pooledObject) {
+        log.debug("Destroy gse client, server: {}", server);
+        pooledObject.getObject().tearDown();
+    }
+
+    public long getHandshakeCount() {
+        return handshakeCount.get();
+    }
+}
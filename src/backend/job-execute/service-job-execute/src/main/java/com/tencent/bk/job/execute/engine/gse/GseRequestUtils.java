@@ -441,6 +441,37 @@ public class GseRequestUtils {
         });
     }
 
+    /**
+     * 在同一个GSE连接上依次查询多个脚本任务详情
+     *
+     * @param id          请求标识，用于日志输出
+     * @param taskQueries 查询请求列表
+     * @return 与请求顺序一致的查询结果；调用失败返回null
+     */
+    public static List<api_task_detail_result> batchGetScriptTaskDetailRst(String id,
+                                                                           List<api_query_task_info_v2> taskQueries) {
+        return sendCmd(id, new GseApiCallback<List<api_task_detail_result>>() {
+            @Override
+            public List<api_task_detail_result> callback(GseClient gseClient) throws TException {
+                List<api_task_detail_result> taskDetailResults = new ArrayList<>(taskQueries.size());
+                for (api_query_task_info_v2 taskQuery : taskQueries) {
+                    log.info("[{}]: getScriptTaskDetailRequest={}", id, taskQuery);
+                    api_task_detail_result taskDetailRst =
+                        gseClient.getGseAgentClient().get_task_detail_result(taskQuery);
+                    log.info("[{}]: getScriptTaskDetailResponse={}", id,
+                        GseRequestPrinter.printScriptTaskResult(taskDetailRst));
+                    taskDetailResults.add(taskDetailRst);
+                }
+                return taskDetailResults;
+            }
+
+            @Override
+            public String getApiName() {
+                return "get_task_detail_result_batch";
+            }
+        });
+    }
+
     public static GseTaskResponse sendProcessRequest(String id, List<api_process_req> processRequestList, int reqType) {
         return sendCmd(id, new GseTaskResponseCaller() {
             @Override
@@ -498,11 +529,22 @@ public class GseRequestUtils {
                     connect = false;
                     continue; //如果拿不到连接 ，则重试
                 }
-                return caller.callback(gseClient);
+                try {
+                    return caller.callback(gseClient);
+                } catch (TException | RuntimeException e) {
+                    // 调用异常的连接中可能残留未读取的数据，不能归还给连接池复用
+                    if (e instanceof TTransportException && !isReadTimeout(e)) {
+                        // 非读超时的传输异常说明连接已被服务端断开，重试前清理同一服务端的空闲连接，避免重试再次拿到失效连接
+                        gseClient.markServerDisconnected();
+                    } else {
+                        gseClient.markBroken();
+                    }
+                    throw e;
+                }
             } catch (TTransportException e) {
                 // 由于无法捕获到底层的java.net.SocketTimeoutException，所以只能对errorMessage进行判断。读超时无需重试
                 status = "error";
-                if ("java.net.SocketTimeoutException: Read timed out".equalsIgnoreCase(e.getMessage())) {
+                if (isReadTimeout(e)) {
                     log.error("[" + id + "]: Invoke gse api fail", e);
                     throw new ReadTimeoutException(e.getMessage());
                 }
@@ -519,6 +561,10 @@ public class GseRequestUtils {
         return caller.fail(connect);
     }
 
+    private static boolean isReadTimeout(Exception e) {
+        return "java.net.SocketTimeoutException: Read timed out".equalsIgnoreCase(e.getMessage());
+    }
+
     public interface GseApiCallback<T> {
 
         T callback(GseClient gseClient) throws TException;
@@ -30,10 +30,15 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.tencent.bk.job.execute.config.GseConfig;
+import com.tencent.bk.job.execute.monitor.ExecuteMetricNames;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +53,14 @@ public class GseServer {
     private List<Map.Entry<String, Integer>> servers;
     @Autowired
     private GseConfig gseConfig;
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * GSE 客户端连接池，按服务端地址(ip:port)隔离；未启用连接池时为空
+     */
+    private GenericKeyedObjectPool<String, GseClient> clientPool;
+    private GseClientPooledObjectFactory clientFactory;
 
     /**
      * 相同 IP在1分钟内只告警1次
@@ -77,10 +90,43 @@ public class GseServer {
                         return 1;
                     }
                 });
+            if (gseConfig.isGseClientPoolEnabled()) {
+                initClientPool();
+            }
             isInit.compareAndSet(false, true);
         }
     }
 
+    private void initClientPool() {
+        GenericKeyedObjectPoolConfig<GseClient> poolConfig = new GenericKeyedObjectPoolConfig<>();
+        poolConfig.setMaxTotalPerKey(gseConfig.getGseClientPoolMaxTotalPerServer());
+        poolConfig.setMaxIdlePerKey(gseConfig.getGseClientPoolMaxIdlePerServer());
+        poolConfig.setMinIdlePerKey(gseConfig.getGseClientPoolMinIdlePerServer());
+        poolConfig.setMaxTotal(-1);
+        poolConfig.setBlockWhenExhausted(true);
+        poolConfig.setMaxWaitMillis(gseConfig.getGseClientPoolMaxWaitMills());
+        poolConfig.setTestOnBorrow(true);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setMinEvictableIdleTimeMillis(gseConfig.getGseClientPoolMinEvictableIdleMills());
+        poolConfig.setTimeBetweenEvictionRunsMillis(gseConfig.getGseClientPoolEvictionRunIntervalMills());
+        poolConfig.setJmxEnabled(false);
+        clientFactory = new GseClientPooledObjectFactory(gseConfig.getGseClientPoolMaxReuseIdleMills(),
+            gseConfig.getGseClientPoolMaxLifeMills());
+        clientPool = new GenericKeyedObjectPool<>(clientFactory, poolConfig);
+        log.info("Init gse client pool, maxTotalPerServer: {}, maxIdlePerServer: {}, minIdlePerServer: {}, "
+                + "maxReuseIdleMills: {}, maxLifeMills: {}",
+            poolConfig.getMaxTotalPerKey(), poolConfig.getMaxIdlePerKey(), poolConfig.getMinIdlePerKey(),
+            gseConfig.getGseClientPoolMaxReuseIdleMills(), gseConfig.getGseClientPoolMaxLifeMills());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (clientPool != null) {
+            log.info("Close gse client pool");
+            clientPool.close();
+        }
+    }
+
     /**
      * 构建gse访问客户端, 并连接服务端
      */
@@ -109,6 +155,9 @@ public class GseServer {
             }
             Map.Entry<String, Integer> server = servers.get(ipIndex);
             try {
+                if (clientPool != null) {
+                    return borrowClient(server.getKey(), server.getValue());
+                }
                 return GseClient.getClient(server.getKey(), server.getValue());
             } catch (Exception e) {
                 log.error("get getClient {}:{} fail: {}", server.getKey(), server.getValue(), e.getLocalizedMessage());
@@ -120,4 +169,54 @@ public class GseServer {
         return null;
     }
 
+    /**
+     * 从连接池获取指定服务端的连接
+     */
+    private GseClient borrowClient(String ip, int port) throws Exception {
+        long start = System.nanoTime();
+        String status = "ok";
+        try {
+            GseClient gseClient = clientPool.borrowObject(ip + ":" + port);
+            gseClient.attachPool(clientPool);
+            return gseClient;
+        } catch (Exception e) {
+            status = "error";
+            throw e;
+        } finally {
+            if (meterRegistry != null) {
+                meterRegistry.timer(ExecuteMetricNames.GSE_CLIENT_POOL_BORROW, "status", status)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * 清理指定服务端的空闲连接，用于服务端下线
+     */
+    void evictServer(String ip, int port) {
+        if (clientPool != null) {
+            log.info("Evict idle gse clients, server: {}:{}", ip, port);
+            clientPool.clear(ip + ":" + port);
+        }
+    }
+
+    public int getClientPoolNumActive() {
+        return clientPool == null ? 0 : clientPool.getNumActive();
+    }
+
+    public int getClientPoolNumIdle() {
+        return clientPool == null ? 0 : clientPool.getNumIdle();
+    }
+
+    public int getClientPoolNumWaiters() {
+        return clientPool == null ? 0 : clientPool.getNumWaiters();
+    }
+
+    public long getClientPoolMaxBorrowWaitMills() {
+        return clientPool == null ? 0 : clientPool.getMaxBorrowWaitTimeMillis();
+    }
+
+    public long getClientPoolHandshakeCount() {
+        return clientFactory == null ? 0 : clientFactory.getHandshakeCount();
+    }
 }
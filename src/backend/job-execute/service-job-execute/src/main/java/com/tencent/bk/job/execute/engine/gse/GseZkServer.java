@@ -128,8 +128,11 @@ public class GseZkServer extends GseServer {
                         if (accessServerInfo.getPort() > 0) {
                             int port = accessServerInfo.getPort();
                             log.info("GSE Server changed| {}:{}", server, port);
-                            serverMap.put(server, port);
+                            Integer oldPort = serverMap.put(server, port);
                             servers = Lists.newArrayList(serverMap.entrySet());
+                            if (oldPort != null && oldPort != port) {
+                                evictServer(server, oldPort);
+                            }
                         }
                     }
                     break;
@@ -138,8 +141,11 @@ public class GseZkServer extends GseServer {
                 case CHILD_REMOVED: {
                     String server = ZKPaths.getNodeFromPath(event.getData().getPath());
                     log.info("GSE Server removed| {}", server);
-                    serverMap.remove(server);
+                    Integer port = serverMap.remove(server);
                     servers = Lists.newArrayList(serverMap.entrySet());
+                    if (port != null) {
+                        evictServer(server, port);
+                    }
                     break;
                 }
 
@@ -36,6 +36,7 @@ import com.tencent.bk.job.execute.engine.result.ha.ResultHandleTaskKeepaliveMana
 import com.tencent.bk.job.execute.engine.util.IpHelper;
 import com.tencent.bk.job.execute.model.*;
 import com.tencent.bk.job.execute.service.*;
+import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.util.StopWatch;
@@ -70,6 +71,10 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
     // ---------------- dependent service --------------------
     protected TaskExecuteControlMsgSender taskManager;
     protected ResultHandleTaskKeepaliveManager resultHandleTaskKeepaliveManager;
+    /**
+     * 主机任务执行结果批量写入，为空时直接写入DB
+     */
+    protected GseTaskIpLogBatchWriter gseTaskIpLogBatchWriter;
     /**
      * 任务请求的requestId，用于防止重复下发任务
      */
@@ -98,6 +103,10 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
      * GSE 主机任务执行结果
      */
     protected Map<String, GseTaskIpLogDTO> ipLogMap;
+    /**
+     * 最近一次保存的主机任务执行结果快照，用于只保存发生变化的主机结果
+     */
+    private final Map<String, IpLogSnapshot> persistedIpLogSnapshots = new HashMap<>();
     /**
      * 全局参数分析结果
      */
@@ -171,6 +180,22 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
      * GSE任务是否处于终止状态
      */
     private volatile boolean isGseTaskTerminating = false;
+    /**
+     * 任务调度策略
+     */
+    protected volatile ScheduleStrategy scheduleStrategy;
+    /**
+     * 没有任何进展(无新的日志、主机状态无变化)的拉取次数
+     */
+    private final AtomicInteger wastedPullTimes = new AtomicInteger(0);
+    /**
+     * 当前这一次拉取是否获取到新的日志
+     */
+    private boolean hasNewLogInCurrentPull;
+    /**
+     * 最近一次execute的拉取是否有进展；为空表示最近一次execute没有拉取GSE结果
+     */
+    private volatile Boolean lastPullProgress;
     // ---------------- task lifecycle properties --------------------
 
 
@@ -199,6 +224,7 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
         this.stepInstanceId = stepInstance.getId();
         this.taskVariablesAnalyzeResult = taskVariablesAnalyzeResult;
         this.ipLogMap = ipLogMap;
+        ipLogMap.forEach((ip, ipLog) -> persistedIpLogSnapshots.put(ip, new IpLogSnapshot(ipLog)));
         this.gseTaskLog = gseTaskLog;
         this.targetIpSet.addAll(targetIps);
         this.notStartedIpSet.addAll(targetIps);
@@ -231,8 +257,15 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
         this.resultHandleTaskKeepaliveManager = resultHandleTaskKeepaliveManager;
     }
 
+    void setGseTaskIpLogBatchWriter(GseTaskIpLogBatchWriter gseTaskIpLogBatchWriter) {
+        this.gseTaskIpLogBatchWriter = gseTaskIpLogBatchWriter;
+    }
+
     public void execute() {
         StopWatch watch = new StopWatch("Result-Handle-Task-" + stepInstanceId);
+        this.lastPullProgress = null;
+        int[] ipStateBeforePull = null;
+        boolean allBatchesPulled = false;
         try {
             if (!checkTaskActiveAndSetRunningStatus()) {
                 return;
@@ -257,6 +290,8 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
 
             // 拉取执行结果日志
             log.info("[{}]: Start pull log, times: {}", stepInstanceId, pullLogTimes.addAndGet(1));
+            this.hasNewLogInCurrentPull = false;
+            ipStateBeforePull = snapshotIpState();
             GseLogBatchPullResult<T> gseLogBatchPullResult;
             int batch = 0;
             do {
@@ -288,11 +323,19 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
                     return;
                 }
             } while (!gseLogBatchPullResult.isLastBatch());
+            allBatchesPulled = true;
 
             watch.start("handle-execute-result");
             handleExecuteResult(this.executeResult);
             watch.stop();
         } finally {
+            if (!allBatchesPulled) {
+                // 本轮提前结束，丢弃未消费的批次，避免下一轮拿到过期的拉取结果
+                resetGseTaskLogPull();
+            }
+            if (ipStateBeforePull != null) {
+                onPullFinished(ipStateBeforePull);
+            }
             this.isRunning = false;
             LockUtils.releaseDistributedLock("job:result:handle:", String.valueOf(stepInstanceId), requestId);
             if (watch.isRunning()) {
@@ -305,6 +348,33 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
         }
     }
 
+    private int[] snapshotIpState() {
+        return new int[]{notStartedIpSet.size(), runningIpSet.size(), analyseFinishedIpSet.size()};
+    }
+
+    /**
+     * 统计本次拉取是否有进展，并反馈给调度策略
+     *
+     * @param ipStateBeforePull 拉取前的主机状态快照
+     */
+    private void onPullFinished(int[] ipStateBeforePull) {
+        boolean hasProgress = hasNewLogInCurrentPull
+            || !Arrays.equals(ipStateBeforePull, snapshotIpState())
+            || executeResult.getResultCode() != GseTaskExecuteResult.RESULT_CODE_RUNNING;
+        if (!hasProgress) {
+            wastedPullTimes.incrementAndGet();
+        }
+        this.lastPullProgress = hasProgress;
+        getScheduleStrategy().onPullFinished(hasProgress);
+    }
+
+    /**
+     * 标记本次拉取获取到了新的日志
+     */
+    protected void markNewLogPulled() {
+        this.hasNewLogInCurrentPull = true;
+    }
+
     private boolean checkTaskActiveAndSetRunningStatus() {
         if (!isActive) {
             log.info("Task is inactive, stepInstanceId: {}", stepInstanceId);
@@ -348,7 +418,56 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
                 ipLog.setEndTime(System.currentTimeMillis());
             });
         }
-        gseTaskLogService.batchSaveIpLog(notFinishedIpLogs);
+        saveIpLogs(notFinishedIpLogs);
+        tryFlushPendingWrites();
+    }
+
+    /**
+     * 保存主机任务执行结果，只保存与上一次保存相比发生变化的主机结果
+     *
+     * @param ipLogs 主机任务执行结果
+     */
+    protected void saveIpLogs(Collection<GseTaskIpLogDTO> ipLogs) {
+        List<GseTaskIpLogDTO> changedIpLogs = new ArrayList<>();
+        for (GseTaskIpLogDTO ipLog : ipLogs) {
+            IpLogSnapshot snapshot = new IpLogSnapshot(ipLog);
+            if (!snapshot.equals(persistedIpLogSnapshots.get(ipLog.getCloudAreaAndIp()))) {
+                changedIpLogs.add(ipLog);
+                persistedIpLogSnapshots.put(ipLog.getCloudAreaAndIp(), snapshot);
+            }
+        }
+        if (changedIpLogs.isEmpty()) {
+            return;
+        }
+        if (gseTaskIpLogBatchWriter != null) {
+            gseTaskIpLogBatchWriter.write(changedIpLogs);
+        } else {
+            gseTaskLogService.batchSaveIpLog(changedIpLogs);
+        }
+    }
+
+    /**
+     * 立即写入尚未落库的执行结果(主机任务执行结果等)，步骤结束、任务停止之前调用
+     */
+    protected void flushPendingWrites() {
+        if (gseTaskIpLogBatchWriter != null) {
+            gseTaskIpLogBatchWriter.flush(stepInstanceId, stepInstance.getExecuteCount());
+        }
+    }
+
+    /**
+     * 立即写入尚未落库的执行结果，写入失败时只记录日志，未写入的数据由批量写入线程继续重试
+     *
+     * @return 是否全部写入成功
+     */
+    private boolean tryFlushPendingWrites() {
+        try {
+            flushPendingWrites();
+            return true;
+        } catch (Throwable e) {
+            log.error("[{}]: Flush pending writes fail", stepInstanceId, e);
+            return false;
+        }
     }
 
     private boolean checkGseLogWaitingTimeout(GseLog gseLog) {
@@ -429,6 +548,12 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
 
         // 处理GSE任务执行结果,并更新任务步骤状态
         log.info("Handle execute result, stepInstanceId:{}, executeResult:{}", stepInstanceId, gseTaskExecuteResult);
+        // 更新步骤状态之前，保证执行结果已经落库；落库失败时步骤置为失败，避免执行结果(日志等)丢失而步骤成功
+        boolean allWritten = tryFlushPendingWrites();
+        if (!allWritten && gseTaskExecuteResult != GseTaskExecuteResult.RESULT_CODE_STOP_SUCCESS) {
+            log.warn("[{}]: Pending writes are not flushed, mark step as failed", stepInstanceId);
+            gseTaskExecuteResult = GseTaskExecuteResult.RESULT_CODE_FAILED;
+        }
 
         long startTime = this.gseTaskLog.getStartTime();
         long endTime = DateUtils.currentTimeMillis();
@@ -441,7 +566,7 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
         int successTargetIpNum = successIpSet.size();
         int failTargetIpNum = targetIpNum - successTargetIpNum;
 
-        boolean isSuccess = CollectionUtils.isEmpty(this.invalidIpSet) && allSuccessIPNum == targetIpNum;
+        boolean isSuccess = allWritten && CollectionUtils.isEmpty(this.invalidIpSet) && allSuccessIPNum == targetIpNum;
 
         saveGseTaskLogExecutionInfo(result, isSuccess, endTime, gseTotalTime);
 
@@ -510,7 +635,8 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
             ipLog.setStatus(status);
             ipLogList.add(ipLog);
         }
-        gseTaskLogService.batchSaveIpLog(ipLogList);
+        saveIpLogs(ipLogList);
+        tryFlushPendingWrites();
     }
 
     @Override
@@ -528,6 +654,7 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
     private void tryStopImmediately() {
         if (!this.isRunning) {
             log.info("ResultHandleTask-onStop start, stepInstanceId: {}", stepInstanceId);
+            tryFlushPendingWrites();
             resultHandleTaskKeepaliveManager.stopKeepaliveInfoTask(getTaskId());
             taskManager.resumeGseStep(stepInstanceId, stepInstance.getExecuteCount(), requestId);
             this.isStopped = true;
@@ -555,6 +682,33 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
         }
     }
 
+    void setScheduleStrategy(ScheduleStrategy scheduleStrategy) {
+        this.scheduleStrategy = scheduleStrategy;
+    }
+
+    /**
+     * 获取拉取GSE执行结果的次数
+     */
+    int getPullLogTimes() {
+        return pullLogTimes.get();
+    }
+
+    /**
+     * 获取没有任何进展的拉取次数
+     */
+    int getWastedPullTimes() {
+        return wastedPullTimes.get();
+    }
+
+    /**
+     * 最近一次execute的拉取是否有进展
+     *
+     * @return 为空表示最近一次execute没有拉取GSE结果
+     */
+    Boolean getLastPullProgress() {
+        return lastPullProgress;
+    }
+
     /**
      * 获取G步骤执行结果
      *
@@ -571,6 +725,12 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
      */
     abstract GseLogBatchPullResult<T> pullGseTaskLogInBatches();
 
+    /**
+     * 丢弃本轮尚未消费的分批拉取状态（待拉取与拉取中的批次）
+     */
+    void resetGseTaskLogPull() {
+    }
+
     /**
      * 解析GSE日志并获取结果
      *
@@ -578,4 +738,30 @@ public abstract class AbstractResultHandleTask<T> implements ContinuousScheduled
      * @return 任务执行结果
      */
     abstract GseTaskExecuteResult analyseGseTaskLog(GseLog<T> gseLog);
+
+    /**
+     * 主机任务执行结果中需要持久化的状态
+     */
+    @EqualsAndHashCode
+    private static final class IpLogSnapshot {
+        private final int status;
+        private final Long startTime;
+        private final Long endTime;
+        private final Long totalTime;
+        private final int errCode;
+        private final Integer exitCode;
+        private final String tag;
+        private final int offset;
+
+        IpLogSnapshot(GseTaskIpLogDTO ipLog) {
+            this.status = ipLog.getStatus();
+            this.startTime = ipLog.getStartTime();
+            this.endTime = ipLog.getEndTime();
+            this.totalTime = ipLog.getTotalTime();
+            this.errCode = ipLog.getErrCode();
+            this.exitCode = ipLog.getExitCode();
+            this.tag = ipLog.getTag();
+            this.offset = ipLog.getOffset();
+        }
+    }
 }
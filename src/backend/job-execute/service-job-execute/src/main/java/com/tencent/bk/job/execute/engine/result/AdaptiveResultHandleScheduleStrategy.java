@@ -0,0 +1,108 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+/**
+ * 自适应的任务结果处理调度策略。
+ * <p>
+ * 1. 拉取到新的日志或者主机状态发生变化，说明任务在推进，缩短调度间隔；任务没有进展，按比例延长调度间隔；
+ * 2. 如果知道相同任务的历史执行时长，在预计结束的时间点附近提前调度；
+ * 3. 在任务超时时间点提前调度，及时感知超时结果；
+ * 4. 调度间隔始终限制在[minDelayMills, maxDelayMills]范围内。
+ */
+public class AdaptiveResultHandleScheduleStrategy implements ScheduleStrategy {
+    /**
+     * 任务无进展时调度间隔的增长倍数
+     */
+    private static final double BACKOFF_MULTIPLIER = 1.5;
+    /**
+     * 任务有进展时调度间隔的缩减倍数
+     */
+    private static final int SPEEDUP_DIVISOR = 2;
+
+    private final long minDelayMills;
+    private final long maxDelayMills;
+    /**
+     * 历史执行时长，单位毫秒；为空表示没有历史数据
+     */
+    private final Long expectedRuntimeMills;
+    /**
+     * 任务超时时间，单位毫秒；为空表示未设置
+     */
+    private final Long timeoutMills;
+    /**
+     * 任务开始时间
+     */
+    private final long startTimeMills;
+    /**
+     * 当前调度间隔
+     */
+    private volatile long currentDelayMills;
+
+    /**
+     * @param minDelayMills        最小调度间隔，单位毫秒
+     * @param maxDelayMills        最大调度间隔，单位毫秒
+     * @param expectedRuntimeMills 历史执行时长，单位毫秒，可为空
+     * @param timeoutMills         任务超时时间，单位毫秒，可为空
+     * @param startTimeMills       任务开始时间
+     */
+    public AdaptiveResultHandleScheduleStrategy(long minDelayMills,
+                                                long maxDelayMills,
+                                                Long expectedRuntimeMills,
+                                                Long timeoutMills,
+                                                long startTimeMills) {
+        this.minDelayMills = minDelayMills;
+        this.maxDelayMills = Math.max(minDelayMills, maxDelayMills);
+        this.expectedRuntimeMills = expectedRuntimeMills;
+        this.timeoutMills = timeoutMills;
+        this.startTimeMills = startTimeMills;
+        this.currentDelayMills = minDelayMills;
+    }
+
+    @Override
+    public long getDelay() {
+        long delay = currentDelayMills;
+        long elapsedMills = System.currentTimeMillis() - startTimeMills;
+        delay = Math.min(delay, untilDeadline(expectedRuntimeMills, elapsedMills, delay));
+        delay = Math.min(delay, untilDeadline(timeoutMills, elapsedMills, delay));
+        return Math.max(minDelayMills, Math.min(maxDelayMills, delay));
+    }
+
+    private long untilDeadline(Long deadlineMills, long elapsedMills, long defaultDelay) {
+        if (deadlineMills == null || deadlineMills <= elapsedMills) {
+            return defaultDelay;
+        }
+        return deadlineMills - elapsedMills;
+    }
+
+    @Override
+    public void onPullFinished(boolean hasProgress) {
+        if (hasProgress) {
+            currentDelayMills = Math.max(minDelayMills, currentDelayMills / SPEEDUP_DIVISOR);
+        } else {
+            currentDelayMills = Math.min(maxDelayMills, (long) (currentDelayMills * BACKOFF_MULTIPLIER));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
+import com.tencent.bk.job.execute.engine.model.GseTaskExecuteResult;
+import com.tencent.bk.job.execute.model.GseTaskLogDTO;
+import com.tencent.bk.job.execute.model.StepInstanceDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应调度策略工厂，同时维护本节点上相同任务的历史执行时长(指数加权移动平均)
+ */
+@Slf4j
+class AdaptiveResultHandleScheduleStrategyFactory {
+    /**
+     * 新的执行时长在移动平均中的权重
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final JobExecuteConfig jobExecuteConfig;
+    /**
+     * 历史执行时长, key: 任务标识, value: 执行时长(毫秒)
+     */
+    private final Cache<String, Long> runtimeHistory = CacheBuilder.newBuilder()
+        .maximumSize(10000).expireAfterAccess(1, TimeUnit.DAYS).build();
+
+    AdaptiveResultHandleScheduleStrategyFactory(JobExecuteConfig jobExecuteConfig) {
+        this.jobExecuteConfig = jobExecuteConfig;
+    }
+
+    /**
+     * 为任务创建自适应调度策略
+     *
+     * @param task 任务
+     * @return 调度策略
+     */
+    ScheduleStrategy create(AbstractResultHandleTask<?> task) {
+        StepInstanceDTO stepInstance = task.stepInstance;
+        long minDelayMills;
+        long maxDelayMills;
+        if (stepInstance.isFileStep()) {
+            minDelayMills = jobExecuteConfig.getAdaptiveFileMinDelayMills();
+            maxDelayMills = jobExecuteConfig.getAdaptiveFileMaxDelayMills();
+        } else {
+            minDelayMills = jobExecuteConfig.getAdaptiveScriptMinDelayMills();
+            maxDelayMills = jobExecuteConfig.getAdaptiveScriptMaxDelayMills();
+        }
+        String historyKey = buildRuntimeHistoryKey(stepInstance);
+        Long expectedRuntimeMills = historyKey == null ? null : runtimeHistory.getIfPresent(historyKey);
+        Long timeoutMills = (stepInstance.getTimeout() != null && stepInstance.getTimeout() > 0) ?
+            stepInstance.getTimeout() * 1000L : null;
+        GseTaskLogDTO gseTaskLog = task.gseTaskLog;
+        long startTimeMills = (gseTaskLog != null && gseTaskLog.getStartTime() != null) ?
+            gseTaskLog.getStartTime() : System.currentTimeMillis();
+        log.debug("Create adaptive schedule strategy, stepInstanceId: {}, expectedRuntimeMills: {}, timeoutMills: {}",
+            task.stepInstanceId, expectedRuntimeMills, timeoutMills);
+        return new AdaptiveResultHandleScheduleStrategy(minDelayMills, maxDelayMills, expectedRuntimeMills,
+            timeoutMills, startTimeMills);
+    }
+
+    /**
+     * 记录执行成功的任务的执行时长
+     *
+     * @param task 已完成的任务
+     */
+    void recordRuntime(AbstractResultHandleTask<?> task) {
+        if (task.getExecuteResult().getResultCode() != GseTaskExecuteResult.RESULT_CODE_SUCCESS) {
+            return;
+        }
+        GseTaskLogDTO gseTaskLog = task.gseTaskLog;
+        if (gseTaskLog == null || gseTaskLog.getTotalTime() == null || gseTaskLog.getTotalTime() <= 0) {
+            return;
+        }
+        String historyKey = buildRuntimeHistoryKey(task.stepInstance);
+        if (historyKey == null) {
+            return;
+        }
+        long runtimeMills = gseTaskLog.getTotalTime();
+        Long history = runtimeHistory.getIfPresent(historyKey);
+        if (history != null) {
+            runtimeMills = (long) (EWMA_ALPHA * runtimeMills + (1 - EWMA_ALPHA) * history);
+        }
+        runtimeHistory.put(historyKey, runtimeMills);
+    }
+
+    /**
+     * 相同脚本(版本)或者相同的作业步骤认为是同一类任务
+     */
+    private String buildRuntimeHistoryKey(StepInstanceDTO stepInstance) {
+        if (stepInstance.isScriptStep()) {
+            if (stepInstance.getScriptVersionId() != null && stepInstance.getScriptVersionId() > 0) {
+                return "script_version:" + stepInstance.getScriptVersionId();
+            }
+            if (StringUtils.isNotEmpty(stepInstance.getScriptContent())) {
+                return "script_content:" + stepInstance.getAppId() + ":" + stepInstance.getScriptContent().hashCode();
+            }
+        }
+        if (stepInstance.getStepId() != null && stepInstance.getStepId() > 0) {
+            return "step:" + stepInstance.getStepId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于 DelayQueue 的任务调度器：所有任务放入同一个延迟队列，由一组可伸缩的消费者线程消费
+ */
+@Slf4j
+public class DelayQueueResultHandleTaskScheduler implements ResultHandleTaskScheduler {
+    private final Object workersMonitor = new Object();
+    /**
+     * 任务队列
+     */
+    private final DelayQueue<DelayedTask> tasksQueue = new DelayQueue<>();
+    /**
+     * 任务执行逻辑
+     */
+    private final Consumer<DelayedTask> taskRunner;
+    /**
+     * 任务消费者
+     */
+    private final Set<TaskWorker> workers = new HashSet<>();
+    /**
+     * 异步任务执行器，用于启动消费者线程
+     */
+    private final Executor taskExecutor = new SimpleAsyncTaskExecutor("task-result-handle-");
+    /**
+     * 最小任务处理线程
+     */
+    private final int coreWorkers;
+    /**
+     * 最大任务处理线程
+     */
+    private final int maxWorkers;
+    /**
+     * 触发新增worker阈值：worker连续处理的任务数
+     */
+    private int consecutiveActiveTrigger = 10;
+    /**
+     * 触发回收worker阈值：worker连续空闲的周期数
+     */
+    private int consecutiveIdleTrigger = 10;
+    /**
+     * 最近一次worker启动时间
+     */
+    private volatile long lastWorkerStartedAt;
+    /**
+     * 新增消费者线程最小间隔时间
+     */
+    private volatile long startConsumerMinInterval = 10000;
+    /**
+     * 最近一次worker停止时间
+     */
+    private volatile long lastWorkerStoppedAt;
+    /**
+     * 停止消费者线程最小间隔时间
+     */
+    private volatile long stopConsumerMinInterval = 60000;
+    /**
+     * 调度器是否活动状态
+     */
+    private volatile boolean active = false;
+
+    public DelayQueueResultHandleTaskScheduler(Consumer<DelayedTask> taskRunner, int coreWorkers, int maxWorkers) {
+        this.taskRunner = taskRunner;
+        this.coreWorkers = coreWorkers;
+        this.maxWorkers = maxWorkers;
+    }
+
+    @Override
+    public void start() {
+        this.active = true;
+        synchronized (workersMonitor) {
+            log.info("Init task result handle workers, initial worker num: {}", coreWorkers);
+            for (int workerCount = 0; workerCount < coreWorkers; workerCount++) {
+                TaskWorker worker = new TaskWorker();
+                workers.add(worker);
+                taskExecutor.execute(worker);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        this.active = false;
+    }
+
+    @Override
+    public void schedule(DelayedTask task) {
+        long start = System.currentTimeMillis();
+        tasksQueue.offer(task);
+        long end = System.currentTimeMillis();
+        if (end - start > 10) {
+            log.warn("Adding task to queue is slow, task: {}, cost:{}", task, end - start);
+        }
+    }
+
+    /**
+     * 消费者是否处于运行状态
+     *
+     * @param worker 消费者
+     * @return 是否运行
+     */
+    private boolean isWorkerActive(TaskWorker worker) {
+        boolean workerActive;
+        synchronized (this.workersMonitor) {
+            workerActive = this.workers.contains(worker);
+        }
+        return workerActive && this.active;
+    }
+
+    /**
+     * 消费者线程不足的情况下考虑新增一个消费者
+     */
+    private void considerAddingAConsumer() {
+        synchronized (this.workersMonitor) {
+            if (this.workers.size() < this.maxWorkers) {
+                long now = System.currentTimeMillis();
+                if (this.lastWorkerStartedAt + this.startConsumerMinInterval < now) {
+                    TaskWorker worker = new TaskWorker();
+                    workers.add(worker);
+                    taskExecutor.execute(worker);
+                    this.lastWorkerStartedAt = now;
+                    log.debug("Add new worker, worker count : {}", workers.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * 消费者线程充足的情况下考虑删除一个消费者
+     */
+    private void considerStoppingAConsumer(TaskWorker worker) {
+        synchronized (this.workersMonitor) {
+            if (this.workers.size() > this.coreWorkers) {
+                long now = System.currentTimeMillis();
+                if (this.lastWorkerStoppedAt + this.stopConsumerMinInterval < now) {
+                    workers.remove(worker);
+                    this.lastWorkerStoppedAt = now;
+                    log.debug("Remove idle worker, worker count : {}", workers.size());
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getBusyThreads() {
+        int workingThreads = 0;
+        synchronized (this.workersMonitor) {
+            for (TaskWorker worker : workers) {
+                if (worker.isBusy()) {
+                    workingThreads++;
+                }
+            }
+        }
+        return workingThreads;
+    }
+
+    @Override
+    public int getIdleThreads() {
+        int idleThreads = 0;
+        synchronized (this.workersMonitor) {
+            for (TaskWorker worker : workers) {
+                if (!worker.isBusy()) {
+                    idleThreads++;
+                }
+            }
+        }
+        return idleThreads;
+    }
+
+    @Override
+    public int getScheduledTaskSize() {
+        return tasksQueue.size();
+    }
+
+    /**
+     * 任务处理worker
+     */
+    private final class TaskWorker implements Runnable {
+        /**
+         * Worker连续空闲的周期
+         */
+        private int consecutiveIdles;
+        /**
+         * Worker连续执行的任务
+         */
+        private int consecutiveTasks;
+        /**
+         * 等待从阻塞队列获取任务的超时时间，单位毫秒
+         */
+        private int waitingTaskTimeout = 1000;
+        /**
+         * Worker是否正在执行任务
+         */
+        private volatile boolean isBusy = false;
+
+        @Override
+        public void run() {
+            if (!active) {
+                log.info("Scheduler is not active!");
+                return;
+            }
+            while (isWorkerActive(this)) {
+                loop();
+            }
+        }
+
+        private void loop() {
+            try {
+                DelayedTask task = tasksQueue.poll(this.waitingTaskTimeout, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    isBusy = true;
+                    log.debug("Get task from queue, task: {}", task);
+                    taskRunner.accept(task);
+                }
+                checkAdjustWorker(task != null);
+            } catch (InterruptedException e) {
+                log.warn("Task worker is interrupted", e);
+            } catch (Throwable e) {
+                log.warn("Execute task caught exception", e);
+            } finally {
+                isBusy = false;
+            }
+        }
+
+        /**
+         * 调整worker线程数
+         *
+         * @param fetchTaskOK 是否获取到任务
+         */
+        private void checkAdjustWorker(boolean fetchTaskOK) {
+            if (fetchTaskOK) {
+                if (isWorkerActive(this)) {
+                    this.consecutiveIdles = 0;
+                    if (this.consecutiveTasks++ > consecutiveActiveTrigger) {
+                        considerAddingAConsumer();
+                        this.consecutiveTasks = 0;
+                    }
+                }
+            } else {
+                this.consecutiveTasks = 0;
+                if (this.consecutiveIdles++ > consecutiveIdleTrigger) {
+                    considerStoppingAConsumer(this);
+                    this.consecutiveIdles = 0;
+                }
+            }
+        }
+
+        boolean isBusy() {
+            return this.isBusy;
+        }
+    }
+}
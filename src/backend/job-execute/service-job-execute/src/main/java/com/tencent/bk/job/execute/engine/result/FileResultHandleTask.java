@@ -131,10 +131,6 @@ public class FileResultHandleTask extends AbstractResultHandleTask<api_map_rsp>
      */
     private Set<String> runningFileSourceIpSet = new HashSet<>();
     private Set<String> sensitiveSourceFiles;
-    /**
-     * 文件任务执行结果处理调度策略
-     */
-    private volatile ScheduleStrategy scheduleStrategy;
     /**
      * 任务基本信息，用于日志输出
      */
@@ -265,8 +261,7 @@ public class FileResultHandleTask extends AbstractResultHandleTask<api_map_rsp>
         writeFileTaskLogContent(executionLogs);
 
         // 保存任务执行结果
-        ArrayList<GseTaskIpLogDTO> ipLogList = new ArrayList<>(ipLogMap.values());
-        gseTaskLogService.batchSaveIpLog(new ArrayList<>(ipLogList));
+        saveIpLogs(ipLogMap.values());
 
         log.info("Analyse gse task log [{}] -> targetIpSet={}, fileSourceIpSet={}, runningTargetIpSet={}, " +
                 "notStartedTargetIpSet={}, runningFileSourceIpSet={}, notStartedFileSourceIpSet={}, " +
@@ -885,6 +880,9 @@ public class FileResultHandleTask extends AbstractResultHandleTask<api_map_rsp>
     }
 
     private void writeFileTaskLogContent(Map<String, ServiceLogDTO> executionLogs) {
+        if (!executionLogs.isEmpty()) {
+            markNewLogPulled();
+        }
         executionLogs.forEach((ip, executionLog) -> {
             logService.writeFileLogWithTimestamp(taskInstance.getCreateTime(), stepInstanceId,
                 stepInstance.getExecuteCount(), ip, executionLog, System.currentTimeMillis());
@@ -0,0 +1,250 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
+import com.tencent.bk.job.execute.model.GseTaskIpLogDTO;
+import com.tencent.bk.job.execute.monitor.ExecuteMetricNames;
+import com.tencent.bk.job.execute.service.GseTaskLogService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GSE主机任务执行结果 write-behind 批量写入。
+ * <p>
+ * 结果处理任务只提交发生变化的主机结果，同一主机未写入的结果会被后提交的结果覆盖；
+ * 后台线程按照时间间隔或者积压数量触发，使用多行 upsert 语句批量写入 DB。
+ * 步骤结束、任务停止之前需要调用 {@link #flush(long, int)} 保证结果已经落库。
+ */
+@Slf4j
+@Component
+public class GseTaskIpLogBatchWriter {
+    private final GseTaskLogService gseTaskLogService;
+    private final boolean enabled;
+    private final long flushIntervalMills;
+    private final int maxBatchSize;
+    /**
+     * 待写入的主机结果, key: stepInstanceId:executeCount, value: Map<ip, 主机结果>
+     */
+    private final Map<String, Map<String, GseTaskIpLogDTO>> pendingIpLogs = new ConcurrentHashMap<>();
+    /**
+     * 待写入的主机结果数量(近似值)，用于触发提前写入
+     */
+    private final AtomicInteger pendingSize = new AtomicInteger(0);
+    /**
+     * 写入锁，保证同一主机的结果按照提交顺序写入
+     */
+    private final Object flushLock = new Object();
+    private final Object flushSignal = new Object();
+    private final Counter writtenCounter;
+    private final Counter coalescedCounter;
+    private final DistributionSummary flushSizeSummary;
+    private volatile boolean running = false;
+    private Thread flushThread;
+
+    @Autowired
+    public GseTaskIpLogBatchWriter(GseTaskLogService gseTaskLogService,
+                                   JobExecuteConfig jobExecuteConfig,
+                                   MeterRegistry meterRegistry) {
+        this.gseTaskLogService = gseTaskLogService;
+        this.enabled = jobExecuteConfig.isIpLogWriteBehindEnabled();
+        this.flushIntervalMills = jobExecuteConfig.getIpLogWriteBehindFlushIntervalMills();
+        this.maxBatchSize = jobExecuteConfig.getIpLogWriteBehindMaxBatchSize();
+        this.writtenCounter = meterRegistry.counter(ExecuteMetricNames.GSE_TASK_IP_LOG_WRITES_TOTAL,
+            "type", "written");
+        this.coalescedCounter = meterRegistry.counter(ExecuteMetricNames.GSE_TASK_IP_LOG_WRITES_TOTAL,
+            "type", "coalesced");
+        this.flushSizeSummary = meterRegistry.summary(ExecuteMetricNames.GSE_TASK_IP_LOG_FLUSH_SIZE);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Gse task ip log write-behind is disabled");
+            return;
+        }
+        running = true;
+        flushThread = new Thread(this::flushLoop, "gse-task-ip-log-writer");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        synchronized (flushSignal) {
+            flushSignal.notifyAll();
+        }
+        flushAll();
+    }
+
+    /**
+     * 提交主机任务执行结果
+     *
+     * @param ipLogs 主机任务执行结果
+     */
+    public void write(Collection<GseTaskIpLogDTO> ipLogs) {
+        if (ipLogs.isEmpty()) {
+            return;
+        }
+        if (!running) {
+            gseTaskLogService.batchUpsertIpLog(new ArrayList<>(ipLogs));
+            writtenCounter.increment(ipLogs.size());
+            return;
+        }
+        for (GseTaskIpLogDTO ipLog : ipLogs) {
+            // 结果处理任务会继续修改主机结果对象，需要保存副本
+            GseTaskIpLogDTO copy = copy(ipLog);
+            pendingIpLogs.compute(buildStepKey(ipLog.getStepInstanceId(), ipLog.getExecuteCount()),
+                (stepKey, stepIpLogs) -> {
+                    if (stepIpLogs == null) {
+                        stepIpLogs = new ConcurrentHashMap<>();
+                    }
+                    if (stepIpLogs.put(copy.getCloudAreaAndIp(), copy) == null) {
+                        pendingSize.incrementAndGet();
+                    } else {
+                        coalescedCounter.increment();
+                    }
+                    return stepIpLogs;
+                });
+        }
+        if (pendingSize.get() >= maxBatchSize) {
+            synchronized (flushSignal) {
+                flushSignal.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 立即写入步骤的所有待写入主机结果
+     *
+     * @param stepInstanceId 步骤实例ID
+     * @param executeCount   执行次数
+     */
+    public void flush(long stepInstanceId, int executeCount) {
+        synchronized (flushLock) {
+            flushStep(buildStepKey(stepInstanceId, executeCount));
+        }
+    }
+
+    private void flushAll() {
+        synchronized (flushLock) {
+            pendingIpLogs.keySet().forEach(this::flushStep);
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                synchronized (flushSignal) {
+                    if (running && pendingSize.get() < maxBatchSize) {
+                        flushSignal.wait(flushIntervalMills);
+                    }
+                }
+                flushAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                log.error("Flush gse task ip log caught exception", e);
+            }
+        }
+    }
+
+    private void flushStep(String stepKey) {
+        Map<String, GseTaskIpLogDTO> stepIpLogs = pendingIpLogs.get(stepKey);
+        if (stepIpLogs == null) {
+            return;
+        }
+        List<GseTaskIpLogDTO> flushIpLogs = new ArrayList<>(stepIpLogs.size());
+        stepIpLogs.forEach((ip, ipLog) -> {
+            // 只移除当前读取到的结果，期间新提交的结果留待下次写入
+            if (stepIpLogs.remove(ip, ipLog)) {
+                pendingSize.decrementAndGet();
+                flushIpLogs.add(ipLog);
+            }
+        });
+        pendingIpLogs.computeIfPresent(stepKey, (key, value) -> value.isEmpty() ? null : value);
+        if (flushIpLogs.isEmpty()) {
+            return;
+        }
+        try {
+            gseTaskLogService.batchUpsertIpLog(flushIpLogs);
+            writtenCounter.increment(flushIpLogs.size());
+            flushSizeSummary.record(flushIpLogs.size());
+        } catch (Throwable e) {
+            log.error("Save gse task ip log fail, stepKey: {}, size: {}", stepKey, flushIpLogs.size(), e);
+            // 写入失败的结果放回待写入队列，已经有更新结果的主机不再放回
+            flushIpLogs.forEach(ipLog -> pendingIpLogs.compute(stepKey, (key, value) -> {
+                if (value == null) {
+                    value = new ConcurrentHashMap<>();
+                }
+                if (value.putIfAbsent(ipLog.getCloudAreaAndIp(), ipLog) == null) {
+                    pendingSize.incrementAndGet();
+                }
+                return value;
+            }));
+            throw e;
+        }
+    }
+
+    private String buildStepKey(long stepInstanceId, int executeCount) {
+        return stepInstanceId + ":" + executeCount;
+    }
+
+    private GseTaskIpLogDTO copy(GseTaskIpLogDTO ipLog) {
+        GseTaskIpLogDTO copy = new GseTaskIpLogDTO();
+        copy.setStepInstanceId(ipLog.getStepInstanceId());
+        copy.setExecuteCount(ipLog.getExecuteCount());
+        copy.setCloudAreaAndIp(ipLog.getCloudAreaAndIp());
+        copy.setIp(ipLog.getIp());
+        copy.setCloudAreaId(ipLog.getCloudAreaId());
+        copy.setDisplayIp(ipLog.getDisplayIp());
+        copy.setTargetServer(ipLog.isTargetServer());
+        copy.setSourceServer(ipLog.isSourceServer());
+        copy.setStatus(ipLog.getStatus());
+        copy.setStartTime(ipLog.getStartTime());
+        copy.setEndTime(ipLog.getEndTime());
+        copy.setTotalTime(ipLog.getTotalTime());
+        copy.setErrCode(ipLog.getErrCode());
+        copy.setExitCode(ipLog.getExitCode());
+        copy.setTag(ipLog.getTag());
+        copy.setOffset(ipLog.getOffset());
+        return copy;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 基于时间轮(Hashed Wheel)的任务调度器。
+ * <p>
+ * 新增的任务先放入无锁的待处理队列，由时间轮线程在每个 tick 开始时转移到对应的槽位；槽位只会被时间轮线程访问，因此无需加锁。
+ * 每个槽位中的任务记录剩余轮数，超出一轮时间跨度的任务会在后续轮次到期，所以时间跨度不受槽位数量限制。
+ * 到期的任务交给有界线程池执行，新增和到期都是 O(1) 操作。
+ */
+@Slf4j
+public class HashedWheelResultHandleTaskScheduler implements ResultHandleTaskScheduler {
+    /**
+     * 每个 tick 最多从待处理队列转移的任务数，防止时间轮线程在单个 tick 上停留太久
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+    /**
+     * 任务执行逻辑
+     */
+    private final Consumer<DelayedTask> taskRunner;
+    /**
+     * tick 时长，单位毫秒
+     */
+    private final long tickMills;
+    /**
+     * 槽位数-1，槽位数为2的幂
+     */
+    private final int mask;
+    /**
+     * 时间轮槽位
+     */
+    private final List<List<WheelEntry>> wheel;
+    /**
+     * 待加入时间轮的任务
+     */
+    private final Queue<WheelEntry> pendingEntries = new ConcurrentLinkedQueue<>();
+    /**
+     * 已到期，但是线程池已满等待重新提交的任务
+     */
+    private final Queue<DelayedTask> rejectedTasks = new ConcurrentLinkedQueue<>();
+    /**
+     * 任务执行线程池
+     */
+    private final ThreadPoolExecutor taskExecutor;
+    /**
+     * 时间轮中的任务数
+     */
+    private final AtomicInteger scheduledTaskSize = new AtomicInteger(0);
+    private volatile boolean active = false;
+    private Thread workerThread;
+    /**
+     * 时间轮启动时间
+     */
+    private volatile long startTime;
+    /**
+     * 当前 tick
+     */
+    private long tick;
+
+    /**
+     * @param taskRunner    任务执行逻辑
+     * @param tickMills     tick 时长，单位毫秒
+     * @param wheelSize     槽位数，会被调整为2的幂
+     * @param coreWorkers   任务执行线程池核心线程数
+     * @param maxWorkers    任务执行线程池最大线程数
+     * @param queueCapacity 任务执行线程池队列大小
+     */
+    public HashedWheelResultHandleTaskScheduler(Consumer<DelayedTask> taskRunner,
+                                                long tickMills,
+                                                int wheelSize,
+                                                int coreWorkers,
+                                                int maxWorkers,
+                                                int queueCapacity) {
+        this.taskRunner = taskRunner;
+        this.tickMills = tickMills;
+        int normalizedWheelSize = normalizeWheelSize(wheelSize);
+        this.mask = normalizedWheelSize - 1;
+        this.wheel = new ArrayList<>(normalizedWheelSize);
+        for (int i = 0; i < normalizedWheelSize; i++) {
+            this.wheel.add(new ArrayList<>());
+        }
+        this.taskExecutor = new ThreadPoolExecutor(coreWorkers, maxWorkers, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r);
+            t.setName("task-result-handle-" + t.getId());
+            return t;
+        });
+    }
+
+    private static int normalizeWheelSize(int wheelSize) {
+        int normalizedWheelSize = 1;
+        while (normalizedWheelSize < wheelSize) {
+            normalizedWheelSize <<= 1;
+        }
+        return normalizedWheelSize;
+    }
+
+    @Override
+    public void start() {
+        this.startTime = System.currentTimeMillis();
+        this.tick = 0;
+        this.active = true;
+        this.workerThread = new Thread(this::runWheel, "task-result-handle-wheel");
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+        log.info("Hashed wheel scheduler started, tickMills: {}, wheelSize: {}, coreWorkers: {}, maxWorkers: {}",
+            tickMills, wheel.size(), taskExecutor.getCorePoolSize(), taskExecutor.getMaximumPoolSize());
+    }
+
+    @Override
+    public void stop() {
+        this.active = false;
+        if (workerThread != null) {
+            workerThread.interrupt();
+        }
+        taskExecutor.shutdown();
+    }
+
+    @Override
+    public void schedule(DelayedTask task) {
+        scheduledTaskSize.incrementAndGet();
+        pendingEntries.offer(new WheelEntry(task));
+    }
+
+    private void runWheel() {
+        while (active) {
+            try {
+                waitForNextTick();
+                if (!active) {
+                    break;
+                }
+                resubmitRejectedTasks();
+                transferPendingEntries();
+                expireEntries(wheel.get((int) (tick & mask)));
+                tick++;
+            } catch (InterruptedException e) {
+                log.info("Hashed wheel scheduler is interrupted");
+            } catch (Throwable e) {
+                log.warn("Hashed wheel scheduler caught exception", e);
+            }
+        }
+    }
+
+    private void waitForNextTick() throws InterruptedException {
+        long deadline = startTime + (tick + 1) * tickMills;
+        long sleepMills = deadline - System.currentTimeMillis();
+        if (sleepMills > 0) {
+            Thread.sleep(sleepMills);
+        }
+    }
+
+    private void transferPendingEntries() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            WheelEntry entry = pendingEntries.poll();
+            if (entry == null) {
+                return;
+            }
+            long expireTick = (entry.task.getExpireTime() - startTime) / tickMills;
+            // 已经过期的任务放到当前槽位，在本次 tick 执行
+            long targetTick = Math.max(expireTick, tick);
+            entry.remainingRounds = (targetTick - tick) / wheel.size();
+            wheel.get((int) (targetTick & mask)).add(entry);
+        }
+    }
+
+    private void expireEntries(List<WheelEntry> bucket) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<WheelEntry> notExpiredEntries = new ArrayList<>();
+        for (WheelEntry entry : bucket) {
+            if (entry.remainingRounds > 0) {
+                entry.remainingRounds--;
+                notExpiredEntries.add(entry);
+            } else {
+                scheduledTaskSize.decrementAndGet();
+                submit(entry.task);
+            }
+        }
+        bucket.clear();
+        bucket.addAll(notExpiredEntries);
+    }
+
+    private void resubmitRejectedTasks() {
+        int size = rejectedTasks.size();
+        for (int i = 0; i < size; i++) {
+            DelayedTask task = rejectedTasks.poll();
+            if (task == null) {
+                return;
+            }
+            submit(task);
+        }
+    }
+
+    private void submit(DelayedTask task) {
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    taskRunner.accept(task);
+                } catch (Throwable e) {
+                    log.warn("Execute task caught exception", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (active) {
+                // 线程池已满，下一个 tick 重新提交，不阻塞时间轮线程
+                rejectedTasks.offer(task);
+            }
+        }
+    }
+
+    @Override
+    public int getBusyThreads() {
+        return taskExecutor.getActiveCount();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return Math.max(0, taskExecutor.getPoolSize() - taskExecutor.getActiveCount());
+    }
+
+    @Override
+    public int getScheduledTaskSize() {
+        return scheduledTaskSize.get() + rejectedTasks.size() + taskExecutor.getQueue().size();
+    }
+
+    private static final class WheelEntry {
+        private final DelayedTask task;
+        /**
+         * 剩余轮数，为0时表示在当前轮到期
+         */
+        private long remainingRounds;
+
+        WheelEntry(DelayedTask task) {
+            this.task = task;
+        }
+    }
+}
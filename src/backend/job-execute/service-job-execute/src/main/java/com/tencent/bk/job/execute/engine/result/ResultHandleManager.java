@@ -35,18 +35,19 @@ import com.tencent.bk.job.execute.monitor.metrics.ExecuteMonitor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.SmartLifecycle;
-import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 任务执行结果处理。
  * 背景: 作业平台任务下发到管控平台之后，由于任务执行时间较长，且任务并发很高，所以在任务下发之后，采用异步轮询的方式查询任务执行结果。
- * 方案：通过java DelayQueue 延迟队列 + 消费者模式实现了任务结果定时轮询逻辑
+ * 方案：任务通过 ResultHandleTaskScheduler 定时调度(DelayQueue 延迟队列 + 消费者模式，或者时间轮 + 有界线程池)，实现任务结果定时轮询逻辑
  */
 @Component
 @Slf4j
@@ -59,7 +60,6 @@ public class ResultHandleManager implements SmartLifecycle {
      * 结果处理任务存活管理
      */
     private final ResultHandleTaskKeepaliveManager resultHandleTaskKeepaliveManager;
-    private final Object workersMonitor = new Object();
     private final Object lifecycleMonitor = new Object();
     /**
      * 任务执行计数器
@@ -71,53 +71,45 @@ public class ResultHandleManager implements SmartLifecycle {
     private final ResultHandleTaskSampler resultHandleTaskSampler;
     private final ResultHandleLimiter resultHandleLimiter;
     /**
-     * 任务结果处理的任务队列
+     * 主机任务执行结果批量写入
      */
-    private DelayQueue<ScheduledContinuousResultHandleTask> tasksQueue = new DelayQueue<>();
+    private final GseTaskIpLogBatchWriter gseTaskIpLogBatchWriter;
     /**
-     * 调度的所有的任务
+     * 脚本日志异步批量写入
      */
-    private Map<String, ScheduledContinuousResultHandleTask> scheduledTasks = new ConcurrentHashMap<>();
+    private final ScriptLogBatchWriter scriptLogBatchWriter;
     /**
-     * 任务消费者
+     * GSE脚本日志拉取请求合并器，未启用时为空
      */
-    private Set<TaskWorker> workers = new HashSet<>();
+    private final ScriptTaskLogPullCoalescer scriptTaskLogPullCoalescer;
     /**
-     * 异步任务执行器，用于启动消费者线程
+     * 任务调度器
      */
-    private Executor taskExecutor = new SimpleAsyncTaskExecutor("task-result-handle-");
+    private final ResultHandleTaskScheduler taskScheduler;
     /**
-     * 最小任务处理线程
+     * 自适应调度策略工厂，未启用时为空
      */
-    private int CORE_WORKERS = 50;
+    private final AdaptiveResultHandleScheduleStrategyFactory adaptiveScheduleStrategyFactory;
     /**
-     * 最大任务处理线程
+     * 脚本任务并行拉取IP批次日志的共享线程池，未启用时为空
      */
-    private int MAX_WORKERS = 100;
+    private final ThreadPoolExecutor scriptLogBatchPullExecutor;
     /**
-     * 触发新增worker阈值：worker连续处理的任务数
+     * 单个脚本任务同时拉取的IP批次数
      */
-    private int consecutiveActiveTrigger = 10;
+    private final int scriptLogPullParallelism;
     /**
-     * 触发回收worker阈值：worker连续空闲的周期数
-     */
-    private int consecutiveIdleTrigger = 10;
-    /**
-     * 最近一次worker启动时间
-     */
-    private volatile long lastWorkerStartedAt;
-    /**
-     * 新增消费者线程最小间隔时间
+     * 调度的所有的任务
      */
-    private volatile long startConsumerMinInterval = 10000;
+    private Map<String, ScheduledContinuousResultHandleTask> scheduledTasks = new ConcurrentHashMap<>();
     /**
-     * 最近一次worker停止时间
+     * 最小任务处理线程
      */
-    private volatile long lastWorkerStoppedAt;
+    private int CORE_WORKERS = 50;
     /**
-     * 停止消费者线程最小间隔时间
+     * 最大任务处理线程
      */
-    private volatile long stopConsumerMinInterval = 60000;
+    private int MAX_WORKERS = 100;
     /**
      * 任务结果处理引擎是否活动状态
      */
@@ -132,12 +124,64 @@ public class ResultHandleManager implements SmartLifecycle {
     @Autowired
     public ResultHandleManager(Tracing tracing, ExecuteMonitor counters,
                                ResultHandleTaskKeepaliveManager resultHandleTaskKeepaliveManager,
-                               ResultHandleTaskSampler resultHandleTaskSampler, JobExecuteConfig jobExecuteConfig) {
+                               ResultHandleTaskSampler resultHandleTaskSampler, JobExecuteConfig jobExecuteConfig,
+                               GseTaskIpLogBatchWriter gseTaskIpLogBatchWriter,
+                               ScriptLogBatchWriter scriptLogBatchWriter) {
         this.tracing = tracing;
+        this.gseTaskIpLogBatchWriter = gseTaskIpLogBatchWriter;
+        this.scriptLogBatchWriter = scriptLogBatchWriter;
         this.counters = counters;
         this.resultHandleTaskKeepaliveManager = resultHandleTaskKeepaliveManager;
         this.resultHandleTaskSampler = resultHandleTaskSampler;
         this.resultHandleLimiter = new ResultHandleLimiter(jobExecuteConfig.getResultHandleTasksLimit());
+        this.taskScheduler = buildTaskScheduler(jobExecuteConfig);
+        if (jobExecuteConfig.isGseLogPullCoalesceEnabled()) {
+            this.scriptTaskLogPullCoalescer = new ScriptTaskLogPullCoalescer(counters.getMeterRegistry(),
+                jobExecuteConfig.getGseLogPullCoalesceWindowMills(),
+                jobExecuteConfig.getGseLogPullCoalesceMaxBatchSize(),
+                jobExecuteConfig.getGseLogPullCoalesceThreads());
+        } else {
+            this.scriptTaskLogPullCoalescer = null;
+        }
+        if (JobExecuteConfig.RESULT_HANDLE_SCHEDULE_STRATEGY_ADAPTIVE.equals(
+            jobExecuteConfig.getResultHandleScheduleStrategy())) {
+            log.info("Use adaptive result handle schedule strategy");
+            this.adaptiveScheduleStrategyFactory = new AdaptiveResultHandleScheduleStrategyFactory(jobExecuteConfig);
+        } else {
+            this.adaptiveScheduleStrategyFactory = null;
+        }
+        this.scriptLogPullParallelism = jobExecuteConfig.getScriptLogPullParallelism();
+        if (scriptLogPullParallelism > 1) {
+            this.scriptLogBatchPullExecutor =
+                buildScriptLogBatchPullExecutor(jobExecuteConfig.getScriptLogPullThreads());
+        } else {
+            this.scriptLogBatchPullExecutor = null;
+        }
+    }
+
+    private ThreadPoolExecutor buildScriptLogBatchPullExecutor(int threads) {
+        log.info("Pull script log ip batches in parallel, parallelism: {}, threads: {}", scriptLogPullParallelism,
+            threads);
+        // 线程池繁忙时由任务处理线程自己拉取，避免拉取请求无限堆积
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(threads * scriptLogPullParallelism), r -> {
+            Thread t = new Thread(r);
+            t.setName("script-log-batch-pull-" + t.getId());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private ResultHandleTaskScheduler buildTaskScheduler(JobExecuteConfig jobExecuteConfig) {
+        if (JobExecuteConfig.RESULT_HANDLE_SCHEDULER_HASHED_WHEEL.equals(
+            jobExecuteConfig.getResultHandleSchedulerType())) {
+            log.info("Use hashed wheel result handle task scheduler");
+            return new HashedWheelResultHandleTaskScheduler(this::runTask,
+                jobExecuteConfig.getResultHandleWheelTickMills(), jobExecuteConfig.getResultHandleWheelSize(),
+                CORE_WORKERS, MAX_WORKERS, jobExecuteConfig.getResultHandleTasksLimit());
+        }
+        log.info("Use delay queue result handle task scheduler");
+        return new DelayQueueResultHandleTaskScheduler(this::runTask, CORE_WORKERS, MAX_WORKERS);
     }
 
     /**
@@ -148,6 +192,10 @@ public class ResultHandleManager implements SmartLifecycle {
     public void handleDeliveredTask(ContinuousScheduledTask task) {
         resultHandleLimiter.acquire();
         log.info("Handle delivered task: {}", task);
+        if (task instanceof AbstractResultHandleTask && adaptiveScheduleStrategyFactory != null) {
+            AbstractResultHandleTask<?> resultHandleTask = (AbstractResultHandleTask<?>) task;
+            resultHandleTask.setScheduleStrategy(adaptiveScheduleStrategyFactory.create(resultHandleTask));
+        }
         ScheduledContinuousResultHandleTask scheduleTask =
             new ScheduledContinuousResultHandleTask(resultHandleTaskSampler, tracing, task, this,
                 resultHandleTaskKeepaliveManager, resultHandleLimiter);
@@ -159,10 +207,20 @@ public class ResultHandleManager implements SmartLifecycle {
             this.scheduledTasks.put(scheduleTask.getTaskId(), scheduleTask);
         }
 
+        if (task instanceof ScriptResultHandleTask && scriptTaskLogPullCoalescer != null) {
+            ((ScriptResultHandleTask) task).setScriptTaskLogPullCoalescer(scriptTaskLogPullCoalescer);
+        }
+        if (task instanceof ScriptResultHandleTask) {
+            ((ScriptResultHandleTask) task).setScriptLogBatchWriter(scriptLogBatchWriter);
+        }
+        if (task instanceof ScriptResultHandleTask && scriptLogBatchPullExecutor != null) {
+            ((ScriptResultHandleTask) task).setBatchPullExecutor(scriptLogBatchPullExecutor, scriptLogPullParallelism);
+        }
         if (task instanceof AbstractResultHandleTask) {
+            ((AbstractResultHandleTask<?>) task).setGseTaskIpLogBatchWriter(gseTaskIpLogBatchWriter);
             resultHandleTaskKeepaliveManager.addRunningTaskKeepaliveInfo(task.getTaskId());
         }
-        this.tasksQueue.add(scheduleTask);
+        this.taskScheduler.schedule(scheduleTask);
         if (task instanceof ScriptResultHandleTask) {
             resultHandleTaskSampler.incrementScriptTask();
         } else {
@@ -170,8 +228,24 @@ public class ResultHandleManager implements SmartLifecycle {
         }
     }
 
-    DelayQueue<ScheduledContinuousResultHandleTask> getTasksQueue() {
-        return this.tasksQueue;
+    /**
+     * 任务未完成，重新调度
+     *
+     * @param task 任务
+     */
+    void reSchedule(ScheduledContinuousResultHandleTask task) {
+        this.taskScheduler.schedule(task);
+    }
+
+    /**
+     * 任务处理完成
+     *
+     * @param task 任务
+     */
+    void onTaskFinished(ContinuousScheduledTask task) {
+        if (task instanceof AbstractResultHandleTask && adaptiveScheduleStrategyFactory != null) {
+            adaptiveScheduleStrategyFactory.recordRuntime((AbstractResultHandleTask<?>) task);
+        }
     }
 
     Map<String, ScheduledContinuousResultHandleTask> getScheduledTasks() {
@@ -186,20 +260,6 @@ public class ResultHandleManager implements SmartLifecycle {
         }
     }
 
-    /**
-     * 消费者是否处于运行状态
-     *
-     * @param worker 消费者
-     * @return 是否运行
-     */
-    private boolean isWorkerActive(TaskWorker worker) {
-        boolean workerActive;
-        synchronized (this.workersMonitor) {
-            workerActive = this.workers != null && this.workers.contains(worker);
-        }
-        return workerActive && this.isActive();
-    }
-
     /**
      * Spring Bean 生命周期管理-启动
      */
@@ -216,18 +276,10 @@ public class ResultHandleManager implements SmartLifecycle {
     private void doStart() {
         this.active = true;
         this.running = true;
-        initWorker();
-    }
-
-    private void initWorker() {
-        synchronized (workersMonitor) {
-            log.info("Init task result handle workers, initial worker num: {}", CORE_WORKERS);
-            for (int workerCount = 0; workerCount < CORE_WORKERS; workerCount++) {
-                TaskWorker worker = new TaskWorker();
-                workers.add(worker);
-                taskExecutor.execute(worker);
-            }
+        if (scriptTaskLogPullCoalescer != null) {
+            scriptTaskLogPullCoalescer.start();
         }
+        taskScheduler.start();
     }
 
     /**
@@ -244,7 +296,14 @@ public class ResultHandleManager implements SmartLifecycle {
             this.active = false;
             this.running = false;
         }
+        taskScheduler.stop();
         stopTasksGraceful();
+        if (scriptTaskLogPullCoalescer != null) {
+            scriptTaskLogPullCoalescer.stop();
+        }
+        if (scriptLogBatchPullExecutor != null) {
+            scriptLogBatchPullExecutor.shutdown();
+        }
         log.info("ResultHandleManager stop successfully!");
     }
 
@@ -277,40 +336,6 @@ public class ResultHandleManager implements SmartLifecycle {
         }
     }
 
-    /**
-     * 消费者线程不足的情况下考虑新增一个消费者
-     */
-    private void considerAddingAConsumer() {
-        synchronized (this.workersMonitor) {
-            if (this.workers != null && this.workers.size() < this.MAX_WORKERS) {
-                long now = System.currentTimeMillis();
-                if (this.lastWorkerStartedAt + this.startConsumerMinInterval < now) {
-                    TaskWorker worker = new TaskWorker();
-                    workers.add(worker);
-                    taskExecutor.execute(worker);
-                    this.lastWorkerStartedAt = now;
-                    log.debug("Add new worker, worker count : {}", workers.size());
-                }
-            }
-        }
-    }
-
-    /**
-     * 消费者线程充足的情况下考虑删除一个消费者
-     */
-    private void considerStoppingAConsumer(TaskWorker worker) {
-        synchronized (this.workersMonitor) {
-            if (this.workers != null && this.workers.size() > this.CORE_WORKERS) {
-                long now = System.currentTimeMillis();
-                if (this.lastWorkerStoppedAt + this.stopConsumerMinInterval < now) {
-                    workers.remove(worker);
-                    this.lastWorkerStoppedAt = now;
-                    log.debug("Remove idle worker, worker count : {}", workers.size());
-                }
-            }
-        }
-    }
-
     /**
      * 返回正在执行的文件任务数量
      *
@@ -335,15 +360,7 @@ public class ResultHandleManager implements SmartLifecycle {
      * @return 正在工作的线程数
      */
     public int getResultHandleBusyThreads() {
-        int workingThreads = 0;
-        synchronized (this.workersMonitor) {
-            for (TaskWorker worker : workers) {
-                if (worker.isBusy()) {
-                    workingThreads++;
-                }
-            }
-        }
-        return workingThreads;
+        return taskScheduler.getBusyThreads();
     }
 
     /**
@@ -352,15 +369,7 @@ public class ResultHandleManager implements SmartLifecycle {
      * @return 空闲的线程数
      */
     public int getResultHandleIdleThreads() {
-        int idleThreads = 0;
-        synchronized (this.workersMonitor) {
-            for (TaskWorker worker : workers) {
-                if (!worker.isBusy()) {
-                    idleThreads++;
-                }
-            }
-        }
-        return idleThreads;
+        return taskScheduler.getIdleThreads();
     }
 
     public int getResultHandleWaitingScheduleTasks() {
@@ -401,97 +410,22 @@ public class ResultHandleManager implements SmartLifecycle {
     }
 
     /**
-     * 任务处理worker
+     * 执行到期的任务
+     *
+     * @param task 任务
      */
-    private final class TaskWorker implements Runnable {
-        /**
-         * Worker连续空闲的周期
-         */
-        private int consecutiveIdles;
-        /**
-         * Worker连续执行的任务
-         */
-        private int consecutiveTasks;
-        /**
-         * 等待从阻塞队列获取任务的超时时间，单位毫秒
-         */
-        private int waitingTaskTimeout = 1000;
-        /**
-         * Worker是否正在执行任务
-         */
-        private volatile boolean isBusy = false;
-
-        @Override
-        public void run() {
-            if (!isActive()) {
-                log.info("Manager is not active!");
-                return;
-            }
-            while (isWorkerActive(this)) {
-                loop();
-            }
-
+    private void runTask(DelayedTask task) {
+        // 调度误差
+        long scheduleErrorInMills = System.currentTimeMillis() - task.getExpireTime();
+        if (scheduleErrorInMills > 1000) {
+            log.warn("Inaccurate scheduling, task: {}, errorInMills:{}", task, scheduleErrorInMills);
+            counters.getResultHandleDelayedScheduleCounter().increment();
         }
-
-        public void stop() {
-
-        }
-
-        private void loop() {
-            try {
-                ScheduledContinuousResultHandleTask task =
-                    ResultHandleManager.this.tasksQueue.poll(this.waitingTaskTimeout, TimeUnit.MILLISECONDS);
-                if (task != null) {
-                    isBusy = true;
-                    log.debug("Get task from queue, task: {}", task);
-                    // 调度误差
-                    long scheduleErrorInMills = System.currentTimeMillis() - task.getExpireTime();
-                    if (scheduleErrorInMills > 1000) {
-                        log.warn("Inaccurate scheduling, task: {}, errorInMills:{}", task, scheduleErrorInMills);
-                        counters.getResultHandleDelayedScheduleCounter().increment();
-                    }
-                    try {
-                        task.execute();
-                    } catch (Throwable e) {
-                        counters.getGseTasksExceptionCounter().increment();
-                        log.warn("Task execution error", e);
-                    }
-                }
-                checkAdjustWorker(task != null);
-            } catch (InterruptedException e) {
-                log.warn("Task worker is interrupted", e);
-            } catch (Throwable e) {
-                log.warn("Execute task caught exception", e);
-            } finally {
-                isBusy = false;
-            }
-        }
-
-        /**
-         * 调整worker线程数
-         *
-         * @param fetchTaskOK 是否获取到任务
-         */
-        private void checkAdjustWorker(boolean fetchTaskOK) {
-            if (fetchTaskOK) {
-                if (isWorkerActive(this)) {
-                    this.consecutiveIdles = 0;
-                    if (this.consecutiveTasks++ > ResultHandleManager.this.consecutiveActiveTrigger) {
-                        considerAddingAConsumer();
-                        this.consecutiveTasks = 0;
-                    }
-                }
-            } else {
-                this.consecutiveTasks = 0;
-                if (this.consecutiveIdles++ > ResultHandleManager.this.consecutiveIdleTrigger) {
-                    considerStoppingAConsumer(this);
-                    this.consecutiveIdles = 0;
-                }
-            }
-        }
-
-        boolean isBusy() {
-            return this.isBusy;
+        try {
+            task.execute();
+        } catch (Throwable e) {
+            counters.getGseTasksExceptionCounter().increment();
+            log.warn("Task execution error", e);
         }
     }
 }
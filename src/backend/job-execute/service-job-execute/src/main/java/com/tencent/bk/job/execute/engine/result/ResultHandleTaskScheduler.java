@@ -0,0 +1,68 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+/**
+ * 结果处理任务调度器。负责在任务到期之后将任务交给执行线程执行
+ */
+public interface ResultHandleTaskScheduler {
+    /**
+     * 启动调度器
+     */
+    void start();
+
+    /**
+     * 停止调度器。正在执行的任务会继续执行完成，未到期的任务不再被调度
+     */
+    void stop();
+
+    /**
+     * 添加任务，任务会在到期时间(DelayedTask.getExpireTime)之后被执行
+     *
+     * @param task 延时任务
+     */
+    void schedule(DelayedTask task);
+
+    /**
+     * 正在执行任务的线程数
+     *
+     * @return 线程数
+     */
+    int getBusyThreads();
+
+    /**
+     * 空闲的线程数
+     *
+     * @return 线程数
+     */
+    int getIdleThreads();
+
+    /**
+     * 等待被调度的任务数
+     *
+     * @return 任务数
+     */
+    int getScheduledTaskSize();
+}
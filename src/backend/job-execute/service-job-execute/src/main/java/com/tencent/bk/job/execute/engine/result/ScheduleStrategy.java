@@ -34,4 +34,12 @@ public interface ScheduleStrategy {
      * @return 调度延迟时间，单位毫秒
      */
     long getDelay();
+
+    /**
+     * 一次结果拉取完成后的反馈，用于调整后续的调度延迟
+     *
+     * @param hasProgress 本次拉取是否有进展(新的日志、主机状态变化)
+     */
+    default void onPullFinished(boolean hasProgress) {
+    }
 }
@@ -35,12 +35,11 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.Objects;
 import java.util.StringJoiner;
-import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
 
 /**
- * 通过延时队列调度的持续性任务结果处理任务
+ * 通过 ResultHandleTaskScheduler 调度的持续性任务结果处理任务
  */
 @Slf4j
 public class ScheduledContinuousResultHandleTask extends DelayedTask {
@@ -55,10 +54,6 @@ public class ScheduledContinuousResultHandleTask extends DelayedTask {
     private final ResultHandleManager resultHandleManager;
     private final ResultHandleTaskKeepaliveManager resultHandleTaskKeepaliveManager;
     private final ResultHandleLimiter resultHandleLimiter;
-    /**
-     * 任务队列
-     */
-    private DelayQueue<ScheduledContinuousResultHandleTask> tasksQueue;
     /**
      * 任务
      */
@@ -92,7 +87,6 @@ public class ScheduledContinuousResultHandleTask extends DelayedTask {
         this.task = task;
         this.delayedTask = new DelayedTask(this.task, this.task.getScheduleStrategy().getDelay());
         this.resultHandleManager = resultHandleManager;
-        this.tasksQueue = resultHandleManager.getTasksQueue();
         this.resultHandleTaskKeepaliveManager = resultHandleTaskKeepaliveManager;
         this.resultHandleLimiter = resultHandleLimiter;
     }
@@ -117,6 +111,7 @@ public class ScheduledContinuousResultHandleTask extends DelayedTask {
 
             isExecutable = true;
             executeTask();
+            recordPull();
 
             if (!resultHandleManager.isActive()) {
                 task.stop();
@@ -144,6 +139,8 @@ public class ScheduledContinuousResultHandleTask extends DelayedTask {
                     sampler.decrementFileTask();
                 }
                 resultHandleManager.getScheduledTasks().remove(task.getTaskId());
+                resultHandleManager.onTaskFinished(task);
+                recordPullStatistics();
             }
             if (isExecutable) {
                 long end = System.nanoTime();
@@ -168,16 +165,37 @@ public class ScheduledContinuousResultHandleTask extends DelayedTask {
         }
     }
 
+    private void recordPull() {
+        if (!(task instanceof AbstractResultHandleTask)) {
+            return;
+        }
+        Boolean hasProgress = ((AbstractResultHandleTask<?>) task).getLastPullProgress();
+        if (hasProgress != null) {
+            sampler.getMeterRegistry().counter(ExecuteMetricNames.RESULT_HANDLE_TASK_PULLS_TOTAL,
+                "task_type", task.getTaskType(), "progress", String.valueOf(hasProgress)).increment();
+        }
+    }
+
+    private void recordPullStatistics() {
+        if (!(task instanceof AbstractResultHandleTask)) {
+            return;
+        }
+        AbstractResultHandleTask<?> resultHandleTask = (AbstractResultHandleTask<?>) task;
+        int pullTimes = resultHandleTask.getPullLogTimes();
+        if (pullTimes <= 0) {
+            return;
+        }
+        sampler.getMeterRegistry().summary(ExecuteMetricNames.RESULT_HANDLE_TASK_PULLS_PER_TASK,
+            "task_type", task.getTaskType()).record(pullTimes);
+        sampler.getMeterRegistry().summary(ExecuteMetricNames.RESULT_HANDLE_TASK_WASTED_PULL_RATIO,
+            "task_type", task.getTaskType()).record((double) resultHandleTask.getWastedPullTimes() / pullTimes);
+    }
+
     private void reScheduleTask() {
         // 如果任务未完成，重新放入延时队列，等待重新调度
         this.delayedTask = this.delayedTask.reScheduled(task.getScheduleStrategy().getDelay());
-        log.debug("Add undone task to queue, task: {}", task);
-        long start = System.currentTimeMillis();
-        tasksQueue.offer(this);
-        long end = System.currentTimeMillis();
-        if (end - start > 10) {
-            log.warn("Adding undone task to queue is slow, task: {}, cost:{}", task, end - start);
-        }
+        log.debug("Reschedule undone task, task: {}", task);
+        resultHandleManager.reSchedule(this);
     }
 
     public ContinuousScheduledTask getResultHandleTask() {
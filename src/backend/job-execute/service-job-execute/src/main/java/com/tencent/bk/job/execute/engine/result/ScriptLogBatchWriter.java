@@ -0,0 +1,383 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import com.tencent.bk.job.common.constant.ErrorCode;
+import com.tencent.bk.job.common.exception.ServiceException;
+import com.tencent.bk.job.common.model.ServiceResponse;
+import com.tencent.bk.job.execute.client.LogServiceResourceClient;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
+import com.tencent.bk.job.execute.monitor.ExecuteMetricNames;
+import com.tencent.bk.job.logsvr.consts.LogTypeEnum;
+import com.tencent.bk.job.logsvr.model.service.BatchSaveLogRequest;
+import com.tencent.bk.job.logsvr.model.service.ServiceLogDTO;
+import com.tencent.bk.job.logsvr.model.service.ServiceScriptLogDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 脚本执行日志异步批量写入。
+ * <p>
+ * 按照步骤汇总结果处理任务提交的脚本日志，在数量或者时间达到阈值时批量写入 job-logsvr，
+ * 减少大量小任务并发时的 HTTP 请求数与 MongoDB 写入批次数。
+ * 待写入与写入失败等待重试的日志共用一个容量上限，达到上限时调用方阻塞等待，等待超时则先写入该步骤已提交的日志
+ * 再同步写入；同步写入失败时丢弃本次提交的日志并抛出异常，保证 logsvr 不可用期间内存占用有界。
+ * 步骤结束之前需要调用 {@link #flush(long, int)} 保证该步骤的日志已经写入，其他步骤的日志由后台线程写入。
+ */
+@Slf4j
+@Component
+public class ScriptLogBatchWriter {
+    /**
+     * 单批日志最大写入次数
+     */
+    private static final int MAX_SAVE_ATTEMPTS = 3;
+    /**
+     * 重试退避基数，单位毫秒
+     */
+    private static final long RETRY_BACKOFF_MILLS = 200L;
+
+    private final LogServiceResourceClient logServiceResourceClient;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long flushIntervalMills;
+    private final int maxBatchSize;
+    private final long maxBlockMills;
+    private final int capacity;
+    /**
+     * 待写入的日志(包括写入失败等待重试的日志)，key: stepInstanceId:executeCount
+     */
+    private final Map<String, StepScriptLogs> pendingStepLogs = new ConcurrentHashMap<>();
+    /**
+     * 剩余容量，日志写入成功或者被丢弃后归还
+     */
+    private final Semaphore availableCapacity;
+    private final Object flushSignal = new Object();
+    private final Counter droppedCounter;
+    private volatile boolean running = false;
+    private Thread flushThread;
+
+    @Autowired
+    public ScriptLogBatchWriter(LogServiceResourceClient logServiceResourceClient,
+                                JobExecuteConfig jobExecuteConfig,
+                                MeterRegistry meterRegistry) {
+        this.logServiceResourceClient = logServiceResourceClient;
+        this.meterRegistry = meterRegistry;
+        this.enabled = jobExecuteConfig.isScriptLogWriteBehindEnabled();
+        this.flushIntervalMills = jobExecuteConfig.getScriptLogWriteBehindFlushIntervalMills();
+        this.maxBatchSize = jobExecuteConfig.getScriptLogWriteBehindMaxBatchSize();
+        this.maxBlockMills = jobExecuteConfig.getScriptLogWriteBehindMaxBlockMills();
+        this.capacity = jobExecuteConfig.getScriptLogWriteBehindQueueCapacity();
+        this.availableCapacity = new Semaphore(capacity);
+        meterRegistry.gauge(ExecuteMetricNames.SCRIPT_LOG_WRITE_QUEUE_SIZE, Collections.emptyList(),
+            availableCapacity, semaphore -> capacity - semaphore.availablePermits());
+        this.droppedCounter = meterRegistry.counter(ExecuteMetricNames.SCRIPT_LOG_WRITE_DROPPED_TOTAL);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Script log write-behind is disabled");
+            return;
+        }
+        running = true;
+        flushThread = new Thread(this::flushLoop, "script-log-batch-writer");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        synchronized (flushSignal) {
+            flushSignal.notifyAll();
+        }
+        flushAll();
+        int pendingSize = getPendingSize();
+        if (pendingSize > 0) {
+            log.error("Flush script log on shutdown fail, discard {} logs", pendingSize);
+        }
+    }
+
+    /**
+     * 提交脚本日志
+     *
+     * @param jobCreateDate  作业创建日期，格式为yyyy_MM_dd
+     * @param stepInstanceId 步骤实例ID
+     * @param executeCount   执行次数
+     * @param scriptLogs     脚本日志
+     * @throws ServiceException 容量已满并且同步写入失败，本次提交的日志被丢弃
+     */
+    public void write(String jobCreateDate, long stepInstanceId, int executeCount,
+                      List<ServiceScriptLogDTO> scriptLogs) {
+        if (CollectionUtils.isEmpty(scriptLogs)) {
+            return;
+        }
+        String stepKey = buildStepKey(stepInstanceId, executeCount);
+        List<ServiceLogDTO> rejectedLogs = null;
+        for (ServiceScriptLogDTO scriptLog : scriptLogs) {
+            ServiceLogDTO logDTO = buildServiceLogDTO(stepInstanceId, executeCount, scriptLog);
+            if (running && rejectedLogs == null && acquire()) {
+                pendingStepLogs.compute(stepKey, (key, stepLogs) -> {
+                    if (stepLogs == null) {
+                        stepLogs = new StepScriptLogs(key, jobCreateDate);
+                    }
+                    stepLogs.logs.add(logDTO);
+                    return stepLogs;
+                });
+                continue;
+            }
+            // 未启用或者容量持续满，剩余的日志由调用方同步写入
+            if (rejectedLogs == null) {
+                rejectedLogs = new ArrayList<>();
+            }
+            rejectedLogs.add(logDTO);
+        }
+        if (getPendingSize() >= maxBatchSize) {
+            synchronized (flushSignal) {
+                flushSignal.notifyAll();
+            }
+        }
+        if (rejectedLogs != null) {
+            if (running) {
+                log.warn("Script log write queue is full, write synchronously, stepInstanceId: {}, size: {}",
+                    stepInstanceId, rejectedLogs.size());
+            }
+            writeThrough(stepKey, jobCreateDate, rejectedLogs);
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return availableCapacity.tryAcquire(maxBlockMills, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 同步写入日志。先写入该步骤已提交的日志，保证同一主机的日志按照提交顺序写入
+     *
+     * @param stepKey       步骤
+     * @param jobCreateDate 作业创建日期
+     * @param logs          日志
+     * @throws ServiceException 写入失败，本次提交的日志被丢弃
+     */
+    private void writeThrough(String stepKey, String jobCreateDate, List<ServiceLogDTO> logs) {
+        try {
+            StepScriptLogs stepLogs = pendingStepLogs.get(stepKey);
+            if (stepLogs == null) {
+                saveLogsInBatches(jobCreateDate, logs);
+                return;
+            }
+            synchronized (stepLogs) {
+                flushStep(stepLogs);
+                saveLogsInBatches(jobCreateDate, logs);
+            }
+        } catch (ServiceException e) {
+            droppedCounter.increment(logs.size());
+            log.error("Write script log synchronously fail, discard {} logs, stepKey: {}", logs.size(), stepKey);
+            throw e;
+        }
+    }
+
+    private void saveLogsInBatches(String jobCreateDate, List<ServiceLogDTO> logs) {
+        for (int start = 0; start < logs.size(); start += maxBatchSize) {
+            List<ServiceLogDTO> batchLogs = logs.subList(start, Math.min(logs.size(), start + maxBatchSize));
+            if (!saveLogsWithRetry(jobCreateDate, batchLogs)) {
+                throw new ServiceException(ErrorCode.SERVICE_INTERNAL_ERROR,
+                    "Write script log fail, unsaved size: " + (logs.size() - start));
+            }
+        }
+    }
+
+    /**
+     * 立即写入步骤所有已提交的日志，不等待其他步骤的日志
+     *
+     * @param stepInstanceId 步骤实例ID
+     * @param executeCount   执行次数
+     * @throws ServiceException 写入失败。失败的日志会保留，由后台线程继续重试
+     */
+    public void flush(long stepInstanceId, int executeCount) {
+        StepScriptLogs stepLogs = pendingStepLogs.get(buildStepKey(stepInstanceId, executeCount));
+        if (stepLogs == null) {
+            return;
+        }
+        synchronized (stepLogs) {
+            flushStep(stepLogs);
+        }
+    }
+
+    private void flushAll() {
+        for (StepScriptLogs stepLogs : pendingStepLogs.values()) {
+            try {
+                synchronized (stepLogs) {
+                    flushStep(stepLogs);
+                }
+            } catch (ServiceException e) {
+                log.warn("Flush script log fail, stepKey: {}, retry later", stepLogs.stepKey);
+            }
+        }
+    }
+
+    /**
+     * 写入步骤调用时已经提交的日志，调用方需持有步骤锁
+     */
+    private void flushStep(StepScriptLogs stepLogs) {
+        // 只写入调用时已经提交的日志，避免持续提交的日志导致 flush 无法返回
+        int remaining = stepLogs.logs.size();
+        while (remaining > 0) {
+            List<ServiceLogDTO> batchLogs = new ArrayList<>(Math.min(remaining, maxBatchSize));
+            Iterator<ServiceLogDTO> iterator = stepLogs.logs.iterator();
+            while (iterator.hasNext() && batchLogs.size() < Math.min(remaining, maxBatchSize)) {
+                batchLogs.add(iterator.next());
+            }
+            if (batchLogs.isEmpty()) {
+                break;
+            }
+            if (!saveLogsWithRetry(stepLogs.jobCreateDate, batchLogs)) {
+                // 写入失败的日志保留在队首，等待重试
+                throw new ServiceException(ErrorCode.SERVICE_INTERNAL_ERROR,
+                    "Write script log fail, stepKey: " + stepLogs.stepKey + ", unsaved size: " + remaining);
+            }
+            // 只有持有步骤锁的线程移除日志，队首的日志就是刚写入的日志
+            for (int i = 0; i < batchLogs.size(); i++) {
+                stepLogs.logs.poll();
+            }
+            availableCapacity.release(batchLogs.size());
+            remaining -= batchLogs.size();
+        }
+        pendingStepLogs.computeIfPresent(stepLogs.stepKey, (key, value) -> value.logs.isEmpty() ? null : value);
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                synchronized (flushSignal) {
+                    if (running && getPendingSize() < maxBatchSize) {
+                        flushSignal.wait(flushIntervalMills);
+                    }
+                }
+                flushAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                log.error("Flush script log caught exception", e);
+            }
+        }
+    }
+
+    private int getPendingSize() {
+        return capacity - availableCapacity.availablePermits();
+    }
+
+    private boolean saveLogsWithRetry(String jobCreateDate, List<ServiceLogDTO> logs) {
+        BatchSaveLogRequest request = new BatchSaveLogRequest();
+        request.setJobCreateDate(jobCreateDate);
+        request.setLogType(LogTypeEnum.SCRIPT.getValue());
+        request.setLogs(new ArrayList<>(logs));
+        for (int attempt = 1; attempt <= MAX_SAVE_ATTEMPTS; attempt++) {
+            if (attempt > 1 && !sleepBeforeRetry(attempt)) {
+                return false;
+            }
+            long start = System.nanoTime();
+            String status = "ok";
+            try {
+                ServiceResponse resp = logServiceResourceClient.saveLogs(request);
+                if (resp.isSuccess()) {
+                    return true;
+                }
+                status = "error";
+                log.error("Batch write script log fail, jobCreateDate: {}, size: {}, code: {}, attempt: {}",
+                    jobCreateDate, logs.size(), resp.getCode(), attempt);
+            } catch (Throwable e) {
+                status = "error";
+                log.error("Batch write script log caught exception, jobCreateDate: {}, size: {}, attempt: {}",
+                    jobCreateDate, logs.size(), attempt, e);
+            } finally {
+                meterRegistry.timer(ExecuteMetricNames.SCRIPT_LOG_WRITE_FLUSH,
+                    Collections.singletonList(Tag.of("status", status)))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                meterRegistry.summary(ExecuteMetricNames.SCRIPT_LOG_WRITE_FLUSH_SIZE).record(logs.size());
+            }
+        }
+        return false;
+    }
+
+    private boolean sleepBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLS * (attempt - 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String buildStepKey(long stepInstanceId, int executeCount) {
+        return stepInstanceId + ":" + executeCount;
+    }
+
+    private ServiceLogDTO buildServiceLogDTO(long stepInstanceId, int executeCount, ServiceScriptLogDTO scriptLog) {
+        ServiceLogDTO logDTO = new ServiceLogDTO();
+        logDTO.setStepInstanceId(stepInstanceId);
+        logDTO.setExecuteCount(executeCount);
+        logDTO.setIp(scriptLog.getCloudIp());
+        logDTO.setScriptLog(scriptLog);
+        return logDTO;
+    }
+
+    /**
+     * 步骤待写入的日志，按提交顺序排列。步骤锁(对象本身)保护写入，保证同一步骤的日志按顺序写入
+     */
+    private static final class StepScriptLogs {
+        private final String stepKey;
+        private final String jobCreateDate;
+        private final LinkedBlockingQueue<ServiceLogDTO> logs = new LinkedBlockingQueue<>();
+
+        StepScriptLogs(String stepKey, String jobCreateDate) {
+            this.stepKey = stepKey;
+            this.jobCreateDate = jobCreateDate;
+        }
+    }
+}
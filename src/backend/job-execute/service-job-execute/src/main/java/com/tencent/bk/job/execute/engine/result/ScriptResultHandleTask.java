@@ -48,7 +48,9 @@ import java.nio.charset.StandardCharsets;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Collectors;
 
 /**
@@ -81,22 +83,35 @@ public class ScriptResultHandleTask extends AbstractResultHandleTask<api_task_de
      */
     private Map<String, Map<String, String>> changeableGlobalParamValues = new HashMap<>();
     /**
-     * 脚本任务结果处理调度策略
+     * 当前轮次中尚未提交拉取的IP批次
      */
-    private volatile ScheduleStrategy scheduleStrategy;
+    private final LinkedList<List<String>> pendingIpBatches = new LinkedList<>();
     /**
-     * 目标IP分批
+     * 当前轮次中已提交拉取的IP批次，按照批次顺序排列
      */
-    private List<List<String>> pullIpBatches = new LinkedList<>();
+    private final LinkedList<IpBatchPull> inflightIpBatches = new LinkedList<>();
     /**
      * 当前使用的批次大小
      */
     private volatile int currentBatchSize = MAX_BATCH_SIZE;
+
+
     /**
-     * 每一轮拉取的批次序号
+     * GSE日志拉取请求合并器，为空时直接请求GSE
      */
-    private AtomicInteger pullIpBatchesIndex = new AtomicInteger(1);
-
+    private ScriptTaskLogPullCoalescer scriptTaskLogPullCoalescer;
+    /**
+     * 脚本日志异步批量写入，为空时直接写入
+     */
+    private ScriptLogBatchWriter scriptLogBatchWriter;
+    /**
+     * 并行拉取IP批次的线程池，为空时在当前线程中依次拉取
+     */
+    private Executor batchPullExecutor;
+    /**
+     * 单个任务同时拉取的最大IP批次数
+     */
+    private int batchPullParallelism = 1;
 
     /**
      * 任务基本信息，用于日志输出
@@ -125,6 +140,25 @@ public class ScriptResultHandleTask extends AbstractResultHandleTask<api_task_de
         initLogPullProcess(ipLogMap.values());
     }
 
+    void setScriptTaskLogPullCoalescer(ScriptTaskLogPullCoalescer scriptTaskLogPullCoalescer) {
+        this.scriptTaskLogPullCoalescer = scriptTaskLogPullCoalescer;
+    }
+
+    void setScriptLogBatchWriter(ScriptLogBatchWriter scriptLogBatchWriter) {
+        this.scriptLogBatchWriter = scriptLogBatchWriter;
+    }
+
+    /**
+     * 设置并行拉取IP批次的线程池
+     *
+     * @param batchPullExecutor    线程池
+     * @param batchPullParallelism 单个任务同时拉取的最大IP批次数
+     */
+    void setBatchPullExecutor(Executor batchPullExecutor, int batchPullParallelism) {
+        this.batchPullExecutor = batchPullExecutor;
+        this.batchPullParallelism = Math.max(1, batchPullParallelism);
+    }
+
     private void initLogPullProcess(Collection<GseTaskIpLogDTO> ipLogs) {
         ipLogs.forEach(ipLog -> {
             LogPullProgress process = new LogPullProgress();
@@ -137,80 +171,117 @@ public class ScriptResultHandleTask extends AbstractResultHandleTask<api_task_de
 
     @Override
     GseLogBatchPullResult<api_task_detail_result> pullGseTaskLogInBatches() {
-        if (pullIpBatches.isEmpty()) {
+        if (pendingIpBatches.isEmpty() && inflightIpBatches.isEmpty()) {
             Set<String> queryIpSet = new HashSet<>();
             queryIpSet.addAll(notStartedIpSet);
             queryIpSet.addAll(runningIpSet);
             List<String> queryIpList = new ArrayList<>(queryIpSet);
-            pullIpBatches = BatchUtil.buildBatchList(queryIpList, currentBatchSize);
+            pendingIpBatches.addAll(BatchUtil.buildBatchList(queryIpList, currentBatchSize));
+        }
+        fillBatchPullPipeline();
+        return takeNextBatchPullResult();
+    }
+
+    /**
+     * 提交待拉取的批次，保持同时拉取的批次数不超过batchPullParallelism
+     */
+    private void fillBatchPullPipeline() {
+        while (!pendingIpBatches.isEmpty() && inflightIpBatches.size() < batchPullParallelism) {
+            inflightIpBatches.add(submitBatchPull(pendingIpBatches.poll()));
+        }
+    }
+
+    private IpBatchPull submitBatchPull(List<String> ips) {
+        // 请求在当前线程中构造，避免与日志分析并发访问logPullProgressMap
+        api_query_task_info_v2 request = GseRequestUtils.buildScriptLogRequestV2(gseTaskLog.getGseTaskId(), ips,
+            logPullProgressMap);
+        FutureTask<api_task_detail_result> future = new FutureTask<>(() -> pullGseLog(request));
+        if (batchPullExecutor == null || batchPullParallelism <= 1) {
+            future.run();
+        } else {
+            batchPullExecutor.execute(future);
         }
-        return tryPullGseLogWithRetry();
+        return new IpBatchPull(ips, future);
     }
 
-    private GseLogBatchPullResult<api_task_detail_result> tryPullGseLogWithRetry() {
-        List<String> pullLogIps = pullIpBatches.get(pullIpBatchesIndex.get() - 1);
+    private GseLogBatchPullResult<api_task_detail_result> takeNextBatchPullResult() {
+        IpBatchPull batchPull = inflightIpBatches.poll();
+        if (batchPull == null) {
+            return new GseLogBatchPullResult<>(true, true, null, null);
+        }
         try {
-            api_task_detail_result detailRst = pullGseLog(pullLogIps);
-            boolean isLastBatch = pullIpBatchesIndex.get() == pullIpBatches.size();
-            GseLogBatchPullResult<api_task_detail_result> batchPullResult = new GseLogBatchPullResult<>(true,
-                isLastBatch, new ScriptTaskLog(detailRst), null);
-            if (isLastBatch) {
-                resetBatch();
-            } else {
-                pullIpBatchesIndex.incrementAndGet();
+            api_task_detail_result detailRst = batchPull.getResult();
+            if (batchPullParallelism > 1) {
+                // 并行拉取时，在分析当前批次结果之前提交后续批次，使拉取与分析并行；
+                // 串行拉取时，下一批次在当前批次分析完成后才拉取，步骤提前结束时不会多发起请求
+                fillBatchPullPipeline();
             }
-            return batchPullResult;
+            boolean isLastBatch = pendingIpBatches.isEmpty() && inflightIpBatches.isEmpty();
+            return new GseLogBatchPullResult<>(true, isLastBatch, new ScriptTaskLog(detailRst), null);
         } catch (ReadTimeoutException e) {
-            boolean isSuccess = tryReduceBatchSizeAndRebuildBatchList();
-            if (isSuccess) {
-                log.info("Reduce batch size and rebuild batch list successfully, currentBatchSize: {}, batches: {}. " +
-                        "Retry pull!",
-                    this.currentBatchSize, this.pullIpBatches);
-                return tryPullGseLogWithRetry();
-            } else {
+            List<List<String>> subBatches = tryReduceBatchSize(batchPull.getIps());
+            if (subBatches == null) {
                 log.warn("Try pull gse log with min batch size, but fail!");
+                resetBatch();
                 return new GseLogBatchPullResult<>(false, true, null, "Pull gse task log timeout");
             }
+            log.info("Reduce batch size successfully, currentBatchSize: {}, subBatches: {}. Retry pull!",
+                this.currentBatchSize, subBatches);
+            // 拆分后的批次放到待拉取队列队首，按照并行度限制重新提交
+            pendingIpBatches.addAll(0, subBatches);
+            fillBatchPullPipeline();
+            return takeNextBatchPullResult();
+        } catch (RuntimeException e) {
+            resetBatch();
+            throw e;
         }
     }
 
+    @Override
+    void resetGseTaskLogPull() {
+        resetBatch();
+    }
+
     private void resetBatch() {
-        pullIpBatchesIndex = new AtomicInteger(1);
-        pullIpBatches.clear();
+        inflightIpBatches.forEach(IpBatchPull::cancel);
+        inflightIpBatches.clear();
+        pendingIpBatches.clear();
     }
 
-    private api_task_detail_result pullGseLog(List<String> ips) {
-        api_query_task_info_v2 requestV2 = GseRequestUtils.buildScriptLogRequestV2(gseTaskLog.getGseTaskId(), ips,
-            logPullProgressMap);
+    private api_task_detail_result pullGseLog(api_query_task_info_v2 requestV2) {
+        if (scriptTaskLogPullCoalescer != null) {
+            return scriptTaskLogPullCoalescer.pull(stepInstanceId, requestV2);
+        }
         return GseRequestUtils.getScriptTaskDetailRst(stepInstanceId, requestV2);
     }
 
-    private boolean tryReduceBatchSizeAndRebuildBatchList() {
-        log.warn("Caught ReadTimeoutException when pull gse log, try to reduce batch size, currentBatchSize: {}",
-            currentBatchSize);
-        if (currentBatchSize <= MIN_BATCH_SIZE) {
-            return false;
+    /**
+     * 拉取超时后，按照更小的批次大小拆分超时的批次
+     *
+     * @param timeoutBatchIps 超时的批次
+     * @return 拆分后的批次，如果已经是最小批次返回null
+     */
+    private List<List<String>> tryReduceBatchSize(List<String> timeoutBatchIps) {
+        log.warn("Caught ReadTimeoutException when pull gse log, try to reduce batch size, batchSize: {}",
+            timeoutBatchIps.size());
+        int batchSize = getBatchSizeLessThan(timeoutBatchIps.size());
+        if (batchSize >= timeoutBatchIps.size()) {
+            return null;
         }
-        currentBatchSize = getBatchSizeLessThanCurrentSize();
-        List<List<String>> newBatchList = new ArrayList<>();
-        List<String> leftIps = new ArrayList<>();
-        if (pullIpBatchesIndex.get() > 1) {
-            List<List<String>> pullFinishedBatchList = pullIpBatches.subList(0, pullIpBatchesIndex.get() - 1);
-            newBatchList.addAll(pullFinishedBatchList);
+        // 后续轮次也使用更小的批次大小
+        if (batchSize < currentBatchSize) {
+            currentBatchSize = batchSize;
         }
-        pullIpBatches.subList(pullIpBatchesIndex.get() - 1, pullIpBatches.size()).forEach(leftIps::addAll);
-        newBatchList.addAll(BatchUtil.buildBatchList(leftIps, currentBatchSize));
-        pullIpBatches = newBatchList;
-        return true;
+        return BatchUtil.buildBatchList(timeoutBatchIps, batchSize);
     }
 
-    private int getBatchSizeLessThanCurrentSize() {
+    private int getBatchSizeLessThan(int size) {
         for (int batchSize : BATCH_SIZE_PRIORITY_ARRAY) {
-            if (batchSize < currentBatchSize) {
+            if (batchSize < size) {
                 return batchSize;
             }
         }
-        return currentBatchSize;
+        return size;
     }
 
     @Override
@@ -255,7 +326,7 @@ public class ScriptResultHandleTask extends AbstractResultHandleTask<api_task_de
         watch.start("saveIpLogs");
         List<GseTaskIpLogDTO> ipLogList = analysedIpSet.stream().map(analysedIp -> ipLogMap.get(analysedIp))
             .collect(Collectors.toList());
-        gseTaskLogService.batchSaveIpLog(ipLogList);
+        saveIpLogs(ipLogList);
         watch.stop();
 
         GseTaskExecuteResult rst = analyseExecuteResult();
@@ -283,6 +354,7 @@ public class ScriptResultHandleTask extends AbstractResultHandleTask<api_task_de
             }
             int offset = ipLog.getOffset();
             if (StringUtils.isNotEmpty(content)) {
+                markNewLogPulled();
                 int bytes = content.getBytes(StandardCharsets.UTF_8).length;
                 offset += bytes;
                 ipLog.setOffset(offset);
@@ -294,9 +366,21 @@ public class ScriptResultHandleTask extends AbstractResultHandleTask<api_task_de
     }
 
     private void saveScriptLogContent(List<ServiceScriptLogDTO> logs) {
-        logService.batchWriteScriptLog(DateUtils.formatUnixTimestamp(taskInstance.getCreateTime(), ChronoUnit.MILLIS,
-            "yyyy_MM_dd", ZoneId.of("UTC")), stepInstanceId, stepInstance.getExecuteCount(),
-            logs);
+        String jobCreateDate = DateUtils.formatUnixTimestamp(taskInstance.getCreateTime(), ChronoUnit.MILLIS,
+            "yyyy_MM_dd", ZoneId.of("UTC"));
+        if (scriptLogBatchWriter != null) {
+            scriptLogBatchWriter.write(jobCreateDate, stepInstanceId, stepInstance.getExecuteCount(), logs);
+        } else {
+            logService.batchWriteScriptLog(jobCreateDate, stepInstanceId, stepInstance.getExecuteCount(), logs);
+        }
+    }
+
+    @Override
+    protected void flushPendingWrites() {
+        super.flushPendingWrites();
+        if (scriptLogBatchWriter != null) {
+            scriptLogBatchWriter.flush(stepInstanceId, stepInstance.getExecuteCount());
+        }
     }
 
     private void analyseIpResult(api_agent_task_rst ipResult, GseTaskIpLogDTO ipLog, String cloudIp,
@@ -612,4 +696,41 @@ public class ScriptResultHandleTask extends AbstractResultHandleTask<api_task_de
         }
         return this.taskInfo;
     }
+
+    /**
+     * 一个IP批次的日志拉取
+     */
+    private static final class IpBatchPull {
+        private final List<String> ips;
+        private final FutureTask<api_task_detail_result> future;
+
+        IpBatchPull(List<String> ips, FutureTask<api_task_detail_result> future) {
+            this.ips = ips;
+            this.future = future;
+        }
+
+        List<String> getIps() {
+            return ips;
+        }
+
+        api_task_detail_result getResult() {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                log.warn("Pull gse log caught exception", e.getCause());
+                return null;
+            }
+        }
+
+        void cancel() {
+            // 不中断正在进行的GSE请求，避免破坏连接状态
+            future.cancel(false);
+        }
+    }
 }
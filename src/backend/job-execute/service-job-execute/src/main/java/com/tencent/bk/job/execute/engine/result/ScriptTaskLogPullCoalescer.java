@@ -0,0 +1,365 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import com.tencent.bk.gse.taskapi.api_agent_task_rst;
+import com.tencent.bk.gse.taskapi.api_query_agent_info_v2;
+import com.tencent.bk.gse.taskapi.api_query_task_info_v2;
+import com.tencent.bk.gse.taskapi.api_task_detail_result;
+import com.tencent.bk.job.execute.common.exception.ReadTimeoutException;
+import com.tencent.bk.job.execute.engine.gse.GseRequestUtils;
+import com.tencent.bk.job.execute.monitor.ExecuteMetricNames;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * GSE脚本日志拉取请求合并器。
+ * <p>
+ * 结果处理线程提交的日志拉取请求会在一个很短的时间窗口内被收集起来：
+ * 1. 属于同一个GSE任务的请求合并为一个请求（合并后的主机数不超过单次查询上限），结果按主机拆分后返回给各个请求方；
+ * 2. 不同GSE任务的请求在同一个GSE连接上依次发送，避免每个请求单独获取连接。
+ * GSE协议一次只能查询一个GSE任务，所以不同GSE任务之间无法合并为一次调用。
+ */
+@Slf4j
+public class ScriptTaskLogPullCoalescer {
+    /**
+     * 合并后单个GSE请求包含的最大主机数，与ScriptResultHandleTask的最大分批大小一致
+     */
+    private static final int MAX_AGENTS_PER_QUERY = 1000;
+    /**
+     * 等待合并请求执行完成的最大时间
+     */
+    private static final long MAX_WAIT_MILLS = 180_000L;
+
+    private final BlockingQueue<PullRequest> pendingRequests = new LinkedBlockingQueue<>();
+    private final long windowMills;
+    private final int maxBatchSize;
+    private final ThreadPoolExecutor pullExecutor;
+    private final Counter mergedRequestCounter;
+    private final Counter sharedConnectionCounter;
+    private final DistributionSummary batchSizeSummary;
+    private volatile boolean running = false;
+    private Thread dispatcher;
+
+    public ScriptTaskLogPullCoalescer(MeterRegistry meterRegistry, long windowMills, int maxBatchSize, int threads) {
+        this.windowMills = windowMills;
+        this.maxBatchSize = maxBatchSize;
+        this.pullExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r);
+            t.setName("gse-log-pull-coalesce-" + t.getId());
+            t.setDaemon(true);
+            return t;
+        });
+        this.mergedRequestCounter = meterRegistry.counter(ExecuteMetricNames.GSE_LOG_PULL_COALESCED_TOTAL,
+            "type", "merged_rpc");
+        this.sharedConnectionCounter = meterRegistry.counter(ExecuteMetricNames.GSE_LOG_PULL_COALESCED_TOTAL,
+            "type", "shared_connection");
+        this.batchSizeSummary = meterRegistry.summary(ExecuteMetricNames.GSE_LOG_PULL_COALESCE_BATCH_SIZE);
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "gse-log-pull-coalesce-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("ScriptTaskLogPullCoalescer started, windowMills: {}, maxBatchSize: {}", windowMills,
+            maxBatchSize);
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        // 未被调度的请求直接执行，防止结果处理线程一直等待
+        List<PullRequest> leftRequests = new ArrayList<>();
+        pendingRequests.drainTo(leftRequests);
+        leftRequests.forEach(this::pullDirectly);
+        pullExecutor.shutdown();
+        log.info("ScriptTaskLogPullCoalescer stopped");
+    }
+
+    /**
+     * 拉取脚本任务日志。调用方线程会阻塞直到合并后的请求返回
+     *
+     * @param stepInstanceId 步骤实例ID
+     * @param taskQuery      日志查询请求
+     * @return 日志查询结果
+     * @throws ReadTimeoutException 读取GSE响应超时
+     */
+    public api_task_detail_result pull(long stepInstanceId, api_query_task_info_v2 taskQuery) {
+        if (!running) {
+            return GseRequestUtils.getScriptTaskDetailRst(stepInstanceId, taskQuery);
+        }
+        PullRequest request = new PullRequest(stepInstanceId, taskQuery);
+        pendingRequests.offer(request);
+        if (!running && pendingRequests.remove(request)) {
+            // 合并器已停止，请求不会再被调度，直接拉取
+            pullDirectly(request);
+        }
+        try {
+            return request.future.get(MAX_WAIT_MILLS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            log.warn("[{}]: Pull gse log caught exception", stepInstanceId, e.getCause());
+            return null;
+        } catch (TimeoutException e) {
+            log.warn("[{}]: Wait for coalesced gse log pull timeout", stepInstanceId);
+            return null;
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            List<PullRequest> batch = new ArrayList<>();
+            try {
+                PullRequest first = pendingRequests.poll(1000, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + windowMills;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        pendingRequests.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    PullRequest request = pendingRequests.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (request == null) {
+                        break;
+                    }
+                    batch.add(request);
+                }
+                submitBatch(batch);
+            } catch (InterruptedException e) {
+                log.info("ScriptTaskLogPullCoalescer dispatcher is interrupted");
+                // 已从队列取出但尚未提交的请求不会再被调度，直接拉取
+                batch.forEach(this::pullDirectly);
+            } catch (Throwable e) {
+                log.warn("ScriptTaskLogPullCoalescer dispatch caught exception", e);
+                failUncompleted(batch, e);
+            }
+        }
+    }
+
+    private void submitBatch(List<PullRequest> batch) {
+        try {
+            pullExecutor.execute(() -> pullInBatch(batch));
+        } catch (RejectedExecutionException e) {
+            // 线程池已关闭，在调度线程中直接拉取，保证每个请求都有结果
+            log.warn("Coalesced gse log pull is rejected, pull directly, batchSize: {}", batch.size());
+            batch.forEach(this::pullDirectly);
+        }
+    }
+
+    private void failUncompleted(List<PullRequest> batch, Throwable e) {
+        for (PullRequest request : batch) {
+            if (!request.future.isDone()) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void pullInBatch(List<PullRequest> batch) {
+        try {
+            doPullInBatch(batch);
+        } catch (Throwable e) {
+            log.warn("Pull gse log in batch caught exception", e);
+            failUncompleted(batch, e);
+        }
+    }
+
+    private void doPullInBatch(List<PullRequest> batch) {
+        batchSizeSummary.record(batch.size());
+        if (batch.size() == 1) {
+            pullDirectly(batch.get(0));
+            return;
+        }
+        List<MergedQuery> mergedQueries = mergeByGseTaskId(batch);
+        int mergedRpcCount = batch.size() - mergedQueries.size();
+        if (mergedRpcCount > 0) {
+            mergedRequestCounter.increment(mergedRpcCount);
+        }
+
+        List<api_query_task_info_v2> queries = new ArrayList<>(mergedQueries.size());
+        mergedQueries.forEach(mergedQuery -> queries.add(mergedQuery.query));
+        List<api_task_detail_result> results;
+        try {
+            results = GseRequestUtils.batchGetScriptTaskDetailRst(
+                "coalesced-" + batch.get(0).stepInstanceId, queries);
+        } catch (ReadTimeoutException e) {
+            // 批量请求超时，无法判断是哪个请求导致的，退化为单个请求，由各个任务自行处理超时
+            results = null;
+        }
+        if (results == null || results.size() != mergedQueries.size()) {
+            batch.forEach(this::pullDirectly);
+            return;
+        }
+        if (mergedQueries.size() > 1) {
+            sharedConnectionCounter.increment(mergedQueries.size() - 1);
+        }
+        for (int i = 0; i < mergedQueries.size(); i++) {
+            mergedQueries.get(i).complete(results.get(i));
+        }
+    }
+
+    private void pullDirectly(PullRequest request) {
+        try {
+            request.future.complete(GseRequestUtils.getScriptTaskDetailRst(request.stepInstanceId,
+                request.query));
+        } catch (Throwable e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    private List<MergedQuery> mergeByGseTaskId(List<PullRequest> batch) {
+        Map<String, List<MergedQuery>> gseTaskIdAndQueries = new LinkedHashMap<>();
+        List<MergedQuery> mergedQueries = new ArrayList<>();
+        for (PullRequest request : batch) {
+            List<MergedQuery> queriesOfGseTask = gseTaskIdAndQueries.computeIfAbsent(request.query.getTask_id(),
+                k -> new ArrayList<>());
+            MergedQuery target = null;
+            for (MergedQuery mergedQuery : queriesOfGseTask) {
+                if (mergedQuery.canMerge(request)) {
+                    target = mergedQuery;
+                    break;
+                }
+            }
+            if (target == null) {
+                target = new MergedQuery(request);
+                queriesOfGseTask.add(target);
+                mergedQueries.add(target);
+            } else {
+                target.merge(request);
+            }
+        }
+        return mergedQueries;
+    }
+
+    private static String buildHostKey(int gseCompositeId, String ip) {
+        return gseCompositeId > 1 ? gseCompositeId + ":" + ip : ip;
+    }
+
+    private static Set<String> buildHostKeys(api_query_task_info_v2 query) {
+        Set<String> hostKeys = new HashSet<>();
+        if (query.getAgents() != null) {
+            for (api_query_agent_info_v2 agent : query.getAgents()) {
+                hostKeys.add(buildHostKey(agent.getHost().getGse_composite_id(), agent.getHost().getIp()));
+            }
+        }
+        return hostKeys;
+    }
+
+    private static final class PullRequest {
+        private final long stepInstanceId;
+        private final api_query_task_info_v2 query;
+        private final CompletableFuture<api_task_detail_result> future = new CompletableFuture<>();
+
+        PullRequest(long stepInstanceId, api_query_task_info_v2 query) {
+            this.stepInstanceId = stepInstanceId;
+            this.query = query;
+        }
+    }
+
+    /**
+     * 同一个GSE任务合并后的查询请求
+     */
+    private static final class MergedQuery {
+        private final List<PullRequest> requests = new ArrayList<>();
+        private final api_query_task_info_v2 query;
+
+        MergedQuery(PullRequest request) {
+            this.requests.add(request);
+            this.query = new api_query_task_info_v2();
+            this.query.setTask_id(request.query.getTask_id());
+            this.query.setAgents(new ArrayList<>(request.query.getAgents()));
+        }
+
+        boolean canMerge(PullRequest request) {
+            return query.getAgents().size() + request.query.getAgents().size() <= MAX_AGENTS_PER_QUERY;
+        }
+
+        void merge(PullRequest request) {
+            this.requests.add(request);
+            this.query.getAgents().addAll(request.query.getAgents());
+        }
+
+        void complete(api_task_detail_result result) {
+            if (requests.size() == 1) {
+                requests.get(0).future.complete(result);
+                return;
+            }
+            // 按主机将合并查询的结果拆分给各个请求方
+            for (PullRequest request : requests) {
+                api_task_detail_result requestResult = new api_task_detail_result();
+                requestResult.setBk_error_code(result.getBk_error_code());
+                requestResult.setBk_error_msg(result.getBk_error_msg());
+                if (CollectionUtils.isNotEmpty(result.getResult())) {
+                    Set<String> hostKeys = buildHostKeys(request.query);
+                    List<api_agent_task_rst> agentResults = new ArrayList<>();
+                    for (api_agent_task_rst agentResult : result.getResult()) {
+                        if (hostKeys.contains(buildHostKey(agentResult.getGse_composite_id(),
+                            agentResult.getIp()))) {
+                            agentResults.add(agentResult);
+                        }
+                    }
+                    requestResult.setResult(agentResults);
+                }
+                request.future.complete(requestResult);
+            }
+        }
+    }
+}
@@ -33,6 +33,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -76,6 +78,7 @@ public class NotAliveResultHandleTaskDetector {
 
     private void resumeTasks(Set<String> notAliveTaskIds) {
         log.info("Resume not alive tasks start ...");
+        List<String> resumedTaskIds = new ArrayList<>();
         notAliveTaskIds.forEach(taskId -> {
             // 暂时只支持恢复GSE任务
             if (taskId.startsWith("gse_task")) {
@@ -84,9 +87,12 @@ public class NotAliveResultHandleTaskDetector {
                 int executeCount = Integer.parseInt(taskInfo[2]);
                 // 暂时不转移
 //                taskExecuteControlMsgSender.resumeGseStep(stepInstanceId, executeCount, UUID.randomUUID().toString());
-                resultHandleTaskKeepaliveManager.removeTaskKeepaliveInfoFromRedis(taskId);
+                resumedTaskIds.add(taskId);
             }
         });
+        if (!resumedTaskIds.isEmpty()) {
+            resultHandleTaskKeepaliveManager.removeTaskKeepaliveInfoFromRedis(resumedTaskIds);
+        }
         log.info("Resume not alive tasks successfully");
     }
 }
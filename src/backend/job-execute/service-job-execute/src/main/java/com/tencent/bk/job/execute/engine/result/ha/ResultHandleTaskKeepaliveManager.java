@@ -24,137 +24,241 @@
 
 package com.tencent.bk.job.execute.engine.result.ha;
 
-
-import com.tencent.bk.job.common.util.ThreadUtils;
-import lombok.*;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.connection.DefaultStringTuple;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection.StringTuple;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * 结果处理任务keepalive管理
+ * <p>
+ * 任务keepalive信息按任务ID哈希分布在多个ZSET中，避免单个热点key；
+ * 新增与刷新keepalive信息时按分片合并为多成员ZADD，并通过pipeline一次发送。
  */
 @Slf4j
 @Component
 @EnableScheduling
 public class ResultHandleTaskKeepaliveManager {
-    private static final String RUNNING_TASK_ZSET_KEY = "running:result:task";
-    private final Object lock = new Object();
-    private RedisTemplate redisTemplate;
-    private Map<String, KeepaliveInfo> runningTasks = new ConcurrentHashMap<>();
+    /**
+     * 未分片的旧版本ZSET，滚动升级期间仍需要检测与清理
+     */
+    private static final String LEGACY_RUNNING_TASK_ZSET_KEY = "running:result:task";
+    private static final String RUNNING_TASK_ZSET_KEY_PREFIX = "running:result:task:";
+    private final StringRedisTemplate redisTemplate;
+    private final int shards;
+    private final int batchSize;
+    private final Map<String, KeepaliveInfo> runningTasks = new ConcurrentHashMap<>();
+    /**
+     * 已注册但还未写入Redis的任务
+     */
+    private final ConcurrentLinkedQueue<String> pendingTaskIds = new ConcurrentLinkedQueue<>();
 
     @Autowired
-    public ResultHandleTaskKeepaliveManager(StringRedisTemplate redisTemplate) {
+    public ResultHandleTaskKeepaliveManager(StringRedisTemplate redisTemplate, JobExecuteConfig jobExecuteConfig) {
         this.redisTemplate = redisTemplate;
+        this.shards = Math.max(1, jobExecuteConfig.getResultHandleKeepaliveShards());
+        this.batchSize = Math.max(1, jobExecuteConfig.getResultHandleKeepaliveBatchSize());
     }
 
+    /**
+     * 注册运行中的任务。任务只写入本地，由后台线程批量写入Redis，不阻塞任务调度
+     */
     public void addRunningTaskKeepaliveInfo(String taskId) {
-        KeepaliveInfo keepaliveInfo = updateTaskKeepaliveInfo(taskId);
-        if (keepaliveInfo != null) {
-            log.info("Add running task keepalive info: {}", keepaliveInfo);
-            this.runningTasks.put(taskId, keepaliveInfo);
-        }
-    }
-
-    private KeepaliveInfo updateTaskKeepaliveInfo(String taskId) {
-        int maxWaitingSeconds = 600;
-        while (maxWaitingSeconds > 0) {
-            try {
-                long timestamp = System.currentTimeMillis();
-                redisTemplate.opsForZSet().add(RUNNING_TASK_ZSET_KEY, taskId, timestamp);
-                return new KeepaliveInfo(taskId, timestamp);
-            } catch (Throwable e) {
-                log.error("Update task keepalive info error, taskId: {}! Wait for 5 seconds retry!", taskId);
-                ThreadUtils.sleep(5000L);
-                maxWaitingSeconds -= 5;
-            }
-        }
-        return null;
+        KeepaliveInfo keepaliveInfo = new KeepaliveInfo(taskId, 0L);
+        log.info("Add running task keepalive info: {}", keepaliveInfo);
+        runningTasks.put(taskId, keepaliveInfo);
+        pendingTaskIds.add(taskId);
     }
 
     public void stopKeepaliveInfoTask(String taskId) {
         log.info("Stop keepalive info task : {}", taskId);
-        KeepaliveInfo keepaliveInfo = runningTasks.get(taskId);
+        KeepaliveInfo keepaliveInfo = runningTasks.remove(taskId);
         if (keepaliveInfo == null) {
             log.warn("Keepalive info task already stopped, taskId: {}!", taskId);
             return;
         }
-        synchronized (lock) {
-            this.runningTasks.remove(taskId);
+        if (keepaliveInfo.getTimestamp() > 0) {
             removeTaskKeepaliveInfoFromRedis(taskId);
         }
     }
 
     public void removeTaskKeepaliveInfoFromRedis(String taskId) {
-        int maxWaitingSeconds = 600;
-        while (maxWaitingSeconds > 0) {
-            try {
-                redisTemplate.opsForZSet().remove(RUNNING_TASK_ZSET_KEY, taskId);
-                return;
-            } catch (Throwable e) {
-                log.error("Remove task keepalive info error, taskId: {}! Wait for 5 seconds retry!", taskId);
-                ThreadUtils.sleep(5000L);
-                maxWaitingSeconds -= 5;
-            }
+        removeTaskKeepaliveInfoFromRedis(Collections.singletonList(taskId));
+    }
+
+    public void removeTaskKeepaliveInfoFromRedis(Collection<String> taskIds) {
+        Map<String, List<String>> shardTaskIds = groupByShard(taskIds);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                shardTaskIds.forEach((key, keyTaskIds) -> {
+                    String[] members = keyTaskIds.toArray(new String[0]);
+                    stringRedisConnection.zRem(key, members);
+                    stringRedisConnection.zRem(LEGACY_RUNNING_TASK_ZSET_KEY, members);
+                });
+                return null;
+            });
+        } catch (Throwable e) {
+            // 残留的keepalive信息会被 NotAliveResultHandleTaskDetector 发现并清理
+            log.error("Remove task keepalive info error, taskIds: {}", taskIds, e);
         }
     }
 
     public Set<String> getNotAliveTaskIds() {
         try {
             long oneMinuteBefore = System.currentTimeMillis() - 60000L;
-            Set<String> timeoutTaskIds = redisTemplate.opsForZSet().rangeByScore(RUNNING_TASK_ZSET_KEY, -1,
-                oneMinuteBefore);
-            if (timeoutTaskIds == null) {
-                return Collections.emptySet();
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                for (int shard = 0; shard < shards; shard++) {
+                    stringRedisConnection.zRangeByScore(buildShardKey(shard), -1, oneMinuteBefore);
+                }
+                stringRedisConnection.zRangeByScore(LEGACY_RUNNING_TASK_ZSET_KEY, -1, oneMinuteBefore);
+                return null;
+            });
+            Set<String> timeoutTaskIds = new LinkedHashSet<>();
+            for (Object result : results) {
+                if (result instanceof Collection) {
+                    for (Object taskId : (Collection<?>) result) {
+                        timeoutTaskIds.add(String.valueOf(taskId));
+                    }
+                }
             }
             return timeoutTaskIds;
         } catch (Throwable e) {
+            log.warn("Get not alive tasks error", e);
             return Collections.emptySet();
         }
     }
 
+    /**
+     * 将新注册的任务写入Redis
+     */
+    @Scheduled(initialDelay = 1000L, fixedDelay = 1000L)
+    public void flushPendingTaskKeepaliveInfo() {
+        if (pendingTaskIds.isEmpty()) {
+            return;
+        }
+        List<KeepaliveInfo> pendingTasks = new ArrayList<>();
+        String taskId;
+        while ((taskId = pendingTaskIds.poll()) != null) {
+            KeepaliveInfo keepaliveInfo = runningTasks.get(taskId);
+            if (keepaliveInfo != null) {
+                pendingTasks.add(keepaliveInfo);
+            }
+        }
+        if (!pendingTasks.isEmpty() && !updateTaskKeepaliveInfo(pendingTasks, System.currentTimeMillis())) {
+            // 写入失败，下次重试
+            pendingTasks.forEach(keepaliveInfo -> pendingTaskIds.add(keepaliveInfo.getTaskId()));
+        }
+    }
+
     @Scheduled(cron = "0/10 * * * * ?")
     public void refreshTaskKeepaliveInfo() {
         log.info("Refresh task keepalive info start...");
-        if (!runningTasks.isEmpty()) {
-            Set<String> refreshTaskIds = new HashSet<>();
-            long startInMills = System.currentTimeMillis();
-            synchronized (lock) {
-                Collection<KeepaliveInfo> keepaliveInfos = runningTasks.values();
-                long currentTimestamp = System.currentTimeMillis();
-                keepaliveInfos.stream().filter(keepaliveInfo -> currentTimestamp - keepaliveInfo.getTimestamp() > 5000L)
-                    .forEach(keepaliveInfo -> {
-                        String taskId = keepaliveInfo.getTaskId();
-                        try {
-                            // 二次确认，防止在运行期间任务被移除
-                            if (runningTasks.get(taskId) != null) {
-                                redisTemplate.opsForZSet().add(RUNNING_TASK_ZSET_KEY, taskId, currentTimestamp);
-                                keepaliveInfo.setTimestamp(currentTimestamp);
-                                refreshTaskIds.add(taskId);
-                            }
-                        } catch (Throwable e) {
-                            String errorMsg = "Refresh task keepalive info fail, taskId: " + taskId;
-                            log.error(errorMsg, e);
-                        }
-
-                    });
+        if (runningTasks.isEmpty()) {
+            log.info("Running tasks is empty. Skip refresh keepaliveInfo");
+            return;
+        }
+        long startInMills = System.currentTimeMillis();
+        // 只刷新已写入Redis的任务，未写入的任务由 flushPendingTaskKeepaliveInfo 写入
+        List<KeepaliveInfo> refreshTasks = new ArrayList<>();
+        for (KeepaliveInfo keepaliveInfo : runningTasks.values()) {
+            if (keepaliveInfo.getTimestamp() > 0 && startInMills - keepaliveInfo.getTimestamp() > 5000L) {
+                refreshTasks.add(keepaliveInfo);
             }
-            log.info("Refresh task keepalive info done! taskSize: {},refreshTaskIds: {}", refreshTaskIds.size(),
-                refreshTaskIds);
-            long cost = System.currentTimeMillis() - startInMills;
-            if (cost > 1000L) {
-                log.info("Refresh task keepalive info is slow, taskSize: {}, cost: {}", refreshTaskIds.size(), cost);
+        }
+        boolean success = updateTaskKeepaliveInfo(refreshTasks, startInMills);
+        long cost = System.currentTimeMillis() - startInMills;
+        log.info("Refresh task keepalive info done! success: {}, taskSize: {}, cost: {}", success,
+            refreshTasks.size(), cost);
+        if (cost > 1000L) {
+            log.info("Refresh task keepalive info is slow, taskSize: {}, cost: {}", refreshTasks.size(), cost);
+        }
+    }
+
+    /**
+     * 批量写入任务keepalive信息
+     *
+     * @param keepaliveInfos 任务keepalive信息
+     * @param timestamp      keepalive时间
+     * @return 是否写入成功
+     */
+    private boolean updateTaskKeepaliveInfo(List<KeepaliveInfo> keepaliveInfos, long timestamp) {
+        if (keepaliveInfos.isEmpty()) {
+            return true;
+        }
+        List<String> taskIds = new ArrayList<>(keepaliveInfos.size());
+        keepaliveInfos.forEach(keepaliveInfo -> taskIds.add(keepaliveInfo.getTaskId()));
+        Map<String, List<String>> shardTaskIds = groupByShard(taskIds);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                shardTaskIds.forEach((key, keyTaskIds) -> {
+                    for (int from = 0; from < keyTaskIds.size(); from += batchSize) {
+                        List<String> batchTaskIds = keyTaskIds.subList(from,
+                            Math.min(from + batchSize, keyTaskIds.size()));
+                        Set<StringTuple> tuples = new HashSet<>(batchTaskIds.size() * 2);
+                        batchTaskIds.forEach(taskId -> tuples.add(new DefaultStringTuple(
+                            taskId.getBytes(StandardCharsets.UTF_8), taskId, (double) timestamp)));
+                        stringRedisConnection.zAdd(key, tuples);
+                    }
+                });
+                return null;
+            });
+        } catch (Throwable e) {
+            log.error("Update task keepalive info error, taskSize: {}", keepaliveInfos.size(), e);
+            return false;
+        }
+        keepaliveInfos.forEach(keepaliveInfo -> keepaliveInfo.setTimestamp(timestamp));
+        // 写入期间已经停止的任务，需要从Redis中移除，防止被误判为故障任务
+        List<String> stoppedTaskIds = new ArrayList<>();
+        keepaliveInfos.forEach(keepaliveInfo -> {
+            if (!runningTasks.containsKey(keepaliveInfo.getTaskId())) {
+                stoppedTaskIds.add(keepaliveInfo.getTaskId());
             }
-        } else {
-            log.info("Running tasks is empty. Skip refresh keepaliveInfo");
+        });
+        if (!stoppedTaskIds.isEmpty()) {
+            removeTaskKeepaliveInfoFromRedis(stoppedTaskIds);
+        }
+        return true;
+    }
+
+    private Map<String, List<String>> groupByShard(Collection<String> taskIds) {
+        Map<String, List<String>> shardTaskIds = new HashMap<>();
+        for (String taskId : taskIds) {
+            shardTaskIds.computeIfAbsent(buildShardKey(Math.floorMod(taskId.hashCode(), shards)),
+                key -> new ArrayList<>()).add(taskId);
         }
+        return shardTaskIds;
+    }
+
+    private String buildShardKey(int shard) {
+        return RUNNING_TASK_ZSET_KEY_PREFIX + shard;
     }
 
     @Getter
@@ -164,6 +268,6 @@ public class ResultHandleTaskKeepaliveManager {
     @AllArgsConstructor
     private static class KeepaliveInfo {
         private String taskId;
-        private long timestamp;
+        private volatile long timestamp;
     }
 }
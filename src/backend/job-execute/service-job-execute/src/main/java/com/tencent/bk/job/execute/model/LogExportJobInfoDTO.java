@@ -42,6 +42,16 @@ public class LogExportJobInfoDTO {
 
     private Long fileSize;
 
+    /**
+     * 需要导出日志的主机数量
+     */
+    private Integer totalHosts;
+
+    /**
+     * 已导出日志的主机数量
+     */
+    private Integer finishedHosts;
+
     public static LogExportJobInfoVO toVO(LogExportJobInfoDTO exportJobInfo) {
         if (exportJobInfo == null) {
             return null;
@@ -49,6 +59,8 @@ public class LogExportJobInfoDTO {
         LogExportJobInfoVO exportJobInfoVO = new LogExportJobInfoVO();
         exportJobInfoVO.setStatus(exportJobInfo.getStatus().getStatus());
         exportJobInfoVO.setFileSize(exportJobInfo.getFileSize());
+        exportJobInfoVO.setTotalHosts(exportJobInfo.getTotalHosts());
+        exportJobInfoVO.setFinishedHosts(exportJobInfo.getFinishedHosts());
         return exportJobInfoVO;
     }
 }
@@ -30,6 +30,7 @@ import com.tencent.bk.job.execute.common.constants.TaskTypeEnum;
 import lombok.Data;
 import org.apache.commons.collections4.CollectionUtils;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -38,7 +39,7 @@ import java.util.stream.Collectors;
  * 作业实例查询条件
  */
 @Data
-public class TaskInstanceQuery {
+public class TaskInstanceQuery implements Cloneable {
     private Long appId;
     private String operator;
     private String taskName;
@@ -60,4 +61,24 @@ public class TaskInstanceQuery {
             return Collections.emptyList();
         }
     }
+
+    public TaskInstanceQuery clone() {
+        TaskInstanceQuery cloneQuery = new TaskInstanceQuery();
+        cloneQuery.setAppId(appId);
+        cloneQuery.setOperator(operator);
+        cloneQuery.setTaskName(taskName);
+        cloneQuery.setTaskInstanceId(taskInstanceId);
+        cloneQuery.setCronTaskId(cronTaskId);
+        cloneQuery.setStatus(status);
+        if (startupModes != null) {
+            cloneQuery.setStartupModes(new ArrayList<>(startupModes));
+        }
+        cloneQuery.setTaskType(taskType);
+        cloneQuery.setStartTime(startTime);
+        cloneQuery.setEndTime(endTime);
+        cloneQuery.setMinTotalTimeMills(minTotalTimeMills);
+        cloneQuery.setMaxTotalTimeMills(maxTotalTimeMills);
+        cloneQuery.setIp(ip);
+        return cloneQuery;
+    }
 }
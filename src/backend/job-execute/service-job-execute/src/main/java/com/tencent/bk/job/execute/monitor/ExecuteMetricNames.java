@@ -64,6 +64,14 @@ public class ExecuteMetricNames {
      * GSE-API
      */
     public static final String GSE_API_PREFIX = "gse.api";
+    /**
+     * GSE-API 连接池
+     */
+    public static final String GSE_CLIENT_POOL_PREFIX = "gse.api.client.pool";
+    /**
+     * GSE-API 连接池-获取连接耗时
+     */
+    public static final String GSE_CLIENT_POOL_BORROW = "gse.api.client.pool.borrow";
     /**
      * 未被调度的任务数
      */
@@ -72,4 +80,64 @@ public class ExecuteMetricNames {
      * 等待被结果处理引擎处理的任务
      */
     public static final String RESULT_HANDLE_WAITING_SCHEDULE_TASKS = "job.result.handle.waiting.schedule.tasks";
+    /**
+     * 合并GSE脚本日志拉取请求节省的调用数
+     */
+    public static final String GSE_LOG_PULL_COALESCED_TOTAL = "job.result.handle.gse.log.pull.coalesced.total";
+    /**
+     * 合并后的GSE脚本日志拉取批次大小
+     */
+    public static final String GSE_LOG_PULL_COALESCE_BATCH_SIZE = "job.result.handle.gse.log.pull.batch.size";
+    /**
+     * 任务结果拉取次数
+     */
+    public static final String RESULT_HANDLE_TASK_PULLS_TOTAL = "job.result.handle.task.pulls.total";
+    /**
+     * 单个任务从开始到结束的结果拉取次数
+     */
+    public static final String RESULT_HANDLE_TASK_PULLS_PER_TASK = "job.result.handle.task.pulls.per.task";
+    /**
+     * 单个任务无进展的结果拉取次数占比
+     */
+    public static final String RESULT_HANDLE_TASK_WASTED_PULL_RATIO = "job.result.handle.task.wasted.pull.ratio";
+    /**
+     * 主机任务执行结果写入数
+     */
+    public static final String GSE_TASK_IP_LOG_WRITES_TOTAL = "job.gse.task.ip.log.writes.total";
+    /**
+     * 主机任务执行结果单次批量写入的数量
+     */
+    public static final String GSE_TASK_IP_LOG_FLUSH_SIZE = "job.gse.task.ip.log.flush.size";
+    /**
+     * 待写入的脚本日志数
+     */
+    public static final String SCRIPT_LOG_WRITE_QUEUE_SIZE = "job.script.log.write.queue.size";
+    /**
+     * 脚本日志批量写入耗时
+     */
+    public static final String SCRIPT_LOG_WRITE_FLUSH = "job.script.log.write.flush";
+    /**
+     * 脚本日志单次批量写入的数量
+     */
+    public static final String SCRIPT_LOG_WRITE_FLUSH_SIZE = "job.script.log.write.flush.size";
+    /**
+     * 容量已满并且同步写入失败而丢弃的脚本日志数
+     */
+    public static final String SCRIPT_LOG_WRITE_DROPPED_TOTAL = "job.script.log.write.dropped.total";
+    /**
+     * 主机近端缓存查询数，按 result=hit/miss 区分
+     */
+    public static final String HOST_NEAR_CACHE_REQUESTS_TOTAL = "job.host.near.cache.requests.total";
+    /**
+     * 主机近端缓存命中条目的存活时长(ms)，反映命中数据的最大陈旧程度
+     */
+    public static final String HOST_NEAR_CACHE_HIT_AGE = "job.host.near.cache.hit.age";
+    /**
+     * 主机近端缓存因主机变更通知失效的条目数
+     */
+    public static final String HOST_NEAR_CACHE_INVALIDATIONS_TOTAL = "job.host.near.cache.invalidations.total";
+    /**
+     * 主机变更从 job-manage 发布到本节点失效缓存的延迟
+     */
+    public static final String HOST_NEAR_CACHE_INVALIDATION_LAG = "job.host.near.cache.invalidation.lag";
 }
@@ -27,37 +27,68 @@ package com.tencent.bk.job.execute.schedule.tasks;
 import com.tencent.bk.job.common.constant.AppTypeEnum;
 import com.tencent.bk.job.common.model.ServiceResponse;
 import com.tencent.bk.job.common.model.dto.ApplicationInfoDTO;
+import com.tencent.bk.job.execute.cache.RedisHostCache;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
 import com.tencent.bk.job.execute.model.db.CacheHostDO;
 import com.tencent.bk.job.execute.service.ApplicationService;
 import com.tencent.bk.job.execute.service.HostService;
+import com.tencent.bk.job.manage.model.inner.ServiceAppHostChangesDTO;
 import com.tencent.bk.job.manage.model.inner.ServiceHostInfoDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StopWatch;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
+/**
+ * 从 job-manage 同步业务主机并刷新 Redis 主机缓存
+ * <p>
+ * 每个业务记录上次同步的变更水位，只拉取水位之后变更的主机；同时记录缓存中业务主机集合的摘要(各 云区域ID:IP 的
+ * CRC32 之和)，增量同步时根据新加入集合的主机更新摘要，与 job-manage 返回的摘要不一致时（存在已删除或更换IP的主机），
+ * 以及到达全量同步周期时，全量同步该业务并清理残留的主机。job-manage 未返回摘要时退化为比较主机数量。
+ * 主机变更通知删除了业务的主机缓存时，业务被标记为待全量同步，避免删除晚于增量同步写入导致主机缓存长期缺失。
+ */
 @Slf4j
 @Service
 public class SyncAppHostAndRefreshCacheTask {
+    /**
+     * 业务主机同步状态，hash field 为业务ID，value 为 变更水位:下次全量同步时间:业务主机集合摘要
+     */
+    private static final String SYNC_STATE_KEY = "job:execute:host:sync:state";
+
     private final HostService hostService;
     private final ApplicationService applicationService;
-    private final RedisTemplate redisTemplate;
+    private final RedisHostCache redisHostCache;
+    private final StringRedisTemplate redisTemplate;
+    private final JobExecuteConfig jobExecuteConfig;
 
     @Autowired
     public SyncAppHostAndRefreshCacheTask(HostService hostService,
                                           ApplicationService applicationService,
-                                          @Qualifier("jsonRedisTemplate") RedisTemplate redisTemplate) {
+                                          RedisHostCache redisHostCache,
+                                          StringRedisTemplate redisTemplate,
+                                          JobExecuteConfig jobExecuteConfig) {
         this.hostService = hostService;
         this.applicationService = applicationService;
+        this.redisHostCache = redisHostCache;
         this.redisTemplate = redisTemplate;
+        this.jobExecuteConfig = jobExecuteConfig;
     }
 
     public void execute() {
@@ -78,58 +109,123 @@ public class SyncAppHostAndRefreshCacheTask {
             List<ApplicationInfoDTO> normalApps =
                 allApps.stream().filter(app -> app.getAppType() == AppTypeEnum.NORMAL).collect(Collectors.toList());
 
+            Map<Object, Object> syncStates = redisTemplate.opsForHash().entries(SYNC_STATE_KEY);
+            Set<Long> markedFullSyncAppIds = redisHostCache.listMarkedFullSyncApps();
+            long syncHostNum = 0;
             for (ApplicationInfoDTO app : normalApps) {
                 try {
-                    Set<CacheHostDO> appHosts = getAppHosts(watch, app);
-                    refreshCache(watch, app.getId().toString(), appHosts);
+                    AppHostSyncState syncState =
+                        AppHostSyncState.parse((String) syncStates.get(app.getId().toString()));
+                    syncHostNum += syncAppHosts(watch, app.getId(), syncState,
+                        markedFullSyncAppIds.contains(app.getId()));
                 } catch (Throwable e) {
                     log.error("Refresh host cache fail", e);
                 }
             }
-            log.info("Sync and refresh all app hosts successfully!");
+            log.info("Sync and refresh all app hosts successfully! appNum:{}, syncHostNum:{}", normalApps.size(),
+                syncHostNum);
         } catch (Throwable e) {
             log.error("Sync host from job-manage fail", e);
         } finally {
+            if (watch.isRunning()) {
+                watch.stop();
+            }
             log.info("SyncAppHostAndRefreshCacheTask Statistic:{}", watch.prettyPrint());
         }
     }
 
-    private Set<CacheHostDO> getAppHosts(StopWatch watch, ApplicationInfoDTO app) {
+    /**
+     * 同步业务主机
+     *
+     * @param watch     耗时统计
+     * @param appId     业务ID
+     * @param syncState 业务上次的同步状态，为 null 时全量同步
+     * @param marked    业务是否被标记为待全量同步
+     * @return 写入缓存的主机数量
+     */
+    private int syncAppHosts(StopWatch watch, long appId, AppHostSyncState syncState, boolean marked) {
+        // 标记在拉取主机前取出，之后删除的主机缓存由下一轮全量同步重新写入；本轮同步未完成时放回标记
+        boolean markedFullSync = marked && redisHostCache.takeAppFullSyncMark(appId);
+        Integer syncHostNum = null;
         try {
-            Set<CacheHostDO> appHosts = new HashSet<>();
-            watch.start("sync-app-hosts-" + app.getId());
-            Long appId = app.getId();
-            ServiceResponse<List<ServiceHostInfoDTO>> syncHostResp = hostService.listSyncHosts(appId);
-            log.info("Sync app hosts, appId:{}", appId);
-
-            if (!syncHostResp.isSuccess()) {
-                String errorMsg = "Sync app host fail, appId:" + appId;
-                log.warn(errorMsg);
-                return appHosts;
+            syncHostNum = doSyncAppHosts(watch, appId, markedFullSync ? null : syncState);
+            return syncHostNum == null ? 0 : syncHostNum;
+        } finally {
+            if (markedFullSync && syncHostNum == null) {
+                redisHostCache.markAppsFullSync(Collections.singletonList(appId));
             }
-            List<ServiceHostInfoDTO> hosts = syncHostResp.getData();
-            if (hosts.isEmpty()) {
-                log.info("Get hosts by appId, appId:{}, host size is 0", appId);
-                return appHosts;
+        }
+    }
+
+    /**
+     * @return 写入缓存的主机数量，从 job-manage 获取主机失败时返回 null
+     */
+    private Integer doSyncAppHosts(StopWatch watch, long appId, AppHostSyncState syncState) {
+        long now = System.currentTimeMillis();
+        boolean fullSync = !jobExecuteConfig.isHostCacheIncrementalSyncEnabled() || syncState == null
+            || now >= syncState.getNextFullSyncTime();
+        ServiceAppHostChangesDTO hostChanges = getAppHostChanges(watch, appId,
+            fullSync ? null : syncState.getWatermark());
+        if (hostChanges == null) {
+            return null;
+        }
+
+        List<CacheHostDO> hosts = new ArrayList<>();
+        if (hostChanges.getHosts() != null) {
+            hostChanges.getHosts().forEach(host -> hosts.add(convertToCacheHost(host)));
+        }
+        boolean hostsMismatch = false;
+        Long cacheHostKeyDigest = null;
+        try {
+            watch.start("refresh-host-cache-" + appId);
+            long expireSeconds = TimeUnit.HOURS.toSeconds(jobExecuteConfig.getHostCacheExpireHours());
+            List<String> addedCloudIps = redisHostCache.saveAppHosts(appId, hosts, expireSeconds);
+            if (fullSync) {
+                Set<String> cloudIps = new HashSet<>();
+                hosts.forEach(host -> cloudIps.add(RedisHostCache.buildCloudIp(host.getCloudAreaId(), host.getIp())));
+                redisHostCache.removeStaleAppHosts(appId, cloudIps);
+                cacheHostKeyDigest = computeHostKeyDigest(cloudIps);
+            } else if (hostChanges.getHostKeyDigest() != null && syncState.getHostKeyDigest() != null) {
+                cacheHostKeyDigest = syncState.getHostKeyDigest() + computeHostKeyDigest(addedCloudIps);
+                hostsMismatch = !cacheHostKeyDigest.equals(hostChanges.getHostKeyDigest());
+                if (hostsMismatch) {
+                    log.info("App host digest mismatch, appId:{}, hostKeyDigest:{}, cacheHostKeyDigest:{}, full sync",
+                        appId, hostChanges.getHostKeyDigest(), cacheHostKeyDigest);
+                }
+            } else if (hostChanges.getHostKeyNum() != null) {
+                long cacheHostNum = redisHostCache.countAppHosts(appId);
+                hostsMismatch = cacheHostNum != hostChanges.getHostKeyNum();
+                if (hostsMismatch) {
+                    log.info("App host num mismatch, appId:{}, hostNum:{}, cacheHostNum:{}, full sync",
+                        appId, hostChanges.getHostKeyNum(), cacheHostNum);
+                }
             }
-            log.info("Get hosts by appId, appId:{}, host size:{}", appId, hosts.size());
-            hosts.forEach(host -> appHosts.add(convertToCacheHost(host)));
-            return appHosts;
         } finally {
             if (watch.isRunning()) {
                 watch.stop();
             }
         }
-    }
+        if (hostsMismatch) {
+            Integer fullSyncHostNum = doSyncAppHosts(watch, appId, null);
+            return fullSyncHostNum == null ? null : hosts.size() + fullSyncHostNum;
+        }
 
+        long nextFullSyncTime = fullSync ? computeNextFullSyncTime(now) : syncState.getNextFullSyncTime();
+        redisTemplate.opsForHash().put(SYNC_STATE_KEY, String.valueOf(appId),
+            new AppHostSyncState(hostChanges.getWatermark(), nextFullSyncTime, cacheHostKeyDigest).toString());
+        log.info("Sync app hosts, appId:{}, fullSync:{}, hostNum:{}", appId, fullSync, hosts.size());
+        return hosts.size();
+    }
 
-    private void refreshCache(StopWatch watch, String appId, Set<CacheHostDO> appHosts) {
+    private ServiceAppHostChangesDTO getAppHostChanges(StopWatch watch, long appId, Long updatedAfter) {
         try {
-            watch.start("refresh-host-cache-" + appId);
-            for (CacheHostDO host : appHosts) {
-                String hostKey = "job:execute:host:" + getHostKey(host);
-                redisTemplate.opsForValue().set(hostKey, host, 30, TimeUnit.MINUTES);
+            watch.start("sync-app-hosts-" + appId);
+            ServiceResponse<ServiceAppHostChangesDTO> resp = hostService.listAppHostChanges(appId, updatedAfter);
+            if (!resp.isSuccess() || resp.getData() == null) {
+                log.warn("Sync app host fail, appId:{}", appId);
+                return null;
             }
+            return resp.getData();
         } finally {
             if (watch.isRunning()) {
                 watch.stop();
@@ -137,6 +233,28 @@ public class SyncAppHostAndRefreshCacheTask {
         }
     }
 
+    /**
+     * 计算下次全量同步时间，在全量同步周期内随机提前，避免所有业务在同一轮集中全量同步
+     */
+    private long computeNextFullSyncTime(long now) {
+        long intervalMills = TimeUnit.HOURS.toMillis(jobExecuteConfig.getHostCacheFullSyncIntervalHours());
+        return now + intervalMills - ThreadLocalRandom.current().nextLong(intervalMills / 4 + 1);
+    }
+
+    /**
+     * 计算主机集合摘要，与 job-manage 中 SUM(CRC32(CONCAT(cloud_area_id, ':', ip))) 的计算方式一致
+     */
+    static long computeHostKeyDigest(Collection<String> cloudIps) {
+        long digest = 0;
+        CRC32 crc32 = new CRC32();
+        for (String cloudIp : cloudIps) {
+            crc32.reset();
+            crc32.update(cloudIp.getBytes(StandardCharsets.UTF_8));
+            digest += crc32.getValue();
+        }
+        return digest;
+    }
+
     private CacheHostDO convertToCacheHost(ServiceHostInfoDTO host) {
         CacheHostDO cacheHost = new CacheHostDO();
         cacheHost.setAppId(host.getAppId());
@@ -146,7 +264,40 @@ public class SyncAppHostAndRefreshCacheTask {
         return cacheHost;
     }
 
-    private String getHostKey(CacheHostDO host) {
-        return host.getCloudAreaId() + ":" + host.getIp();
+    @Getter
+    @AllArgsConstructor
+    private static class AppHostSyncState {
+        /**
+         * 变更水位，业务下无主机时为 null
+         */
+        private final Long watermark;
+        private final long nextFullSyncTime;
+        /**
+         * 缓存中业务主机集合的摘要，未知时为 null
+         */
+        private final Long hostKeyDigest;
+
+        static AppHostSyncState parse(String value) {
+            if (StringUtils.isBlank(value)) {
+                return null;
+            }
+            String[] parts = value.split(":", -1);
+            if (parts.length != 2 && parts.length != 3) {
+                return null;
+            }
+            try {
+                Long watermark = StringUtils.isEmpty(parts[0]) ? null : Long.valueOf(parts[0]);
+                Long hostKeyDigest = parts.length < 3 || StringUtils.isEmpty(parts[2]) ? null : Long.valueOf(parts[2]);
+                return new AppHostSyncState(watermark, Long.parseLong(parts[1]), hostKeyDigest);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (watermark == null ? "" : watermark.toString()) + ":" + nextFullSyncTime + ":"
+                + (hostKeyDigest == null ? "" : hostKeyDigest.toString());
+        }
     }
 }
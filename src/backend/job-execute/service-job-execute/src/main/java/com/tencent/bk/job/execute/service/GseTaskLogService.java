@@ -57,6 +57,13 @@ public interface GseTaskLogService {
 
     void batchSaveIpLog(List<GseTaskIpLogDTO> ipLogList);
 
+    /**
+     * 使用多行 INSERT ... ON DUPLICATE KEY UPDATE 语句批量保存主机任务执行结果
+     *
+     * @param ipLogList 主机任务执行结果
+     */
+    void batchUpsertIpLog(List<GseTaskIpLogDTO> ipLogList);
+
     void batchUpdateIpLog(long stepInstanceId, int executeCount, Collection<String> cloudAreaIdAndIps, Long startTime
         , Long endTime, IpStatus status);
 
@@ -27,7 +27,7 @@ package com.tencent.bk.job.execute.service;
 import com.tencent.bk.job.common.model.ServiceResponse;
 import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
 import com.tencent.bk.job.common.model.dto.IpDTO;
-import com.tencent.bk.job.manage.model.inner.ServiceHostInfoDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceAppHostChangesDTO;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.Collection;
@@ -39,11 +39,13 @@ import java.util.Map;
  */
 public interface HostService {
     /**
-     * 获取从cmdb同步的主机列表。注意，使用该方法时，需要先判断ServiceResponse的状态！只有成功响应，里边的数据才是有效的；避免同步时候误删除
+     * 获取从cmdb同步的业务主机变更。注意，使用该方法时，需要先判断ServiceResponse的状态！只有成功响应，里边的数据才是有效的；避免同步时候误删除
      *
+     * @param appId        业务ID
+     * @param updatedAfter 上次获取到的变更水位，为 null 时获取业务下的全部主机
      * @return 服务端响应
      */
-    ServiceResponse<List<ServiceHostInfoDTO>> listSyncHosts(long appId);
+    ServiceResponse<ServiceAppHostChangesDTO> listAppHostChanges(long appId, Long updatedAfter);
 
     /**
      * 获取主机的业务ID
@@ -26,6 +26,8 @@ package com.tencent.bk.job.execute.service;
 
 import com.tencent.bk.job.common.cc.model.CcInstanceDTO;
 import com.tencent.bk.job.common.model.dto.IpDTO;
+import com.tencent.bk.job.execute.model.ServersDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceResolvedHostsDTO;
 
 import java.util.List;
 
@@ -59,4 +61,13 @@ public interface ServerService {
      * @return 云区域名称
      */
     String getCloudAreaName(long appId, long cloudAreaId);
+
+    /**
+     * 通过 job-manage 一次性解析执行目标中的静态IP、拓扑节点与动态分组
+     *
+     * @param appId   业务ID
+     * @param servers 执行目标
+     * @return 解析结果；调用失败时返回 null
+     */
+    ServiceResolvedHostsDTO batchResolveHosts(long appId, ServersDTO servers);
 }
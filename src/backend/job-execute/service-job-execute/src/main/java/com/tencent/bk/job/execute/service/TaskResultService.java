@@ -48,6 +48,20 @@ public interface TaskResultService {
     PageData<TaskInstanceDTO> listPageTaskInstance(TaskInstanceQuery taskQuery,
                                                    BaseSearchCondition baseSearchCondition);
 
+    /**
+     * 按游标分页获取作业实例，游标为上一页最后一条作业实例的创建时间与ID；避免深分页时扫描并丢弃 offset 行
+     *
+     * @param taskQuery        任务实例查询条件
+     * @param cursorCreateTime 游标-上一页最后一条作业实例的创建时间，为空表示查询第一页
+     * @param cursorId         游标-上一页最后一条作业实例的ID，为空表示查询第一页
+     * @param length           查询数量
+     * @return 作业实例列表，总数不超过计数上限
+     */
+    PageData<TaskInstanceDTO> listPageTaskInstanceByCursor(TaskInstanceQuery taskQuery,
+                                                           Long cursorCreateTime,
+                                                           Long cursorId,
+                                                           Integer length);
+
     /**
      * 获取作业执行结果
      *
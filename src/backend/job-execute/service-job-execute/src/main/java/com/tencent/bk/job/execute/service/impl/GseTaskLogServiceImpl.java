@@ -120,6 +120,14 @@ public class GseTaskLogServiceImpl implements GseTaskLogService {
         }
     }
 
+    @Override
+    public void batchUpsertIpLog(List<GseTaskIpLogDTO> ipLogList) {
+        if (ipLogList.isEmpty()) {
+            return;
+        }
+        BatchUtil.buildBatchList(ipLogList, 500).forEach(gseTaskIpLogDao::batchUpsertIpLog);
+    }
+
     @Override
     public void batchUpdateIpLog(long stepInstanceId, int executeCount, Collection<String> cloudAreaIdAndIps,
                                  Long startTime, Long endTime, IpStatus status) {
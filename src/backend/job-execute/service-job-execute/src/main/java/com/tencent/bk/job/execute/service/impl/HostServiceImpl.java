@@ -34,11 +34,13 @@ import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
 import com.tencent.bk.job.common.model.dto.IpDTO;
 import com.tencent.bk.job.common.util.BatchUtil;
 import com.tencent.bk.job.common.util.json.JsonUtils;
+import com.tencent.bk.job.execute.cache.HostNearCache;
+import com.tencent.bk.job.execute.cache.RedisHostCache;
 import com.tencent.bk.job.execute.client.SyncResourceClient;
 import com.tencent.bk.job.execute.client.WhiteIpResourceClient;
 import com.tencent.bk.job.execute.model.db.CacheHostDO;
 import com.tencent.bk.job.execute.service.HostService;
-import com.tencent.bk.job.manage.model.inner.ServiceHostInfoDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceAppHostChangesDTO;
 import com.tencent.bk.job.manage.model.inner.ServiceWhiteIPInfo;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
@@ -46,9 +48,7 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.DependsOn;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StopWatch;
@@ -63,75 +63,104 @@ import java.util.stream.Collectors;
 @Slf4j
 public class HostServiceImpl implements HostService {
     private final SyncResourceClient syncResourceClient;
-    private final RedisTemplate redisTemplate;
+    private final RedisHostCache redisHostCache;
     private final EsbCcClient ccClient;
     private final WhiteIpResourceClient whiteIpResourceClient;
+    private final HostNearCache hostNearCache;
     private Map<IpDTO, ServiceWhiteIPInfo> whiteIpConfig = new ConcurrentHashMap<>();
     private volatile boolean isWhiteIpConfigLoaded = false;
 
     @Autowired
     public HostServiceImpl(SyncResourceClient syncResourceClient,
-                           @Qualifier("jsonRedisTemplate") RedisTemplate redisTemplate,
+                           RedisHostCache redisHostCache,
                            EsbConfig esbConfig,
                            CcConfig ccConfig,
                            WhiteIpResourceClient whiteIpResourceClient,
                            QueryAgentStatusClient queryAgentStatusClient,
-                           MeterRegistry meterRegistry) {
+                           MeterRegistry meterRegistry,
+                           HostNearCache hostNearCache) {
         this.syncResourceClient = syncResourceClient;
-        this.redisTemplate = redisTemplate;
+        this.redisHostCache = redisHostCache;
         ccClient = new EsbCcClient(
             esbConfig,
             ccConfig,
             queryAgentStatusClient,
             meterRegistry);
         this.whiteIpResourceClient = whiteIpResourceClient;
+        this.hostNearCache = hostNearCache;
     }
 
     @Override
-    public ServiceResponse<List<ServiceHostInfoDTO>> listSyncHosts(long appId) {
+    public ServiceResponse<ServiceAppHostChangesDTO> listAppHostChanges(long appId, Long updatedAfter) {
         StopWatch watch = new StopWatch("sync-app-hosts-" + appId);
         watch.start();
         try {
-            return syncResourceClient.getHostByAppId(appId);
+            return syncResourceClient.listAppHostChanges(appId, updatedAfter);
         } catch (Exception e) {
-            log.warn("Fail to get hosts from job-manage", e);
+            log.warn("Fail to get host changes from job-manage", e);
             return ServiceResponse.buildCommonFailResp(ErrorCode.SERVICE_INTERNAL_ERROR);
         } finally {
             watch.stop();
-            log.info("Get sync app hosts, appId:{}, cost:{}", appId, watch.getTotalTimeMillis());
+            log.info("Get app host changes, appId:{}, updatedAfter:{}, cost:{}", appId, updatedAfter,
+                watch.getTotalTimeMillis());
         }
     }
 
     @Override
     public Long getCacheHostAppId(long cloudAreaId, String ip) {
-        String fullIp = cloudAreaId + ":" + ip;
-        String hostKey = "job:execute:host:" + fullIp;
-        try {
-            Object cacheHost = redisTemplate.opsForValue().get(hostKey);
-            return cacheHost == null ? null : ((CacheHostDO) cacheHost).getAppId();
-        } catch (Exception e) {
-            log.warn("Get host in cache exception", e);
-            return null;
-        }
+        CacheHostDO cacheHost = getCacheHost(cloudAreaId, ip);
+        return cacheHost == null ? null : cacheHost.getAppId();
     }
 
+    /**
+     * 批量获取缓存的主机，优先从近端缓存获取，未命中的主机再批量从 Redis 获取
+     *
+     * @param hosts 主机列表
+     * @return 与 hosts 一一对应的缓存主机，未缓存的主机为 null
+     */
     private List<CacheHostDO> batchGetCacheHost(List<IpDTO> hosts) {
-        List<String> hostKeys = hosts.stream().map(host -> "job:execute:host:" + host.convertToStrIp())
-            .collect(Collectors.toList());
+        List<CacheHostDO> cacheHosts = new ArrayList<>(hosts.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<IpDTO> missHosts = new ArrayList<>();
+        List<Long> loadVersions = new ArrayList<>();
+        for (int i = 0; i < hosts.size(); i++) {
+            IpDTO host = hosts.get(i);
+            CacheHostDO cacheHost = hostNearCache.get(host.getCloudAreaId(), host.getIp());
+            cacheHosts.add(cacheHost);
+            if (cacheHost == null) {
+                missIndexes.add(i);
+                missHosts.add(host);
+                loadVersions.add(hostNearCache.currentVersion(host.getCloudAreaId(), host.getIp()));
+            }
+        }
+        if (missHosts.isEmpty()) {
+            return cacheHosts;
+        }
         try {
-            return (List<CacheHostDO>) redisTemplate.opsForValue().multiGet(hostKeys);
+            List<CacheHostDO> redisHosts = redisHostCache.batchGetHosts(missHosts);
+            for (int i = 0; i < missIndexes.size(); i++) {
+                CacheHostDO cacheHost = redisHosts.get(i);
+                if (cacheHost != null) {
+                    cacheHosts.set(missIndexes.get(i), cacheHost);
+                    hostNearCache.put(cacheHost, loadVersions.get(i));
+                }
+            }
         } catch (Exception e) {
             log.warn("Batch get host in cache exception", e);
-            return Collections.emptyList();
         }
+        return cacheHosts;
     }
 
     private CacheHostDO getCacheHost(long cloudAreaId, String ip) {
-        String fullIp = cloudAreaId + ":" + ip;
-        String hostKey = "job:execute:host:" + fullIp;
+        CacheHostDO cacheHost = hostNearCache.get(cloudAreaId, ip);
+        if (cacheHost != null) {
+            return cacheHost;
+        }
+        long loadVersion = hostNearCache.currentVersion(cloudAreaId, ip);
         try {
-            Object cacheHost = redisTemplate.opsForValue().get(hostKey);
-            return cacheHost == null ? null : (CacheHostDO) cacheHost;
+            cacheHost = redisHostCache.getHost(cloudAreaId, ip);
+            hostNearCache.put(cacheHost, loadVersion);
+            return cacheHost;
         } catch (Exception e) {
             log.warn("Get host in cache exception", e);
             return null;
@@ -230,14 +259,20 @@ public class HostServiceImpl implements HostService {
     }
 
     private void addNewHostsToCache(List<ApplicationHostInfoDTO> newHosts) {
+        List<CacheHostDO> cacheHosts = new ArrayList<>(newHosts.size());
+        List<Long> loadVersions = new ArrayList<>(newHosts.size());
         for (ApplicationHostInfoDTO host : newHosts) {
+            loadVersions.add(hostNearCache.currentVersion(host.getCloudAreaId(), host.getIp()));
             CacheHostDO cacheHost = new CacheHostDO();
             cacheHost.setIp(host.getIp());
             cacheHost.setHostId(host.getHostId());
             cacheHost.setCloudAreaId(host.getCloudAreaId());
             cacheHost.setAppId(host.getAppId());
-            String hostKey = buildHostKey(host.getCloudAreaId(), host.getIp());
-            redisTemplate.opsForValue().set(hostKey, cacheHost, 10, TimeUnit.MINUTES);
+            cacheHosts.add(cacheHost);
+        }
+        redisHostCache.addHosts(cacheHosts, TimeUnit.MINUTES.toSeconds(10));
+        for (int i = 0; i < cacheHosts.size(); i++) {
+            hostNearCache.put(cacheHosts.get(i), loadVersions.get(i));
         }
     }
 
@@ -259,10 +294,6 @@ public class HostServiceImpl implements HostService {
         }
     }
 
-    private String buildHostKey(Long cloudAreaId, String ip) {
-        return "job:execute:host:" + cloudAreaId + ":" + ip;
-    }
-
     @Scheduled(cron = "0 0/1 * * * ?")
     public void syncWhiteIpConfig() {
         log.info("Sync white ip config!");
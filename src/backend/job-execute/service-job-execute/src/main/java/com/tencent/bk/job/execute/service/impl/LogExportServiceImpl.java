@@ -30,9 +30,9 @@ import com.tencent.bk.job.common.model.dto.IpDTO;
 import com.tencent.bk.job.common.redis.util.LockUtils;
 import com.tencent.bk.job.common.util.BatchUtil;
 import com.tencent.bk.job.common.util.date.DateUtils;
-import com.tencent.bk.job.common.util.file.ZipUtil;
 import com.tencent.bk.job.common.util.json.JsonUtils;
 import com.tencent.bk.job.execute.common.trace.executors.TraceableExecutorService;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
 import com.tencent.bk.job.execute.constants.LogExportStatusEnum;
 import com.tencent.bk.job.execute.model.GseTaskIpLogDTO;
 import com.tencent.bk.job.execute.model.LogExportJobInfoDTO;
@@ -51,15 +51,28 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StopWatch;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * @since 19/1/2021 12:01
@@ -68,23 +81,40 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class LogExportServiceImpl implements LogExportService {
     private static final String EXPORT_KEY_PREFIX = "execute:log:export:";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    /**
+     * 导出进度保存到 Redis 的最小间隔
+     */
+    private static final long PROGRESS_SAVE_INTERVAL_MILLS = 1000L;
     private final GseTaskLogService gseTaskLogService;
     private final LogService logService;
     private final TraceableExecutorService logExportExecutor;
     private final StringRedisTemplate redisTemplate;
     private final TaskInstanceService taskInstanceService;
+    private final JobExecuteConfig jobExecuteConfig;
+    /**
+     * 从 job-logsvr 预取日志的线程池
+     */
+    private final TraceableExecutorService logFetchExecutor;
 
     @Autowired
     public LogExportServiceImpl(GseTaskLogService gseTaskLogService, LogService logService, Tracing tracing,
                                 StringRedisTemplate redisTemplate,
-                                TaskInstanceService taskInstanceService) {
+                                TaskInstanceService taskInstanceService,
+                                JobExecuteConfig jobExecuteConfig) {
         this.gseTaskLogService = gseTaskLogService;
         this.logService = logService;
         this.redisTemplate = redisTemplate;
         this.taskInstanceService = taskInstanceService;
+        this.jobExecuteConfig = jobExecuteConfig;
         ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("log-export-thread-%d").build();
         this.logExportExecutor = new TraceableExecutorService(new ThreadPoolExecutor(10,
             100, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory), tracing);
+        ThreadFactory fetchThreadFactory = new ThreadFactoryBuilder().setNameFormat("log-export-fetch-thread-%d")
+            .build();
+        this.logFetchExecutor = new TraceableExecutorService(new ThreadPoolExecutor(20,
+            20, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), fetchThreadFactory), tracing);
     }
 
     @Override
@@ -163,7 +193,8 @@ public class LogExportServiceImpl implements LogExportService {
     private void doPackage(LogExportJobInfoDTO exportJobInfo, Long stepInstanceId, String ip, int executeCount,
                            String logFileDir, String logFileName) {
         boolean isGetByIp = StringUtils.isNotBlank(ip);
-        File logFile = new File(logFileDir + logFileName);
+        String zipFileName = logFileName + ".zip";
+        File zipFile = new File(logFileDir + zipFileName);
 
         StopWatch watch = new StopWatch("exportJobLog");
         watch.start("listJobIps");
@@ -186,66 +217,120 @@ public class LogExportServiceImpl implements LogExportService {
 
         Collection<LogBatchQuery> querys = buildLogBatchQuery(stepInstanceId, gseTaskIpLogs);
 
-        watch.start("getLogContent");
+        watch.start("exportLogContent");
         StepInstanceBaseDTO stepInstance = taskInstanceService.getBaseStepInstance(stepInstanceId);
         String jobCreateDate = DateUtils.formatUnixTimestamp(stepInstance.getCreateTime(), ChronoUnit.MILLIS,
             "yyyy_MM_dd", ZoneId.of("UTC"));
-        try (PrintWriter out = new PrintWriter(logFile, "UTF-8")) {
-            for (LogBatchQuery query : querys) {
-                for (List<IpDTO> ips : query.getIpBatches()) {
-                    List<ScriptIpLogContent> scriptIpLogContentList =
-                        logService.batchGetScriptIpLogContent(jobCreateDate, stepInstanceId, query.getExecuteCount(),
-                            ips);
-                    for (ScriptIpLogContent scriptIpLogContent : scriptIpLogContentList) {
-                        if (scriptIpLogContent != null && StringUtils.isNotEmpty(scriptIpLogContent.getContent())) {
-                            String[] logList = scriptIpLogContent.getContent().split("\n");
-                            for (String log : logList) {
-                                if (isGetByIp) {
-                                    out.println(log);
-                                } else {
-                                    out.println(scriptIpLogContent.getIp() + " | " + log);
-                                }
-                            }
-                        }
-
-                    }
-                }
-            }
-            out.flush();
-        } catch (Exception e) {
-            log.warn("Export execution log fail", e);
-            FileUtils.deleteQuietly(logFile);
+        exportJobInfo.setTotalHosts(gseTaskIpLogs.size());
+        exportJobInfo.setFinishedHosts(0);
+        saveExportInfo(exportJobInfo);
+        try {
+            exportLogContent(exportJobInfo, zipFile, logFileName, jobCreateDate, stepInstanceId, querys, isGetByIp);
+        } catch (InterruptedException e) {
+            log.warn("Export execution log interrupted", e);
+            Thread.currentThread().interrupt();
+            FileUtils.deleteQuietly(zipFile);
             markJobFailed(exportJobInfo);
             return;
-        }
-        watch.stop();
-
-        watch.start("zipLogFile");
-        try {
-            File zipFile = ZipUtil.zip(logFile.getAbsolutePath());
-            if (zipFile == null) {
-                log.warn("Zip log file fail, fileName={}", logFile.getName());
-                markJobFailed(exportJobInfo);
-                return;
-            } else {
-                FileUtils.deleteQuietly(logFile);
-            }
-            exportJobInfo.setStatus(LogExportStatusEnum.SUCCESS);
-            exportJobInfo.setZipFileName(logFileName + ".zip");
-            exportJobInfo.setFileSize(zipFile.length());
-            saveExportInfo(exportJobInfo);
         } catch (Exception e) {
-            log.warn("Zip log file fail, fileName={}", logFile.getName());
+            log.warn("Export execution log fail", e);
+            FileUtils.deleteQuietly(zipFile);
             markJobFailed(exportJobInfo);
             return;
         }
         watch.stop();
 
+        exportJobInfo.setStatus(LogExportStatusEnum.SUCCESS);
+        exportJobInfo.setZipFileName(zipFileName);
+        exportJobInfo.setFileSize(zipFile.length());
+        saveExportInfo(exportJobInfo);
+
         if (watch.getTotalTimeMillis() > 10000L) {
             log.info("Export job execution log is slow, cost: {}", watch.prettyPrint());
         }
     }
 
+    /**
+     * 导出日志到 zip 文件。
+     * <p>
+     * 按批次从 job-logsvr 拉取日志，最多预先并行拉取 prefetchBatches 个批次，按批次顺序边压缩边写入文件
+     */
+    private void exportLogContent(LogExportJobInfoDTO exportJobInfo, File zipFile, String logFileName,
+                                  String jobCreateDate, long stepInstanceId, Collection<LogBatchQuery> querys,
+                                  boolean isGetByIp) throws IOException, InterruptedException, ExecutionException {
+        Iterator<LogBatchFetch> batchFetches = querys.stream()
+            .flatMap(query -> query.getIpBatches().stream()
+                .map(ips -> new LogBatchFetch(jobCreateDate, stepInstanceId, query.getExecuteCount(), ips)))
+            .iterator();
+        Deque<PrefetchedLogBatch> prefetchedBatches = new ArrayDeque<>();
+        int finishedHosts = 0;
+        long lastProgressSaveTime = System.currentTimeMillis();
+        try (ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(Channels.newOutputStream(
+            FileChannel.open(zipFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)), WRITE_BUFFER_SIZE), StandardCharsets.UTF_8);
+             Writer out = new BufferedWriter(new OutputStreamWriter(zipOut, StandardCharsets.UTF_8),
+                 WRITE_BUFFER_SIZE)) {
+            zipOut.putNextEntry(new ZipEntry(logFileName));
+            int prefetchBatches = Math.max(1, jobExecuteConfig.getLogExportPrefetchBatches());
+            while (batchFetches.hasNext() && prefetchedBatches.size() < prefetchBatches) {
+                prefetchedBatches.add(prefetch(batchFetches.next()));
+            }
+            while (!prefetchedBatches.isEmpty()) {
+                PrefetchedLogBatch batch = prefetchedBatches.poll();
+                List<ScriptIpLogContent> scriptIpLogContentList = batch.getFuture().get();
+                if (batchFetches.hasNext()) {
+                    prefetchedBatches.add(prefetch(batchFetches.next()));
+                }
+                for (ScriptIpLogContent scriptIpLogContent : scriptIpLogContentList) {
+                    writeLogContent(out, scriptIpLogContent, isGetByIp);
+                }
+
+                finishedHosts += batch.getHostCount();
+                if (System.currentTimeMillis() - lastProgressSaveTime >= PROGRESS_SAVE_INTERVAL_MILLS) {
+                    exportJobInfo.setFinishedHosts(finishedHosts);
+                    saveExportInfo(exportJobInfo);
+                    lastProgressSaveTime = System.currentTimeMillis();
+                }
+            }
+        } finally {
+            prefetchedBatches.forEach(batch -> batch.getFuture().cancel(true));
+        }
+        exportJobInfo.setFinishedHosts(finishedHosts);
+    }
+
+    private PrefetchedLogBatch prefetch(LogBatchFetch batchFetch) {
+        return new PrefetchedLogBatch(batchFetch.getIps().size(), logFetchExecutor.submit(batchFetch));
+    }
+
+    /**
+     * 按行写入主机日志，与按换行符切分日志的结果保持一致(忽略末尾的空行)，避免为每一行创建字符串
+     */
+    private void writeLogContent(Writer out, ScriptIpLogContent scriptIpLogContent,
+                                 boolean isGetByIp) throws IOException {
+        if (scriptIpLogContent == null || StringUtils.isEmpty(scriptIpLogContent.getContent())) {
+            return;
+        }
+        String content = scriptIpLogContent.getContent();
+        int end = content.length();
+        while (end > 0 && content.charAt(end - 1) == '\n') {
+            end--;
+        }
+        int lineStart = 0;
+        while (lineStart < end) {
+            int lineEnd = content.indexOf('\n', lineStart);
+            if (lineEnd < 0 || lineEnd > end) {
+                lineEnd = end;
+            }
+            if (!isGetByIp) {
+                out.write(scriptIpLogContent.getIp());
+                out.write(" | ");
+            }
+            out.write(content, lineStart, lineEnd - lineStart);
+            out.write(LINE_SEPARATOR);
+            lineStart = lineEnd + 1;
+        }
+    }
+
     private Collection<LogBatchQuery> buildLogBatchQuery(long stepInstanceId, List<GseTaskIpLogDTO> gseTaskIpLogs) {
         Map<Integer, LogBatchQuery> batchQueryGroups = new HashMap<>();
         gseTaskIpLogs.forEach(gseTaskIpLog -> {
@@ -253,13 +338,13 @@ public class LogExportServiceImpl implements LogExportService {
                 (executeCount) -> new LogBatchQuery(stepInstanceId, executeCount));
             query.addIp(new IpDTO(gseTaskIpLog.getCloudAreaId(), gseTaskIpLog.getIp()));
         });
-        batchQueryGroups.values().forEach(LogBatchQuery::batchIps);
+        int batchSize = jobExecuteConfig.getLogExportBatchSize();
+        batchQueryGroups.values().forEach(query -> query.batchIps(batchSize));
         return batchQueryGroups.values();
     }
 
     @Data
     private static class LogBatchQuery {
-        private static final int MAX_BATCH_IPS = 1000;
         private long stepInstanceId;
         private int executeCount;
         private List<IpDTO> ips = new ArrayList<>();
@@ -277,8 +362,27 @@ public class LogExportServiceImpl implements LogExportService {
             ips.add(ip);
         }
 
-        void batchIps() {
-            ipBatches = BatchUtil.buildBatchList(ips, MAX_BATCH_IPS);
+        void batchIps(int batchSize) {
+            ipBatches = BatchUtil.buildBatchList(ips, batchSize);
+        }
+    }
+
+    @Data
+    private class LogBatchFetch implements Callable<List<ScriptIpLogContent>> {
+        private final String jobCreateDate;
+        private final long stepInstanceId;
+        private final int executeCount;
+        private final List<IpDTO> ips;
+
+        @Override
+        public List<ScriptIpLogContent> call() {
+            return logService.batchGetScriptIpLogContent(jobCreateDate, stepInstanceId, executeCount, ips);
         }
     }
+
+    @Data
+    private static class PrefetchedLogBatch {
+        private final int hostCount;
+        private final Future<List<ScriptIpLogContent>> future;
+    }
 }
@@ -33,13 +33,22 @@ import com.tencent.bk.job.common.cc.model.CcGroupHostPropDTO;
 import com.tencent.bk.job.common.cc.model.CcInstanceDTO;
 import com.tencent.bk.job.common.cc.sdk.CcClient;
 import com.tencent.bk.job.common.cc.sdk.CcClientFactory;
+import com.tencent.bk.job.common.model.ServiceResponse;
 import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
 import com.tencent.bk.job.common.model.dto.ApplicationInfoDTO;
 import com.tencent.bk.job.common.model.dto.IpDTO;
 import com.tencent.bk.job.common.util.json.JsonUtils;
+import com.tencent.bk.job.execute.client.HostResourceClient;
 import com.tencent.bk.job.execute.common.exception.ObtainHostServiceException;
+import com.tencent.bk.job.execute.model.DynamicServerGroupDTO;
+import com.tencent.bk.job.execute.model.DynamicServerTopoNodeDTO;
+import com.tencent.bk.job.execute.model.ServersDTO;
 import com.tencent.bk.job.execute.service.ApplicationService;
 import com.tencent.bk.job.execute.service.ServerService;
+import com.tencent.bk.job.manage.model.inner.ServiceHostInfoDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceResolvedHostsDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceTaskNodeInfoDTO;
+import com.tencent.bk.job.manage.model.inner.request.ServiceResolveHostsReq;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.DependsOn;
@@ -54,6 +63,7 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class ServerServiceImpl implements ServerService {
     private final ApplicationService applicationService;
+    private final HostResourceClient hostResourceClient;
     private LoadingCache<Long, String> cloudAreaNameCache = CacheBuilder.newBuilder()
         .maximumSize(10000).expireAfterWrite(1, TimeUnit.HOURS).
             build(new CacheLoader<Long, String>() {
@@ -78,8 +88,9 @@ public class ServerServiceImpl implements ServerService {
             );
 
     @Autowired
-    public ServerServiceImpl(ApplicationService applicationService) {
+    public ServerServiceImpl(ApplicationService applicationService, HostResourceClient hostResourceClient) {
         this.applicationService = applicationService;
+        this.hostResourceClient = hostResourceClient;
     }
 
     @Override
@@ -141,4 +152,47 @@ public class ServerServiceImpl implements ServerService {
             return "Unknown";
         }
     }
+
+    @Override
+    public ServiceResolvedHostsDTO batchResolveHosts(long appId, ServersDTO servers) {
+        ServiceResolveHostsReq req = new ServiceResolveHostsReq();
+        if (servers.getStaticIpList() != null) {
+            List<ServiceHostInfoDTO> staticHosts = new ArrayList<>(servers.getStaticIpList().size());
+            for (IpDTO ip : servers.getStaticIpList()) {
+                ServiceHostInfoDTO host = new ServiceHostInfoDTO();
+                host.setCloudAreaId(ip.getCloudAreaId());
+                host.setIp(ip.getIp());
+                staticHosts.add(host);
+            }
+            req.setStaticHosts(staticHosts);
+        }
+        if (servers.getTopoNodes() != null) {
+            List<ServiceTaskNodeInfoDTO> topoNodes = new ArrayList<>(servers.getTopoNodes().size());
+            for (DynamicServerTopoNodeDTO topoNode : servers.getTopoNodes()) {
+                ServiceTaskNodeInfoDTO node = new ServiceTaskNodeInfoDTO();
+                node.setId(topoNode.getTopoNodeId());
+                node.setType(topoNode.getNodeType());
+                topoNodes.add(node);
+            }
+            req.setTopoNodes(topoNodes);
+        }
+        if (servers.getDynamicServerGroups() != null) {
+            List<String> groupIds = new ArrayList<>(servers.getDynamicServerGroups().size());
+            for (DynamicServerGroupDTO group : servers.getDynamicServerGroups()) {
+                groupIds.add(group.getGroupId());
+            }
+            req.setDynamicGroupIds(groupIds);
+        }
+        try {
+            ServiceResponse<ServiceResolvedHostsDTO> resp = hostResourceClient.resolveHosts(appId, req);
+            if (!resp.isSuccess()) {
+                log.warn("Batch resolve hosts fail, appId={}, resp={}", appId, JsonUtils.toJson(resp));
+                return null;
+            }
+            return resp.getData();
+        } catch (Throwable e) {
+            log.warn("Batch resolve hosts fail, appId={}", appId, e);
+            return null;
+        }
+    }
 }
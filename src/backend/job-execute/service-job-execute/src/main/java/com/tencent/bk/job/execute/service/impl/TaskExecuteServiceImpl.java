@@ -45,6 +45,7 @@ import com.tencent.bk.job.execute.common.constants.RunStatusEnum;
 import com.tencent.bk.job.execute.common.constants.StepExecuteTypeEnum;
 import com.tencent.bk.job.execute.common.constants.TaskStartupModeEnum;
 import com.tencent.bk.job.execute.common.constants.TaskTypeEnum;
+import com.tencent.bk.job.execute.common.exception.ObtainHostServiceException;
 import com.tencent.bk.job.execute.common.trace.executors.TraceableExecutorService;
 import com.tencent.bk.job.execute.config.JobExecuteConfig;
 import com.tencent.bk.job.execute.constants.ScriptSourceEnum;
@@ -98,6 +99,7 @@ public class TaskExecuteServiceImpl implements TaskExecuteService {
     private final ExecuteAuthService executeAuthService;
     private final ExecutorService GET_HOSTS_BY_TOPO_EXECUTOR;
     private final DangerousScriptCheckService dangerousScriptCheckService;
+    private final JobExecuteConfig jobExecuteConfig;
 
     @Autowired
     public TaskExecuteServiceImpl(ApplicationService applicationService,
@@ -132,6 +134,7 @@ public class TaskExecuteServiceImpl implements TaskExecuteService {
         this.GET_HOSTS_BY_TOPO_EXECUTOR = new TraceableExecutorService(new ThreadPoolExecutor(50,
             100, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>()), tracing);
         this.dangerousScriptCheckService = dangerousScriptCheckService;
+        this.jobExecuteConfig = jobExecuteConfig;
     }
 
     private static List<IpDTO> getHostsContainsNotAllowedAction(Map<IpDTO, Set<String>> hostBindActions,
@@ -1593,6 +1596,16 @@ public class TaskExecuteServiceImpl implements TaskExecuteService {
     }
 
     private void acquireStaticIp(long appId, ServersDTO servers) throws ServiceException {
+        if (jobExecuteConfig.isBatchResolveHostsEnabled()
+            && (CollectionUtils.isNotEmpty(servers.getTopoNodes())
+            || CollectionUtils.isNotEmpty(servers.getDynamicServerGroups()))) {
+            ServiceResolvedHostsDTO resolvedHosts = serverService.batchResolveHosts(appId, servers);
+            if (resolvedHosts != null) {
+                fillResolvedHosts(servers, resolvedHosts);
+                return;
+            }
+            log.info("Batch resolve hosts fail, fallback to resolve hosts one by one, appId: {}", appId);
+        }
         Set<IpDTO> ipSet = new HashSet<>();
         List<IpDTO> staticIps = servers.getStaticIpList();
         if (staticIps != null) {
@@ -1631,6 +1644,48 @@ public class TaskExecuteServiceImpl implements TaskExecuteService {
         servers.setIpList(ipList);
     }
 
+    private void fillResolvedHosts(ServersDTO servers, ServiceResolvedHostsDTO resolvedHosts) {
+        Set<IpDTO> ipSet = new HashSet<>();
+        List<IpDTO> staticIps = servers.getStaticIpList();
+        if (staticIps != null) {
+            ipSet.addAll(staticIps);
+        }
+        List<DynamicServerGroupDTO> dynamicServerGroups = servers.getDynamicServerGroups();
+        if (dynamicServerGroups != null) {
+            Map<String, List<String>> dynamicGroupHosts = resolvedHosts.getDynamicGroupHosts() == null ?
+                Collections.emptyMap() : resolvedHosts.getDynamicGroupHosts();
+            for (DynamicServerGroupDTO group : dynamicServerGroups) {
+                List<String> groupHosts = dynamicGroupHosts.get(group.getGroupId());
+                if (groupHosts == null) {
+                    // job-manage 从CMDB获取动态分组主机失败
+                    throw new ObtainHostServiceException();
+                }
+                if (groupHosts.isEmpty()) {
+                    servers.addInvalidDynamicServerGroup(group);
+                } else {
+                    List<IpDTO> groupIps = groupHosts.stream().map(IpDTO::fromCloudAreaIdAndIpStr)
+                        .collect(Collectors.toList());
+                    ipSet.addAll(groupIps);
+                    group.setIpList(groupIps);
+                }
+            }
+        }
+        List<DynamicServerTopoNodeDTO> topoNodes = servers.getTopoNodes();
+        if (topoNodes != null) {
+            Map<String, List<String>> topoNodeHosts = resolvedHosts.getTopoNodeHosts() == null ?
+                Collections.emptyMap() : resolvedHosts.getTopoNodeHosts();
+            for (DynamicServerTopoNodeDTO topoNode : topoNodes) {
+                List<String> nodeHosts = topoNodeHosts.get(
+                    ServiceResolvedHostsDTO.buildTopoNodeKey(topoNode.getNodeType(), topoNode.getTopoNodeId()));
+                if (CollectionUtils.isEmpty(nodeHosts)) {
+                    servers.addInvalidTopoNodeDTO(topoNode);
+                } else {
+                    nodeHosts.forEach(cloudIp -> ipSet.add(IpDTO.fromCloudAreaIdAndIpStr(cloudIp)));
+                }
+            }
+        }
+        servers.setIpList(new ArrayList<>(ipSet));
+    }
 
     private void getTopoHostsConcurrent(long appId, List<DynamicServerTopoNodeDTO> topoNodes, ServersDTO servers,
                                         Set<IpDTO> ipSet) {
@@ -24,6 +24,8 @@
 
 package com.tencent.bk.job.execute.service.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.tencent.bk.job.common.constant.ErrorCode;
 import com.tencent.bk.job.common.exception.ServiceException;
 import com.tencent.bk.job.common.iam.exception.InSufficientPermissionException;
@@ -35,6 +37,7 @@ import com.tencent.bk.job.execute.common.constants.RunStatusEnum;
 import com.tencent.bk.job.execute.common.constants.StepExecuteTypeEnum;
 import com.tencent.bk.job.execute.common.converter.StepTypeExecuteTypeConverter;
 import com.tencent.bk.job.execute.common.util.TaskCostCalculator;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
 import com.tencent.bk.job.execute.constants.UserOperationEnum;
 import com.tencent.bk.job.execute.dao.FileSourceTaskLogDAO;
 import com.tencent.bk.job.execute.dao.GseTaskIpLogDAO;
@@ -48,11 +51,14 @@ import com.tencent.bk.job.execute.service.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StopWatch;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.tencent.bk.job.common.constant.Order.DESCENDING;
@@ -72,6 +78,11 @@ public class TaskResultServiceImpl implements TaskResultService {
     private final LogService logService;
     private final ExecuteAuthService executeAuthService;
     private final TaskOperationLogService operationLogService;
+    private final JobExecuteConfig jobExecuteConfig;
+    /**
+     * 作业实例总数缓存，key 为查询条件与计数上限；翻页时查询条件不变，避免每页都执行一次全量 count
+     */
+    private final Cache<Pair<TaskInstanceQuery, Integer>, Long> taskInstanceCountCache;
 
     @Autowired
     public TaskResultServiceImpl(TaskInstanceDAO taskInstanceDAO, StepInstanceDAO stepInstanceDAO,
@@ -79,7 +90,8 @@ public class TaskResultServiceImpl implements TaskResultService {
                                  GseTaskIpLogDAO gseTaskIpLogDAO,
                                  ServerService serverService, LogService logService,
                                  ExecuteAuthService executeAuthService,
-                                 TaskOperationLogService operationLogService) {
+                                 TaskOperationLogService operationLogService,
+                                 JobExecuteConfig jobExecuteConfig) {
         this.taskInstanceDAO = taskInstanceDAO;
         this.stepInstanceDAO = stepInstanceDAO;
         this.gseTaskLogService = gseTaskLogService;
@@ -89,24 +101,69 @@ public class TaskResultServiceImpl implements TaskResultService {
         this.logService = logService;
         this.executeAuthService = executeAuthService;
         this.operationLogService = operationLogService;
+        this.jobExecuteConfig = jobExecuteConfig;
+        this.taskInstanceCountCache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(jobExecuteConfig.getTaskInstanceCountCacheSeconds(), TimeUnit.SECONDS)
+            .build();
     }
 
     @Override
     public PageData<TaskInstanceDTO> listPageTaskInstance(TaskInstanceQuery taskQuery,
                                                           BaseSearchCondition baseSearchCondition) {
-        PageData<TaskInstanceDTO> pageData = taskInstanceDAO.listPageTaskInstance(taskQuery, baseSearchCondition);
-        if (pageData != null && pageData.getData() != null && !pageData.getData().isEmpty()) {
-            pageData.getData().forEach(taskInstanceDTO -> {
-                if (taskInstanceDTO.getTotalTime() == null) {
-                    if (taskInstanceDTO.getStatus().equals(RunStatusEnum.RUNNING.getValue())
-                        || taskInstanceDTO.getStatus().equals(RunStatusEnum.WAITING.getValue())
-                        || taskInstanceDTO.getStatus().equals(RunStatusEnum.STOPPING.getValue())) {
-                        taskInstanceDTO.setTotalTime((TaskCostCalculator.calculate(taskInstanceDTO.getStartTime(),
-                            taskInstanceDTO.getEndTime(), taskInstanceDTO.getTotalTime())));
-                    }
-                }
-            });
+        int start = baseSearchCondition.getStartOrDefault(0);
+        int length = baseSearchCondition.getLengthOrDefault(10);
+        long count = countTaskInstance(taskQuery, null);
+        List<TaskInstanceDTO> taskInstances = taskInstanceDAO.listTaskInstance(taskQuery, start, length);
+        return buildTaskInstancePageData(start, length, count, taskInstances);
+    }
+
+    @Override
+    public PageData<TaskInstanceDTO> listPageTaskInstanceByCursor(TaskInstanceQuery taskQuery,
+                                                                  Long cursorCreateTime,
+                                                                  Long cursorId,
+                                                                  Integer length) {
+        int pageSize = (length == null || length <= 0) ? 10 : length;
+        long count = countTaskInstance(taskQuery, jobExecuteConfig.getTaskInstanceCursorCountLimit());
+        List<TaskInstanceDTO> taskInstances = taskInstanceDAO.listTaskInstanceByCursor(taskQuery, cursorCreateTime,
+            cursorId, pageSize);
+        return buildTaskInstancePageData(0, pageSize, count, taskInstances);
+    }
+
+    private long countTaskInstance(TaskInstanceQuery taskQuery, Integer limit) {
+        TaskInstanceQuery countQuery = taskQuery.clone();
+        // 未指定结束时间的查询以当前时间作为结束时间，每次请求都不同；
+        // 结束时间在缓存有效期内的按不限结束时间计数，使翻页可以命中缓存
+        long cacheMills = jobExecuteConfig.getTaskInstanceCountCacheSeconds() * 1000L;
+        if (countQuery.getEndTime() != null && countQuery.getEndTime() >= System.currentTimeMillis() - cacheMills) {
+            countQuery.setEndTime(null);
         }
+        try {
+            return taskInstanceCountCache.get(Pair.of(countQuery, limit),
+                () -> taskInstanceDAO.countTaskInstance(countQuery, limit));
+        } catch (ExecutionException e) {
+            log.warn("Count task instance from cache fail", e);
+            return taskInstanceDAO.countTaskInstance(taskQuery, limit);
+        }
+    }
+
+    private PageData<TaskInstanceDTO> buildTaskInstancePageData(int start, int length, long count,
+                                                                List<TaskInstanceDTO> taskInstances) {
+        taskInstances.forEach(taskInstanceDTO -> {
+            if (taskInstanceDTO.getTotalTime() == null) {
+                if (taskInstanceDTO.getStatus().equals(RunStatusEnum.RUNNING.getValue())
+                    || taskInstanceDTO.getStatus().equals(RunStatusEnum.WAITING.getValue())
+                    || taskInstanceDTO.getStatus().equals(RunStatusEnum.STOPPING.getValue())) {
+                    taskInstanceDTO.setTotalTime((TaskCostCalculator.calculate(taskInstanceDTO.getStartTime(),
+                        taskInstanceDTO.getEndTime(), taskInstanceDTO.getTotalTime())));
+                }
+            }
+        });
+        PageData<TaskInstanceDTO> pageData = new PageData<>();
+        pageData.setData(taskInstances);
+        pageData.setStart(start);
+        pageData.setPageSize(length);
+        pageData.setTotal(count);
         return pageData;
     }
 
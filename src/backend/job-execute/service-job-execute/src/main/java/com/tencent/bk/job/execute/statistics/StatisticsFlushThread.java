@@ -24,132 +24,118 @@
 
 package com.tencent.bk.job.execute.statistics;
 
-import com.tencent.bk.job.common.util.ObjectWrapper;
+import com.tencent.bk.job.common.statistics.model.dto.StatisticsDTO;
+import com.tencent.bk.job.execute.dao.StatisticsDAO;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
-import org.jooq.Condition;
-import org.jooq.DSLContext;
-import org.jooq.Record2;
-import org.jooq.Result;
-import org.jooq.conf.ParamType;
-import org.jooq.exception.DataAccessException;
-import org.jooq.generated.tables.Statistics;
-import org.jooq.impl.DSL;
-import org.jooq.types.ULong;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * 统计数据写入线程。
+ * <p>
+ * 每批增量按 batchSize 拆分，每份使用一条多行 INSERT ... ON DUPLICATE KEY UPDATE 累加；
+ * 每份增量有唯一的批次ID，失败重试时使用相同的批次ID，保证本进程内重试不会重复累加。批次ID在进程内生成，
+ * 进程重启后不会再提交之前的批次，因此只对进程内的重试去重。
+ * <p>
+ * 停止时仍会完成剩余的重试，但不再等待重试间隔，避免丢弃已经从缓冲区取出的增量。
+ */
 @Slf4j
 public class StatisticsFlushThread extends Thread {
 
-    private static final Statistics tableStatistics = Statistics.STATISTICS;
-    private final DSLContext dslContext;
-    private volatile LinkedBlockingQueue<Map<String, Map<StatisticsKey, AtomicInteger>>> flushQueue;
+    private static final int MAX_RETRY_TIMES = 5;
+
+    private final StatisticsDAO statisticsDAO;
+    private final BlockingQueue<Map<String, Map<StatisticsKey, Long>>> flushQueue;
+    private final int batchSize;
+    private volatile boolean running = true;
 
-    public StatisticsFlushThread(DSLContext dslContext, LinkedBlockingQueue<Map<String,
-        Map<StatisticsKey, AtomicInteger>>> flushQueue) {
-        this.dslContext = dslContext;
+    public StatisticsFlushThread(StatisticsDAO statisticsDAO,
+                                 BlockingQueue<Map<String, Map<StatisticsKey, Long>>> flushQueue,
+                                 int batchSize) {
+        this.statisticsDAO = statisticsDAO;
         this.flushQueue = flushQueue;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 写入一批统计增量
+     *
+     * @param incrementMap 日期 -> 统计维度 -> 增量
+     */
+    public void flush(Map<String, Map<StatisticsKey, Long>> incrementMap) {
+        List<StatisticsDTO> increments = new ArrayList<>(batchSize);
+        for (Map.Entry<String, Map<StatisticsKey, Long>> dateEntry : incrementMap.entrySet()) {
+            for (Map.Entry<StatisticsKey, Long> entry : dateEntry.getValue().entrySet()) {
+                increments.add(buildIncrement(dateEntry.getKey(), entry.getKey(), entry.getValue()));
+                if (increments.size() >= batchSize) {
+                    flushBatch(increments);
+                    increments = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!increments.isEmpty()) {
+            flushBatch(increments);
+        }
+    }
+
+    private StatisticsDTO buildIncrement(String dateStr, StatisticsKey statisticsKey, Long value) {
+        StatisticsDTO statisticsDTO = new StatisticsDTO();
+        statisticsDTO.setAppId(statisticsKey.getAppId());
+        statisticsDTO.setResource(statisticsKey.getResource());
+        statisticsDTO.setDimension(statisticsKey.getDimension());
+        statisticsDTO.setDimensionValue(statisticsKey.getDimensionValue());
+        statisticsDTO.setDate(dateStr);
+        statisticsDTO.setValue(String.valueOf(value));
+        return statisticsDTO;
+    }
+
+    private void flushBatch(List<StatisticsDTO> increments) {
+        String batchId = UUID.randomUUID().toString();
+        boolean interrupted = false;
+        try {
+            for (int retryTimes = 0; retryTimes <= MAX_RETRY_TIMES; retryTimes++) {
+                try {
+                    statisticsDAO.batchIncreaseStatistics(batchId, increments);
+                    return;
+                } catch (Throwable t) {
+                    log.warn("Fail to flush statistics batch {}, size={}, retryTimes={}", batchId,
+                        increments.size(), retryTimes, t);
+                }
+                if (retryTimes == MAX_RETRY_TIMES || interrupted || !running) {
+                    // 停止过程中立即重试，不丢弃当前批次
+                    continue;
+                }
+                try {
+                    Thread.sleep(Math.min(1000L << retryTimes, 10000L));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            log.error("Fail to flush statistics batch {}, discard {} increments", batchId, increments.size());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
-    private void flushIncrementMap(Map<String, Map<StatisticsKey, AtomicInteger>> incrementMap) {
-        incrementMap.forEach((dateStr, metricsMap) -> {
-            metricsMap.forEach((statisticsKey, value) -> {
-                final Long appId = statisticsKey.getAppId();
-                final String resource = statisticsKey.getResource();
-                final String dimension = statisticsKey.getDimension();
-                final String dimensionValue = statisticsKey.getDimensionValue();
-                final String date = dateStr;
-                final Integer incrementValue = value.get();
-                final ObjectWrapper<Result<Record2<Long, String>>> recordsWrapper = new ObjectWrapper<>(null);
-                AtomicInteger affectedRows = new AtomicInteger(0);
-                do {
-                    dslContext.transaction(configuration -> {
-                        DSLContext context = DSL.using(configuration);
-                        List<Condition> conditions = new ArrayList<>();
-                        conditions.add(tableStatistics.APP_ID.eq(appId));
-                        conditions.add(tableStatistics.RESOURCE.eq(resource));
-                        conditions.add(tableStatistics.DIMENSION.eq(dimension));
-                        conditions.add(tableStatistics.DIMENSION_VALUE.eq(dimensionValue));
-                        conditions.add(tableStatistics.DATE.eq(date));
-                        try {
-                            Long oldValue = 0L;
-                            Long id;
-                            val selectQuery = context.select(tableStatistics.ID, tableStatistics.VALUE)
-                                .from(tableStatistics)
-                                .where(conditions)
-                                .forUpdate();
-                            log.debug("selectQuery=" + selectQuery.getSQL(ParamType.INLINED));
-                            Result<Record2<Long, String>> records = selectQuery.fetch();
-                            recordsWrapper.set(records);
-                            if (records.isEmpty()) {
-                                log.debug("records is empty");
-                                // 记录不存在，先插入
-                                val query = context.insertInto(tableStatistics,
-                                    tableStatistics.ID,
-                                    tableStatistics.APP_ID,
-                                    tableStatistics.RESOURCE,
-                                    tableStatistics.DIMENSION,
-                                    tableStatistics.DIMENSION_VALUE,
-                                    tableStatistics.DATE,
-                                    tableStatistics.VALUE,
-                                    tableStatistics.CREATE_TIME,
-                                    tableStatistics.LAST_MODIFY_TIME
-                                ).values(
-                                    null,
-                                    appId,
-                                    resource,
-                                    dimension,
-                                    dimensionValue,
-                                    date,
-                                    "0",
-                                    ULong.valueOf(System.currentTimeMillis()),
-                                    ULong.valueOf(System.currentTimeMillis())
-                                ).returning(tableStatistics.ID);
-                                id = query.fetchOne().getId();
-                            } else {
-                                if (records.size() > 1) {
-                                    log.warn("more than 1 records, statisticsKey:{}", statisticsKey);
-                                }
-                                id = records.get(0).get(tableStatistics.ID);
-                                oldValue = Long.parseLong(records.get(0).get(tableStatistics.VALUE));
-                            }
-                            // 更新
-                            log.debug("Update record {} from {} to {}", id, oldValue, (oldValue + incrementValue));
-                            affectedRows.set(context.update(tableStatistics)
-                                .set(tableStatistics.VALUE, "" + (oldValue + incrementValue))
-                                .where(tableStatistics.ID.eq(id))
-                                .and(tableStatistics.VALUE.eq("" + oldValue))
-                                .execute());
-                            if (affectedRows.get() == 0) {
-                                log.debug("Record {} updated by other thread just now, retry", statisticsKey);
-                            }
-                        } catch (DataAccessException dataAccessException) {
-                            if (dataAccessException.getMessage().contains("Duplicate entry")) {
-                                //多个实例并发插入导致的主键冲突，忽略，改为更新
-                            } else {
-                                log.warn("dataAccessException when update/create", dataAccessException);
-                            }
-                        } catch (Throwable t) {
-                            log.info("May fail to lock", t);
-                        }
-                        log.debug("records={},affectedRows={}", recordsWrapper.get(), affectedRows);
-                    });
-                } while (recordsWrapper.get() == null || affectedRows.get() == 0);
-            });
-        });
+    public void shutdown() {
+        running = false;
+        interrupt();
     }
 
     @Override
     public void run() {
-        while (true) {
+        while (running) {
             try {
-                Map<String, Map<StatisticsKey, AtomicInteger>> incrementMap = flushQueue.take();
-                flushIncrementMap(incrementMap);
+                Map<String, Map<StatisticsKey, Long>> incrementMap = flushQueue.take();
+                flush(incrementMap);
+            } catch (InterruptedException e) {
+                log.info("StatisticsFlushThread interrupted");
             } catch (Throwable t) {
                 log.error("Fail to flush statistics into DB", t);
             }
@@ -0,0 +1,89 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 统计数据增量缓冲区。
+ * <p>
+ * 增量按 日期 -> 统计维度 预聚合在 LongAdder 中，多个线程可以并发累加；
+ * 取出增量时替换整个缓冲区，读写锁只用于保证替换后不会再有线程写入旧的缓冲区。
+ */
+public class StatisticsIncrementBuffer {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<String, Map<StatisticsKey, LongAdder>> increments = new ConcurrentHashMap<>();
+
+    /**
+     * 累加某一天的统计数据
+     *
+     * @param dateStr 统计日期
+     * @param updater 增量更新逻辑，参数为该日期下 统计维度 -> 增量 的 Map
+     */
+    public void update(String dateStr, Consumer<Map<StatisticsKey, LongAdder>> updater) {
+        lock.readLock().lock();
+        try {
+            updater.accept(increments.computeIfAbsent(dateStr, date -> new ConcurrentHashMap<>()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取出当前全部增量并清空缓冲区
+     *
+     * @return 日期 -> 统计维度 -> 增量，增量为 0 的维度不返回
+     */
+    public Map<String, Map<StatisticsKey, Long>> drain() {
+        Map<String, Map<StatisticsKey, LongAdder>> drainedIncrements;
+        lock.writeLock().lock();
+        try {
+            drainedIncrements = increments;
+            increments = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<String, Map<StatisticsKey, Long>> result = new HashMap<>();
+        drainedIncrements.forEach((dateStr, metricsMap) -> {
+            Map<StatisticsKey, Long> dateIncrements = new HashMap<>(metricsMap.size() * 2);
+            metricsMap.forEach((statisticsKey, value) -> {
+                long increment = value.sum();
+                if (increment != 0) {
+                    dateIncrements.put(statisticsKey, increment);
+                }
+            });
+            if (!dateIncrements.isEmpty()) {
+                result.put(dateStr, dateIncrements);
+            }
+        });
+        return result;
+    }
+}
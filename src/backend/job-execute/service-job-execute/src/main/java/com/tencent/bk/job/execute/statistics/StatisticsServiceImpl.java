@@ -43,35 +43,35 @@ import com.tencent.bk.job.execute.statistics.consts.StatisticsActionEnum;
 import com.tencent.bk.job.execute.statistics.model.TaskStatisticsCmd;
 import com.tencent.bk.job.manage.common.consts.script.ScriptTypeEnum;
 import lombok.extern.slf4j.Slf4j;
-import org.jooq.DSLContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @Service
 public class StatisticsServiceImpl implements StatisticsService {
 
-    private final Object writeLock = new Object();
     private final TaskInstanceService taskInstanceService;
     private final ApplicationService applicationService;
     private final TaskStatisticsMsgSender taskStatisticsMsgSender;
     private final StepInstanceDAO stepInstanceDAO;
-    private final DSLContext dslContext;
     private final StatisticsDAO statisticsDAO;
     private final StatisticConfig statisticConfig;
-    private volatile Map<String, Map<StatisticsKey, AtomicInteger>> incrementMap = new ConcurrentHashMap<>();
-    private volatile LinkedBlockingQueue<Map<String, Map<StatisticsKey, AtomicInteger>>> flushQueue =
+    private final StatisticsIncrementBuffer incrementBuffer = new StatisticsIncrementBuffer();
+    private final LinkedBlockingQueue<Map<String, Map<StatisticsKey, Long>>> flushQueue =
         new LinkedBlockingQueue<>(600);
+    private StatisticsFlushThread flushThread;
 
     @Autowired
     public StatisticsServiceImpl(
@@ -79,7 +79,6 @@ public class StatisticsServiceImpl implements StatisticsService {
         ApplicationService applicationService,
         TaskStatisticsMsgSender taskStatisticsMsgSender,
         StepInstanceDAO stepInstanceDAO,
-        DSLContext dslContext,
         StatisticsDAO statisticsDAO,
         StatisticConfig statisticConfig
     ) {
@@ -87,34 +86,49 @@ public class StatisticsServiceImpl implements StatisticsService {
         this.applicationService = applicationService;
         this.taskStatisticsMsgSender = taskStatisticsMsgSender;
         this.stepInstanceDAO = stepInstanceDAO;
-        this.dslContext = dslContext;
         this.statisticsDAO = statisticsDAO;
         this.statisticConfig = statisticConfig;
     }
 
     @PostConstruct
     public void init() {
-        StatisticsFlushThread flushThread = new StatisticsFlushThread(dslContext, flushQueue);
+        flushThread = new StatisticsFlushThread(statisticsDAO, flushQueue,
+            statisticConfig.getFlushBatchSize());
         flushThread.setName("flushThread");
         flushThread.start();
     }
 
+    /**
+     * 停止前写入缓冲区与队列中剩余的统计数据
+     */
+    @PreDestroy
+    public void destroy() {
+        flushThread.shutdown();
+        try {
+            flushThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Map<String, Map<StatisticsKey, Long>>> remainIncrements = new ArrayList<>();
+        flushQueue.drainTo(remainIncrements);
+        remainIncrements.add(incrementBuffer.drain());
+        log.info("Flush remaining statistics before shutdown, batches={}", remainIncrements.size());
+        remainIncrements.forEach(flushThread::flush);
+    }
+
     public void updateExecutedTaskCount(
         TaskInstanceDTO taskInstanceDTO,
-        Map<StatisticsKey, AtomicInteger> metricsMap
+        Map<StatisticsKey, LongAdder> metricsMap
     ) {
         // 累计任务执行次数统计
         StatisticsKey keyExecutedTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
             StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TIME_UNIT,
             StatisticsConstants.DIMENSION_VALUE_TIME_UNIT_DAY);
-        AtomicInteger executedTaskCount = metricsMap.computeIfAbsent(keyExecutedTaskCount,
-            statisticsKey -> new AtomicInteger(0));
-        int executedTaskCountValue = executedTaskCount.incrementAndGet();
-        log.debug("executedTaskCount={}", executedTaskCountValue);
+        metricsMap.computeIfAbsent(keyExecutedTaskCount, statisticsKey -> new LongAdder()).increment();
     }
 
     public void updateExecutedTaskByStartupMode(TaskInstanceDTO taskInstanceDTO,
-                                                Map<StatisticsKey, AtomicInteger> metricsMap) {
+                                                Map<StatisticsKey, LongAdder> metricsMap) {
         // 按渠道统计
         Integer startupMode = taskInstanceDTO.getStartupMode();
         if (startupMode == null) {
@@ -125,33 +139,24 @@ public class StatisticsServiceImpl implements StatisticsService {
             StatisticsKey keyStartupNormalTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_STARTUP_MODE,
                 StatisticsConstants.DIMENSION_VALUE_TASK_STARTUP_MODE_NORMAL);
-            AtomicInteger startupNormalTaskCount = metricsMap.computeIfAbsent(keyStartupNormalTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int startupNormalTaskCountValue = startupNormalTaskCount.incrementAndGet();
-            log.debug("startupNormalTaskCount={}", startupNormalTaskCountValue);
+            metricsMap.computeIfAbsent(keyStartupNormalTaskCount, statisticsKey -> new LongAdder()).increment();
         } else if (startupMode == TaskStartupModeEnum.API.getValue()) {
             StatisticsKey keyStartupApiTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_STARTUP_MODE,
                 StatisticsConstants.DIMENSION_VALUE_TASK_STARTUP_MODE_API);
-            AtomicInteger startupApiTaskCount = metricsMap.computeIfAbsent(keyStartupApiTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int startupApiTaskCountValue = startupApiTaskCount.incrementAndGet();
-            log.debug("startupApiTaskCount={}", startupApiTaskCountValue);
+            metricsMap.computeIfAbsent(keyStartupApiTaskCount, statisticsKey -> new LongAdder()).increment();
         } else if (startupMode == TaskStartupModeEnum.CRON.getValue()) {
             StatisticsKey keyStartupCronTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_STARTUP_MODE,
                 StatisticsConstants.DIMENSION_VALUE_TASK_STARTUP_MODE_CRON);
-            AtomicInteger startupCronTaskCount = metricsMap.computeIfAbsent(keyStartupCronTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int startupCronTaskCountValue = startupCronTaskCount.incrementAndGet();
-            log.debug("startupCronTaskCount={}", startupCronTaskCountValue);
+            metricsMap.computeIfAbsent(keyStartupCronTaskCount, statisticsKey -> new LongAdder()).increment();
         } else {
             log.warn("do not support startupMode {}, ignore", startupMode);
         }
     }
 
     public void updateExecutedTaskByType(TaskInstanceDTO taskInstanceDTO,
-                                         Map<StatisticsKey, AtomicInteger> metricsMap) {
+                                         Map<StatisticsKey, LongAdder> metricsMap) {
         // 按类型统计
         Integer type = taskInstanceDTO.getType();
         if (type == null) {
@@ -162,33 +167,24 @@ public class StatisticsServiceImpl implements StatisticsService {
             StatisticsKey keyTaskTypeNormalTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_TYPE,
                 StatisticsConstants.DIMENSION_VALUE_TASK_TYPE_EXECUTE_TASK);
-            AtomicInteger taskTypeNormalTaskCount = metricsMap.computeIfAbsent(keyTaskTypeNormalTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int taskTypeNormalTaskCountValue = taskTypeNormalTaskCount.incrementAndGet();
-            log.debug("taskTypeNormalTaskCount={}", taskTypeNormalTaskCountValue);
+            metricsMap.computeIfAbsent(keyTaskTypeNormalTaskCount, statisticsKey -> new LongAdder()).increment();
         } else if (type.equals(TaskTypeEnum.SCRIPT.getValue())) {
             StatisticsKey keyTaskTypeScriptTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_TYPE,
                 StatisticsConstants.DIMENSION_VALUE_TASK_TYPE_FAST_EXECUTE_SCRIPT);
-            AtomicInteger taskTypeScriptTaskCount = metricsMap.computeIfAbsent(keyTaskTypeScriptTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int taskTypeScriptTaskCountValue = taskTypeScriptTaskCount.incrementAndGet();
-            log.debug("taskTypeScriptTaskCount={}", taskTypeScriptTaskCountValue);
+            metricsMap.computeIfAbsent(keyTaskTypeScriptTaskCount, statisticsKey -> new LongAdder()).increment();
         } else if (type.equals(TaskTypeEnum.FILE.getValue())) {
             StatisticsKey keyTaskTypeFileTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_TYPE,
                 StatisticsConstants.DIMENSION_VALUE_TASK_TYPE_FAST_PUSH_FILE);
-            AtomicInteger taskTypeFileTaskCount = metricsMap.computeIfAbsent(keyTaskTypeFileTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int taskTypeFileTaskCountValue = taskTypeFileTaskCount.incrementAndGet();
-            log.debug("taskTypeFileTaskCount={}", taskTypeFileTaskCountValue);
+            metricsMap.computeIfAbsent(keyTaskTypeFileTaskCount, statisticsKey -> new LongAdder()).increment();
         } else {
             log.warn("do not support type {}, ignore", type);
         }
     }
 
     public void updateExecutedFastScriptStatistics(TaskInstanceDTO taskInstanceDTO,
-                                                   Map<StatisticsKey, AtomicInteger> metricsMap) {
+                                                   Map<StatisticsKey, LongAdder> metricsMap) {
         Integer type = taskInstanceDTO.getType();
         if (type != null && type.equals(TaskTypeEnum.SCRIPT.getValue())) {
             // 查StepInstance
@@ -205,15 +201,12 @@ public class StatisticsServiceImpl implements StatisticsService {
             StatisticsKey keyScriptTypeFastScriptCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_FAST_SCRIPT, StatisticsConstants.DIMENSION_SCRIPT_TYPE,
                 StatisticsConstants.DIMENSION_VALUE_SCRIPT_TYPE_PREFIX + scriptTypeName);
-            AtomicInteger scriptTypeFastScriptCount = metricsMap.computeIfAbsent(keyScriptTypeFastScriptCount,
-                statisticsKey -> new AtomicInteger(0));
-            int scriptTypeFastScriptCountValue = scriptTypeFastScriptCount.incrementAndGet();
-            log.debug("scriptTypeFastScriptCount={}", scriptTypeFastScriptCountValue);
+            metricsMap.computeIfAbsent(keyScriptTypeFastScriptCount, statisticsKey -> new LongAdder()).increment();
         }
     }
 
     public void updateExecutedFastFileStatistics(TaskInstanceDTO taskInstanceDTO,
-                                                 Map<StatisticsKey, AtomicInteger> metricsMap) {
+                                                 Map<StatisticsKey, LongAdder> metricsMap) {
         Integer type = taskInstanceDTO.getType();
         if (type != null && type.equals(TaskTypeEnum.FILE.getValue())) {
             // 查StepInstance
@@ -233,38 +226,29 @@ public class StatisticsServiceImpl implements StatisticsService {
                 StatisticsKey keyForceFileCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                     StatisticsConstants.RESOURCE_EXECUTED_FAST_FILE, StatisticsConstants.DIMENSION_FILE_TRANSFER_MODE
                     , StatisticsConstants.DIMENSION_VALUE_FILE_TRANSFER_MODE_FORCE);
-                AtomicInteger forceFileCount = metricsMap.computeIfAbsent(keyForceFileCount,
-                    statisticsKey -> new AtomicInteger(0));
-                int forceFileCountValue = forceFileCount.incrementAndGet();
-                log.debug("forceFileCount={}", forceFileCountValue);
+                metricsMap.computeIfAbsent(keyForceFileCount, statisticsKey -> new LongAdder()).increment();
             } else {
                 // 严谨模式
                 StatisticsKey keyStrictFileCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                     StatisticsConstants.RESOURCE_EXECUTED_FAST_FILE, StatisticsConstants.DIMENSION_FILE_TRANSFER_MODE
                     , StatisticsConstants.DIMENSION_VALUE_FILE_TRANSFER_MODE_STRICT);
-                AtomicInteger strictFileCount = metricsMap.computeIfAbsent(keyStrictFileCount,
-                    statisticsKey -> new AtomicInteger(0));
-                int strictFileCountValue = strictFileCount.incrementAndGet();
-                log.debug("strictFileCount={}", strictFileCountValue);
+                metricsMap.computeIfAbsent(keyStrictFileCount, statisticsKey -> new LongAdder()).increment();
             }
         }
     }
 
-    public void updateFailedTaskCount(TaskInstanceDTO taskInstanceDTO, Map<StatisticsKey, AtomicInteger> metricsMap) {
+    public void updateFailedTaskCount(TaskInstanceDTO taskInstanceDTO, Map<StatisticsKey, LongAdder> metricsMap) {
         // 累计执行失败次数统计
         if (RunStatusEnum.FAIL.getValue().equals(taskInstanceDTO.getStatus())) {
             StatisticsKey keyFailedTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_FAILED_TASK, StatisticsConstants.DIMENSION_TIME_UNIT,
                 StatisticsConstants.DIMENSION_VALUE_TIME_UNIT_DAY);
-            AtomicInteger failedTaskCount = metricsMap.computeIfAbsent(keyFailedTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int failedTaskCountValue = failedTaskCount.incrementAndGet();
-            log.debug("failedTaskCount={}", failedTaskCountValue);
+            metricsMap.computeIfAbsent(keyFailedTaskCount, statisticsKey -> new LongAdder()).increment();
         }
     }
 
     public void updateFastScriptCountByStatus(TaskInstanceDTO taskInstanceDTO,
-                                              Map<StatisticsKey, AtomicInteger> metricsMap) {
+                                              Map<StatisticsKey, LongAdder> metricsMap) {
         // 快速脚本按状态统计
         Integer type = taskInstanceDTO.getType();
         if (type != null && type.equals(TaskTypeEnum.SCRIPT.getValue())) {
@@ -273,25 +257,19 @@ public class StatisticsServiceImpl implements StatisticsService {
                 StatisticsKey keySuccessFastScriptCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                     StatisticsConstants.RESOURCE_EXECUTED_FAST_SCRIPT, StatisticsConstants.DIMENSION_STEP_RUN_STATUS,
                     StatisticsConstants.DIMENSION_VALUE_STEP_RUN_STATUS_SUCCESS);
-                AtomicInteger successFastScriptCount = metricsMap.computeIfAbsent(keySuccessFastScriptCount,
-                    statisticsKey -> new AtomicInteger(0));
-                int successFastScriptCountValue = successFastScriptCount.incrementAndGet();
-                log.debug("successFastScriptCount={}", successFastScriptCountValue);
+                metricsMap.computeIfAbsent(keySuccessFastScriptCount, statisticsKey -> new LongAdder()).increment();
             } else if (RunStatusEnum.FAIL.getValue().equals(taskInstanceDTO.getStatus())) {
                 // 执行失败的快速脚本统计
                 StatisticsKey keyFailedFastScriptCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                     StatisticsConstants.RESOURCE_EXECUTED_FAST_SCRIPT, StatisticsConstants.DIMENSION_STEP_RUN_STATUS,
                     StatisticsConstants.DIMENSION_VALUE_STEP_RUN_STATUS_FAIL);
-                AtomicInteger failedFastScriptCount = metricsMap.computeIfAbsent(keyFailedFastScriptCount,
-                    statisticsKey -> new AtomicInteger(0));
-                int failedFastScriptCountValue = failedFastScriptCount.incrementAndGet();
-                log.debug("failedFastScriptCount={}", failedFastScriptCountValue);
+                metricsMap.computeIfAbsent(keyFailedFastScriptCount, statisticsKey -> new LongAdder()).increment();
             }
         }
     }
 
     public void updateFastFileCountByStatus(TaskInstanceDTO taskInstanceDTO,
-                                            Map<StatisticsKey, AtomicInteger> metricsMap) {
+                                            Map<StatisticsKey, LongAdder> metricsMap) {
         // 快速文件按状态统计
         Integer type = taskInstanceDTO.getType();
         if (type != null && type.equals(TaskTypeEnum.FILE.getValue())) {
@@ -300,25 +278,19 @@ public class StatisticsServiceImpl implements StatisticsService {
                 StatisticsKey keySuccessFastFileCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                     StatisticsConstants.RESOURCE_EXECUTED_FAST_FILE, StatisticsConstants.DIMENSION_STEP_RUN_STATUS,
                     StatisticsConstants.DIMENSION_VALUE_STEP_RUN_STATUS_SUCCESS);
-                AtomicInteger successFastFileCount = metricsMap.computeIfAbsent(keySuccessFastFileCount,
-                    statisticsKey -> new AtomicInteger(0));
-                int successFastFileCountValue = successFastFileCount.incrementAndGet();
-                log.debug("successFastFileCount={}", successFastFileCountValue);
+                metricsMap.computeIfAbsent(keySuccessFastFileCount, statisticsKey -> new LongAdder()).increment();
             } else if (RunStatusEnum.FAIL.getValue().equals(taskInstanceDTO.getStatus())) {
                 // 执行失败的快速文件统计
                 StatisticsKey keyFailedFastFileCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                     StatisticsConstants.RESOURCE_EXECUTED_FAST_FILE, StatisticsConstants.DIMENSION_STEP_RUN_STATUS,
                     StatisticsConstants.DIMENSION_VALUE_STEP_RUN_STATUS_FAIL);
-                AtomicInteger failedFastFileCount = metricsMap.computeIfAbsent(keyFailedFastFileCount,
-                    statisticsKey -> new AtomicInteger(0));
-                int failedFastFileCountValue = failedFastFileCount.incrementAndGet();
-                log.debug("failedFastFileCount={}", failedFastFileCountValue);
+                metricsMap.computeIfAbsent(keyFailedFastFileCount, statisticsKey -> new LongAdder()).increment();
             }
         }
     }
 
     public void updateExecutedTaskByTimeConsuming(TaskInstanceDTO taskInstanceDTO,
-                                                  Map<StatisticsKey, AtomicInteger> metricsMap) {
+                                                  Map<StatisticsKey, LongAdder> metricsMap) {
         // 按执行耗时统计
         Long totalTime = taskInstanceDTO.getTotalTime();
         if (totalTime == null) {
@@ -330,28 +302,19 @@ public class StatisticsServiceImpl implements StatisticsService {
             StatisticsKey keyLessThanOneMinTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_TIME_CONSUMING,
                 StatisticsConstants.DIMENSION_VALUE_TASK_TIME_CONSUMING_LESS_THAN_ONE_MIN);
-            AtomicInteger lessThanOneMinTaskCount = metricsMap.computeIfAbsent(keyLessThanOneMinTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int lessThanOneMinTaskCountValue = lessThanOneMinTaskCount.incrementAndGet();
-            log.debug("lessThanOneMinTaskCount={}", lessThanOneMinTaskCountValue);
+            metricsMap.computeIfAbsent(keyLessThanOneMinTaskCount, statisticsKey -> new LongAdder()).increment();
         } else if (totalTime < 10 * 60 * 1000) {
             // 1min-10min
             StatisticsKey keyOneMinToTenMinTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_TIME_CONSUMING,
                 StatisticsConstants.DIMENSION_VALUE_TASK_TIME_CONSUMING_ONE_MIN_TO_TEN_MIN);
-            AtomicInteger oneMinToTenMinTaskCount = metricsMap.computeIfAbsent(keyOneMinToTenMinTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int oneMinToTenMinTaskCountValue = oneMinToTenMinTaskCount.incrementAndGet();
-            log.debug("oneMinToTenMinTaskCount={}", oneMinToTenMinTaskCountValue);
+            metricsMap.computeIfAbsent(keyOneMinToTenMinTaskCount, statisticsKey -> new LongAdder()).increment();
         } else {
             // >=10min
             StatisticsKey keyOverTenMinTaskCount = new StatisticsKey(taskInstanceDTO.getAppId(),
                 StatisticsConstants.RESOURCE_EXECUTED_TASK, StatisticsConstants.DIMENSION_TASK_TIME_CONSUMING,
                 StatisticsConstants.DIMENSION_VALUE_TASK_TIME_CONSUMING_OVER_TEN_MIN);
-            AtomicInteger overTenMinTaskCount = metricsMap.computeIfAbsent(keyOverTenMinTaskCount,
-                statisticsKey -> new AtomicInteger(0));
-            int overTenMinTaskCountValue = overTenMinTaskCount.incrementAndGet();
-            log.debug("overTenMinTaskCount={}", overTenMinTaskCountValue);
+            metricsMap.computeIfAbsent(keyOverTenMinTaskCount, statisticsKey -> new LongAdder()).increment();
         }
     }
 
@@ -359,9 +322,7 @@ public class StatisticsServiceImpl implements StatisticsService {
     public void updateStartJobStatistics(long taskInstanceId) {
         TaskInstanceDTO taskInstanceDTO = taskInstanceService.getTaskInstance(taskInstanceId);
         String createDateStr = DateUtils.getDateStrFromUnixTimeMills(taskInstanceDTO.getCreateTime());
-        synchronized (writeLock) {
-            Map<StatisticsKey, AtomicInteger> metricsMap = incrementMap.computeIfAbsent(createDateStr,
-                dateStr -> new ConcurrentHashMap<>());
+        incrementBuffer.update(createDateStr, metricsMap -> {
             // 触发时间当天的数据统计
             // 累计任务执行次数统计
             updateExecutedTaskCount(taskInstanceDTO, metricsMap);
@@ -373,16 +334,14 @@ public class StatisticsServiceImpl implements StatisticsService {
             updateExecutedFastScriptStatistics(taskInstanceDTO, metricsMap);
             // 快速分发文件：按传输模式统计
             updateExecutedFastFileStatistics(taskInstanceDTO, metricsMap);
-        }
+        });
     }
 
     @Override
     public void updateEndJobStatistics(long taskInstanceId) {
-        synchronized (writeLock) {
-            TaskInstanceDTO taskInstanceDTO = taskInstanceService.getTaskInstance(taskInstanceId);
-            String createDateStr = DateUtils.getDateStrFromUnixTimeMills(taskInstanceDTO.getCreateTime());
-            Map<StatisticsKey, AtomicInteger> metricsMap = incrementMap.computeIfAbsent(createDateStr,
-                dateStr -> new ConcurrentHashMap<>());
+        TaskInstanceDTO taskInstanceDTO = taskInstanceService.getTaskInstance(taskInstanceId);
+        String createDateStr = DateUtils.getDateStrFromUnixTimeMills(taskInstanceDTO.getCreateTime());
+        incrementBuffer.update(createDateStr, metricsMap -> {
             // 触发时间当天的数据统计
             // 累计执行失败次数统计
             updateFailedTaskCount(taskInstanceDTO, metricsMap);
@@ -392,7 +351,7 @@ public class StatisticsServiceImpl implements StatisticsService {
             updateFastFileCountByStatus(taskInstanceDTO, metricsMap);
             // 按执行耗时统计
             updateExecutedTaskByTimeConsuming(taskInstanceDTO, metricsMap);
-        }
+        });
     }
 
     @Override
@@ -461,17 +420,24 @@ public class StatisticsServiceImpl implements StatisticsService {
     public void clearStatistics() {
         log.info("clearStatistics task triggered");
         new ClearExpiredStatisticsTask(statisticsDAO, statisticConfig).start();
+        try {
+            // 统计批次记录只用于写入重试时去重，保留一天即可
+            int deletedBatches = statisticsDAO.deleteFlushBatchBefore(
+                System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+            log.info("{} expired statistics flush batches deleted", deletedBatches);
+        } catch (Throwable t) {
+            log.warn("Fail to delete expired statistics flush batches", t);
+        }
     }
 
     @Scheduled(initialDelay = 3 * 1000, fixedRate = 3 * 1000)
     public void transfer() {
-        try {
-            synchronized (writeLock) {
-                flushQueue.add(incrementMap);
-                incrementMap = new ConcurrentHashMap<>();
-            }
-        } catch (Throwable t) {
-            log.error("Fail to transfer incrementMap into flushQueue, flushQueue.size={}", flushQueue.size(), t);
+        Map<String, Map<StatisticsKey, Long>> incrementMap = incrementBuffer.drain();
+        if (incrementMap.isEmpty()) {
+            return;
+        }
+        if (!flushQueue.offer(incrementMap)) {
+            log.error("Fail to transfer incrementMap into flushQueue, flushQueue.size={}", flushQueue.size());
         }
     }
 }
@@ -0,0 +1,72 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.cache;
+
+import com.tencent.bk.job.execute.model.db.CacheHostDO;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheHostSerializerTest {
+    private final CacheHostSerializer serializer = new CacheHostSerializer();
+
+    @Test
+    void testSerializeAndDeserialize() {
+        CacheHostDO host = new CacheHostDO();
+        host.setAppId(2L);
+        host.setHostId(Long.MAX_VALUE);
+        host.setCloudAreaId(0L);
+        host.setIp("10.0.0.1");
+
+        byte[] bytes = serializer.serialize(host);
+        CacheHostDO result = serializer.deserialize(bytes);
+
+        assertThat(bytes.length).isLessThan(30);
+        assertThat(result.getAppId()).isEqualTo(2L);
+        assertThat(result.getHostId()).isEqualTo(Long.MAX_VALUE);
+        assertThat(result.getCloudAreaId()).isEqualTo(0L);
+        assertThat(result.getIp()).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    void testNullFields() {
+        CacheHostDO host = new CacheHostDO();
+        host.setCloudAreaId(1L);
+
+        CacheHostDO result = serializer.deserialize(serializer.serialize(host));
+
+        assertThat(result.getAppId()).isNull();
+        assertThat(result.getHostId()).isNull();
+        assertThat(result.getCloudAreaId()).isEqualTo(1L);
+        assertThat(result.getIp()).isNull();
+    }
+
+    @Test
+    void testDeserializeUnknownData() {
+        assertThat(serializer.deserialize(null)).isNull();
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+        assertThat(serializer.deserialize("{\"ip\":\"10.0.0.1\"}".getBytes())).isNull();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.cache;
+
+import com.tencent.bk.job.common.util.json.JsonUtils;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
+import com.tencent.bk.job.execute.model.db.CacheHostDO;
+import com.tencent.bk.job.manage.model.inner.ServiceHostChangedMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HostNearCacheTest {
+
+    private final List<String> deletedRedisHosts = new ArrayList<>();
+
+    private HostNearCache buildCache() {
+        JobExecuteConfig config = new JobExecuteConfig();
+        config.setHostNearCacheEnabled(true);
+        config.setHostNearCacheCapacity(1024);
+        config.setHostNearCacheExpireSeconds(60);
+        RedisHostCache redisHostCache = new RedisHostCache(null) {
+            @Override
+            public void deleteHosts(List<String> cloudIps) {
+                deletedRedisHosts.addAll(cloudIps);
+            }
+        };
+        return new HostNearCache(config, new SimpleMeterRegistry(), redisHostCache);
+    }
+
+    private void putHost(HostNearCache cache, CacheHostDO host) {
+        cache.put(host, cache.currentVersion(host.getCloudAreaId(), host.getIp()));
+    }
+
+    private CacheHostDO buildHost(long cloudAreaId, String ip, long appId) {
+        CacheHostDO host = new CacheHostDO();
+        host.setCloudAreaId(cloudAreaId);
+        host.setIp(ip);
+        host.setAppId(appId);
+        return host;
+    }
+
+    @Test
+    void testPackKey() {
+        assertThat(HostNearCache.packKey(0L, "0.0.0.1")).isEqualTo(1L);
+        assertThat(HostNearCache.packKey(1L, "255.255.255.255")).isEqualTo((1L << 32) | 0xFFFFFFFFL);
+        assertThat(HostNearCache.packKey(2L, "10.0.0.1")).isNotEqualTo(HostNearCache.packKey(3L, "10.0.0.1"));
+        assertThat(HostNearCache.packKey("2:10.0.0.1")).isEqualTo(HostNearCache.packKey(2L, "10.0.0.1"));
+
+        assertThat(HostNearCache.packKey(-1L, "10.0.0.1")).isEqualTo(-1L);
+        assertThat(HostNearCache.packKey(1L << 31, "10.0.0.1")).isEqualTo(-1L);
+        assertThat(HostNearCache.packKey(0L, "256.0.0.1")).isEqualTo(-1L);
+        assertThat(HostNearCache.packKey(0L, "10.0.1")).isEqualTo(-1L);
+        assertThat(HostNearCache.packKey(0L, "10..0.1")).isEqualTo(-1L);
+        assertThat(HostNearCache.packKey(0L, "10.0.0.1.")).isEqualTo(-1L);
+        assertThat(HostNearCache.packKey(0L, "0001.0.0.1")).isEqualTo(-1L);
+        assertThat(HostNearCache.packKey(0L, "::1")).isEqualTo(-1L);
+        assertThat(HostNearCache.packKey("10.0.0.1")).isEqualTo(-1L);
+    }
+
+    @Test
+    void testPutAndGet() {
+        HostNearCache cache = buildCache();
+        putHost(cache, buildHost(0L, "10.0.0.1", 2L));
+
+        assertThat(cache.get(0L, "10.0.0.1").getAppId()).isEqualTo(2L);
+        assertThat(cache.get(1L, "10.0.0.1")).isNull();
+        assertThat(cache.get(null, "10.0.0.1")).isNull();
+    }
+
+    @Test
+    void testPutSkippedWhenInvalidatedDuringLoad() {
+        HostNearCache cache = buildCache();
+        long loadVersion = cache.currentVersion(0L, "10.0.0.1");
+        cache.invalidate(HostNearCache.packKey(0L, "10.0.0.1"));
+        cache.put(buildHost(0L, "10.0.0.1", 2L), loadVersion);
+
+        assertThat(cache.get(0L, "10.0.0.1")).isNull();
+    }
+
+    @Test
+    void testPutNotAffectedByInvalidationOfOtherHost() {
+        HostNearCache cache = buildCache();
+        long loadVersion = cache.currentVersion(0L, "10.0.0.1");
+        cache.invalidate(HostNearCache.packKey(0L, "10.0.0.2"));
+        cache.put(buildHost(0L, "10.0.0.1", 2L), loadVersion);
+
+        assertThat(cache.get(0L, "10.0.0.1")).isNotNull();
+    }
+
+    @Test
+    void testInvalidateByHostChangedMessage() {
+        HostNearCache cache = buildCache();
+        putHost(cache, buildHost(0L, "10.0.0.1", 2L));
+        putHost(cache, buildHost(0L, "10.0.0.2", 2L));
+
+        ServiceHostChangedMessage message = new ServiceHostChangedMessage(System.currentTimeMillis(),
+            Arrays.asList("0:10.0.0.1", "invalid"));
+        cache.onMessage(new DefaultMessage(ServiceHostChangedMessage.CHANNEL.getBytes(StandardCharsets.UTF_8),
+            JsonUtils.toJson(message).getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(cache.get(0L, "10.0.0.1")).isNull();
+        assertThat(cache.get(0L, "10.0.0.2")).isNotNull();
+        assertThat(deletedRedisHosts).containsExactly("0:10.0.0.1", "invalid");
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveResultHandleScheduleStrategyTest {
+
+    @Test
+    void testBackoffWhenNoProgressAndSpeedupWhenProgress() {
+        AdaptiveResultHandleScheduleStrategy strategy = new AdaptiveResultHandleScheduleStrategy(200, 10000,
+            null, null, System.currentTimeMillis());
+        assertThat(strategy.getDelay()).isEqualTo(200);
+
+        for (int i = 0; i < 20; i++) {
+            strategy.onPullFinished(false);
+        }
+        assertThat(strategy.getDelay()).isEqualTo(10000);
+
+        strategy.onPullFinished(true);
+        assertThat(strategy.getDelay()).isEqualTo(5000);
+        for (int i = 0; i < 10; i++) {
+            strategy.onPullFinished(true);
+        }
+        assertThat(strategy.getDelay()).isEqualTo(200);
+    }
+
+    @Test
+    void testScheduleAroundExpectedFinishTime() {
+        long now = System.currentTimeMillis();
+        // 历史执行时长3s，任务已经运行了2s
+        AdaptiveResultHandleScheduleStrategy strategy = new AdaptiveResultHandleScheduleStrategy(200, 10000,
+            3000L, null, now - 2000);
+        for (int i = 0; i < 20; i++) {
+            strategy.onPullFinished(false);
+        }
+        assertThat(strategy.getDelay()).isBetween(200L, 1000L);
+
+        // 已经超过预计结束时间，按照当前间隔调度
+        strategy = new AdaptiveResultHandleScheduleStrategy(200, 10000, 3000L, null, now - 5000);
+        for (int i = 0; i < 20; i++) {
+            strategy.onPullFinished(false);
+        }
+        assertThat(strategy.getDelay()).isEqualTo(10000);
+    }
+
+    @Test
+    void testScheduleBeforeTimeout() {
+        long now = System.currentTimeMillis();
+        AdaptiveResultHandleScheduleStrategy strategy = new AdaptiveResultHandleScheduleStrategy(200, 10000,
+            null, 60000L, now - 57000);
+        for (int i = 0; i < 20; i++) {
+            strategy.onPullFinished(false);
+        }
+        assertThat(strategy.getDelay()).isBetween(200L, 3000L);
+    }
+}
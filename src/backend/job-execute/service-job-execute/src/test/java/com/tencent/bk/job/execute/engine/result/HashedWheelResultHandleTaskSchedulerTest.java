@@ -0,0 +1,75 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashedWheelResultHandleTaskSchedulerTest {
+
+    @Test
+    void testScheduleTaskAfterExpireTime() throws InterruptedException {
+        HashedWheelResultHandleTaskScheduler scheduler = new HashedWheelResultHandleTaskScheduler(
+            DelayedTask::execute, 10, 8, 2, 4, 100);
+        scheduler.start();
+        try {
+            int taskCount = 20;
+            CountDownLatch latch = new CountDownLatch(taskCount);
+            Map<String, Long> expireTimes = new ConcurrentHashMap<>();
+            Map<String, Long> executeTimes = new ConcurrentHashMap<>();
+            for (int i = 0; i < taskCount; i++) {
+                String taskId = "task-" + i;
+                // 部分任务的延迟时间超过时间轮一轮的时间跨度(8 * 10ms)
+                DelayedTask delayedTask = new DelayedTask(new Task() {
+                    @Override
+                    public void execute() {
+                        executeTimes.put(taskId, System.currentTimeMillis());
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public String getTaskId() {
+                        return taskId;
+                    }
+                }, i * 15L);
+                expireTimes.put(taskId, delayedTask.getExpireTime());
+                scheduler.schedule(delayedTask);
+            }
+
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+            expireTimes.forEach((taskId, expireTime) ->
+                assertThat(executeTimes.get(taskId)).isGreaterThanOrEqualTo(expireTime));
+            assertThat(scheduler.getScheduledTaskSize()).isEqualTo(0);
+        } finally {
+            scheduler.stop();
+        }
+    }
+}
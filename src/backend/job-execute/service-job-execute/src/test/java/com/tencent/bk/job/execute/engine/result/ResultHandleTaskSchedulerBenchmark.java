@@ -0,0 +1,142 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DelayQueue 调度器与时间轮调度器的性能对比。
+ * <p>
+ * 每次调用并发提交 taskCount 个任务，每个任务到期后重新调度 RESCHEDULE_TIMES 次(模拟结果处理任务的持续轮询)，
+ * 统计全部任务执行完成的耗时。
+ * <p>
+ * 运行方式：执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResultHandleTaskSchedulerBenchmark {
+    /**
+     * 任务重新调度次数
+     */
+    private static final int RESCHEDULE_TIMES = 3;
+    /**
+     * 任务最大延迟时间
+     */
+    private static final int MAX_DELAY_MILLS = 200;
+
+    @Param({"1000", "10000", "100000"})
+    private int taskCount;
+
+    @Param({"delay-queue", "hashed-wheel"})
+    private String schedulerType;
+
+    private ResultHandleTaskScheduler scheduler;
+
+    private CountDownLatch finishedLatch;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        finishedLatch = new CountDownLatch(taskCount);
+        if ("hashed-wheel".equals(schedulerType)) {
+            scheduler = new HashedWheelResultHandleTaskScheduler(DelayedTask::execute, 10, 512, 50, 100,
+                taskCount);
+        } else {
+            scheduler = new DelayQueueResultHandleTaskScheduler(DelayedTask::execute, 50, 100);
+        }
+        scheduler.start();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        scheduler.stop();
+    }
+
+    @Benchmark
+    public void scheduleAndExecute() throws InterruptedException {
+        for (int i = 0; i < taskCount; i++) {
+            scheduler.schedule(new DelayedTask(new RepeatedTask("task-" + i), randomDelay()));
+        }
+        finishedLatch.await();
+    }
+
+    private static long randomDelay() {
+        return ThreadLocalRandom.current().nextInt(MAX_DELAY_MILLS);
+    }
+
+    private final class RepeatedTask implements Task {
+        private final String taskId;
+        private int executeTimes = 0;
+
+        RepeatedTask(String taskId) {
+            this.taskId = taskId;
+        }
+
+        @Override
+        public void execute() {
+            executeTimes++;
+            if (executeTimes > RESCHEDULE_TIMES) {
+                finishedLatch.countDown();
+            } else {
+                scheduler.schedule(new DelayedTask(this, randomDelay()));
+            }
+        }
+
+        @Override
+        public String getTaskId() {
+            return taskId;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(ResultHandleTaskSchedulerBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
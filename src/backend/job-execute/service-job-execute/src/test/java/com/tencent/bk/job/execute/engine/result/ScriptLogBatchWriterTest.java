@@ -0,0 +1,211 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.engine.result;
+
+import com.tencent.bk.job.common.exception.ServiceException;
+import com.tencent.bk.job.common.model.ServiceResponse;
+import com.tencent.bk.job.execute.client.LogServiceResourceClient;
+import com.tencent.bk.job.execute.config.JobExecuteConfig;
+import com.tencent.bk.job.execute.monitor.ExecuteMetricNames;
+import com.tencent.bk.job.logsvr.model.service.BatchSaveLogRequest;
+import com.tencent.bk.job.logsvr.model.service.ServiceScriptLogDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ScriptLogBatchWriterTest {
+
+    /**
+     * 记录写入成功的日志内容，前 failTimes 次写入返回失败
+     */
+    private static final class FakeLogClient {
+        private final List<String> savedContents = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger remainingFailTimes = new AtomicInteger(0);
+        private final AtomicInteger saveTimes = new AtomicInteger(0);
+        private final Set<Long> failStepInstanceIds = Collections.synchronizedSet(new HashSet<>());
+
+        LogServiceResourceClient build() {
+            return (LogServiceResourceClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{LogServiceResourceClient.class}, (proxy, method, args) -> {
+                    if (!"saveLogs".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    saveTimes.incrementAndGet();
+                    BatchSaveLogRequest request = (BatchSaveLogRequest) args[0];
+                    if (remainingFailTimes.getAndDecrement() > 0
+                        || failStepInstanceIds.contains(request.getLogs().get(0).getStepInstanceId())) {
+                        return new ServiceResponse<>(ServiceResponse.COMMON_FAIL_CODE, "fail", null);
+                    }
+                    request.getLogs().forEach(log -> savedContents.add(log.getScriptLog().getContent()));
+                    return ServiceResponse.buildSuccessResp(null);
+                });
+        }
+    }
+
+    private JobExecuteConfig buildConfig(int queueCapacity) {
+        JobExecuteConfig config = new JobExecuteConfig();
+        config.setScriptLogWriteBehindEnabled(true);
+        // 只在测试中显式 flush，避免后台线程干扰写入顺序
+        config.setScriptLogWriteBehindFlushIntervalMills(60_000L);
+        config.setScriptLogWriteBehindMaxBatchSize(100);
+        config.setScriptLogWriteBehindQueueCapacity(queueCapacity);
+        config.setScriptLogWriteBehindMaxBlockMills(1L);
+        return config;
+    }
+
+    private List<ServiceScriptLogDTO> buildLogs(String... contents) {
+        return Arrays.stream(contents).map(content -> new ServiceScriptLogDTO("0:10.0.0.1", 0, content))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void testOverflowWrittenAfterQueuedLogs() {
+        FakeLogClient client = new FakeLogClient();
+        ScriptLogBatchWriter writer = new ScriptLogBatchWriter(client.build(), buildConfig(2),
+            new SimpleMeterRegistry());
+        writer.start();
+        try {
+            writer.write("2021_01_01", 1L, 0, buildLogs("1", "2", "3", "4", "5"));
+
+            // 队列中的日志先于同步写入的日志写入
+            assertThat(client.savedContents).containsExactly("1", "2", "3", "4", "5");
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void testFailedLogsRetriedBeforeLaterLogs() {
+        FakeLogClient client = new FakeLogClient();
+        ScriptLogBatchWriter writer = new ScriptLogBatchWriter(client.build(), buildConfig(100),
+            new SimpleMeterRegistry());
+        writer.start();
+        try {
+            writer.write("2021_01_01", 1L, 0, buildLogs("1", "2"));
+            client.remainingFailTimes.set(Integer.MAX_VALUE);
+            assertThatThrownBy(() -> writer.flush(1L, 0)).isInstanceOf(ServiceException.class);
+            assertThat(client.saveTimes.get()).isEqualTo(3);
+            assertThat(client.savedContents).isEmpty();
+
+            client.remainingFailTimes.set(0);
+            writer.write("2021_01_01", 1L, 0, buildLogs("3"));
+            writer.flush(1L, 0);
+
+            assertThat(client.savedContents).containsExactly("1", "2", "3");
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void testWriteThroughFailureDropsRejectedLogs() {
+        FakeLogClient client = new FakeLogClient();
+        ScriptLogBatchWriter writer = new ScriptLogBatchWriter(client.build(), buildConfig(1),
+            new SimpleMeterRegistry());
+        writer.start();
+        try {
+            client.remainingFailTimes.set(Integer.MAX_VALUE);
+            assertThatThrownBy(() -> writer.write("2021_01_01", 1L, 0, buildLogs("1", "2", "3")))
+                .isInstanceOf(ServiceException.class);
+
+            client.remainingFailTimes.set(0);
+            writer.write("2021_01_01", 1L, 0, buildLogs("4"));
+            writer.flush(1L, 0);
+
+            // 队列中的日志保留重试，超出容量同步写入失败的日志被丢弃
+            assertThat(client.savedContents).containsExactly("1", "4");
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void testPendingLogsBoundedDuringOutage() {
+        FakeLogClient client = new FakeLogClient();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ScriptLogBatchWriter writer = new ScriptLogBatchWriter(client.build(), buildConfig(2), meterRegistry);
+        writer.start();
+        try {
+            client.remainingFailTimes.set(Integer.MAX_VALUE);
+            writer.write("2021_01_01", 1L, 0, buildLogs("1", "2"));
+            for (int i = 0; i < 3; i++) {
+                assertThatThrownBy(() -> writer.write("2021_01_01", 1L, 0, buildLogs("3", "4")))
+                    .isInstanceOf(ServiceException.class);
+                assertThatThrownBy(() -> writer.flush(1L, 0)).isInstanceOf(ServiceException.class);
+            }
+
+            assertThat(meterRegistry.get(ExecuteMetricNames.SCRIPT_LOG_WRITE_QUEUE_SIZE).gauge().value())
+                .isEqualTo(2);
+            assertThat(meterRegistry.get(ExecuteMetricNames.SCRIPT_LOG_WRITE_DROPPED_TOTAL).counter().count())
+                .isEqualTo(6);
+
+            client.remainingFailTimes.set(0);
+            writer.flush(1L, 0);
+            assertThat(client.savedContents).containsExactly("1", "2");
+            assertThat(meterRegistry.get(ExecuteMetricNames.SCRIPT_LOG_WRITE_QUEUE_SIZE).gauge().value())
+                .isEqualTo(0);
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void testFlushOnlyWritesGivenStep() {
+        FakeLogClient client = new FakeLogClient();
+        ScriptLogBatchWriter writer = new ScriptLogBatchWriter(client.build(), buildConfig(100),
+            new SimpleMeterRegistry());
+        writer.start();
+        try {
+            client.failStepInstanceIds.add(2L);
+            writer.write("2021_01_01", 1L, 0, buildLogs("1"));
+            writer.write("2021_01_01", 2L, 0, buildLogs("2"));
+            writer.write("2021_01_01", 1L, 0, buildLogs("3"));
+
+            // 其他步骤写入失败不影响当前步骤
+            writer.flush(1L, 0);
+            assertThat(client.savedContents).containsExactly("1", "3");
+            assertThat(client.saveTimes.get()).isEqualTo(1);
+
+            assertThatThrownBy(() -> writer.flush(2L, 0)).isInstanceOf(ServiceException.class);
+            client.failStepInstanceIds.clear();
+            writer.flush(2L, 0);
+            assertThat(client.savedContents).containsExactly("1", "3", "2");
+        } finally {
+            writer.stop();
+        }
+    }
+}
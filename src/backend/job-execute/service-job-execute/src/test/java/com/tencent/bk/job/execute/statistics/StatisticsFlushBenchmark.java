@@ -0,0 +1,119 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.statistics;
+
+import com.tencent.bk.job.execute.dao.impl.StatisticsDAOImpl;
+import org.jooq.CloseableDSLContext;
+import org.jooq.generated.tables.Statistics;
+import org.jooq.impl.DSL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计数据写入耗时。
+ * <p>
+ * 每次调用写入 keyCount 个统计维度的增量，第一次调用为插入，后续调用为累加。
+ * <p>
+ * 运行方式：创建 job_execute 库并执行 support-files/sql/job-execute 下的脚本，
+ * 设置 mysqlURL、mysqlUser、mysqlPasswd 系统属性(与 jOOQ 代码生成一致)后执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatisticsFlushBenchmark {
+    private static final String RESOURCE = "benchmark";
+    private static final String DATE = "2000-01-01";
+
+    @Param({"10000", "100000"})
+    private int keyCount;
+
+    @Param({"500"})
+    private int batchSize;
+
+    private CloseableDSLContext dslContext;
+
+    private StatisticsFlushThread flusher;
+
+    private Map<String, Map<StatisticsKey, Long>> incrementMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dslContext = DSL.using("jdbc:mysql://" + System.getProperty("mysqlURL")
+                + "/job_execute?useSSL=false&serverTimezone=UTC",
+            System.getProperty("mysqlUser"), System.getProperty("mysqlPasswd"));
+        flusher = new StatisticsFlushThread(new StatisticsDAOImpl(dslContext), new LinkedBlockingQueue<>(),
+            batchSize);
+        Map<StatisticsKey, Long> metricsMap = new HashMap<>(keyCount * 2);
+        for (int i = 0; i < keyCount; i++) {
+            metricsMap.put(new StatisticsKey((long) (i / 100), RESOURCE, "dimension", "value-" + (i % 100)), 1L);
+        }
+        incrementMap = new HashMap<>();
+        incrementMap.put(DATE, metricsMap);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dslContext.deleteFrom(Statistics.STATISTICS).where(Statistics.STATISTICS.RESOURCE.eq(RESOURCE)).execute();
+        dslContext.close();
+    }
+
+    @Benchmark
+    public void flush() {
+        flusher.flush(incrementMap);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(StatisticsFlushBenchmark.class.getSimpleName())
+            .jvmArgsAppend("-DmysqlURL=" + System.getProperty("mysqlURL"),
+                "-DmysqlUser=" + System.getProperty("mysqlUser"),
+                "-DmysqlPasswd=" + System.getProperty("mysqlPasswd"))
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.tencent.bk.job.execute.statistics;
+
+import com.tencent.bk.job.execute.dao.StatisticsDAO;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StatisticsFlushThreadTest {
+
+    private static Map<String, Map<StatisticsKey, Long>> buildIncrements() {
+        return Collections.singletonMap("2021-07-01",
+            Collections.singletonMap(new StatisticsKey(1L, "task", "type", "script"), 1L));
+    }
+
+    /**
+     * 前 failTimes 次写入失败的 StatisticsDAO
+     */
+    private static StatisticsDAO failingDAO(int failTimes, AtomicInteger callTimes, List<String> batchIds,
+                                            CountDownLatch firstFailure) {
+        return (StatisticsDAO) Proxy.newProxyInstance(StatisticsDAO.class.getClassLoader(),
+            new Class[]{StatisticsDAO.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("batchIncreaseStatistics")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                batchIds.add((String) args[0]);
+                int times = callTimes.incrementAndGet();
+                if (times <= failTimes) {
+                    firstFailure.countDown();
+                    throw new RuntimeException("Mock DB error");
+                }
+                return true;
+            });
+    }
+
+    @Test
+    void testRetryWithSameBatchIdWithoutSleepAfterShutdown() {
+        AtomicInteger callTimes = new AtomicInteger();
+        List<String> batchIds = new CopyOnWriteArrayList<>();
+        StatisticsFlushThread flushThread = new StatisticsFlushThread(
+            failingDAO(3, callTimes, batchIds, new CountDownLatch(1)), new LinkedBlockingQueue<>(), 500);
+        flushThread.shutdown();
+
+        long start = System.currentTimeMillis();
+        flushThread.flush(buildIncrements());
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(1000L);
+        assertThat(callTimes.get()).isEqualTo(4);
+        assertThat(batchIds).hasSize(4).containsOnly(batchIds.get(0));
+    }
+
+    @Test
+    void testShutdownDuringRetrySleepFinishesBatch() throws InterruptedException {
+        AtomicInteger callTimes = new AtomicInteger();
+        CountDownLatch firstFailure = new CountDownLatch(1);
+        LinkedBlockingQueue<Map<String, Map<StatisticsKey, Long>>> flushQueue = new LinkedBlockingQueue<>();
+        StatisticsFlushThread flushThread = new StatisticsFlushThread(
+            failingDAO(2, callTimes, new CopyOnWriteArrayList<>(), firstFailure), flushQueue, 500);
+        flushQueue.add(buildIncrements());
+        flushThread.start();
+
+        assertThat(firstFailure.await(5, TimeUnit.SECONDS)).isTrue();
+        flushThread.shutdown();
+        flushThread.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(flushThread.isAlive()).isFalse();
+        assertThat(callTimes.get()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.execute.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StatisticsIncrementBufferTest {
+
+    @Test
+    void testDrainAggregatesIncrementsByDateAndKey() {
+        StatisticsIncrementBuffer buffer = new StatisticsIncrementBuffer();
+        StatisticsKey key1 = new StatisticsKey(1L, "task", "type", "script");
+        StatisticsKey key2 = new StatisticsKey(2L, "task", "type", "script");
+        buffer.update("2021-07-01", metricsMap -> {
+            metricsMap.computeIfAbsent(key1, statisticsKey -> new LongAdder()).increment();
+            metricsMap.computeIfAbsent(key2, statisticsKey -> new LongAdder()).increment();
+        });
+        buffer.update("2021-07-01", metricsMap ->
+            metricsMap.computeIfAbsent(key1, statisticsKey -> new LongAdder()).increment());
+        buffer.update("2021-07-02", metricsMap ->
+            metricsMap.computeIfAbsent(key1, statisticsKey -> new LongAdder()).add(0));
+
+        Map<String, Map<StatisticsKey, Long>> increments = buffer.drain();
+        assertThat(increments).containsOnlyKeys("2021-07-01");
+        assertThat(increments.get("2021-07-01")).containsEntry(key1, 2L).containsEntry(key2, 1L);
+        assertThat(buffer.drain()).isEmpty();
+    }
+
+    @Test
+    void testNoIncrementLostWhenDrainConcurrently() throws InterruptedException {
+        StatisticsIncrementBuffer buffer = new StatisticsIncrementBuffer();
+        StatisticsKey key = new StatisticsKey(1L, "task", "type", "script");
+        int threadNum = 8;
+        int incrementsPerThread = 100000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadNum);
+        CountDownLatch latch = new CountDownLatch(threadNum);
+        for (int i = 0; i < threadNum; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < incrementsPerThread; j++) {
+                    buffer.update("2021-07-01", metricsMap ->
+                        metricsMap.computeIfAbsent(key, statisticsKey -> new LongAdder()).increment());
+                }
+                latch.countDown();
+            });
+        }
+        List<Map<String, Map<StatisticsKey, Long>>> drainedList = new ArrayList<>();
+        while (!latch.await(1, TimeUnit.MILLISECONDS)) {
+            drainedList.add(buffer.drain());
+        }
+        drainedList.add(buffer.drain());
+        executor.shutdown();
+
+        long total = 0;
+        for (Map<String, Map<StatisticsKey, Long>> drained : drainedList) {
+            if (drained.containsKey("2021-07-01")) {
+                total += drained.get("2021-07-01").get(key);
+            }
+        }
+        assertThat(total).isEqualTo((long) threadNum * incrementsPerThread);
+    }
+}
@@ -25,6 +25,7 @@
 package com.tencent.bk.job.file_gateway.api.remote;
 
 import com.tencent.bk.job.common.model.ServiceResponse;
+import com.tencent.bk.job.file_gateway.model.req.inner.BatchUpdateFileSourceTaskReq;
 import com.tencent.bk.job.file_gateway.model.req.inner.HeartBeatReq;
 import com.tencent.bk.job.file_gateway.model.req.inner.OffLineAndReDispatchReq;
 import com.tencent.bk.job.file_gateway.model.req.inner.UpdateFileSourceTaskReq;
@@ -53,6 +54,12 @@ public interface RemoteFileWorkerResource {
     ServiceResponse<String> updateFileSourceTask(
         @ApiParam(value = "Worker上报任务状态信息请求") @RequestBody UpdateFileSourceTaskReq updateFileSourceTaskReq);
 
+    @ApiOperation(value = "Worker批量上报任务进度信息", produces = "application/json")
+    @PostMapping("/task/batchUpdate")
+    ServiceResponse<Integer> batchUpdateFileSourceTask(
+        @ApiParam(value = "Worker批量上报任务进度信息请求")
+        @RequestBody BatchUpdateFileSourceTaskReq batchUpdateFileSourceTaskReq);
+
     @ApiOperation(value = "Worker下线并且重调度其任务", produces = "application/json")
     @PostMapping("/offLineAndReDispatch")
     ServiceResponse<List<String>> offLineAndReDispatch(
@@ -27,6 +27,7 @@ package com.tencent.bk.job.file_gateway.api.remote;
 import com.tencent.bk.job.common.model.ServiceResponse;
 import com.tencent.bk.job.file_gateway.consts.TaskStatusEnum;
 import com.tencent.bk.job.file_gateway.model.dto.FileWorkerDTO;
+import com.tencent.bk.job.file_gateway.model.req.inner.BatchUpdateFileSourceTaskReq;
 import com.tencent.bk.job.file_gateway.model.req.inner.HeartBeatReq;
 import com.tencent.bk.job.file_gateway.model.req.inner.OffLineAndReDispatchReq;
 import com.tencent.bk.job.file_gateway.model.req.inner.UpdateFileSourceTaskReq;
@@ -78,6 +79,14 @@ public class RemoteFileWorkerResourceImpl implements RemoteFileWorkerResource {
             downloadPath, fileSize, speed, progress, content, status));
     }
 
+    @Override
+    public ServiceResponse<Integer> batchUpdateFileSourceTask(
+        BatchUpdateFileSourceTaskReq batchUpdateFileSourceTaskReq) {
+        log.debug("Input=({})", batchUpdateFileSourceTaskReq);
+        return ServiceResponse.buildSuccessResp(
+            fileSourceTaskService.batchUpdateFileSourceTask(batchUpdateFileSourceTaskReq.getUpdateReqList()));
+    }
+
     @Override
     public ServiceResponse<List<String>> offLineAndReDispatch(OffLineAndReDispatchReq offLineAndReDispatchReq) {
         return ServiceResponse.buildSuccessResp(
@@ -35,6 +35,11 @@ public interface FileTaskDAO {
 
     int updateFileTask(DSLContext dslContext, FileTaskDTO fileTaskDTO);
 
+    /**
+     * 批量更新运行中文件任务的进度，已结束的文件任务不会被更新
+     */
+    int batchUpdateRunningFileTaskProgress(DSLContext dslContext, Collection<FileTaskDTO> fileTaskDTOList);
+
     int resetFileTasks(DSLContext dslContext, String fileSourceTaskId);
 
     int deleteFileTaskById(DSLContext dslContext, Long id);
@@ -45,6 +50,9 @@ public interface FileTaskDAO {
 
     FileTaskDTO getOneFileTask(DSLContext dslContext, String fileSourceTaskId, String filePath);
 
+    List<FileTaskDTO> listFileTasks(DSLContext dslContext, Collection<String> fileSourceTaskIds,
+                                    Collection<String> filePaths);
+
     Long countFileTasks(DSLContext dslContext, String fileSourceTaskId);
 
     List<FileTaskDTO> listFileTasks(String fileSourceTaskId, Integer start, Integer pageSize);
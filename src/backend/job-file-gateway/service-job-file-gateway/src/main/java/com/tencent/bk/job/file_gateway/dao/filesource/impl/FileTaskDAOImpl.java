@@ -31,6 +31,7 @@ import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Query;
 import org.jooq.Record1;
 import org.jooq.Result;
 import org.jooq.conf.ParamType;
@@ -113,6 +114,30 @@ public class FileTaskDAOImpl extends BaseDAOImpl implements FileTaskDAO {
         }
     }
 
+    @Override
+    public int batchUpdateRunningFileTaskProgress(DSLContext dslContext, Collection<FileTaskDTO> fileTaskDTOList) {
+        if (fileTaskDTOList == null || fileTaskDTOList.isEmpty()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        List<Query> queries = new ArrayList<>(fileTaskDTOList.size());
+        for (FileTaskDTO fileTaskDTO : fileTaskDTOList) {
+            queries.add(dslContext.update(defaultTable)
+                .set(defaultTable.DOWNLOAD_PATH, fileTaskDTO.getDownloadPath())
+                .set(defaultTable.FILE_SIZE, fileTaskDTO.getFileSize())
+                .set(defaultTable.PROGRESS, fileTaskDTO.getProgress())
+                .set(defaultTable.LAST_MODIFY_TIME, now)
+                .where(defaultTable.ID.eq(fileTaskDTO.getId()))
+                .and(defaultTable.STATUS.eq(TaskStatusEnum.RUNNING.getStatus())));
+        }
+        int[] results = dslContext.batch(queries).execute();
+        int affectedCount = 0;
+        for (int result : results) {
+            affectedCount += result;
+        }
+        return affectedCount;
+    }
+
     @Override
     public int resetFileTasks(DSLContext dslContext, String fileSourceTaskId) {
         val query = dslContext.update(defaultTable)
@@ -176,6 +201,16 @@ public class FileTaskDAOImpl extends BaseDAOImpl implements FileTaskDAO {
         }
     }
 
+    @Override
+    public List<FileTaskDTO> listFileTasks(DSLContext dslContext, Collection<String> fileSourceTaskIds,
+                                           Collection<String> filePaths) {
+        val records = dslContext.selectFrom(defaultTable)
+            .where(defaultTable.FILE_SOURCE_TASK_ID.in(fileSourceTaskIds))
+            .and(defaultTable.FILE_PATH.in(filePaths))
+            .fetch();
+        return records.map(this::convertRecordToDto);
+    }
+
     @Override
     public Long countFileTasks(DSLContext dslContext, String fileSourceTaskId) {
         List<Condition> conditions = new ArrayList<>();
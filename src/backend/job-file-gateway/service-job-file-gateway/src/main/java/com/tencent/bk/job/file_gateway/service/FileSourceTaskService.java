@@ -26,6 +26,7 @@ package com.tencent.bk.job.file_gateway.service;
 
 import com.tencent.bk.job.file_gateway.consts.TaskStatusEnum;
 import com.tencent.bk.job.file_gateway.model.dto.FileSourceTaskDTO;
+import com.tencent.bk.job.file_gateway.model.req.inner.UpdateFileSourceTaskReq;
 import com.tencent.bk.job.file_gateway.model.resp.inner.FileSourceTaskStatusDTO;
 import com.tencent.bk.job.file_gateway.model.resp.inner.TaskInfoDTO;
 
@@ -42,6 +43,14 @@ public interface FileSourceTaskService {
     String updateFileSourceTask(String taskId, String filePath, String downloadPath, Long fileSize, String speed,
                                 Integer progress, String content, TaskStatusEnum status);
 
+    /**
+     * 批量更新文件任务进度，运行中任务的进度在一次批量SQL中更新
+     *
+     * @param updateReqList 各文件任务的状态信息
+     * @return 处理的文件任务数量
+     */
+    Integer batchUpdateFileSourceTask(List<UpdateFileSourceTaskReq> updateReqList);
+
     FileSourceTaskStatusDTO getFileSourceTaskStatusAndLogs(String taskId, Long logStart, Long logLength);
 
     Integer stopTasks(List<String> taskIdList);
@@ -46,6 +46,7 @@ import com.tencent.bk.job.file_gateway.model.dto.FileSourceDTO;
 import com.tencent.bk.job.file_gateway.model.dto.FileSourceTaskDTO;
 import com.tencent.bk.job.file_gateway.model.dto.FileTaskDTO;
 import com.tencent.bk.job.file_gateway.model.dto.FileWorkerDTO;
+import com.tencent.bk.job.file_gateway.model.req.inner.UpdateFileSourceTaskReq;
 import com.tencent.bk.job.file_gateway.model.resp.inner.FileSourceTaskStatusDTO;
 import com.tencent.bk.job.file_gateway.model.resp.inner.TaskInfoDTO;
 import com.tencent.bk.job.file_gateway.service.DispatchService;
@@ -181,6 +182,26 @@ public class FileSourceTaskServiceImpl implements FileSourceTaskService {
     private void writeLog(FileSourceTaskDTO fileSourceTaskDTO, FileWorkerDTO fileWorkerDTO, String filePath,
                           String downloadPath, Long fileSize, String speed, Integer progress, String content) {
         String taskId = fileSourceTaskDTO.getId();
+        FileSourceDTO fileSourceDTO = getFileSourceOfTask(fileSourceTaskDTO);
+        ServiceLogDTO serviceLogDTO = buildProgressLog(fileSourceTaskDTO, fileWorkerDTO, fileSourceDTO, filePath,
+            fileSize, speed, progress, content);
+        // 写入Redis
+        redisTemplate.opsForList().rightPush(PREFIX_REDIS_TASK_LOG + taskId, serviceLogDTO);
+        // 一小时后过期
+        redisTemplate.expireAt(PREFIX_REDIS_TASK_LOG + taskId, new Date(System.currentTimeMillis() + 3600 * 1000));
+    }
+
+    private FileSourceDTO getFileSourceOfTask(FileSourceTaskDTO fileSourceTaskDTO) {
+        FileSourceDTO fileSourceDTO = fileSourceDAO.getFileSourceById(dslContext, fileSourceTaskDTO.getFileSourceId());
+        if (fileSourceDTO == null) {
+            throw new DataConsistencyException("fileSourceId:" + fileSourceTaskDTO.getFileSourceId(), "detail");
+        }
+        return fileSourceDTO;
+    }
+
+    private ServiceLogDTO buildProgressLog(FileSourceTaskDTO fileSourceTaskDTO, FileWorkerDTO fileWorkerDTO,
+                                           FileSourceDTO fileSourceDTO, String filePath, Long fileSize,
+                                           String speed, Integer progress, String content) {
         String fileSizeStr = FileSizeUtil.getFileSizeStr(fileSize);
         ServiceLogDTO serviceLogDTO = new ServiceLogDTO();
         serviceLogDTO.setStepInstanceId(fileSourceTaskDTO.getStepInstanceId());
@@ -189,10 +210,6 @@ public class FileSourceTaskServiceImpl implements FileSourceTaskService {
         serviceLogDTO.setIp(sourceIp);
         // 追加文件源名称
         // 日志定位坐标：（文件源，文件路径），需要区分不同文件源下相同文件路径的日志
-        FileSourceDTO fileSourceDTO = fileSourceDAO.getFileSourceById(dslContext, fileSourceTaskDTO.getFileSourceId());
-        if (fileSourceDTO == null) {
-            throw new DataConsistencyException("fileSourceId:" + fileSourceTaskDTO.getFileSourceId(), "detail");
-        }
         String filePathWithSourceAlias = PathUtil.joinFilePath(fileSourceDTO.getAlias(), filePath);
         List<ServiceFileTaskLogDTO> fileTaskLogs = new ArrayList<>();
         ServiceFileTaskLogDTO serviceFileTaskLogDTO = new ServiceFileTaskLogDTO();
@@ -207,10 +224,7 @@ public class FileSourceTaskServiceImpl implements FileSourceTaskService {
         serviceFileTaskLogDTO.setStatusDesc(FileDistStatusEnum.PULLING.getName());
         fileTaskLogs.add(serviceFileTaskLogDTO);
         serviceLogDTO.setFileTaskLogs(fileTaskLogs);
-        // 写入Redis
-        redisTemplate.opsForList().rightPush(PREFIX_REDIS_TASK_LOG + taskId, serviceLogDTO);
-        // 一小时后过期
-        redisTemplate.expireAt(PREFIX_REDIS_TASK_LOG + taskId, new Date(System.currentTimeMillis() + 3600 * 1000));
+        return serviceLogDTO;
     }
 
     private void notifyFileTaskStatusChangeListeners(FileTaskDTO fileTaskDTO, FileSourceTaskDTO fileSourceTaskDTO,
@@ -273,6 +287,61 @@ public class FileSourceTaskServiceImpl implements FileSourceTaskService {
         return taskId;
     }
 
+    @Override
+    public Integer batchUpdateFileSourceTask(List<UpdateFileSourceTaskReq> updateReqList) {
+        if (updateReqList == null || updateReqList.isEmpty()) {
+            return 0;
+        }
+        Set<String> taskIds = new HashSet<>();
+        Set<String> filePaths = new HashSet<>();
+        updateReqList.forEach(req -> {
+            taskIds.add(req.getFileSourceTaskId());
+            filePaths.add(req.getFilePath());
+        });
+        Map<String, FileTaskDTO> fileTaskMap = new HashMap<>();
+        fileTaskDAO.listFileTasks(dslContext, taskIds, filePaths).forEach(fileTaskDTO ->
+            fileTaskMap.put(fileTaskDTO.getFileSourceTaskId() + ":" + fileTaskDTO.getFilePath(), fileTaskDTO));
+        List<FileTaskDTO> runningFileTaskList = new ArrayList<>();
+        Map<String, List<UpdateFileSourceTaskReq>> progressReqMap = new HashMap<>();
+        for (UpdateFileSourceTaskReq req : updateReqList) {
+            String taskId = req.getFileSourceTaskId();
+            FileTaskDTO fileTaskDTO = fileTaskMap.get(taskId + ":" + req.getFilePath());
+            if (fileTaskDTO != null && req.getStatus() == TaskStatusEnum.RUNNING
+                && TaskStatusEnum.valueOf(fileTaskDTO.getStatus()) == TaskStatusEnum.RUNNING) {
+                // 运行中的进度上报不涉及状态变更，无需通知关注者，合并为一次批量更新
+                fileTaskDTO.setDownloadPath(req.getDownloadPath());
+                fileTaskDTO.setFileSize(req.getFileSize());
+                fileTaskDTO.setProgress(req.getProgress());
+                runningFileTaskList.add(fileTaskDTO);
+                progressReqMap.computeIfAbsent(taskId, k -> new ArrayList<>()).add(req);
+            } else {
+                updateFileSourceTask(taskId, req.getFilePath(), req.getDownloadPath(), req.getFileSize(),
+                    req.getSpeed(), req.getProgress(), req.getContent(), req.getStatus());
+            }
+        }
+        fileTaskDAO.batchUpdateRunningFileTaskProgress(dslContext, runningFileTaskList);
+        progressReqMap.forEach(this::writeProgressLogs);
+        return updateReqList.size();
+    }
+
+    private void writeProgressLogs(String taskId, List<UpdateFileSourceTaskReq> progressReqList) {
+        FileSourceTaskDTO fileSourceTaskDTO = fileSourceTaskDAO.getFileSourceTaskById(dslContext, taskId);
+        if (fileSourceTaskDTO == null) {
+            log.error("Cannot find fileSourceTaskDTO by taskId {}", taskId);
+            return;
+        }
+        FileWorkerDTO fileWorkerDTO = fileworkerDAO.getFileWorkerById(dslContext, fileSourceTaskDTO.getFileWorkerId());
+        FileSourceDTO fileSourceDTO = getFileSourceOfTask(fileSourceTaskDTO);
+        List<ServiceLogDTO> logList = new ArrayList<>(progressReqList.size());
+        for (UpdateFileSourceTaskReq req : progressReqList) {
+            logList.add(buildProgressLog(fileSourceTaskDTO, fileWorkerDTO, fileSourceDTO, req.getFilePath(),
+                req.getFileSize(), req.getSpeed(), req.getProgress(), req.getContent()));
+        }
+        redisTemplate.opsForList().rightPushAll(PREFIX_REDIS_TASK_LOG + taskId, logList);
+        // 一小时后过期
+        redisTemplate.expireAt(PREFIX_REDIS_TASK_LOG + taskId, new Date(System.currentTimeMillis() + 3600 * 1000));
+    }
+
     @Override
     public FileSourceTaskStatusDTO getFileSourceTaskStatusAndLogs(String taskId, Long logStart, Long logLength) {
         FileSourceTaskDTO fileSourceTaskDTO = fileSourceTaskDAO.getFileSourceTaskById(dslContext, taskId);
@@ -72,6 +72,36 @@ public class WorkerConfig {
     @Value("${job.file.worker.download.file.expire.days:7}")
     private Integer downloadFileExpireDays;
 
+    /**
+     * 支持Range的文件源，文件大小超过阈值时启用分片并发下载
+     */
+    @Value("${job.file.worker.download.chunk.enabled:true}")
+    private Boolean chunkDownloadEnabled;
+
+    @Value("${job.file.worker.download.chunk.threshold.mb:64}")
+    private Integer chunkDownloadThresholdMB;
+
+    @Value("${job.file.worker.download.chunk.size.mb:8}")
+    private Integer chunkSizeMB;
+
+    /**
+     * 单个文件的并发连接数
+     */
+    @Value("${job.file.worker.download.chunk.concurrency:4}")
+    private Integer chunkDownloadConcurrency;
+
+    /**
+     * 所有文件共享的分片下载线程数
+     */
+    @Value("${job.file.worker.download.chunk.thread.num:32}")
+    private Integer chunkDownloadThreadNum;
+
+    /**
+     * 单个分片失败后从断点重试的最大次数
+     */
+    @Value("${job.file.worker.download.chunk.retry:5}")
+    private Integer chunkDownloadMaxRetry;
+
     @Value("${job.file.gateway.api.root.url:http://api.job.com}")
     private String jobApiRootUrl;
 
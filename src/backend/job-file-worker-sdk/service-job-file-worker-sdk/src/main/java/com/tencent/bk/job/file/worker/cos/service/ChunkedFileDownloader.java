@@ -0,0 +1,303 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.file.worker.cos.service;
+
+import com.tencent.bk.job.common.constant.ErrorCode;
+import com.tencent.bk.job.common.exception.ServiceException;
+import com.tencent.bk.job.file.worker.config.WorkerConfig;
+import com.tencent.bk.job.file.worker.utils.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分片并发下载：按固定大小将文件切分为多个分片，通过多个Range连接并发拉取，
+ * 使用FileChannel按偏移写入预分配的目标文件。分片失败时仅从断点重试该分片剩余部分，
+ * MD5随已完成的连续分片增量计算，所有分片完成时即得到校验结果
+ */
+@Slf4j
+@Component
+public class ChunkedFileDownloader {
+
+    private static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+
+    private final WorkerConfig workerConfig;
+    private final ThreadPoolExecutor chunkExecutor;
+
+    @Autowired
+    public ChunkedFileDownloader(WorkerConfig workerConfig) {
+        // 线程池满时直接拒绝，由download按已启动的分片线程数继续或退化为单连接下载
+        this(workerConfig, new ThreadPoolExecutor(workerConfig.getChunkDownloadThreadNum(),
+            workerConfig.getChunkDownloadThreadNum(), 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(1000)));
+    }
+
+    ChunkedFileDownloader(WorkerConfig workerConfig, ThreadPoolExecutor chunkExecutor) {
+        this.workerConfig = workerConfig;
+        this.chunkExecutor = chunkExecutor;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        chunkExecutor.shutdownNow();
+    }
+
+    /**
+     * 是否对该文件使用分片下载
+     */
+    public boolean isApplicable(RemoteClient remoteClient, long fileSize) {
+        return workerConfig.getChunkDownloadEnabled()
+            && remoteClient.supportsRange()
+            && fileSize >= workerConfig.getChunkDownloadThresholdMB() * BYTES_PER_MB;
+    }
+
+    /**
+     * 分片并发下载文件到本地
+     * <p>
+     * 分片线程池满时不会在调用线程中执行分片任务：已启动部分分片线程时由这些线程领取剩余分片，
+     * 一个都未启动时退化为单连接顺序下载
+     *
+     * @return 下载后文件的MD5
+     */
+    public String download(RemoteClient remoteClient, String filePath, String targetPath, long fileSize,
+                           AtomicInteger speed, AtomicInteger process) throws InterruptedException {
+        long chunkSize = Math.max(1, workerConfig.getChunkSizeMB()) * BYTES_PER_MB;
+        int chunkCount = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        int workerNum = Math.max(1, Math.min(workerConfig.getChunkDownloadConcurrency(), chunkCount));
+        log.info("Start chunked download, filePath={}, fileSize={}, chunkSize={}, chunkCount={}, workerNum={}",
+            filePath, fileSize, chunkSize, chunkCount, workerNum);
+        List<Future<?>> workerFutures = new ArrayList<>(workerNum);
+        DownloadContext context = null;
+        try (RandomAccessFile targetFile = new RandomAccessFile(targetPath, "rw")) {
+            // 预分配文件，各分片直接按偏移写入
+            targetFile.setLength(fileSize);
+            FileChannel channel = targetFile.getChannel();
+            context = new DownloadContext(remoteClient, filePath, channel, fileSize, chunkSize, chunkCount);
+            for (int i = 0; i < workerNum; i++) {
+                DownloadContext workerContext = context;
+                try {
+                    workerFutures.add(chunkExecutor.submit(() -> runChunkWorker(workerContext)));
+                } catch (RejectedExecutionException e) {
+                    log.warn("chunkExecutor is full, started {}/{} chunk workers, filePath={}",
+                        workerFutures.size(), workerNum, filePath);
+                    break;
+                }
+            }
+            if (!workerFutures.isEmpty()) {
+                return waitAndDigest(context, targetPath, speed, process);
+            }
+        } catch (ClosedByInterruptException e) {
+            throw new InterruptedException("Chunked download interrupted");
+        } catch (IOException e) {
+            log.error("Fail to download file by chunks, filePath={}, targetPath={}", filePath, targetPath, e);
+            throw new ServiceException(e, ErrorCode.FAIL_TO_REQUEST_THIRD_FILE_SOURCE_DOWNLOAD_GENERIC_FILE,
+                new String[]{e.getMessage()});
+        } finally {
+            if (context != null) {
+                context.stopped = true;
+            }
+            workerFutures.forEach(future -> future.cancel(true));
+        }
+        log.warn("No chunk worker available, download by single stream, filePath={}", filePath);
+        return FileUtil.writeInsToFile(remoteClient.getFileInputStream(filePath), targetPath, fileSize, speed,
+            process);
+    }
+
+    /**
+     * 等待分片完成，并按文件顺序对已连续完成的分片增量计算MD5
+     */
+    private String waitAndDigest(DownloadContext context, String targetPath, AtomicInteger speed,
+                                 AtomicInteger process) throws InterruptedException, IOException {
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        ByteBuffer digestBuffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+        boolean[] completedChunks = new boolean[context.chunkCount];
+        List<Integer> completedIndexes = new ArrayList<>();
+        int digestCursor = 0;
+        long lastSpeedWatchTime = System.currentTimeMillis();
+        long lastSpeedWatchFileSize = 0;
+        while (digestCursor < context.chunkCount) {
+            Integer chunkIndex = context.completedChunkQueue.poll(1, TimeUnit.SECONDS);
+            if (context.failure != null) {
+                throw context.failure;
+            }
+            if (chunkIndex != null) {
+                completedIndexes.add(chunkIndex);
+                context.completedChunkQueue.drainTo(completedIndexes);
+                completedIndexes.forEach(index -> completedChunks[index] = true);
+                completedIndexes.clear();
+            }
+            while (digestCursor < context.chunkCount && completedChunks[digestCursor]) {
+                digestChunk(context, digestCursor, digest, digestBuffer);
+                digestCursor++;
+            }
+            long totalLength = context.downloadedBytes.get();
+            process.set((int) (totalLength / (float) context.fileSize * 100));
+            long currentSpeedWatchTime = System.currentTimeMillis();
+            long timeDelta = currentSpeedWatchTime - lastSpeedWatchTime;
+            if (timeDelta >= 1000 || digestCursor == context.chunkCount) {
+                if (timeDelta > 0) {
+                    //计算速度 KB/s
+                    speed.set((int) ((totalLength - lastSpeedWatchFileSize) / timeDelta));
+                }
+                lastSpeedWatchTime = currentSpeedWatchTime;
+                lastSpeedWatchFileSize = totalLength;
+                log.info("progress: {}KB/{}KB, speed: {}KB/s, targetPath: {}", totalLength / 1000,
+                    context.fileSize / 1000, speed.get(), targetPath);
+            }
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private void digestChunk(DownloadContext context, int chunkIndex, MessageDigest digest,
+                             ByteBuffer buffer) throws IOException {
+        long position = chunkIndex * context.chunkSize;
+        long end = Math.min(position + context.chunkSize, context.fileSize);
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int length = context.channel.read(buffer, position);
+            if (length < 0) {
+                throw new EOFException("Unexpected end of file at position " + position);
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += length;
+        }
+    }
+
+    private void runChunkWorker(DownloadContext context) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+        int chunkIndex;
+        while (!context.stopped && (chunkIndex = context.nextChunkIndex.getAndIncrement()) < context.chunkCount) {
+            try {
+                downloadChunk(context, chunkIndex, buffer);
+                context.completedChunkQueue.offer(chunkIndex);
+            } catch (Throwable t) {
+                // 任何异常都需要通知等待线程，否则等待线程会一直等待该分片完成
+                context.failure = t instanceof RuntimeException ? (RuntimeException) t :
+                    new ServiceException(t, ErrorCode.FAIL_TO_REQUEST_THIRD_FILE_SOURCE_DOWNLOAD_GENERIC_FILE,
+                        new String[]{t.getMessage()});
+                context.stopped = true;
+            }
+        }
+    }
+
+    /**
+     * 下载单个分片，失败时从已写入位置继续请求剩余范围
+     */
+    private void downloadChunk(DownloadContext context, int chunkIndex, ByteBuffer buffer) {
+        long start = chunkIndex * context.chunkSize;
+        long end = Math.min(start + context.chunkSize, context.fileSize) - 1;
+        long position = start;
+        int retryCount = 0;
+        while (!context.stopped) {
+            try (InputStream ins = context.remoteClient.getFileRangeInputStream(context.filePath, position, end);
+                 ReadableByteChannel src = Channels.newChannel(ins)) {
+                while (position <= end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position + 1));
+                    int length = src.read(buffer);
+                    if (length < 0) {
+                        throw new EOFException(String.format("Range [%d,%d] ended at %d", start, end, position));
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        position += context.channel.write(buffer, position);
+                    }
+                    context.downloadedBytes.addAndGet(length);
+                }
+                return;
+            } catch (IOException | ServiceException e) {
+                if (context.stopped) {
+                    return;
+                }
+                retryCount++;
+                if (retryCount > workerConfig.getChunkDownloadMaxRetry()) {
+                    log.error("Fail to download range [{},{}] of {} after {} retries", position, end,
+                        context.filePath, retryCount - 1, e);
+                    throw new ServiceException(e, ErrorCode.FAIL_TO_REQUEST_THIRD_FILE_SOURCE_DOWNLOAD_GENERIC_FILE,
+                        new String[]{e.getMessage()});
+                }
+                log.warn("Fail to download range [{},{}] of {}, retry {}", position, end, context.filePath,
+                    retryCount, e);
+                try {
+                    Thread.sleep(1000L * retryCount);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new ServiceException(e, ErrorCode.FAIL_TO_REQUEST_THIRD_FILE_SOURCE_DOWNLOAD_GENERIC_FILE,
+                        new String[]{"chunk download interrupted"});
+                }
+            }
+        }
+    }
+
+    private static class DownloadContext {
+        private final RemoteClient remoteClient;
+        private final String filePath;
+        private final FileChannel channel;
+        private final long fileSize;
+        private final long chunkSize;
+        private final int chunkCount;
+        private final AtomicInteger nextChunkIndex = new AtomicInteger(0);
+        private final AtomicLong downloadedBytes = new AtomicLong(0);
+        private final BlockingQueue<Integer> completedChunkQueue = new LinkedBlockingQueue<>();
+        private volatile RuntimeException failure;
+        private volatile boolean stopped = false;
+
+        DownloadContext(RemoteClient remoteClient, String filePath, FileChannel channel, long fileSize,
+                        long chunkSize, int chunkCount) {
+            this.remoteClient = remoteClient;
+            this.filePath = filePath;
+            this.channel = channel;
+            this.fileSize = fileSize;
+            this.chunkSize = chunkSize;
+            this.chunkCount = chunkCount;
+        }
+    }
+}
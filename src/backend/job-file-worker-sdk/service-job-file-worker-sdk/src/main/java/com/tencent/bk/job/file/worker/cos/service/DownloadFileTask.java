@@ -50,10 +50,11 @@ class DownloadFileTask extends Thread {
     AtomicInteger process;
     TaskReporter taskReporter;
     DownloadFileTaskEventListener taskEventListener;
-    FileProgressWatchingTask watchingTask;
+    FileProgressReporter progressReporter;
+    ChunkedFileDownloader chunkedFileDownloader;
     public DownloadFileTask(RemoteClient remoteClient, String taskId, String filePath, String downloadFileDir,
                             String filePrefix, AtomicLong fileSize, AtomicInteger speed, AtomicInteger process,
-                            FileProgressWatchingTask watchingTask,
+                            FileProgressReporter progressReporter, ChunkedFileDownloader chunkedFileDownloader,
                             TaskReporter taskReporter, DownloadFileTaskEventListener taskEventListener) {
         this.remoteClient = remoteClient;
         this.taskId = taskId;
@@ -63,7 +64,8 @@ class DownloadFileTask extends Thread {
         this.fileSize = fileSize;
         this.speed = speed;
         this.process = process;
-        this.watchingTask = watchingTask;
+        this.progressReporter = progressReporter;
+        this.chunkedFileDownloader = chunkedFileDownloader;
         this.taskReporter = taskReporter;
         this.taskEventListener = taskEventListener;
     }
@@ -110,8 +112,14 @@ class DownloadFileTask extends Thread {
                 long fileSize = metaData.getSize();
                 fileMd5 = metaData.getMd5();
                 fileSizeWrapper.set(fileSize);
-                ins = remoteClient.getFileInputStream(filePath);
-                currentMd5 = FileUtil.writeInsToFile(ins, targetPath, fileSize, speed, process);
+                if (chunkedFileDownloader != null && chunkedFileDownloader.isApplicable(remoteClient, fileSize)) {
+                    // 支持Range的大文件：分片并发下载，单个分片失败只重试该分片
+                    currentMd5 = chunkedFileDownloader.download(remoteClient, filePath, targetPath, fileSize, speed,
+                        process);
+                } else {
+                    ins = remoteClient.getFileInputStream(filePath);
+                    currentMd5 = FileUtil.writeInsToFile(ins, targetPath, fileSize, speed, process);
+                }
                 if (fileMd5 == null) {
                     log.warn("No Md5 in metadata, do not check,key={},targetPath={},fileMd5={},currentMd5={}",
                         filePath, targetPath, fileMd5, currentMd5);
@@ -162,12 +170,14 @@ class DownloadFileTask extends Thread {
         downloadPath = dir + fileName;
         try {
             taskReporter.reportFileDownloadStart(taskId, filePath, downloadPath);
+            progressReporter.startWatching(fileTaskKey, new FileDownloadProgress(taskId, filePath, downloadPath,
+                fileSize, speed, process));
             downloadFileToLocal(remoteClient, filePath, downloadPath, fileSize, speed, process);
-            watchingTask.stopWatching();
+            progressReporter.stopWatching(fileTaskKey);
             taskReporter.reportFileDownloadSuccess(taskId, filePath, downloadPath, fileSize.get(), speed.get(),
                 process.get());
         } catch (Throwable t) {
-            watchingTask.stopWatching();
+            progressReporter.stopWatching(fileTaskKey);
             if (t.getCause() instanceof InterruptedException) {
                 ThreadCommandBus.Command command = ThreadCommandBus.getCommandQueue(fileTaskKey).poll();
                 if (command == null) {
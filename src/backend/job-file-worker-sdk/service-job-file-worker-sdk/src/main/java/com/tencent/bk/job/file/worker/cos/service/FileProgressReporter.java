@@ -0,0 +1,110 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.file.worker.cos.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文件下载进度上报：下载任务注册各自的进度，由定时任务统一采集后合并为一次批量上报，
+ * 避免每个文件占用一个线程并单独请求file-gateway
+ */
+@Slf4j
+@Component
+public class FileProgressReporter {
+
+    private final TaskReporter taskReporter;
+    private final Map<String, FileDownloadProgress> watchingProgressMap = new ConcurrentHashMap<>();
+    /**
+     * 正在上报中的文件，由 this 保护
+     */
+    private final Set<String> reportingKeys = new HashSet<>();
+    private final Object reportLock = new Object();
+
+    @Autowired
+    public FileProgressReporter(TaskReporter taskReporter) {
+        this.taskReporter = taskReporter;
+    }
+
+    public void startWatching(String fileTaskKey, FileDownloadProgress progress) {
+        watchingProgressMap.put(fileTaskKey, progress);
+    }
+
+    /**
+     * 停止上报文件进度，若该文件的进度正在上报则等待上报完成，返回后不会再有该文件的进度发出，
+     * 保证不会覆盖随后上报的结束状态
+     */
+    public synchronized void stopWatching(String fileTaskKey) {
+        watchingProgressMap.remove(fileTaskKey);
+        while (reportingKeys.contains(fileTaskKey)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 在锁内获取进度快照，在锁外发送请求，避免请求期间阻塞其他文件停止上报
+     */
+    public void reportProgress() {
+        synchronized (reportLock) {
+            List<String> fileTaskKeys;
+            List<FileDownloadProgress> progressList;
+            synchronized (this) {
+                if (watchingProgressMap.isEmpty()) {
+                    return;
+                }
+                fileTaskKeys = new ArrayList<>(watchingProgressMap.size());
+                progressList = new ArrayList<>(watchingProgressMap.size());
+                watchingProgressMap.forEach((fileTaskKey, progress) -> {
+                    fileTaskKeys.add(fileTaskKey);
+                    progressList.add(progress);
+                });
+                reportingKeys.addAll(fileTaskKeys);
+            }
+            try {
+                taskReporter.batchReportFileDownloadProgress(progressList);
+            } catch (Throwable t) {
+                log.error("Fail to report progress of {} files", progressList.size(), t);
+            } finally {
+                synchronized (this) {
+                    fileTaskKeys.forEach(reportingKeys::remove);
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -52,21 +52,18 @@ public class FileTaskService {
             r.run();
         }
     });
-    private static final ThreadPoolExecutor watchingTaskExecutor = new ThreadPoolExecutor(20, 50, 1, TimeUnit.MINUTES
-        , new LinkedBlockingQueue<>(1000), new RejectedExecutionHandler() {
-        @Override
-        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-            log.error("watchingTaskExecutor rejected a task, ignore, plz add more threads");
-        }
-    });
     private static final ConcurrentHashMap<String, Future<?>> fileTaskMap = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<String, Future<?>> watchingTaskMap = new ConcurrentHashMap<>();
     private final WorkerConfig workerConfig;
     private final TaskReporter taskReporter;
+    private final ChunkedFileDownloader chunkedFileDownloader;
+    private final FileProgressReporter progressReporter;
     @Autowired
-    public FileTaskService(WorkerConfig workerConfig, TaskReporter taskReporter) {
+    public FileTaskService(WorkerConfig workerConfig, TaskReporter taskReporter,
+                           ChunkedFileDownloader chunkedFileDownloader, FileProgressReporter progressReporter) {
         this.workerConfig = workerConfig;
         this.taskReporter = taskReporter;
+        this.chunkedFileDownloader = chunkedFileDownloader;
+        this.progressReporter = progressReporter;
     }
 
     public List<String> getAllTaskIdList() {
@@ -84,18 +81,14 @@ public class FileTaskService {
             AtomicLong fileSize = new AtomicLong(0L);
             AtomicInteger speed = new AtomicInteger(0);
             AtomicInteger process = new AtomicInteger(0);
-            FileProgressWatchingTask progressWatchingTask = new FileProgressWatchingTask(taskId, filePath,
-                workerConfig.getWorkspaceDirPath(), fileSize, speed, process, taskReporter, watchingTaskMap::remove);
             DownloadFileTask downloadFileTask = new DownloadFileTask(client, taskId, filePath,
-                workerConfig.getWorkspaceDirPath(), filePrefix, fileSize, speed, process, progressWatchingTask,
-                taskReporter, tmpfileTaskKey -> {
+                workerConfig.getWorkspaceDirPath(), filePrefix, fileSize, speed, process, progressReporter,
+                chunkedFileDownloader, taskReporter, tmpfileTaskKey -> {
                 fileTaskMap.remove(tmpfileTaskKey);
                 ThreadCommandBus.destroyCommandQueue(tmpfileTaskKey);
             });
             Future<?> fileTaskFuture = fileTaskExecutor.submit(downloadFileTask);
-            Future<?> watchingTaskFuture = watchingTaskExecutor.submit(progressWatchingTask);
             fileTaskMap.put(fileTaskKey, fileTaskFuture);
-            watchingTaskMap.put(fileTaskKey, watchingTaskFuture);
         }
         return filePathList.size();
     }
@@ -56,6 +56,10 @@ public class GatewayInfoService {
         return getJobApiRootUrl() + "/remote/fileWorker/task/update";
     }
 
+    public String getBatchReportTaskStatusUrl() {
+        return getJobApiRootUrl() + "/remote/fileWorker/task/batchUpdate";
+    }
+
     public String getWorkerOffLineUrl() {
         return getJobApiRootUrl() + "/remote/fileWorker/offLineAndReDispatch";
     }
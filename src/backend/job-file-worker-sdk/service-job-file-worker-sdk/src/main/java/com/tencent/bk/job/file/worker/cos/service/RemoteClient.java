@@ -24,9 +24,13 @@
 
 package com.tencent.bk.job.file.worker.cos.service;
 
+import com.tencent.bk.job.common.constant.ErrorCode;
 import com.tencent.bk.job.common.exception.ServiceException;
 import com.tencent.bk.job.file.worker.model.FileMetaData;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 
+import java.io.IOException;
 import java.io.InputStream;
 
 public interface RemoteClient {
@@ -35,6 +39,36 @@ public interface RemoteClient {
 
     InputStream getFileInputStream(String filePath) throws ServiceException;
 
+    /**
+     * 文件源是否支持按字节范围（HTTP Range）下载，支持时大文件走分片并发下载
+     */
+    default boolean supportsRange() {
+        return false;
+    }
+
+    /**
+     * 获取文件指定字节范围的输入流
+     * <p>
+     * 默认实现读取整个文件并跳过范围之前的内容，只保证结果正确；支持按范围下载的文件源需同时覆盖
+     * {@link #supportsRange()} 与本方法
+     *
+     * @param filePath 文件路径
+     * @param start    起始偏移（包含）
+     * @param end      结束偏移（包含）
+     * @return 范围内容输入流
+     */
+    default InputStream getFileRangeInputStream(String filePath, long start, long end) throws ServiceException {
+        InputStream ins = getFileInputStream(filePath);
+        try {
+            IOUtils.skipFully(ins, start);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(ins);
+            throw new ServiceException(e, ErrorCode.FAIL_TO_REQUEST_THIRD_FILE_SOURCE_DOWNLOAD_GENERIC_FILE,
+                new String[]{e.getMessage()});
+        }
+        return new BoundedInputStream(ins, end - start + 1);
+    }
+
     void shutdown();
 
 }
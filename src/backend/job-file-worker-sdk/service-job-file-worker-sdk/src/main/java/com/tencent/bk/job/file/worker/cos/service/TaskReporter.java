@@ -24,6 +24,7 @@
 
 package com.tencent.bk.job.file.worker.cos.service;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface TaskReporter {
@@ -33,6 +34,8 @@ public interface TaskReporter {
     void reportFileDownloadProgress(String taskId, String filePath, String downloadPath, Long fileSize, Integer speed
         , Integer progress);
 
+    void batchReportFileDownloadProgress(Collection<FileDownloadProgress> progressList);
+
     void reportFileDownloadSuccess(String taskId, String filePath, String downloadPath, Long fileSize, Integer speed,
                                    Integer progress);
 
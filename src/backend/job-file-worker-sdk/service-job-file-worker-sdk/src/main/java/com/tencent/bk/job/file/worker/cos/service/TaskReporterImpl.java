@@ -24,17 +24,26 @@
 
 package com.tencent.bk.job.file.worker.cos.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.tencent.bk.job.common.model.ServiceResponse;
 import com.tencent.bk.job.common.model.http.HttpReq;
 import com.tencent.bk.job.common.util.http.AbstractHttpHelper;
 import com.tencent.bk.job.common.util.http.DefaultHttpHelper;
 import com.tencent.bk.job.common.util.http.HttpReqGenUtil;
 import com.tencent.bk.job.common.util.json.JsonUtils;
 import com.tencent.bk.job.file_gateway.consts.TaskStatusEnum;
+import com.tencent.bk.job.file_gateway.model.req.inner.BatchUpdateFileSourceTaskReq;
 import com.tencent.bk.job.file_gateway.model.req.inner.UpdateFileSourceTaskReq;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Slf4j
@@ -63,6 +72,50 @@ public class TaskReporterImpl implements TaskReporter {
 
     public void reportFileDownloadProgress(String taskId, String filePath, String downloadPath, Long fileSize,
                                            Integer speed, Integer progress) {
+        reportTaskStatus(buildProgressReq(taskId, filePath, downloadPath, fileSize, speed, progress));
+    }
+
+    @Override
+    public void batchReportFileDownloadProgress(Collection<FileDownloadProgress> progressList) {
+        List<UpdateFileSourceTaskReq> reqList = new ArrayList<>(progressList.size());
+        for (FileDownloadProgress progress : progressList) {
+            reqList.add(buildProgressReq(progress.getTaskId(), progress.getFilePath(), progress.getDownloadPath(),
+                progress.getFileSize().get(), progress.getSpeed().get(), progress.getProcess().get()));
+        }
+        String url = gatewayInfoService.getBatchReportTaskStatusUrl();
+        HttpReq req = HttpReqGenUtil.genSimpleJsonReq(url, new BatchUpdateFileSourceTaskReq(reqList));
+        try (CloseableHttpResponse httpResp = httpHelper.postRawResp(url, req.getBody(), req.getHeaders())) {
+            int statusCode = httpResp.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_NOT_FOUND || statusCode == HttpStatus.SC_METHOD_NOT_ALLOWED) {
+                // 兼容未提供批量接口的file-gateway，退化为逐个上报
+                log.info("Batch report api not supported by file-gateway, statusCode={}, report one by one",
+                    statusCode);
+                reqList.forEach(this::reportTaskStatus);
+                return;
+            }
+            String respStr = httpResp.getEntity() == null ? null :
+                EntityUtils.toString(httpResp.getEntity(), StandardCharsets.UTF_8);
+            if (statusCode != HttpStatus.SC_OK) {
+                log.warn("Fail to batch report {} progress, statusCode={}, respStr={}", reqList.size(), statusCode,
+                    respStr);
+                return;
+            }
+            ServiceResponse<Integer> resp = JsonUtils.fromJson(respStr,
+                new TypeReference<ServiceResponse<Integer>>() {
+                });
+            if (resp == null || !resp.isSuccess()) {
+                log.warn("Fail to batch report {} progress, respStr={}", reqList.size(), respStr);
+                return;
+            }
+            log.debug("batch report {} progress, respStr={}", reqList.size(), respStr);
+        } catch (Exception e) {
+            // 进度会在下个周期重新上报，这里不逐个重试，避免file-gateway异常时请求数放大
+            log.warn("Fail to batch report {} progress to file-gateway", reqList.size(), e);
+        }
+    }
+
+    private UpdateFileSourceTaskReq buildProgressReq(String taskId, String filePath, String downloadPath,
+                                                     Long fileSize, Integer speed, Integer progress) {
         UpdateFileSourceTaskReq req = new UpdateFileSourceTaskReq();
         req.setFileSourceTaskId(taskId);
         req.setFilePath(filePath);
@@ -72,7 +125,7 @@ public class TaskReporterImpl implements TaskReporter {
         req.setSpeed(speed + " KB/s");
         req.setContent("Pulling OSS file...");
         req.setProgress(progress);
-        reportTaskStatus(req);
+        return req;
     }
 
     public void reportFileDownloadSuccess(String taskId, String filePath, String downloadPath, Long fileSize,
@@ -24,6 +24,7 @@
 
 package com.tencent.bk.job.file.worker.task;
 
+import com.tencent.bk.job.file.worker.cos.service.FileProgressReporter;
 import com.tencent.bk.job.file.worker.task.clear.ClearExpiredFileTask;
 import com.tencent.bk.job.file.worker.task.heartbeat.HeartBeatTask;
 import org.slf4j.Logger;
@@ -41,11 +42,14 @@ public class ScheduledTasks {
 
     private final HeartBeatTask heartBeatTask;
     private final ClearExpiredFileTask clearExpiredFileTask;
+    private final FileProgressReporter fileProgressReporter;
 
     @Autowired
-    public ScheduledTasks(HeartBeatTask heartBeatTask, ClearExpiredFileTask clearExpiredFileTask) {
+    public ScheduledTasks(HeartBeatTask heartBeatTask, ClearExpiredFileTask clearExpiredFileTask,
+                          FileProgressReporter fileProgressReporter) {
         this.heartBeatTask = heartBeatTask;
         this.clearExpiredFileTask = clearExpiredFileTask;
+        this.fileProgressReporter = fileProgressReporter;
     }
 
     /**
@@ -73,4 +77,16 @@ public class ScheduledTasks {
             logger.error("heartBeatTask fail", e);
         }
     }
+
+    /**
+     * 下载进度批量上报：1s/次
+     */
+    @Scheduled(fixedDelay = 1000L)
+    public void reportFileDownloadProgress() {
+        try {
+            fileProgressReporter.reportProgress();
+        } catch (Exception e) {
+            logger.error("reportFileDownloadProgress fail", e);
+        }
+    }
 }
@@ -0,0 +1,330 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.file.worker.cos.service;
+
+import com.tencent.bk.job.common.exception.ServiceException;
+import com.tencent.bk.job.file.worker.config.WorkerConfig;
+import com.tencent.bk.job.file.worker.model.FileMetaData;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("分片并发下载测试")
+public class ChunkedFileDownloaderTest {
+
+    private static final int MB = 1024 * 1024;
+    private static final String FILE_PATH = "bucket/file.bin";
+
+    @TempDir
+    Path tempDir;
+
+    private final List<ThreadPoolExecutor> executors = new ArrayList<>();
+
+    private WorkerConfig workerConfig;
+    private byte[] content;
+    private Path targetPath;
+
+    @BeforeEach
+    public void setUp() {
+        workerConfig = new WorkerConfig();
+        workerConfig.setChunkDownloadEnabled(true);
+        workerConfig.setChunkDownloadThresholdMB(1);
+        workerConfig.setChunkSizeMB(1);
+        workerConfig.setChunkDownloadConcurrency(2);
+        workerConfig.setChunkDownloadThreadNum(4);
+        workerConfig.setChunkDownloadMaxRetry(1);
+        // 3.5MB，最后一个分片不满
+        content = new byte[3 * MB + MB / 2];
+        new Random(7).nextBytes(content);
+        targetPath = tempDir.resolve("file.bin");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executors.forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    @Test
+    @DisplayName("按分片大小切分Range，MD5按文件顺序计算")
+    public void testDownloadSplitsRangesByChunkSize() throws Exception {
+        FakeRangeRemoteClient remoteClient = new FakeRangeRemoteClient(content);
+
+        String md5 = download(new ChunkedFileDownloader(workerConfig), remoteClient);
+
+        assertThat(md5).isEqualTo(DigestUtils.md5Hex(content));
+        assertThat(Files.readAllBytes(targetPath)).isEqualTo(content);
+        assertThat(remoteClient.sortedRanges()).containsExactly(
+            new Range(0, MB - 1),
+            new Range(MB, 2 * MB - 1),
+            new Range(2 * MB, 3 * MB - 1),
+            new Range(3 * MB, content.length - 1)
+        );
+        assertThat(remoteClient.fullStreamCount.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("分片中途失败时从断点继续下载该分片剩余部分")
+    public void testDownloadResumesFailedChunkFromBreakpoint() throws Exception {
+        FakeRangeRemoteClient remoteClient = new FakeRangeRemoteClient(content);
+        remoteClient.failOnce(MB, 100_000);
+        remoteClient.failOnce(3 * MB, 1);
+
+        String md5 = download(new ChunkedFileDownloader(workerConfig), remoteClient);
+
+        assertThat(md5).isEqualTo(DigestUtils.md5Hex(content));
+        assertThat(Files.readAllBytes(targetPath)).isEqualTo(content);
+        assertThat(remoteClient.sortedRanges()).containsExactly(
+            new Range(0, MB - 1),
+            new Range(MB, 2 * MB - 1),
+            new Range(MB + 100_000, 2 * MB - 1),
+            new Range(2 * MB, 3 * MB - 1),
+            new Range(3 * MB, content.length - 1),
+            new Range(3 * MB + 1, content.length - 1)
+        );
+    }
+
+    @Test
+    @DisplayName("分片重试次数耗尽后下载失败")
+    public void testDownloadFailsAfterMaxRetry() {
+        FakeRangeRemoteClient remoteClient = new FakeRangeRemoteClient(content);
+        remoteClient.failAlways(2 * MB, 10);
+
+        ChunkedFileDownloader downloader = new ChunkedFileDownloader(workerConfig);
+
+        assertThatThrownBy(() -> download(downloader, remoteClient)).isInstanceOf(ServiceException.class);
+        // 首次请求失败后仅从断点重试一次
+        assertThat(remoteClient.sortedRanges()).contains(
+            new Range(2 * MB, 3 * MB - 1),
+            new Range(2 * MB + 10, 3 * MB - 1)
+        );
+        assertThat(remoteClient.sortedRanges()).doesNotContain(new Range(2 * MB + 20, 3 * MB - 1));
+    }
+
+    @Test
+    @DisplayName("部分分片线程被拒绝时由已启动的线程完成全部分片")
+    public void testDownloadWithPartiallyRejectedWorkers() throws Exception {
+        workerConfig.setChunkDownloadConcurrency(4);
+        ThreadPoolExecutor executor = newSaturatedExecutor(2, 1);
+        FakeRangeRemoteClient remoteClient = new FakeRangeRemoteClient(content);
+
+        String md5 = download(new ChunkedFileDownloader(workerConfig, executor), remoteClient);
+
+        assertThat(md5).isEqualTo(DigestUtils.md5Hex(content));
+        assertThat(remoteClient.sortedRanges()).hasSize(4);
+        assertThat(remoteClient.rangeThreads).doesNotContain(Thread.currentThread().getName());
+        assertThat(remoteClient.fullStreamCount.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("分片线程全部被拒绝时退化为单连接下载")
+    public void testDownloadFallsBackToSingleStreamWhenExecutorFull() throws Exception {
+        ThreadPoolExecutor executor = newSaturatedExecutor(1, 1);
+        FakeRangeRemoteClient remoteClient = new FakeRangeRemoteClient(content);
+
+        String md5 = download(new ChunkedFileDownloader(workerConfig, executor), remoteClient);
+
+        assertThat(md5).isEqualTo(DigestUtils.md5Hex(content));
+        assertThat(Files.readAllBytes(targetPath)).isEqualTo(content);
+        assertThat(remoteClient.sortedRanges()).isEmpty();
+        assertThat(remoteClient.fullStreamCount.get()).isEqualTo(1);
+    }
+
+    private String download(ChunkedFileDownloader downloader, RemoteClient remoteClient) throws Exception {
+        return downloader.download(remoteClient, FILE_PATH, targetPath.toString(), content.length,
+            new AtomicInteger(), new AtomicInteger());
+    }
+
+    /**
+     * 创建无等待队列的线程池，并用阻塞任务占满其中busyThreads个线程
+     */
+    private ThreadPoolExecutor newSaturatedExecutor(int threadNum, int busyThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadNum, threadNum, 1, TimeUnit.MINUTES,
+            new SynchronousQueue<>());
+        executors.add(executor);
+        CountDownLatch neverRelease = new CountDownLatch(1);
+        for (int i = 0; i < busyThreads; i++) {
+            executor.execute(() -> {
+                try {
+                    neverRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static class Range {
+        private final long start;
+        private final long end;
+
+        Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Range)) {
+                return false;
+            }
+            Range range = (Range) o;
+            return start == range.start && end == range.end;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(start) * 31 + Long.hashCode(end);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + "," + end + "]";
+        }
+    }
+
+    /**
+     * 支持Range的文件源，可按请求起始偏移注入读取到指定字节数后的IO异常
+     */
+    private static class FakeRangeRemoteClient implements RemoteClient {
+        private final byte[] content;
+        private final List<Range> ranges = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> rangeThreads = Collections.synchronizedList(new ArrayList<>());
+        private final Map<Long, Integer> onceFailures = new ConcurrentHashMap<>();
+        private final Map<Long, Integer> alwaysFailures = new ConcurrentHashMap<>();
+        private final AtomicInteger fullStreamCount = new AtomicInteger();
+
+        FakeRangeRemoteClient(byte[] content) {
+            this.content = content;
+        }
+
+        void failOnce(long start, int failAfterBytes) {
+            onceFailures.put(start, failAfterBytes);
+        }
+
+        void failAlways(long chunkStart, int failAfterBytes) {
+            alwaysFailures.put(chunkStart, failAfterBytes);
+        }
+
+        List<Range> sortedRanges() {
+            List<Range> sorted;
+            synchronized (ranges) {
+                sorted = new ArrayList<>(ranges);
+            }
+            sorted.sort(Comparator.comparingLong((Range range) -> range.start).thenComparingLong(range -> range.end));
+            return sorted;
+        }
+
+        @Override
+        public boolean supportsRange() {
+            return true;
+        }
+
+        @Override
+        public FileMetaData getFileMetaData(String filePath) {
+            return null;
+        }
+
+        @Override
+        public InputStream getFileInputStream(String filePath) {
+            fullStreamCount.incrementAndGet();
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public InputStream getFileRangeInputStream(String filePath, long start, long end) {
+            ranges.add(new Range(start, end));
+            rangeThreads.add(Thread.currentThread().getName());
+            Integer failAfterBytes = onceFailures.remove(start);
+            if (failAfterBytes == null) {
+                // 持续失败的分片每次都在读取failAfterBytes字节后中断
+                for (Map.Entry<Long, Integer> entry : alwaysFailures.entrySet()) {
+                    if (start >= entry.getKey() && start < entry.getKey() + MB) {
+                        failAfterBytes = entry.getValue();
+                    }
+                }
+            }
+            int length = (int) (end - start + 1);
+            InputStream ins = new ByteArrayInputStream(content, (int) start, length);
+            return failAfterBytes == null ? ins : new FailingInputStream(ins, failAfterBytes);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private static class FailingInputStream extends InputStream {
+        private final InputStream delegate;
+        private int remainingBytes;
+
+        FailingInputStream(InputStream delegate, int failAfterBytes) {
+            this.delegate = delegate;
+            this.remainingBytes = failAfterBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remainingBytes <= 0) {
+                throw new IOException("Connection reset");
+            }
+            int length = delegate.read(b, off, Math.min(len, remainingBytes));
+            if (length > 0) {
+                remainingBytes -= length;
+            }
+            return length;
+        }
+    }
+}
@@ -42,6 +42,8 @@ import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
@@ -317,6 +319,40 @@ public class ArtifactoryRemoteClient implements RemoteClient {
         }
     }
 
+    @Override
+    public boolean supportsRange() {
+        return true;
+    }
+
+    @Override
+    public InputStream getFileRangeInputStream(String filePath, long start, long end) throws ServiceException {
+        List<String> pathList = parsePath(filePath);
+        DownloadGenericFileReq req = new DownloadGenericFileReq();
+        req.setProject(pathList.get(0));
+        req.setRepo(pathList.get(1));
+        req.setPath(pathList.get(2));
+        String url = StringUtil.replacePathVariables(URL_DOWNLOAD_GENERIC_FILE, req);
+        url = getCompleteUrl(url);
+        List<Header> headerList = getBaseHeaderList();
+        headerList.add(new BasicHeader(HttpHeaders.RANGE, "bytes=" + start + "-" + end));
+        CloseableHttpResponse resp = null;
+        try {
+            resp = longHttpHelper.getRawResp(true, url, headerList.toArray(new Header[0]));
+            int statusCode = resp.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_PARTIAL_CONTENT) {
+                // 服务端未按Range返回时不能写入分片，交由调用方重试
+                resp.close();
+                throw new IOException(String.format("Unexpected status %d for range [%d,%d]", statusCode, start,
+                    end));
+            }
+            return resp.getEntity().getContent();
+        } catch (IOException e) {
+            log.error("Fail to getFileRangeInputStream", e);
+            throw new ServiceException(e, ErrorCode.FAIL_TO_REQUEST_THIRD_FILE_SOURCE_DOWNLOAD_GENERIC_FILE,
+                new String[]{e.getMessage()});
+        }
+    }
+
     @Override
     public void shutdown() {
     }
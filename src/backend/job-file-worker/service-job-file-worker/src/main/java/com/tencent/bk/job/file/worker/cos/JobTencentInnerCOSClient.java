@@ -25,6 +25,7 @@
 package com.tencent.bk.job.file.worker.cos;
 
 import com.tencent.bk.job.file.worker.model.FileMetaData;
+import com.tencent.cos.COSClient;
 import com.tencent.cos.model.Bucket;
 import com.tencent.cos.model.COSObjectSummary;
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +43,8 @@ public class JobTencentInnerCOSClient {
     // 文件源Bucket域名模板
     private String appId;
     private String regionName;
+    // 分片下载时复用的COS客户端，与当前凭证绑定
+    private volatile COSClient rangeDownloadClient;
 
     public JobTencentInnerCOSClient(
         String accessKey,
@@ -110,6 +113,31 @@ public class JobTencentInnerCOSClient {
             , key);
     }
 
+    public InputStream getFileRangeInputStream(String bucketName, String key, long start, long end) {
+        return TencentInnerCOSUtil.getFileRangeInputStream(getRangeDownloadClient(), getRealBucketName(bucketName),
+            key, start, end);
+    }
+
+    private COSClient getRangeDownloadClient() {
+        COSClient client = rangeDownloadClient;
+        if (client == null) {
+            synchronized (this) {
+                client = rangeDownloadClient;
+                if (client == null) {
+                    client = TencentInnerCOSUtil.getCOSClient(accessKey, secretKey, regionName);
+                    rangeDownloadClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
     public void shutdown() {
+        synchronized (this) {
+            if (rangeDownloadClient != null) {
+                rangeDownloadClient.shutdown();
+                rangeDownloadClient = null;
+            }
+        }
     }
 }
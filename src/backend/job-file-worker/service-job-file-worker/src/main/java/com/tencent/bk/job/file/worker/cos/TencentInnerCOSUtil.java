@@ -136,6 +136,20 @@ public class TencentInnerCOSUtil {
         return cosObject.getObjectContent();
     }
 
+    /**
+     * 获取文件指定范围的输入流，cosClient 由调用方复用并负责关闭
+     */
+    public static InputStream getFileRangeInputStream(COSClient cosClient, String bucketName, String key,
+                                                      long start, long end) {
+        COSObject cosObject = cosClient.getObject(new GetObjectRequest(bucketName, key).withRange(start, end));
+        if (cosObject == null) {
+            throw new ServiceException(ErrorCode.FAIL_TO_REQUEST_THIRD_FILE_SOURCE_DOWNLOAD_GENERIC_FILE,
+                new String[]{String.format("Fail to getObject range [%d,%d] by bucketName %s key %s", start, end,
+                    bucketName, key)});
+        }
+        return cosObject.getObjectContent();
+    }
+
     public static FileMetaData getFileMetaData(String accessKey, String secretKey, String regionName,
                                                String bucketName, String key) {
         COSClient cosClient = getCOSClient(accessKey, secretKey, regionName);
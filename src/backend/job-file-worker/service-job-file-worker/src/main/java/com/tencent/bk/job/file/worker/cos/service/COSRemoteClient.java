@@ -61,6 +61,17 @@ public class COSRemoteClient implements RemoteClient {
         return jobTencentInnerCOSClient.getFileInputStream(pathList.get(0), pathList.get(1));
     }
 
+    @Override
+    public boolean supportsRange() {
+        return true;
+    }
+
+    @Override
+    public InputStream getFileRangeInputStream(String filePath, long start, long end) {
+        List<String> pathList = parsePath(filePath);
+        return jobTencentInnerCOSClient.getFileRangeInputStream(pathList.get(0), pathList.get(1), start, end);
+    }
+
     @Override
     public void shutdown() {
         jobTencentInnerCOSClient.shutdown();
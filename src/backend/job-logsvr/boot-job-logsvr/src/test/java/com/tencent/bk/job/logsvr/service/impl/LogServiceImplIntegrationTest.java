@@ -31,6 +31,8 @@ import com.tencent.bk.job.logsvr.model.TaskIpLog;
 import com.tencent.bk.job.logsvr.mongo.FileLogsCollectionLoader;
 import com.tencent.bk.job.logsvr.mongo.LogCollectionFactory;
 import com.tencent.bk.job.logsvr.mongo.LogCollectionLoaderFactory;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogChunksCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogIndexCollectionLoader;
 import com.tencent.bk.job.logsvr.mongo.ScriptLogsCollectionLoader;
 import com.tencent.bk.job.logsvr.service.LogService;
 import org.junit.jupiter.api.Test;
@@ -48,7 +50,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 @DataMongoTest
 @TestPropertySource(locations = "classpath:test.properties")
 @Import({LogServiceImpl.class, LogCollectionFactory.class, ScriptLogsCollectionLoader.class,
-    LogCollectionLoaderFactory.class, FileLogsCollectionLoader.class})
+    LogCollectionLoaderFactory.class, FileLogsCollectionLoader.class, ScriptLogChunkStorage.class,
+    ScriptLogChunksCollectionLoader.class, ScriptLogKeywordIndex.class, ScriptLogIndexCollectionLoader.class})
 public class LogServiceImplIntegrationTest {
     @Autowired
     private LogService logService;
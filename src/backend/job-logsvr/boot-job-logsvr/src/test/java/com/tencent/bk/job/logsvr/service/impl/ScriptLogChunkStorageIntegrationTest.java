@@ -0,0 +1,141 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.service.impl;
+
+import com.tencent.bk.job.logsvr.model.ScriptTaskLog;
+import com.tencent.bk.job.logsvr.model.TaskIpLog;
+import com.tencent.bk.job.logsvr.mongo.FileLogsCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.LogCollectionFactory;
+import com.tencent.bk.job.logsvr.mongo.LogCollectionLoaderFactory;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogChunksCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogIndexCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogsCollectionLoader;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataMongoTest
+@TestPropertySource(locations = "classpath:test.properties", properties = "job.logsvr.script-log.chunk.size-bytes=32")
+@Import({ScriptLogChunkStorage.class, LogCollectionFactory.class, LogCollectionLoaderFactory.class,
+    ScriptLogsCollectionLoader.class, FileLogsCollectionLoader.class, ScriptLogChunksCollectionLoader.class,
+    ScriptLogIndexCollectionLoader.class})
+public class ScriptLogChunkStorageIntegrationTest {
+    private static final String IP_1 = "0:127.0.0.1";
+    private static final String IP_2 = "0:127.0.0.2";
+
+    @Autowired
+    private ScriptLogChunkStorage scriptLogChunkStorage;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private static TaskIpLog buildLog(long stepInstanceId, String ip, String content, int offset) {
+        TaskIpLog taskIpLog = new TaskIpLog();
+        taskIpLog.setStepInstanceId(stepInstanceId);
+        taskIpLog.setExecuteCount(0);
+        taskIpLog.setIp(ip);
+        taskIpLog.setScriptTaskLog(new ScriptTaskLog(stepInstanceId, ip, 0, content, offset));
+        return taskIpLog;
+    }
+
+    private static String joinContent(List<ScriptTaskLog> scriptLogs) {
+        return scriptLogs.stream().map(ScriptTaskLog::getContent).collect(Collectors.joining());
+    }
+
+    private static Pattern keyword(String keyword) {
+        return Pattern.compile(keyword, Pattern.LITERAL | Pattern.CASE_INSENSITIVE);
+    }
+
+    @Test
+    void testAppendWithoutSeal() {
+        String collectionName = "job_log_script_chunk_2020_07_01";
+        scriptLogChunkStorage.append(collectionName, Arrays.asList(buildLog(1L, IP_1, "hello", 5),
+            buildLog(1L, IP_1, " world", 11)));
+
+        List<ScriptTaskLog> scriptLogs = scriptLogChunkStorage.getScriptLogs(collectionName, 1L, 0,
+            Collections.singletonList(IP_1));
+        assertThat(joinContent(scriptLogs)).isEqualTo("hello world");
+        assertThat(mongoTemplate.getCollection(collectionName).countDocuments(
+            new Document("chunkNo", ScriptLogChunkStorage.OPEN_CHUNK_NO))).isEqualTo(1);
+    }
+
+    @Test
+    void testSealChunkAfterThreshold() {
+        String collectionName = "job_log_script_chunk_2020_07_02";
+        StringBuilder expected = new StringBuilder();
+        int offset = 0;
+        for (int i = 0; i < 5; i++) {
+            String content = "line-" + i + "-0123456789abcdef0123456789\n";
+            offset += content.length();
+            expected.append(content);
+            scriptLogChunkStorage.append(collectionName, Collections.singletonList(buildLog(2L, IP_1, content,
+                offset)));
+        }
+
+        // 每次追加都超过阈值，全部封存为有序号的 chunk
+        List<Document> chunks = mongoTemplate.getCollection(collectionName)
+            .find(new Document("stepId", 2L)).into(new ArrayList<>());
+        assertThat(chunks).extracting(chunk -> chunk.getInteger("chunkNo")).containsExactlyInAnyOrder(0, 1, 2, 3, 4);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.get("fragments")).isNull());
+
+        List<ScriptTaskLog> scriptLogs = scriptLogChunkStorage.getScriptLogs(collectionName, 2L, 0,
+            Collections.singletonList(IP_1));
+        scriptLogs.sort((log1, log2) -> Integer.compare(log1.getOffset(), log2.getOffset()));
+        assertThat(joinContent(scriptLogs)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void testGetIpsByKeyword() {
+        String collectionName = "job_log_script_chunk_2020_07_03";
+        scriptLogChunkStorage.append(collectionName, Arrays.asList(
+            buildLog(3L, IP_1, "sealed chunk contains ERROR keyword", 35),
+            buildLog(3L, IP_2, "open", 4)));
+        scriptLogChunkStorage.append(collectionName, Collections.singletonList(buildLog(3L, IP_2, " error", 10)));
+
+        assertThat(scriptLogChunkStorage.getIpsByKeyword(collectionName, 3L, 0, null, keyword("error")))
+            .containsExactlyInAnyOrder(IP_1, IP_2);
+        assertThat(scriptLogChunkStorage.getIpsByKeyword(collectionName, 3L, 0, Collections.singletonList(IP_2),
+            keyword("error"))).containsExactly(IP_2);
+        assertThat(scriptLogChunkStorage.getIpsByKeyword(collectionName, 3L, 0, null, keyword("sealed")))
+            .containsExactly(IP_1);
+        assertThat(scriptLogChunkStorage.getIpsByKeyword(collectionName, 3L, 0, null, keyword("e.r"))).isEmpty();
+        assertThat(scriptLogChunkStorage.getIpsByKeyword("job_log_script_chunk_2020_07_04", 3L, 0, null,
+            keyword("error"))).isEmpty();
+    }
+}
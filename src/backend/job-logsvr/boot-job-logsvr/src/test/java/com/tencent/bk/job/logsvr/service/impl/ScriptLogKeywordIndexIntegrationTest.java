@@ -0,0 +1,118 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.service.impl;
+
+import com.tencent.bk.job.logsvr.model.ScriptTaskLog;
+import com.tencent.bk.job.logsvr.model.TaskIpLog;
+import com.tencent.bk.job.logsvr.mongo.FileLogsCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.LogCollectionFactory;
+import com.tencent.bk.job.logsvr.mongo.LogCollectionLoaderFactory;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogChunksCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogIndexCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogsCollectionLoader;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataMongoTest
+@TestPropertySource(locations = "classpath:test.properties",
+    properties = "job.logsvr.script-log.keyword-index.enabled=true")
+@Import({ScriptLogKeywordIndex.class, LogCollectionFactory.class, LogCollectionLoaderFactory.class,
+    ScriptLogsCollectionLoader.class, FileLogsCollectionLoader.class, ScriptLogChunksCollectionLoader.class,
+    ScriptLogIndexCollectionLoader.class})
+public class ScriptLogKeywordIndexIntegrationTest {
+    private static final String IP_1 = "0:127.0.0.1";
+    private static final String IP_2 = "0:127.0.0.2";
+    private static final String IP_3 = "0:127.0.0.3";
+
+    @Autowired
+    private ScriptLogKeywordIndex scriptLogKeywordIndex;
+
+    private static TaskIpLog buildLog(long stepInstanceId, String ip, String content, int offset) {
+        TaskIpLog taskIpLog = new TaskIpLog();
+        taskIpLog.setStepInstanceId(stepInstanceId);
+        taskIpLog.setExecuteCount(0);
+        taskIpLog.setIp(ip);
+        taskIpLog.setScriptTaskLog(new ScriptTaskLog(stepInstanceId, ip, 0, content, offset));
+        return taskIpLog;
+    }
+
+    private static IntFunction<Collection<String>> loggedIps(String... ips) {
+        return executeCount -> Arrays.asList(ips);
+    }
+
+    @Test
+    void testFindCandidateIps() {
+        String collectionName = "job_log_script_idx_2020_08_01";
+        scriptLogKeywordIndex.index(collectionName, Arrays.asList(
+            buildLog(1L, IP_1, "Connection ", 11),
+            buildLog(1L, IP_2, "ok", 2)));
+        scriptLogKeywordIndex.index(collectionName, Arrays.asList(
+            buildLog(1L, IP_1, "refused", 18),
+            buildLog(1L, IP_2, " done", 7)));
+
+        assertThat(scriptLogKeywordIndex.findCandidateIps(collectionName, 1L, 0, "refused",
+            loggedIps(IP_1, IP_2))).containsExactly(IP_1);
+        assertThat(scriptLogKeywordIndex.findCandidateIps(collectionName, 1L, 0, "timeout",
+            loggedIps(IP_1, IP_2))).isEmpty();
+        // 关键字过短，不使用索引
+        assertThat(scriptLogKeywordIndex.findCandidateIps(collectionName, 1L, 0, "ok",
+            loggedIps(IP_1, IP_2))).isNull();
+    }
+
+    @Test
+    void testFallbackWhenStepNotFullyIndexed() {
+        String collectionName = "job_log_script_idx_2020_08_02";
+        // IP_2 在启用索引之前已经写入了前 10 个字节的日志
+        scriptLogKeywordIndex.index(collectionName, Arrays.asList(
+            buildLog(2L, IP_1, "Connection refused", 18),
+            buildLog(2L, IP_2, "Connection refused", 28)));
+        assertThat(scriptLogKeywordIndex.findCandidateIps(collectionName, 2L, 0, "refused",
+            loggedIps(IP_1, IP_2))).isNull();
+
+        scriptLogKeywordIndex.index(collectionName, Collections.singletonList(buildLog(3L, IP_1, "error", 5)));
+        // IP_3 的日志全部在启用索引之前写入
+        assertThat(scriptLogKeywordIndex.findCandidateIps(collectionName, 3L, 0, "error",
+            loggedIps(IP_1, IP_3))).isNull();
+        assertThat(scriptLogKeywordIndex.findCandidateIps(collectionName, 3L, 0, "error",
+            loggedIps(IP_1))).containsExactly(IP_1);
+        // 步骤没有任何索引
+        assertThat(scriptLogKeywordIndex.findCandidateIps(collectionName, 4L, 0, "error",
+            loggedIps(IP_1))).isNull();
+        assertThat(scriptLogKeywordIndex.findCandidateIps(collectionName, 4L, 0, "error",
+            loggedIps())).isEmpty();
+    }
+}
@@ -31,16 +31,26 @@ import org.springframework.stereotype.Component;
 public class LogCollectionLoaderFactory {
     private ScriptLogsCollectionLoader scriptLogsCollectionLoader;
     private FileLogsCollectionLoader fileLogsCollectionLoader;
+    private ScriptLogChunksCollectionLoader scriptLogChunksCollectionLoader;
+    private ScriptLogIndexCollectionLoader scriptLogIndexCollectionLoader;
 
     @Autowired
     public LogCollectionLoaderFactory(ScriptLogsCollectionLoader scriptLogsCollectionLoader,
-                                      FileLogsCollectionLoader fileLogsCollectionLoader) {
+                                      FileLogsCollectionLoader fileLogsCollectionLoader,
+                                      ScriptLogChunksCollectionLoader scriptLogChunksCollectionLoader,
+                                      ScriptLogIndexCollectionLoader scriptLogIndexCollectionLoader) {
         this.scriptLogsCollectionLoader = scriptLogsCollectionLoader;
         this.fileLogsCollectionLoader = fileLogsCollectionLoader;
+        this.scriptLogChunksCollectionLoader = scriptLogChunksCollectionLoader;
+        this.scriptLogIndexCollectionLoader = scriptLogIndexCollectionLoader;
     }
 
     CollectionLoader getCollectionLoader(String collectionName) {
-        if (collectionName.contains("script")) {
+        if (collectionName.contains("script_chunk")) {
+            return scriptLogChunksCollectionLoader;
+        } else if (collectionName.contains("script_idx")) {
+            return scriptLogIndexCollectionLoader;
+        } else if (collectionName.contains("script")) {
             return scriptLogsCollectionLoader;
         } else if (collectionName.contains("file")) {
             return fileLogsCollectionLoader;
@@ -39,6 +39,7 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -47,18 +48,39 @@ import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 public class LogServiceImpl implements LogService {
     private static final int BATCH_SIZE = 100;
+    /**
+     * 脚本日志存储模式 - 日志片段，每次写入保存为一个文档
+     */
+    private static final String SCRIPT_LOG_STORAGE_MODE_FRAGMENT = "fragment";
+    /**
+     * 脚本日志存储模式 - 按主机聚合为压缩的 chunk
+     */
+    private static final String SCRIPT_LOG_STORAGE_MODE_CHUNK = "chunk";
     private final MongoTemplate mongoTemplate;
     private final LogCollectionFactory logCollectionFactory;
+    private final ScriptLogChunkStorage scriptLogChunkStorage;
+    private final ScriptLogKeywordIndex scriptLogKeywordIndex;
+    private final boolean scriptLogChunkMode;
 
     @Autowired
-    public LogServiceImpl(MongoTemplate mongoTemplate, LogCollectionFactory logCollectionFactory) {
+    public LogServiceImpl(MongoTemplate mongoTemplate,
+                          LogCollectionFactory logCollectionFactory,
+                          ScriptLogChunkStorage scriptLogChunkStorage,
+                          ScriptLogKeywordIndex scriptLogKeywordIndex,
+                          @Value("${job.logsvr.script-log.storage-mode:fragment}") String scriptLogStorageMode) {
         this.mongoTemplate = mongoTemplate;
         this.logCollectionFactory = logCollectionFactory;
+        this.scriptLogChunkStorage = scriptLogChunkStorage;
+        this.scriptLogKeywordIndex = scriptLogKeywordIndex;
+        this.scriptLogChunkMode = SCRIPT_LOG_STORAGE_MODE_CHUNK.equalsIgnoreCase(scriptLogStorageMode);
+        log.info("Script log storage mode: {}",
+            scriptLogChunkMode ? SCRIPT_LOG_STORAGE_MODE_CHUNK : SCRIPT_LOG_STORAGE_MODE_FRAGMENT);
     }
 
     @Override
@@ -81,6 +103,14 @@ public class LogServiceImpl implements LogService {
 
     private void batchWriteScriptLogs(List<TaskIpLog> taskIpLogs) {
         String jobCreateDate = taskIpLogs.get(0).getJobCreateDate();
+        scriptLogKeywordIndex.index(buildScriptLogIndexCollectionName(jobCreateDate), taskIpLogs);
+        if (scriptLogChunkMode) {
+            long start = System.currentTimeMillis();
+            scriptLogChunkStorage.append(buildScriptLogChunkCollectionName(jobCreateDate), taskIpLogs);
+            log.info("Batch append script log chunks, logSize: {}, cost: {} ms", taskIpLogs.size(),
+                System.currentTimeMillis() - start);
+            return;
+        }
         String collectionName = buildLogCollectionName(jobCreateDate, LogTypeEnum.SCRIPT);
         List<Document> scriptLogDocList = taskIpLogs.stream()
             .map(taskIpLog -> buildScriptLogDoc(taskIpLog.getScriptTaskLog())).collect(Collectors.toList());
@@ -152,6 +182,13 @@ public class LogServiceImpl implements LogService {
         String collectionName = buildLogCollectionName(taskIpLog.getJobCreateDate(), logType);
 
         try {
+            scriptLogKeywordIndex.index(buildScriptLogIndexCollectionName(taskIpLog.getJobCreateDate()),
+                Collections.singletonList(taskIpLog));
+            if (scriptLogChunkMode) {
+                scriptLogChunkStorage.append(buildScriptLogChunkCollectionName(taskIpLog.getJobCreateDate()),
+                    Collections.singletonList(taskIpLog));
+                return;
+            }
             Document scriptLogDoc = buildScriptLogDoc(taskIpLog.getScriptTaskLog());
             logCollectionFactory.getCollection(collectionName).insertOne(scriptLogDoc);
         } finally {
@@ -272,6 +309,14 @@ public class LogServiceImpl implements LogService {
         return "job_log_" + logType.getName() + "_" + jobCreateDate;
     }
 
+    private String buildScriptLogChunkCollectionName(String jobCreateDate) {
+        return "job_log_" + LogTypeEnum.SCRIPT.getName() + "_chunk_" + jobCreateDate;
+    }
+
+    private String buildScriptLogIndexCollectionName(String jobCreateDate) {
+        return "job_log_" + LogTypeEnum.SCRIPT.getName() + "_idx_" + jobCreateDate;
+    }
+
     @Override
     public TaskIpLog getScriptLogByIp(ScriptLogQuery query) {
         return getScriptTaskLogByIp(query);
@@ -350,6 +395,9 @@ public class LogServiceImpl implements LogService {
             query.addCriteria(Criteria.where("executeCount").is(executeCount));
             query.addCriteria(Criteria.where("ip").is(ip));
             List<ScriptTaskLog> scriptLogs = mongoTemplate.find(query, ScriptTaskLog.class, collectionName);
+            scriptLogs.addAll(scriptLogChunkStorage.getScriptLogs(
+                buildScriptLogChunkCollectionName(getLogRequest.getJobCreateDate()), stepInstanceId, executeCount,
+                Collections.singletonList(ip)));
 
             TaskIpLog taskIpLog = buildTaskIpLog(stepInstanceId, executeCount, ip, scriptLogs);
 
@@ -384,6 +432,9 @@ public class LogServiceImpl implements LogService {
             query.addCriteria(Criteria.where("ip").in(ips));
             query.limit(1000);
             List<ScriptTaskLog> scriptLogs = mongoTemplate.find(query, ScriptTaskLog.class, collectionName);
+            scriptLogs.addAll(scriptLogChunkStorage.getScriptLogs(
+                buildScriptLogChunkCollectionName(getLogRequest.getJobCreateDate()), stepInstanceId, executeCount,
+                ips));
 
             if (CollectionUtils.isEmpty(scriptLogs)) {
                 return Collections.emptyList();
@@ -459,27 +510,65 @@ public class LogServiceImpl implements LogService {
         query.addCriteria(Criteria.where("executeCount").is(executeCount));
         DeleteResult deleteResult = mongoTemplate.remove(query, buildLogCollectionName(jobCreateDate,
             LogTypeEnum.SCRIPT));
-        return deleteResult.getDeletedCount();
+        long deletedChunkCount = scriptLogChunkStorage.deleteStepLogs(
+            buildScriptLogChunkCollectionName(jobCreateDate), stepInstanceId, executeCount);
+        scriptLogKeywordIndex.deleteStepIndex(buildScriptLogIndexCollectionName(jobCreateDate), stepInstanceId,
+            executeCount);
+        return deleteResult.getDeletedCount() + deletedChunkCount;
     }
 
     @Override
     public List<IpDTO> getIpsByKeyword(long stepInstanceId, Integer executeCount, String jobCreateDate,
                                        String keyword) {
+        long start = System.currentTimeMillis();
         String collectionName = buildLogCollectionName(jobCreateDate, LogTypeEnum.SCRIPT);
-        Query query = buildQueryForKeywordSearch(stepInstanceId, executeCount, keyword);
+        String searchKeyword = keyword.replaceAll("['$&|`;#]", "");
+        // 通过关键字索引筛选候选主机，只对候选主机的日志做关键字匹配
+        List<String> candidateIps = scriptLogKeywordIndex.findCandidateIps(
+            buildScriptLogIndexCollectionName(jobCreateDate), stepInstanceId, executeCount, searchKeyword,
+            count -> getScriptLogIps(jobCreateDate, stepInstanceId, count));
+        if (candidateIps != null && candidateIps.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Pattern keywordPattern = Pattern.compile(searchKeyword, Pattern.LITERAL | Pattern.CASE_INSENSITIVE);
+        Query query = buildQueryForKeywordSearch(stepInstanceId, executeCount, keywordPattern);
+        if (candidateIps != null) {
+            query.addCriteria(Criteria.where("ip").in(candidateIps));
+        }
         query.fields().include("ip");
         List<ScriptTaskLog> logs = mongoTemplate.find(query, ScriptTaskLog.class, collectionName);
-        if (logs.isEmpty()) {
+        List<String> chunkIps = scriptLogChunkStorage.getIpsByKeyword(
+            buildScriptLogChunkCollectionName(jobCreateDate), stepInstanceId, executeCount, candidateIps,
+            keywordPattern);
+        long cost = System.currentTimeMillis() - start;
+        if (cost > 100L) {
+            log.warn("Get ips by keyword slow, stepInstanceId: {}, executeCount: {}, candidateIps: {}, cost: {} ms",
+                stepInstanceId, executeCount, candidateIps == null ? "all" : candidateIps.size(), cost);
+        }
+        if (logs.isEmpty() && chunkIps.isEmpty()) {
             return Collections.emptyList();
         }
-        return logs.stream()
-            .map(ScriptTaskLog::getIp)
+        return Stream.concat(logs.stream().map(ScriptTaskLog::getIp), chunkIps.stream())
             .distinct()
             .map(cloudIp -> new IpDTO(Long.valueOf(cloudIp.split(":")[0]), cloudIp.split(":")[1]))
             .collect(Collectors.toList());
     }
 
-    private Query buildQueryForKeywordSearch(long stepInstanceId, int executeCount, String keyword) {
+    /**
+     * 查询步骤某次执行中有脚本日志的主机
+     */
+    private Set<String> getScriptLogIps(String jobCreateDate, long stepInstanceId, int executeCount) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("stepId").is(stepInstanceId));
+        query.addCriteria(Criteria.where("executeCount").is(executeCount));
+        Set<String> ips = new HashSet<>(mongoTemplate.findDistinct(query, "ip",
+            buildLogCollectionName(jobCreateDate, LogTypeEnum.SCRIPT), String.class));
+        ips.addAll(scriptLogChunkStorage.getIps(buildScriptLogChunkCollectionName(jobCreateDate), stepInstanceId,
+            executeCount));
+        return ips;
+    }
+
+    private Query buildQueryForKeywordSearch(long stepInstanceId, int executeCount, Pattern pattern) {
         Query query = new Query();
         query.addCriteria(Criteria.where("stepId").is(stepInstanceId));
         if (executeCount == 0) {
@@ -487,8 +576,6 @@ public class LogServiceImpl implements LogService {
         } else {
             query.addCriteria(Criteria.where("executeCount").lte(executeCount));
         }
-        Pattern pattern = Pattern.compile(keyword.replaceAll("['$&|`;#]", ""),
-            Pattern.LITERAL | Pattern.CASE_INSENSITIVE);
         query.addCriteria(Criteria.where("content").regex(pattern));
         return query;
     }
@@ -0,0 +1,447 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.tencent.bk.job.logsvr.model.ScriptTaskLog;
+import com.tencent.bk.job.logsvr.model.TaskIpLog;
+import com.tencent.bk.job.logsvr.mongo.LogCollectionFactory;
+import com.tencent.bk.job.logsvr.util.LogChunkCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 脚本日志 chunk 存储。
+ * <p>
+ * 每个主机的日志保存在若干个 chunk 文档中：未封存的 chunk(chunkNo=-1) 通过 $push 在服务端追加日志片段，
+ * 大小超过阈值后压缩封存为有序号的 chunk，并记录 chunk 的起止偏移。读取一个主机的日志只需要一次索引查询。
+ */
+@Slf4j
+@Component
+public class ScriptLogChunkStorage {
+    /**
+     * 未封存的chunk序号
+     */
+    static final int OPEN_CHUNK_NO = -1;
+    private static final String FIELD_STEP_ID = "stepId";
+    private static final String FIELD_EXECUTE_COUNT = "executeCount";
+    private static final String FIELD_IP = "ip";
+    private static final String FIELD_CHUNK_NO = "chunkNo";
+    private static final String FIELD_FRAGMENTS = "fragments";
+    private static final String FIELD_RAW_SIZE = "rawSize";
+    private static final String FIELD_START_OFFSET = "startOffset";
+    private static final String FIELD_END_OFFSET = "endOffset";
+    private static final String FIELD_CODEC = "codec";
+    private static final String FIELD_DATA = "data";
+    private static final String FIELD_CONTENT = "content";
+    private static final String FIELD_OFFSET = "offset";
+    /**
+     * 并发封存同一主机的 chunk 时，chunk 序号冲突后的最大尝试次数
+     */
+    private static final int MAX_SEAL_ATTEMPTS = 3;
+    /**
+     * 关键字搜索每批读取的 chunk 数量，限制单批拉取的数据量
+     */
+    private static final int KEYWORD_SEARCH_BATCH_SIZE = 16;
+
+    private final MongoTemplate mongoTemplate;
+    private final LogCollectionFactory logCollectionFactory;
+    /**
+     * chunk 封存阈值，单位字节
+     */
+    private final int chunkSizeBytes;
+    /**
+     * chunk 集合已存在的缓存，避免在未启用 chunk 存储时读取创建空集合。只缓存存在的结果，
+     * 集合不存在时每次都重新检查，防止集合创建后仍然读取不到 chunk 数据
+     */
+    private final Cache<String, Boolean> collectionExistsCache = CacheBuilder.newBuilder()
+        .maximumSize(365).expireAfterWrite(1, TimeUnit.MINUTES).build();
+
+    @Autowired
+    public ScriptLogChunkStorage(MongoTemplate mongoTemplate,
+                                 LogCollectionFactory logCollectionFactory,
+                                 @Value("${job.logsvr.script-log.chunk.size-bytes:262144}") int chunkSizeBytes) {
+        this.mongoTemplate = mongoTemplate;
+        this.logCollectionFactory = logCollectionFactory;
+        this.chunkSizeBytes = chunkSizeBytes;
+    }
+
+    /**
+     * 追加脚本日志
+     *
+     * @param collectionName chunk 集合名称
+     * @param taskIpLogs     脚本日志
+     */
+    public void append(String collectionName, List<TaskIpLog> taskIpLogs) {
+        // 同一个主机的日志片段合并为一次追加
+        Map<HostKey, List<ScriptTaskLog>> hostLogs = new LinkedHashMap<>();
+        taskIpLogs.forEach(taskIpLog -> {
+            ScriptTaskLog scriptTaskLog = taskIpLog.getScriptTaskLog();
+            if (scriptTaskLog == null || scriptTaskLog.getContent() == null) {
+                return;
+            }
+            hostLogs.computeIfAbsent(new HostKey(scriptTaskLog.getStepInstanceId(), scriptTaskLog.getExecuteCount(),
+                scriptTaskLog.getIp()), k -> new ArrayList<>()).add(scriptTaskLog);
+        });
+        if (hostLogs.isEmpty()) {
+            return;
+        }
+        MongoCollection<Document> collection = logCollectionFactory.getCollection(collectionName);
+        collectionExistsCache.put(collectionName, true);
+        List<WriteModel<Document>> appendOps = new ArrayList<>(hostLogs.size());
+        hostLogs.forEach((hostKey, logs) -> appendOps.add(buildAppendOp(hostKey, logs)));
+        bulkAppend(collection, appendOps);
+        sealFullChunks(collection, hostLogs.keySet());
+    }
+
+    private UpdateOneModel<Document> buildAppendOp(HostKey hostKey, List<ScriptTaskLog> logs) {
+        List<Document> fragments = new ArrayList<>(logs.size());
+        int bytes = 0;
+        int endOffset = 0;
+        for (ScriptTaskLog scriptTaskLog : logs) {
+            int offset = scriptTaskLog.getOffset() == null ? 0 : scriptTaskLog.getOffset();
+            fragments.add(new Document(FIELD_OFFSET, offset).append(FIELD_CONTENT, scriptTaskLog.getContent()));
+            bytes += scriptTaskLog.getContent().getBytes(StandardCharsets.UTF_8).length;
+            endOffset = Math.max(endOffset, offset);
+        }
+        Document update = new Document("$push", new Document(FIELD_FRAGMENTS, new Document("$each", fragments)))
+            .append("$inc", new Document(FIELD_RAW_SIZE, bytes))
+            .append("$max", new Document(FIELD_END_OFFSET, endOffset));
+        return new UpdateOneModel<>(hostKey.toOpenChunkFilter(), update, new UpdateOptions().upsert(true));
+    }
+
+    private void bulkAppend(MongoCollection<Document> collection, List<WriteModel<Document>> appendOps) {
+        try {
+            collection.bulkWrite(appendOps, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // 并发 upsert 同一个主机的未封存 chunk 时，唯一索引冲突的一方重试即可追加到已创建的 chunk
+            List<WriteModel<Document>> retryOps = new ArrayList<>();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                retryOps.add(appendOps.get(error.getIndex()));
+            }
+            collection.bulkWrite(retryOps, new BulkWriteOptions().ordered(false));
+        }
+    }
+
+    /**
+     * 封存超过大小阈值的 chunk
+     */
+    private void sealFullChunks(MongoCollection<Document> collection, Collection<HostKey> hostKeys) {
+        Map<String, List<HostKey>> stepHostKeys = new LinkedHashMap<>();
+        hostKeys.forEach(hostKey -> stepHostKeys.computeIfAbsent(hostKey.stepInstanceId + ":" + hostKey.executeCount,
+            k -> new ArrayList<>()).add(hostKey));
+        stepHostKeys.values().forEach(keys -> {
+            List<String> ips = new ArrayList<>(keys.size());
+            keys.forEach(key -> ips.add(key.ip));
+            Document query = new Document(FIELD_STEP_ID, keys.get(0).stepInstanceId)
+                .append(FIELD_EXECUTE_COUNT, keys.get(0).executeCount)
+                .append(FIELD_IP, new Document("$in", ips))
+                .append(FIELD_CHUNK_NO, OPEN_CHUNK_NO)
+                .append(FIELD_RAW_SIZE, new Document("$gte", chunkSizeBytes));
+            for (Document openChunk : collection.find(query)) {
+                sealChunk(collection, openChunk);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sealChunk(MongoCollection<Document> collection, Document openChunk) {
+        List<Document> fragments = (List<Document>) openChunk.get(FIELD_FRAGMENTS);
+        if (fragments == null || fragments.isEmpty()) {
+            return;
+        }
+        fragments.sort((f1, f2) -> Integer.compare(f1.getInteger(FIELD_OFFSET, 0), f2.getInteger(FIELD_OFFSET, 0)));
+        StringBuilder content = new StringBuilder();
+        fragments.forEach(fragment -> content.append(fragment.getString(FIELD_CONTENT)));
+        Document firstFragment = fragments.get(0);
+        int startOffset = firstFragment.getInteger(FIELD_OFFSET, 0)
+            - firstFragment.getString(FIELD_CONTENT).getBytes(StandardCharsets.UTF_8).length;
+        int endOffset = fragments.get(fragments.size() - 1).getInteger(FIELD_OFFSET, 0);
+
+        Object stepInstanceId = openChunk.get(FIELD_STEP_ID);
+        Object executeCount = openChunk.get(FIELD_EXECUTE_COUNT);
+        String ip = openChunk.getString(FIELD_IP);
+        Binary data = new Binary(LogChunkCodec.compress(content.toString()));
+        // chunk 序号由 (stepId, executeCount, ip, chunkNo) 唯一索引保证不重复，并发封存冲突时重新分配序号
+        for (int attempt = 1; attempt <= MAX_SEAL_ATTEMPTS; attempt++) {
+            int chunkNo = nextChunkNo(collection, stepInstanceId, executeCount, ip);
+            // 以 rawSize 作为乐观锁，封存期间有新的片段追加时放弃本次封存，由下一次追加重新触发
+            Document filter = new Document("_id", openChunk.get("_id"))
+                .append(FIELD_CHUNK_NO, OPEN_CHUNK_NO)
+                .append(FIELD_RAW_SIZE, openChunk.get(FIELD_RAW_SIZE));
+            Document update = new Document("$set", new Document(FIELD_CHUNK_NO, chunkNo)
+                .append(FIELD_CODEC, LogChunkCodec.CODEC_DEFLATE)
+                .append(FIELD_DATA, data)
+                .append(FIELD_START_OFFSET, Math.max(0, startOffset))
+                .append(FIELD_END_OFFSET, endOffset))
+                .append("$unset", new Document(FIELD_FRAGMENTS, ""));
+            try {
+                long modified = collection.updateOne(filter, update).getModifiedCount();
+                if (log.isDebugEnabled()) {
+                    log.debug("Seal script log chunk, stepInstanceId: {}, executeCount: {}, ip: {}, chunkNo: {}, "
+                        + "sealed: {}", stepInstanceId, executeCount, ip, chunkNo, modified > 0);
+                }
+                return;
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                log.info("Chunk no conflict, retry seal, stepInstanceId: {}, executeCount: {}, ip: {}, chunkNo: {}",
+                    stepInstanceId, executeCount, ip, chunkNo);
+            }
+        }
+        // 未封存的 chunk 保持可读，由下一次追加重新触发封存
+        log.warn("Seal script log chunk fail after {} attempts, stepInstanceId: {}, executeCount: {}, ip: {}",
+            MAX_SEAL_ATTEMPTS, stepInstanceId, executeCount, ip);
+    }
+
+    private int nextChunkNo(MongoCollection<Document> collection, Object stepInstanceId, Object executeCount,
+                            String ip) {
+        Document lastSealedChunk = collection.find(new Document(FIELD_STEP_ID, stepInstanceId)
+            .append(FIELD_EXECUTE_COUNT, executeCount).append(FIELD_IP, ip))
+            .projection(Projections.include(FIELD_CHUNK_NO))
+            .sort(Sorts.descending(FIELD_CHUNK_NO)).limit(1).first();
+        return (lastSealedChunk == null) ? 0 : Math.max(0, lastSealedChunk.getInteger(FIELD_CHUNK_NO) + 1);
+    }
+
+    /**
+     * 读取主机的脚本日志片段，已封存的 chunk 作为一个片段返回
+     *
+     * @param collectionName chunk 集合名称
+     * @param stepInstanceId 步骤实例ID
+     * @param executeCount   执行次数
+     * @param ips            主机
+     * @return 日志片段
+     */
+    public List<ScriptTaskLog> getScriptLogs(String collectionName, long stepInstanceId, int executeCount,
+                                             Collection<String> ips) {
+        if (!isCollectionExists(collectionName)) {
+            return Collections.emptyList();
+        }
+        Document query = new Document(FIELD_STEP_ID, stepInstanceId).append(FIELD_EXECUTE_COUNT, executeCount);
+        if (ips.size() == 1) {
+            query.append(FIELD_IP, ips.iterator().next());
+        } else {
+            query.append(FIELD_IP, new Document("$in", new ArrayList<>(ips)));
+        }
+        List<ScriptTaskLog> scriptLogs = new ArrayList<>();
+        for (Document chunk : logCollectionFactory.getCollection(collectionName).find(query)) {
+            scriptLogs.addAll(toScriptLogs(chunk));
+        }
+        return scriptLogs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ScriptTaskLog> toScriptLogs(Document chunk) {
+        Long stepInstanceId = ((Number) chunk.get(FIELD_STEP_ID)).longValue();
+        Integer executeCount = ((Number) chunk.get(FIELD_EXECUTE_COUNT)).intValue();
+        String ip = chunk.getString(FIELD_IP);
+        if (chunk.getInteger(FIELD_CHUNK_NO) != OPEN_CHUNK_NO) {
+            Binary data = chunk.get(FIELD_DATA, Binary.class);
+            return Collections.singletonList(new ScriptTaskLog(stepInstanceId, ip, executeCount,
+                LogChunkCodec.decompress(data.getData()), chunk.getInteger(FIELD_END_OFFSET)));
+        }
+        List<Document> fragments = (List<Document>) chunk.get(FIELD_FRAGMENTS);
+        if (fragments == null) {
+            return Collections.emptyList();
+        }
+        List<ScriptTaskLog> scriptLogs = new ArrayList<>(fragments.size());
+        fragments.forEach(fragment -> scriptLogs.add(new ScriptTaskLog(stepInstanceId, ip, executeCount,
+            fragment.getString(FIELD_CONTENT), fragment.getInteger(FIELD_OFFSET))));
+        return scriptLogs;
+    }
+
+    /**
+     * 查询日志内容包含关键字的主机
+     *
+     * @param collectionName chunk 集合名称
+     * @param stepInstanceId 步骤实例ID
+     * @param executeCount   执行次数，为0时只查询第一次执行，否则查询小于等于该执行次数的日志
+     * @param candidateIps   候选主机，为 null 时查询步骤的全部主机
+     * @param keywordPattern 关键字，必须以 {@link Pattern#LITERAL} 编译
+     * @return 主机
+     */
+    public List<String> getIpsByKeyword(String collectionName, long stepInstanceId, int executeCount,
+                                        Collection<String> candidateIps, Pattern keywordPattern) {
+        if (!isCollectionExists(collectionName)) {
+            return Collections.emptyList();
+        }
+        Document query = new Document(FIELD_STEP_ID, stepInstanceId);
+        if (executeCount == 0) {
+            query.append(FIELD_EXECUTE_COUNT, executeCount);
+        } else {
+            query.append(FIELD_EXECUTE_COUNT, new Document("$lte", executeCount));
+        }
+        if (candidateIps != null) {
+            query.append(FIELD_IP, new Document("$in", new ArrayList<>(candidateIps)));
+        }
+        // 按主机排序逐个 chunk 流式匹配，已命中的主机跳过其余 chunk，避免一次性解压步骤的全部日志
+        Set<String> matchedIps = new LinkedHashSet<>();
+        for (Document chunk : logCollectionFactory.getCollection(collectionName).find(query)
+            .projection(Projections.include(FIELD_IP, FIELD_CHUNK_NO, FIELD_DATA, FIELD_FRAGMENTS))
+            .sort(Sorts.ascending(FIELD_IP, FIELD_CHUNK_NO))
+            .batchSize(KEYWORD_SEARCH_BATCH_SIZE)) {
+            String ip = chunk.getString(FIELD_IP);
+            if (!matchedIps.contains(ip) && chunkContainsKeyword(chunk, keywordPattern)) {
+                matchedIps.add(ip);
+            }
+        }
+        return new ArrayList<>(matchedIps);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean chunkContainsKeyword(Document chunk, Pattern keywordPattern) {
+        if (chunk.getInteger(FIELD_CHUNK_NO) != OPEN_CHUNK_NO) {
+            Binary data = chunk.get(FIELD_DATA, Binary.class);
+            return data != null && LogChunkCodec.containsKeyword(data.getData(), keywordPattern);
+        }
+        List<Document> fragments = (List<Document>) chunk.get(FIELD_FRAGMENTS);
+        if (fragments == null) {
+            return false;
+        }
+        for (Document fragment : fragments) {
+            String content = fragment.getString(FIELD_CONTENT);
+            if (content != null && keywordPattern.matcher(content).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查询有日志的主机
+     *
+     * @param collectionName chunk 集合名称
+     * @param stepInstanceId 步骤实例ID
+     * @param executeCount   执行次数
+     * @return 主机
+     */
+    public List<String> getIps(String collectionName, long stepInstanceId, int executeCount) {
+        if (!isCollectionExists(collectionName)) {
+            return Collections.emptyList();
+        }
+        return logCollectionFactory.getCollection(collectionName).distinct(FIELD_IP,
+            new Document(FIELD_STEP_ID, stepInstanceId).append(FIELD_EXECUTE_COUNT, executeCount), String.class)
+            .into(new ArrayList<>());
+    }
+
+    /**
+     * 删除步骤的日志
+     */
+    public long deleteStepLogs(String collectionName, long stepInstanceId, int executeCount) {
+        if (!isCollectionExists(collectionName)) {
+            return 0;
+        }
+        return logCollectionFactory.getCollection(collectionName).deleteMany(
+            new Document(FIELD_STEP_ID, stepInstanceId).append(FIELD_EXECUTE_COUNT, executeCount)).getDeletedCount();
+    }
+
+    private boolean isCollectionExists(String collectionName) {
+        if (collectionExistsCache.getIfPresent(collectionName) != null) {
+            return true;
+        }
+        boolean exists;
+        try {
+            exists = mongoTemplate.collectionExists(collectionName);
+        } catch (Exception e) {
+            log.warn("Check collection exists fail, collectionName: {}", collectionName, e);
+            return true;
+        }
+        if (exists) {
+            collectionExistsCache.put(collectionName, true);
+        }
+        return exists;
+    }
+
+    private static final class HostKey {
+        private final long stepInstanceId;
+        private final int executeCount;
+        private final String ip;
+
+        HostKey(long stepInstanceId, int executeCount, String ip) {
+            this.stepInstanceId = stepInstanceId;
+            this.executeCount = executeCount;
+            this.ip = ip;
+        }
+
+        Document toOpenChunkFilter() {
+            return new Document(FIELD_STEP_ID, stepInstanceId)
+                .append(FIELD_EXECUTE_COUNT, executeCount)
+                .append(FIELD_IP, ip)
+                .append(FIELD_CHUNK_NO, OPEN_CHUNK_NO);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            HostKey hostKey = (HostKey) o;
+            return stepInstanceId == hostKey.stepInstanceId && executeCount == hostKey.executeCount
+                && Objects.equals(ip, hostKey.ip);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stepInstanceId, executeCount, ip);
+        }
+    }
+}
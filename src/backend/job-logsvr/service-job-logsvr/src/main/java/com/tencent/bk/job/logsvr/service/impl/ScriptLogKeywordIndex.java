@@ -0,0 +1,339 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.tencent.bk.job.logsvr.model.ScriptTaskLog;
+import com.tencent.bk.job.logsvr.model.TaskIpLog;
+import com.tencent.bk.job.logsvr.mongo.LogCollectionFactory;
+import com.tencent.bk.job.logsvr.util.LogKeywordGrams;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * 脚本日志关键字索引。
+ * <p>
+ * 写入日志时为每个主机维护一个索引文档，保存日志内容的 n-gram 编码(多键索引)。按关键字查询主机时，先通过索引筛选出包含关键字全部编码的候选主机，
+ * 再只对候选主机的日志做关键字校验，避免对整个步骤的日志做正则扫描。
+ * <p>
+ * 编码数量超过上限的主机不再追加编码，标记为 FULL_GRAM，查询时总是作为候选主机，保证索引文档大小与写入开销有界。
+ * <p>
+ * 索引文档记录主机已索引日志的最小起始偏移，只有步骤的全部主机都从第一段日志开始建立了索引时才使用索引查询，
+ * 否则(启用索引之前已经写入过日志)回退为正则扫描。索引会增加每次写入的开销，默认不启用。
+ */
+@Slf4j
+@Component
+public class ScriptLogKeywordIndex {
+    /**
+     * 编码数量超过上限的主机的标记编码
+     */
+    private static final int FULL_GRAM = -1;
+    private static final String FIELD_STEP_ID = "stepId";
+    private static final String FIELD_EXECUTE_COUNT = "executeCount";
+    private static final String FIELD_IP = "ip";
+    private static final String FIELD_GRAMS = "grams";
+    private static final String FIELD_GRAM_COUNT = "gramCount";
+    private static final String FIELD_START_OFFSET = "startOffset";
+
+    private final MongoTemplate mongoTemplate;
+    private final LogCollectionFactory logCollectionFactory;
+    private final boolean enabled;
+    /**
+     * 每个主机最多保存的编码数量
+     */
+    private final int maxGramsPerHost;
+    /**
+     * 索引集合已存在的缓存。只缓存存在的结果，集合不存在时每次都重新检查
+     */
+    private final Cache<String, Boolean> collectionExistsCache = CacheBuilder.newBuilder()
+        .maximumSize(365).expireAfterWrite(1, TimeUnit.MINUTES).build();
+
+    @Autowired
+    public ScriptLogKeywordIndex(MongoTemplate mongoTemplate,
+                                 LogCollectionFactory logCollectionFactory,
+                                 @Value("${job.logsvr.script-log.keyword-index.enabled:false}") boolean enabled,
+                                 @Value("${job.logsvr.script-log.keyword-index.max-grams-per-host:10000}")
+                                     int maxGramsPerHost) {
+        this.mongoTemplate = mongoTemplate;
+        this.logCollectionFactory = logCollectionFactory;
+        this.enabled = enabled;
+        this.maxGramsPerHost = maxGramsPerHost;
+    }
+
+    /**
+     * 为脚本日志建立索引。需要在保存日志之前调用，保证能够查询到的日志一定已经建立索引
+     *
+     * @param collectionName 索引集合名称
+     * @param taskIpLogs     脚本日志
+     */
+    public void index(String collectionName, List<TaskIpLog> taskIpLogs) {
+        if (!enabled) {
+            return;
+        }
+        Map<HostKey, Set<Integer>> hostGrams = new LinkedHashMap<>();
+        Map<HostKey, Integer> hostStartOffsets = new HashMap<>();
+        taskIpLogs.forEach(taskIpLog -> {
+            ScriptTaskLog scriptTaskLog = taskIpLog.getScriptTaskLog();
+            if (scriptTaskLog == null || scriptTaskLog.getContent() == null) {
+                return;
+            }
+            HostKey hostKey = new HostKey(scriptTaskLog.getStepInstanceId(), scriptTaskLog.getExecuteCount(),
+                scriptTaskLog.getIp());
+            // 没有编码的日志片段(内容过短)同样记录起始偏移，保证主机的索引完整性可以判断
+            LogKeywordGrams.extractGrams(scriptTaskLog.getContent(),
+                hostGrams.computeIfAbsent(hostKey, k -> new HashSet<>()));
+            int offset = scriptTaskLog.getOffset() == null ? 0 : scriptTaskLog.getOffset();
+            int startOffset = Math.max(0, offset - scriptTaskLog.getContent().getBytes(StandardCharsets.UTF_8).length);
+            hostStartOffsets.merge(hostKey, startOffset, Math::min);
+        });
+        if (hostGrams.isEmpty()) {
+            return;
+        }
+
+        MongoCollection<Document> collection = logCollectionFactory.getCollection(collectionName);
+        collectionExistsCache.put(collectionName, true);
+        List<WriteModel<Document>> updateOps = new ArrayList<>(hostGrams.size());
+        hostGrams.forEach((hostKey, grams) -> {
+            // 已经标记为 FULL_GRAM 的主机不会匹配过滤条件，upsert 产生的唯一索引冲突可以忽略
+            Document filter = hostKey.toFilter().append(FIELD_GRAMS, new Document("$ne", FULL_GRAM));
+            Document update = new Document("$addToSet", new Document(FIELD_GRAMS,
+                new Document("$each", new ArrayList<>(grams))))
+                .append("$inc", new Document(FIELD_GRAM_COUNT, grams.size()))
+                .append("$min", new Document(FIELD_START_OFFSET, hostStartOffsets.get(hostKey)));
+            updateOps.add(new UpdateOneModel<>(filter, update, new UpdateOptions().upsert(true)));
+        });
+        bulkUpdateIgnoreDuplicateKey(collection, updateOps);
+        markFullHosts(collection, hostGrams.keySet());
+    }
+
+    private void bulkUpdateIgnoreDuplicateKey(MongoCollection<Document> collection,
+                                              List<WriteModel<Document>> updateOps) {
+        try {
+            collection.bulkWrite(updateOps, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            // 并发创建同一个主机的索引文档时，冲突的一方重试；已标记为 FULL_GRAM 的主机重试时仍然冲突，忽略
+            List<WriteModel<Document>> retryOps = new ArrayList<>(e.getWriteErrors().size());
+            e.getWriteErrors().forEach(error -> retryOps.add(updateOps.get(error.getIndex())));
+            try {
+                collection.bulkWrite(retryOps, new BulkWriteOptions().ordered(false));
+            } catch (MongoBulkWriteException retryException) {
+                for (BulkWriteError error : retryException.getWriteErrors()) {
+                    if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                        throw retryException;
+                    }
+                }
+            }
+        }
+    }
+
+    private void markFullHosts(MongoCollection<Document> collection, Set<HostKey> hostKeys) {
+        Map<String, List<String>> stepIps = new LinkedHashMap<>();
+        Map<String, HostKey> stepKeys = new LinkedHashMap<>();
+        hostKeys.forEach(hostKey -> {
+            String stepKey = hostKey.stepInstanceId + ":" + hostKey.executeCount;
+            stepKeys.putIfAbsent(stepKey, hostKey);
+            stepIps.computeIfAbsent(stepKey, k -> new ArrayList<>()).add(hostKey.ip);
+        });
+        stepIps.forEach((stepKey, ips) -> {
+            HostKey hostKey = stepKeys.get(stepKey);
+            Document filter = new Document(FIELD_STEP_ID, hostKey.stepInstanceId)
+                .append(FIELD_EXECUTE_COUNT, hostKey.executeCount)
+                .append(FIELD_IP, new Document("$in", ips))
+                .append(FIELD_GRAM_COUNT, new Document("$gte", maxGramsPerHost))
+                .append(FIELD_GRAMS, new Document("$ne", FULL_GRAM));
+            long fullHosts = collection.updateMany(filter, new Document("$set",
+                new Document(FIELD_GRAMS, Collections.singletonList(FULL_GRAM)))).getModifiedCount();
+            if (fullHosts > 0) {
+                log.info("Keyword index reach max grams, stepInstanceId: {}, executeCount: {}, hosts: {}",
+                    hostKey.stepInstanceId, hostKey.executeCount, fullHosts);
+            }
+        });
+    }
+
+    /**
+     * 查询可能包含关键字的主机
+     *
+     * @param collectionName  索引集合名称
+     * @param stepInstanceId  步骤实例ID
+     * @param executeCount    执行次数，为0时只查询第一次执行，否则查询小于等于该执行次数的日志
+     * @param keyword         关键字
+     * @param loggedIpsLoader 按执行次数查询有日志的主机，用于判断步骤的日志是否已经全部建立索引
+     * @return 候选主机；索引不可用时(未启用、关键字过短、步骤日志没有全部建立索引)返回 null
+     */
+    public List<String> findCandidateIps(String collectionName, long stepInstanceId, int executeCount,
+                                         String keyword, IntFunction<Collection<String>> loggedIpsLoader) {
+        if (!enabled) {
+            return null;
+        }
+        List<Integer> keywordGrams = LogKeywordGrams.extractKeywordGrams(keyword);
+        if (keywordGrams.isEmpty() || !isCollectionExists(collectionName)) {
+            return null;
+        }
+        MongoCollection<Document> collection = logCollectionFactory.getCollection(collectionName);
+        Document stepFilter = new Document(FIELD_STEP_ID, stepInstanceId);
+        if (executeCount == 0) {
+            stepFilter.append(FIELD_EXECUTE_COUNT, executeCount);
+        } else {
+            stepFilter.append(FIELD_EXECUTE_COUNT, new Document("$lte", executeCount));
+        }
+        if (!isStepFullyIndexed(collection, stepFilter, executeCount, loggedIpsLoader)) {
+            log.info("Keyword index of step is incomplete, search by regex, stepInstanceId: {}, executeCount: {}",
+                stepInstanceId, executeCount);
+            return null;
+        }
+
+        Document query = new Document(stepFilter).append("$or", Arrays.asList(
+            new Document(FIELD_GRAMS, new Document("$all", keywordGrams)),
+            new Document(FIELD_GRAMS, FULL_GRAM)));
+        Set<String> ips = new LinkedHashSet<>();
+        for (Document doc : collection.find(query).projection(Projections.include(FIELD_IP))) {
+            ips.add(doc.getString(FIELD_IP));
+        }
+        return new ArrayList<>(ips);
+    }
+
+    /**
+     * 步骤每次执行中有日志的主机都存在索引，并且索引从主机的第一段日志开始建立
+     */
+    private boolean isStepFullyIndexed(MongoCollection<Document> collection, Document stepFilter, int executeCount,
+                                       IntFunction<Collection<String>> loggedIpsLoader) {
+        Map<Integer, Set<String>> indexedIps = new HashMap<>();
+        for (Document doc : collection.find(stepFilter)
+            .projection(Projections.include(FIELD_EXECUTE_COUNT, FIELD_IP, FIELD_START_OFFSET))) {
+            Object startOffset = doc.get(FIELD_START_OFFSET);
+            if (!(startOffset instanceof Number) || ((Number) startOffset).intValue() != 0) {
+                return false;
+            }
+            indexedIps.computeIfAbsent(((Number) doc.get(FIELD_EXECUTE_COUNT)).intValue(), k -> new HashSet<>())
+                .add(doc.getString(FIELD_IP));
+        }
+        for (int count = 0; count <= executeCount; count++) {
+            Collection<String> loggedIps = loggedIpsLoader.apply(count);
+            if (!indexedIps.getOrDefault(count, Collections.emptySet()).containsAll(loggedIps)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除步骤的索引
+     */
+    public void deleteStepIndex(String collectionName, long stepInstanceId, int executeCount) {
+        if (!isCollectionExists(collectionName)) {
+            return;
+        }
+        logCollectionFactory.getCollection(collectionName).deleteMany(
+            new Document(FIELD_STEP_ID, stepInstanceId).append(FIELD_EXECUTE_COUNT, executeCount));
+    }
+
+    private boolean isCollectionExists(String collectionName) {
+        if (collectionExistsCache.getIfPresent(collectionName) != null) {
+            return true;
+        }
+        boolean exists;
+        try {
+            exists = mongoTemplate.collectionExists(collectionName);
+        } catch (Exception e) {
+            log.warn("Check collection exists fail, collectionName: {}", collectionName, e);
+            return true;
+        }
+        if (exists) {
+            collectionExistsCache.put(collectionName, true);
+        }
+        return exists;
+    }
+
+    private static final class HostKey {
+        private final long stepInstanceId;
+        private final int executeCount;
+        private final String ip;
+
+        HostKey(long stepInstanceId, int executeCount, String ip) {
+            this.stepInstanceId = stepInstanceId;
+            this.executeCount = executeCount;
+            this.ip = ip;
+        }
+
+        Document toFilter() {
+            return new Document(FIELD_STEP_ID, stepInstanceId)
+                .append(FIELD_EXECUTE_COUNT, executeCount)
+                .append(FIELD_IP, ip);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            HostKey hostKey = (HostKey) o;
+            return stepInstanceId == hostKey.stepInstanceId && executeCount == hostKey.executeCount
+                && Objects.equals(ip, hostKey.ip);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stepInstanceId, executeCount, ip);
+        }
+    }
+}
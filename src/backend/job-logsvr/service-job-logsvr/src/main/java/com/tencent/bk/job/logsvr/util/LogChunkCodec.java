@@ -0,0 +1,122 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 日志chunk压缩编解码，使用 Deflate 最快压缩级别，在压缩率与CPU开销之间取得平衡
+ */
+public class LogChunkCodec {
+    /**
+     * 编码名称，保存在chunk中用于后续兼容其他编码
+     */
+    public static final String CODEC_DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public static byte[] compress(String content) {
+        byte[] input = content.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed log chunk", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 流式解压并查找关键字，内存占用与 chunk 大小无关。相邻两次读取之间保留关键字长度的重叠区，
+     * 跨读取边界的关键字同样可以匹配
+     *
+     * @param data           压缩数据
+     * @param literalPattern 关键字，必须以 {@link Pattern#LITERAL} 编译，匹配长度不超过关键字长度
+     * @return 是否包含关键字
+     */
+    public static boolean containsKeyword(byte[] data, Pattern literalPattern) {
+        int overlap = Math.max(0, literalPattern.pattern().length() - 1);
+        Inflater inflater = new Inflater();
+        try (Reader reader = new InputStreamReader(
+            new InflaterInputStream(new ByteArrayInputStream(data), inflater, BUFFER_SIZE), StandardCharsets.UTF_8)) {
+            char[] window = new char[overlap + BUFFER_SIZE];
+            int length = 0;
+            int count;
+            while ((count = reader.read(window, length, window.length - length)) != -1) {
+                length += count;
+                if (literalPattern.matcher(CharBuffer.wrap(window, 0, length)).find()) {
+                    return true;
+                }
+                int keep = Math.min(overlap, length);
+                System.arraycopy(window, length - keep, window, 0, keep);
+                length = keep;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid compressed log chunk", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
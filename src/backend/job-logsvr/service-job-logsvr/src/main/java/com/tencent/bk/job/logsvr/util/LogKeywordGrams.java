@@ -0,0 +1,105 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 日志关键字索引的 n-gram 编码。
+ * <p>
+ * 日志内容按 ASCII 忽略大小写切分为连续的 3 字符片段，每个片段哈希为一个整数编码。包含关键字的日志一定包含关键字的全部编码，
+ * 反之不一定成立(哈希冲突、片段分布在不同位置)，因此索引只用于筛选候选主机，最终结果需要使用原始关键字校验。
+ */
+public class LogKeywordGrams {
+    /**
+     * 片段长度
+     */
+    public static final int GRAM_LENGTH = 3;
+    /**
+     * 编码空间
+     */
+    private static final int GRAM_MASK = (1 << 20) - 1;
+
+    /**
+     * 提取日志内容的片段编码
+     *
+     * @param content 日志内容
+     * @param grams   片段编码集合，提取的编码添加到该集合
+     */
+    public static void extractGrams(String content, Set<Integer> grams) {
+        if (content == null || content.length() < GRAM_LENGTH) {
+            return;
+        }
+        char c0 = toLowerCase(content.charAt(0));
+        char c1 = toLowerCase(content.charAt(1));
+        for (int i = GRAM_LENGTH - 1; i < content.length(); i++) {
+            char c2 = toLowerCase(content.charAt(i));
+            grams.add(encode(c0, c1, c2));
+            c0 = c1;
+            c1 = c2;
+        }
+    }
+
+    /**
+     * 提取日志内容的片段编码
+     *
+     * @param content 日志内容
+     * @return 片段编码
+     */
+    public static Set<Integer> extractGrams(String content) {
+        Set<Integer> grams = new HashSet<>();
+        extractGrams(content, grams);
+        return grams;
+    }
+
+    /**
+     * 提取关键字的片段编码
+     *
+     * @param keyword 关键字
+     * @return 片段编码，按在关键字中出现的顺序排列；关键字长度小于片段长度时返回空列表
+     */
+    public static List<Integer> extractKeywordGrams(String keyword) {
+        Set<Integer> grams = new LinkedHashSet<>();
+        extractGrams(keyword, grams);
+        return new ArrayList<>(grams);
+    }
+
+    private static char toLowerCase(char c) {
+        // 与 Pattern.CASE_INSENSITIVE 一致，只处理 ASCII 字符
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static int encode(char c0, char c1, char c2) {
+        int hash = ((c0 * 31) + c1) * 31 + c2;
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return hash & GRAM_MASK;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LogChunkCodecTest {
+
+    private static Pattern keyword(String keyword) {
+        return Pattern.compile(keyword, Pattern.LITERAL | Pattern.CASE_INSENSITIVE);
+    }
+
+    private static String repeat(String str, int times) {
+        StringBuilder sb = new StringBuilder(str.length() * times);
+        for (int i = 0; i < times; i++) {
+            sb.append(str);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testCompressAndDecompress() {
+        String content = repeat("hello 中文日志\n", 10000);
+        byte[] data = LogChunkCodec.compress(content);
+        assertThat(data.length).isLessThan(content.length());
+        assertThat(LogChunkCodec.decompress(data)).isEqualTo(content);
+        assertThat(LogChunkCodec.decompress(LogChunkCodec.compress(""))).isEmpty();
+    }
+
+    @Test
+    void testDecompressInvalidData() {
+        assertThatThrownBy(() -> LogChunkCodec.decompress(new byte[]{1, 2, 3, 4}))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testContainsKeyword() {
+        byte[] data = LogChunkCodec.compress("line1 Error: disk full\nline2 ok");
+        assertThat(LogChunkCodec.containsKeyword(data, keyword("error:"))).isTrue();
+        assertThat(LogChunkCodec.containsKeyword(data, keyword("DISK FULL"))).isTrue();
+        assertThat(LogChunkCodec.containsKeyword(data, keyword("a.b"))).isFalse();
+        assertThat(LogChunkCodec.containsKeyword(data, keyword("warning"))).isFalse();
+    }
+
+    @Test
+    void testContainsKeywordAcrossReadBoundary() {
+        // 关键字跨越多次读取的边界，验证重叠区可以匹配
+        for (int prefixLength = 8180; prefixLength < 8200; prefixLength++) {
+            String content = repeat("x", prefixLength) + "keyword" + repeat("y", 20000);
+            byte[] data = LogChunkCodec.compress(content);
+            assertThat(LogChunkCodec.containsKeyword(data, keyword("keyword"))).isTrue();
+            assertThat(LogChunkCodec.containsKeyword(data, keyword("keywordx"))).isFalse();
+        }
+        String content = repeat("日志", 10000) + "结束";
+        assertThat(LogChunkCodec.containsKeyword(LogChunkCodec.compress(content), keyword("志结束"))).isTrue();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogKeywordGramsTest {
+
+    @Test
+    void testExtractGrams() {
+        // 片段: abc, bcd, cda, dab, abc(重复)
+        Set<Integer> grams = LogKeywordGrams.extractGrams("abcdabc");
+        assertThat(grams).hasSize(4);
+        assertThat(grams).isEqualTo(LogKeywordGrams.extractGrams("ABCDABC"));
+        assertThat(LogKeywordGrams.extractGrams("abc")).hasSize(1);
+
+        Set<Integer> appended = new HashSet<>(LogKeywordGrams.extractGrams("xyz"));
+        LogKeywordGrams.extractGrams("abcd", appended);
+        assertThat(appended).containsAll(LogKeywordGrams.extractGrams("abcd")).hasSize(3);
+    }
+
+    @Test
+    void testExtractGramsFromShortContent() {
+        assertThat(LogKeywordGrams.extractGrams((String) null)).isEmpty();
+        assertThat(LogKeywordGrams.extractGrams("")).isEmpty();
+        assertThat(LogKeywordGrams.extractGrams("ab")).isEmpty();
+        assertThat(LogKeywordGrams.extractKeywordGrams("ab")).isEmpty();
+    }
+
+    @Test
+    void testHashIgnoreAsciiCaseOnly() {
+        assertThat(LogKeywordGrams.extractGrams("ERR")).isEqualTo(LogKeywordGrams.extractGrams("err"));
+        assertThat(LogKeywordGrams.extractGrams("err")).isNotEqualTo(LogKeywordGrams.extractGrams("erx"));
+        // 与 Pattern.CASE_INSENSITIVE 一致，非 ASCII 字符不做大小写转换
+        assertThat(LogKeywordGrams.extractGrams("ÄBC")).isNotEqualTo(LogKeywordGrams.extractGrams("äbc"));
+        assertThat(LogKeywordGrams.extractGrams("日志内")).hasSize(1);
+        assertThat(LogKeywordGrams.extractGrams("日志内容")).hasSize(2);
+    }
+
+    @Test
+    void testGramsInEncodeSpace() {
+        StringBuilder content = new StringBuilder();
+        for (char c = 0; c < 2048; c++) {
+            content.append(c);
+        }
+        assertThat(LogKeywordGrams.extractGrams(content.toString()))
+            .allSatisfy(gram -> assertThat(gram).isBetween(0, (1 << 20) - 1));
+    }
+
+    @Test
+    void testKeywordGramsContainedInContentGrams() {
+        String content = "curl: (7) Failed connect to 10.0.0.1:80; CONNECTION REFUSED\n";
+        List<Integer> keywordGrams = LogKeywordGrams.extractKeywordGrams("Connection refused");
+        assertThat(keywordGrams).hasSize("Connection refused".length() - LogKeywordGrams.GRAM_LENGTH + 1);
+        assertThat(LogKeywordGrams.extractGrams(content)).containsAll(keywordGrams);
+        assertThat(LogKeywordGrams.extractGrams("connection reset by peer"))
+            .doesNotContainAnyElementsOf(LogKeywordGrams.extractKeywordGrams("fused"));
+    }
+
+    @Test
+    void testKeywordGramsKeepOrderWithoutDuplicates() {
+        List<Integer> keywordGrams = LogKeywordGrams.extractKeywordGrams("abcabc");
+        // 片段: abc, bca, cab, abc(重复)
+        assertThat(keywordGrams).hasSize(3).doesNotHaveDuplicates();
+        assertThat(keywordGrams.get(0)).isEqualTo(LogKeywordGrams.extractKeywordGrams("abc").get(0));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.logsvr.util;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.tencent.bk.job.logsvr.consts.LogTypeEnum;
+import com.tencent.bk.job.logsvr.model.ScriptTaskLog;
+import com.tencent.bk.job.logsvr.model.TaskIpLog;
+import com.tencent.bk.job.logsvr.mongo.FileLogsCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.LogCollectionFactory;
+import com.tencent.bk.job.logsvr.mongo.LogCollectionLoaderFactory;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogChunksCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogIndexCollectionLoader;
+import com.tencent.bk.job.logsvr.mongo.ScriptLogsCollectionLoader;
+import com.tencent.bk.job.logsvr.service.LogService;
+import com.tencent.bk.job.logsvr.service.impl.LogServiceImpl;
+import com.tencent.bk.job.logsvr.service.impl.ScriptLogChunkStorage;
+import com.tencent.bk.job.logsvr.service.impl.ScriptLogKeywordIndex;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按关键字查询主机：MongoDB 正则扫描全部日志与 n-gram 索引筛选候选主机后正则校验的性能对比。
+ * <p>
+ * 启动内嵌 MongoDB，通过 LogServiceImpl 写入 hostCount 个主机的脚本日志(同时建立关键字索引)，少量主机的日志包含关键字。
+ * regexScan 使用未启用索引的 LogServiceImpl 查询，对步骤的全部日志执行 $regex；gramIndex 使用启用索引的 LogServiceImpl 查询，
+ * 先查询索引集合得到候选主机，再只对候选主机的日志执行 $regex。两种方式查询的是同一份数据。
+ * <p>
+ * 运行方式：执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LogKeywordSearchBenchmark {
+    private static final String[] LOG_LINES = {
+        "[%d] Starting service check on host ...",
+        "[%d] Load average: 0.%d, disk usage: %d%%",
+        "[%d] Download package from mirror, size: %d bytes",
+        "[%d] Process nginx running, pid: %d",
+        "[%d] Write config /etc/app/app-%d.conf done",
+        "[%d] Cleanup temporary files, removed %d files"
+    };
+    private static final String KEYWORD = "Connection refused";
+    private static final String JOB_CREATE_DATE = "2021_01_01";
+    private static final long STEP_INSTANCE_ID = 1L;
+    private static final String DATABASE = "job_log";
+    /**
+     * 日志包含关键字的主机比例
+     */
+    private static final int MATCH_HOST_PERCENT = 1;
+
+    @Param({"2000"})
+    private int hostCount;
+
+    @Param({"5"})
+    private int fragmentsPerHost;
+
+    @Param({"10"})
+    private int linesPerFragment;
+
+    private MongodExecutable mongodExecutable;
+    private MongoClient mongoClient;
+    private LogService regexLogService;
+    private LogService indexedLogService;
+
+    private static LogService buildLogService(MongoTemplate mongoTemplate, boolean keywordIndexEnabled) {
+        LogCollectionFactory logCollectionFactory = new LogCollectionFactory(mongoTemplate,
+            new LogCollectionLoaderFactory(new ScriptLogsCollectionLoader(), new FileLogsCollectionLoader(),
+                new ScriptLogChunksCollectionLoader(), new ScriptLogIndexCollectionLoader()));
+        return new LogServiceImpl(mongoTemplate, logCollectionFactory,
+            new ScriptLogChunkStorage(mongoTemplate, logCollectionFactory, 262144),
+            new ScriptLogKeywordIndex(mongoTemplate, logCollectionFactory, keywordIndexEnabled, 10000), "fragment");
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        int port = Network.getFreeServerPort();
+        IMongodConfig mongodConfig = new MongodConfigBuilder()
+            .version(Version.Main.PRODUCTION)
+            .net(new Net("127.0.0.1", port, Network.localhostIsIPv6()))
+            .build();
+        mongodExecutable = MongodStarter.getDefaultInstance().prepare(mongodConfig);
+        mongodExecutable.start();
+        mongoClient = MongoClients.create("mongodb://127.0.0.1:" + port);
+        MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+        regexLogService = buildLogService(mongoTemplate, false);
+        indexedLogService = buildLogService(mongoTemplate, true);
+
+        Random random = new Random(1);
+        for (int fragment = 0; fragment < fragmentsPerHost; fragment++) {
+            List<TaskIpLog> taskIpLogs = new ArrayList<>(hostCount);
+            for (int host = 0; host < hostCount; host++) {
+                StringBuilder content = new StringBuilder();
+                for (int line = 0; line < linesPerFragment; line++) {
+                    content.append(String.format(LOG_LINES[random.nextInt(LOG_LINES.length)], line,
+                        random.nextInt(100000), random.nextInt(100))).append('\n');
+                }
+                if (fragment == fragmentsPerHost - 1 && host % 100 < MATCH_HOST_PERCENT) {
+                    content.append("curl: (7) Failed connect to 10.0.0.1:80; CONNECTION REFUSED\n");
+                }
+                taskIpLogs.add(buildTaskIpLog("0:10.0." + (host / 256) + "." + (host % 256), content.toString(),
+                    fragment));
+            }
+            // 写入时同时建立索引，两个 LogService 查询同一份日志数据
+            indexedLogService.saveLogs(LogTypeEnum.SCRIPT, taskIpLogs);
+        }
+    }
+
+    private TaskIpLog buildTaskIpLog(String ip, String content, int fragment) {
+        TaskIpLog taskIpLog = new TaskIpLog();
+        taskIpLog.setJobCreateDate(JOB_CREATE_DATE);
+        taskIpLog.setStepInstanceId(STEP_INSTANCE_ID);
+        taskIpLog.setExecuteCount(0);
+        taskIpLog.setIp(ip);
+        taskIpLog.setLogType(LogTypeEnum.SCRIPT.getValue());
+        // 偏移只用于判断索引是否从主机的第一段日志开始建立，第一段日志的起始偏移为0即可
+        int offset = fragment == 0 ? content.length() : (fragment + 1) * 100000;
+        taskIpLog.setScriptTaskLog(new ScriptTaskLog(STEP_INSTANCE_ID, ip, 0, content, offset));
+        return taskIpLog;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+        if (mongodExecutable != null) {
+            mongodExecutable.stop();
+        }
+    }
+
+    @Benchmark
+    public int regexScan() {
+        return regexLogService.getIpsByKeyword(STEP_INSTANCE_ID, 0, JOB_CREATE_DATE, KEYWORD).size();
+    }
+
+    @Benchmark
+    public int gramIndex() {
+        return indexedLogService.getIpsByKeyword(STEP_INSTANCE_ID, 0, JOB_CREATE_DATE, KEYWORD).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(LogKeywordSearchBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -25,9 +25,14 @@
 package com.tencent.bk.job.manage.api.inner;
 
 import com.tencent.bk.job.common.model.ServiceResponse;
+import com.tencent.bk.job.manage.model.inner.ServiceResolvedHostsDTO;
+import com.tencent.bk.job.manage.model.inner.request.ServiceResolveHostsReq;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -42,4 +47,11 @@ public interface ServiceHostResource {
     @GetMapping("/exist")
     ServiceResponse<Boolean> existHost(@QueryParam("appId") long appId, @QueryParam("ip") String ip);
 
+    @ApiOperation(value = "批量解析静态IP、拓扑节点、动态分组对应的主机", produces = "application/json")
+    @PostMapping("/app/{appId}/resolve")
+    ServiceResponse<ServiceResolvedHostsDTO> resolveHosts(
+        @PathVariable("appId") Long appId,
+        @RequestBody ServiceResolveHostsReq req
+    );
+
 }
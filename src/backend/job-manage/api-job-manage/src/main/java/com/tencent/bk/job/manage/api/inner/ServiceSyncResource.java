@@ -25,6 +25,7 @@
 package com.tencent.bk.job.manage.api.inner;
 
 import com.tencent.bk.job.common.model.ServiceResponse;
+import com.tencent.bk.job.manage.model.inner.ServiceAppHostChangesDTO;
 import com.tencent.bk.job.manage.model.inner.ServiceApplicationDTO;
 import com.tencent.bk.job.manage.model.inner.ServiceHostInfoDTO;
 import io.swagger.annotations.Api;
@@ -61,6 +62,21 @@ public interface ServiceSyncResource {
         @ApiParam(value = "业务ID", required = true)
         @PathVariable("appId") Long appId);
 
+    /**
+     * 增量获取业务下变更的主机
+     *
+     * @param appId        业务ID
+     * @param updatedAfter 上次查询返回的变更水位，为空时返回业务下的全部主机
+     * @return
+     */
+    @GetMapping("/host/app/{appId}/changes")
+    @ApiOperation(value = "根据业务ID增量获取变更的主机", produces = "application/json")
+    ServiceResponse<ServiceAppHostChangesDTO> listAppHostChanges(
+        @ApiParam(value = "业务ID", required = true)
+        @PathVariable("appId") Long appId,
+        @ApiParam(value = "变更水位，毫秒时间戳")
+        @RequestParam(value = "updatedAfter", required = false) Long updatedAfter);
+
     /**
      * 同步某业务的主机
      *
@@ -0,0 +1,52 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.model.inner;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@ApiModel("业务主机变更")
+public class ServiceAppHostChangesDTO {
+
+    @ApiModelProperty("业务ID")
+    private Long appId;
+
+    @ApiModelProperty("业务下去重后的 云区域ID:IP 数量，调用方据此判断本地缓存中是否残留已删除的主机")
+    private Long hostKeyNum;
+
+    @ApiModelProperty("业务下去重后的 云区域ID:IP 摘要，为各 云区域ID:IP 的 CRC32 之和，调用方据此判断主机集合是否一致，"
+        + "能够发现数量不变时的删除与更换IP")
+    private Long hostKeyDigest;
+
+    @ApiModelProperty("变更水位，毫秒时间戳，下次增量查询时作为 updatedAfter 传入；业务下无主机时为 null")
+    private Long watermark;
+
+    @ApiModelProperty("水位之后发生变更的主机，全量查询时为业务下的全部主机")
+    private List<ServiceHostInfoDTO> hosts;
+}
@@ -48,4 +48,7 @@ public class ServiceHostInfoDTO {
 
     @ApiModelProperty("业务ID")
     private Long appId;
+
+    @ApiModelProperty("GSE Agent状态")
+    private Integer alive;
 }
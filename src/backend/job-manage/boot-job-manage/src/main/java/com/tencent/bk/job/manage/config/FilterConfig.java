@@ -24,7 +24,7 @@
 
 package com.tencent.bk.job.manage.config;
 
-import com.tencent.bk.job.common.web.filter.RepeatableReadServletRequestResponseFilter;
+import com.tencent.bk.job.common.web.filter.EsbApiLogFilter;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,18 +32,17 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class FilterConfig {
     @Bean
-    public FilterRegistrationBean repeatableRSRRFilterRegister() {
-        FilterRegistrationBean<RepeatableReadServletRequestResponseFilter> registration =
-            new FilterRegistrationBean<>();
-        registration.setFilter(repeatableRRRFilter());
+    public FilterRegistrationBean esbApiLogFilterRegister() {
+        FilterRegistrationBean<EsbApiLogFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(esbApiLogFilter());
         registration.addUrlPatterns("/esb/api/*");
-        registration.setName("repeatableReadRequestResponseFilter");
+        registration.setName("esbApiLogFilter");
         registration.setOrder(0);
         return registration;
     }
 
-    @Bean(name = "repeatableReadRequestResponseFilter")
-    public RepeatableReadServletRequestResponseFilter repeatableRRRFilter() {
-        return new RepeatableReadServletRequestResponseFilter();
+    @Bean(name = "esbApiLogFilter")
+    public EsbApiLogFilter esbApiLogFilter() {
+        return new EsbApiLogFilter();
     }
 }
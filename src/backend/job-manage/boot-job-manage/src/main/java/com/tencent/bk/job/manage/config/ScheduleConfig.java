@@ -37,13 +37,13 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
  * @Version 1.0
  */
 
-//设定一个长度5的定时任务线程池
+//设定一个长度6的定时任务线程池
 @Slf4j
 @Configuration
 public class ScheduleConfig implements SchedulingConfigurer {
     @Override
     public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
-        taskRegistrar.setScheduler(new ScheduledThreadPoolExecutor(5, (r, executor) -> log.error(
+        taskRegistrar.setScheduler(new ScheduledThreadPoolExecutor(6, (r, executor) -> log.error(
             "ScheduledThreadPoolExecutor rejected a runnable")));
     }
 }
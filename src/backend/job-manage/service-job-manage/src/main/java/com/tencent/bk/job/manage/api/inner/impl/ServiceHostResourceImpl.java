@@ -27,6 +27,9 @@ package com.tencent.bk.job.manage.api.inner.impl;
 import com.tencent.bk.job.common.model.ServiceResponse;
 import com.tencent.bk.job.manage.api.inner.ServiceHostResource;
 import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
+import com.tencent.bk.job.manage.model.inner.ServiceResolvedHostsDTO;
+import com.tencent.bk.job.manage.model.inner.request.ServiceResolveHostsReq;
+import com.tencent.bk.job.manage.service.ApplicationHostService;
 import lombok.extern.slf4j.Slf4j;
 import org.jooq.DSLContext;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,15 +40,23 @@ import org.springframework.web.bind.annotation.RestController;
 public class ServiceHostResourceImpl implements ServiceHostResource {
     private final DSLContext dslContext;
     private final ApplicationHostDAO hostDAO;
+    private final ApplicationHostService applicationHostService;
 
     @Autowired
-    public ServiceHostResourceImpl(DSLContext dslContext, ApplicationHostDAO hostDAO) {
+    public ServiceHostResourceImpl(DSLContext dslContext, ApplicationHostDAO hostDAO,
+                                   ApplicationHostService applicationHostService) {
         this.dslContext = dslContext;
         this.hostDAO = hostDAO;
+        this.applicationHostService = applicationHostService;
     }
 
     @Override
     public ServiceResponse<Boolean> existHost(long appId, String ip) {
         return ServiceResponse.buildSuccessResp(hostDAO.existsHost(dslContext, appId, ip));
     }
+
+    @Override
+    public ServiceResponse<ServiceResolvedHostsDTO> resolveHosts(Long appId, ServiceResolveHostsReq req) {
+        return ServiceResponse.buildSuccessResp(applicationHostService.resolveHosts(appId, req));
+    }
 }
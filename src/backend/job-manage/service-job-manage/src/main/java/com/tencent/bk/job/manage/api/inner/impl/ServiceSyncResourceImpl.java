@@ -29,6 +29,7 @@ import com.tencent.bk.job.common.model.ServiceResponse;
 import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
 import com.tencent.bk.job.common.model.dto.ApplicationInfoDTO;
 import com.tencent.bk.job.manage.api.inner.ServiceSyncResource;
+import com.tencent.bk.job.manage.model.inner.ServiceAppHostChangesDTO;
 import com.tencent.bk.job.manage.model.inner.ServiceApplicationDTO;
 import com.tencent.bk.job.manage.model.inner.ServiceHostInfoDTO;
 import com.tencent.bk.job.manage.service.ApplicationHostService;
@@ -97,6 +98,16 @@ public class ServiceSyncResourceImpl implements ServiceSyncResource {
         }
     }
 
+    @Override
+    public ServiceResponse<ServiceAppHostChangesDTO> listAppHostChanges(Long appId, Long updatedAfter) {
+        try {
+            return ServiceResponse.buildSuccessResp(applicationHostService.listAppHostChanges(appId, updatedAfter));
+        } catch (Exception e) {
+            log.warn("List app host changes exception, appId:{}, updatedAfter:{}", appId, updatedAfter, e);
+            return ServiceResponse.buildCommonFailResp(ErrorCode.SERVICE_INTERNAL_ERROR);
+        }
+    }
+
     @Override
     public ServiceResponse<Boolean> syncHostByAppId(Long appId) {
         return ServiceResponse.buildSuccessResp(syncService.syncAppHosts(appId));
@@ -74,12 +74,96 @@ public class JobManageConfig {
     @Value("${job.manage.sync.agentStatus.enable:true}")
     private boolean enableSyncAgentStatus;
 
+    /**
+     * Agent状态同步的业务分片数量，各分片可由不同实例同步
+     */
+    @Value("${job.manage.sync.agentStatus.shardNum:16}")
+    private int syncAgentStatusShardNum;
+
+    /**
+     * 单个实例同步Agent状态的并发业务数
+     */
+    @Value("${job.manage.sync.agentStatus.concurrency:5}")
+    private int syncAgentStatusConcurrency;
+
     @Value("${job.manage.sync.resource.watch.enable:true}")
     private boolean enableResourceWatch;
 
+    /**
+     * 主机事件处理线程数，事件按主机ID分配到各线程
+     */
+    @Value("${job.manage.sync.resource.watch.host.handlerNum:4}")
+    private int hostEventHandlerNum;
+
+    /**
+     * 单个主机事件处理线程的队列大小
+     */
+    @Value("${job.manage.sync.resource.watch.host.queueSize:10000}")
+    private int hostEventQueueSize;
+
+    /**
+     * 主机事件合并窗口(ms)，窗口内同一主机的多个事件只处理最后一个
+     */
+    @Value("${job.manage.sync.resource.watch.host.coalesceWindowMillis:200}")
+    private long hostEventCoalesceWindowMillis;
+
+    /**
+     * 主机事件批量处理的最大主机数
+     */
+    @Value("${job.manage.sync.resource.watch.host.batchSize:500}")
+    private int hostEventBatchSize;
+
     @Value("${job.manage.swagger.url:manage.swagger.com}")
     private String swaggerUrl;
 
+    /**
+     * 是否使用内存中的业务拓扑主机索引构建主机拓扑树
+     */
+    @Value("${job.manage.topo-host-index.enabled:true}")
+    private boolean enableTopoHostIndex;
+
+    /**
+     * 业务拓扑主机索引中拓扑结构的过期时间(秒)，过期后从CMDB重新拉取拓扑
+     */
+    @Value("${job.manage.topo-host-index.topology-expire-seconds:60}")
+    private int topoHostIndexTopologyExpireSeconds;
+
+    /**
+     * 单节点最多缓存的业务拓扑主机索引数量
+     */
+    @Value("${job.manage.topo-host-index.max-apps:500}")
+    private int topoHostIndexMaxApps;
+
+    /**
+     * 是否使用内存中的主机搜索索引查询主机
+     */
+    @Value("${job.manage.host-search-index.enabled:true}")
+    private boolean enableHostSearchIndex;
+
+    /**
+     * 主机搜索索引单次最多命中的主机数量，超过后回退到DB查询
+     */
+    @Value("${job.manage.host-search-index.max-hits:20000}")
+    private int hostSearchIndexMaxHits;
+
+    /**
+     * 主机搜索索引全量重建周期(秒)
+     */
+    @Value("${job.manage.host-search-index.rebuild-interval-seconds:3600}")
+    private int hostSearchIndexRebuildIntervalSeconds;
+
+    /**
+     * 批量解析执行目标主机时动态分组主机的缓存时间(秒)
+     */
+    @Value("${job.manage.host-resolve.dynamic-group-cache-seconds:60}")
+    private int dynamicGroupHostCacheSeconds;
+
+    /**
+     * 主机变更写入DB后是否通过 Redis 发布变更通知，用于失效其他服务节点本地的主机缓存
+     */
+    @Value("${job.manage.host-change.publish.enabled:true}")
+    private boolean publishHostChangeEnabled;
+
     //---------------------------- Cmdb Config ---------------------------------
     @Value("${cmdb.default.supplier.account:0}")
     private String defaultSupplierAccount;
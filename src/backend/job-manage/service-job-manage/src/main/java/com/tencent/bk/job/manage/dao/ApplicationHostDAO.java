@@ -27,8 +27,10 @@ package com.tencent.bk.job.manage.dao;
 import com.tencent.bk.job.common.model.BaseSearchCondition;
 import com.tencent.bk.job.common.model.PageData;
 import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import org.apache.commons.lang3.tuple.Triple;
 import org.jooq.DSLContext;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -46,6 +48,21 @@ public interface ApplicationHostDAO {
 
     List<ApplicationHostInfoDTO> listHostInfoByAppId(long appId);
 
+    /**
+     * 查询业务下 row_update_time 不早于 updatedAfter 的主机
+     *
+     * @param appId        业务ID
+     * @param updatedAfter 更新时间下限，为 null 时查询全部主机
+     */
+    List<ApplicationHostInfoDTO> listHostInfoByAppId(long appId, LocalDateTime updatedAfter);
+
+    /**
+     * 统计业务下去重后的 云区域ID:IP 数量、摘要与最大的 row_update_time
+     *
+     * @return 数量、摘要(各 云区域ID:IP 的 CRC32 之和)、最大的 row_update_time
+     */
+    Triple<Long, Long, LocalDateTime> getAppHostKeyStat(long appId);
+
     List<ApplicationHostInfoDTO> listAllHostInfo(Long start, Long limit);
 
     List<ApplicationHostInfoDTO> listHostInfoByNormalAppIds(Collection<Long> appIds, Long start, Long limit);
@@ -85,6 +102,25 @@ public interface ApplicationHostDAO {
 
     int batchUpdateAppHostInfoByHostId(DSLContext dslContext, List<ApplicationHostInfoDTO> applicationHostInfoDTOList);
 
+    /**
+     * 批量写入主机信息，主机已存在时更新(不更新主机拓扑表)
+     *
+     * @param dslContext                 DSLContext
+     * @param applicationHostInfoDTOList 主机信息
+     * @return 受影响的行数
+     */
+    int batchSaveAppHostInfoWithoutTopo(DSLContext dslContext, List<ApplicationHostInfoDTO> applicationHostInfoDTOList);
+
+    /**
+     * 批量更新主机Agent状态，仅更新状态发生变化的主机
+     *
+     * @param dslContext DSLContext
+     * @param agentAlive Agent是否存活
+     * @param hostIds    主机ID列表
+     * @return 实际发生变化的主机数量
+     */
+    int batchUpdateHostAgentStatus(DSLContext dslContext, boolean agentAlive, List<Long> hostIds);
+
     int deleteAppHostInfoById(DSLContext dslContext, Long appId, Long appHostId);
 
     int batchDeleteAppHostInfoById(DSLContext dslContext, Long appId, List<Long> appHostIdList);
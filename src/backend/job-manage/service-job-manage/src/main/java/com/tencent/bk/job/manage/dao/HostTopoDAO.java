@@ -43,6 +43,8 @@ public interface HostTopoDAO {
 
     List<HostTopoDTO> listHostTopoByHostId(DSLContext dslContext, Long hostId);
 
+    List<HostTopoDTO> listHostTopoByHostIds(DSLContext dslContext, Collection<Long> hostIds);
+
     List<HostTopoDTO> listHostTopoBySetId(DSLContext dslContext, Long setId);
 
     List<HostTopoDTO> listHostTopoByModuleId(DSLContext dslContext, Long moduleId);
@@ -36,11 +36,14 @@ import com.tencent.bk.job.manage.common.util.DbRecordMapper;
 import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
 import com.tencent.bk.job.manage.dao.ApplicationInfoDAO;
 import com.tencent.bk.job.manage.dao.HostTopoDAO;
+import com.tencent.bk.job.manage.manager.host.HostSearchIndexManager;
 import com.tencent.bk.job.manage.model.dto.HostTopoDTO;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Triple;
 import org.jooq.*;
 import org.jooq.conf.ParamType;
 import org.jooq.generated.tables.Host;
@@ -52,6 +55,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -68,15 +73,17 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
     private ApplicationInfoDAO applicationInfoDAO;
     private HostTopoDAO hostTopoDAO;
     private TopologyHelper topologyHelper;
+    private HostSearchIndexManager hostSearchIndexManager;
 
     @Autowired
     public ApplicationHostDAOImpl(@Qualifier("job-manage-dsl-context") DSLContext context,
                                   ApplicationInfoDAO applicationInfoDAO, HostTopoDAO hostTopoDAO,
-                                  TopologyHelper topologyHelper) {
+                                  TopologyHelper topologyHelper, HostSearchIndexManager hostSearchIndexManager) {
         this.context = context;
         this.applicationInfoDAO = applicationInfoDAO;
         this.topologyHelper = topologyHelper;
         this.hostTopoDAO = hostTopoDAO;
+        this.hostSearchIndexManager = hostSearchIndexManager;
     }
 
     @Override
@@ -164,6 +171,39 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
         return listHostInfoByConditions(conditions);
     }
 
+    @Override
+    public List<ApplicationHostInfoDTO> listHostInfoByAppId(long appId, LocalDateTime updatedAfter) {
+        List<Condition> conditions = buildAppIdCondition(appId);
+        if (updatedAfter != null) {
+            conditions.add(TABLE.ROW_UPDATE_TIME.ge(updatedAfter));
+        }
+        return listHostInfoByConditions(conditions);
+    }
+
+    @Override
+    public Triple<Long, Long, LocalDateTime> getAppHostKeyStat(long appId) {
+        Field<String> hostKey = DSL.concat(TABLE.CLOUD_AREA_ID.cast(String.class), DSL.inline(":"), TABLE.IP)
+            .as("host_key");
+        Field<LocalDateTime> lastUpdateTime = DSL.max(TABLE.ROW_UPDATE_TIME).as("last_update_time");
+        Table<Record2<String, LocalDateTime>> hostKeys = context
+            .select(hostKey, lastUpdateTime)
+            .from(TABLE)
+            .where(buildAppIdCondition(appId))
+            .groupBy(TABLE.CLOUD_AREA_ID, TABLE.IP)
+            .asTable("host_keys");
+        Field<String> hostKeyField = hostKeys.field(hostKey);
+        Record3<Integer, BigDecimal, LocalDateTime> record = context
+            .select(DSL.count(), DSL.sum(DSL.field("CRC32({0})", Long.class, hostKeyField)),
+                DSL.max(hostKeys.field(lastUpdateTime)))
+            .from(hostKeys)
+            .fetchOne();
+        if (record == null || record.value1() == null || record.value1() == 0) {
+            return new ImmutableTriple<>(0L, 0L, null);
+        }
+        return new ImmutableTriple<>(record.value1().longValue(),
+            record.value2() == null ? 0L : record.value2().longValue(), record.value3());
+    }
+
     @Override
     public List<ApplicationHostInfoDTO> listAllHostInfo(Long start, Long limit) {
         return listHostInfoByConditions(Collections.emptyList(), start, limit);
@@ -260,6 +300,14 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
             conditions.add(tHostTopo.MODULE_ID.in(moduleIds));
         }
         Condition condition = null;
+        List<Long> matchedHostIds = null;
+        // 云区域条件与搜索内容为或关系，此时无法仅通过搜索索引筛选主机
+        if (searchContents != null && !searchContents.isEmpty() && cloudAreaIds == null) {
+            matchedHostIds = hostSearchIndexManager.search(searchContents);
+        }
+        if (matchedHostIds != null && matchedHostIds.isEmpty()) {
+            return new ArrayList<>();
+        }
         if (searchContents != null && !searchContents.isEmpty()) {
             String firstContent = searchContents.get(0);
             condition = tHost.IP.like("%" + firstContent + "%");
@@ -274,6 +322,11 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
             for (int i = 1; i < searchContents.size(); i++) {
                 condition = condition.or(tHost.OS.like("%" + searchContents.get(i) + "%"));
             }
+            if (matchedHostIds != null) {
+                // 搜索索引的结果可能与数据库不一致(索引尚未同步)，保留原始匹配条件进行校验
+                condition = tHost.HOST_ID.in(matchedHostIds.stream().map(ULong::valueOf).collect(Collectors.toList()))
+                    .and(condition);
+            }
         }
         if (cloudAreaIds != null) {
             if (condition != null) {
@@ -308,7 +361,7 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
         if (records != null && records.size() >= 1) {
             hostIdList = records.parallelStream().map(record -> record.get(0, Long.class)).collect(Collectors.toList());
         }
-        hostIdList = new ArrayList<>(new HashSet<>(hostIdList));
+        hostIdList = new ArrayList<>(new LinkedHashSet<>(hostIdList));
         return hostIdList;
     }
 
@@ -525,6 +578,7 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
                 hostTopoDAO.batchInsertHostTopo(context, hostTopoDTOList);
             }
         });
+        hostSearchIndexManager.onHostsSaved(Collections.singletonList(applicationHostInfoDTO));
         return result[0];
     }
 
@@ -612,6 +666,7 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
                 }
                 hostTopoDAO.batchInsertHostTopo(context, hostTopoDTOList);
             });
+            hostSearchIndexManager.onHostsSaved(subList);
             start += batchSize;
         } while (end < size);
         return affectedNum[0];
@@ -708,6 +763,9 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
             hostTopoDAO.deleteHostTopoByHostId(context, appId, hostId);
             hostTopoDAO.batchInsertHostTopo(context, hostTopoDTOList);
         });
+        if (affectedNum[0] > 0) {
+            hostSearchIndexManager.onHostsSaved(Collections.singletonList(applicationHostInfoDTO));
+        }
         return affectedNum[0];
     }
 
@@ -767,11 +825,112 @@ public class ApplicationHostDAOImpl implements ApplicationHostDAO {
                     new ArrayList<>(hostTopoDTOList.stream().map(HostTopoDTO::getHostId).collect(Collectors.toSet())));
                 hostTopoDAO.batchInsertHostTopo(context, hostTopoDTOList);
             });
+            hostSearchIndexManager.onHostsSaved(subList);
             start += batchSize;
         } while (end < size);
         return affectedNum[0];
     }
 
+    @Override
+    public int batchSaveAppHostInfoWithoutTopo(DSLContext dslContext,
+                                               List<ApplicationHostInfoDTO> applicationHostInfoDTOList) {
+        if (CollectionUtils.isEmpty(applicationHostInfoDTOList)) {
+            return 0;
+        }
+        List<Query> queryList = new ArrayList<>();
+        for (ApplicationHostInfoDTO applicationHostInfoDTO : applicationHostInfoDTOList) {
+            setDefaultValue(applicationHostInfoDTO);
+            if (applicationHostInfoDTO.getHostId() == -1L) {
+                log.warn("Unexpected hostId==-1,hostInfo={}", applicationHostInfoDTO);
+                continue;
+            }
+            ULong appId = ULong.valueOf(applicationHostInfoDTO.getAppId());
+            String setIdsStr = joinIds(applicationHostInfoDTO.getSetId());
+            String moduleIdsStr = joinIds(applicationHostInfoDTO.getModuleId());
+            String moduleTypeStr = joinIds(applicationHostInfoDTO.getModuleType());
+            ULong cloudAreaId = ULong.valueOf(applicationHostInfoDTO.getCloudAreaId());
+            UByte agentAlive = UByte.valueOf(applicationHostInfoDTO.getGseAgentAlive() ? 1 : 0);
+            queryList.add(dslContext.insertInto(TABLE,
+                TABLE.HOST_ID,
+                TABLE.APP_ID,
+                TABLE.IP,
+                TABLE.IP_DESC,
+                TABLE.SET_IDS,
+                TABLE.MODULE_IDS,
+                TABLE.CLOUD_AREA_ID,
+                TABLE.DISPLAY_IP,
+                TABLE.OS,
+                TABLE.OS_TYPE,
+                TABLE.MODULE_TYPE,
+                TABLE.IS_AGENT_ALIVE
+            ).values(
+                ULong.valueOf(applicationHostInfoDTO.getHostId()),
+                appId,
+                applicationHostInfoDTO.getIp(),
+                applicationHostInfoDTO.getIpDesc(),
+                setIdsStr,
+                moduleIdsStr,
+                cloudAreaId,
+                applicationHostInfoDTO.getDisplayIp(),
+                applicationHostInfoDTO.getOs(),
+                applicationHostInfoDTO.getOsType(),
+                moduleTypeStr,
+                agentAlive
+            ).onDuplicateKeyUpdate()
+                .set(TABLE.APP_ID, appId)
+                .set(TABLE.IP, applicationHostInfoDTO.getIp())
+                .set(TABLE.IP_DESC, applicationHostInfoDTO.getIpDesc())
+                .set(TABLE.SET_IDS, setIdsStr)
+                .set(TABLE.MODULE_IDS, moduleIdsStr)
+                .set(TABLE.CLOUD_AREA_ID, cloudAreaId)
+                .set(TABLE.DISPLAY_IP, applicationHostInfoDTO.getDisplayIp())
+                .set(TABLE.OS, applicationHostInfoDTO.getOs())
+                .set(TABLE.OS_TYPE, applicationHostInfoDTO.getOsType())
+                .set(TABLE.MODULE_TYPE, moduleTypeStr)
+                .set(TABLE.IS_AGENT_ALIVE, agentAlive)
+            );
+        }
+        int affectedNum = 0;
+        if (!queryList.isEmpty()) {
+            for (int result : dslContext.batch(queryList).execute()) {
+                affectedNum += result;
+            }
+        }
+        hostSearchIndexManager.onHostsSaved(applicationHostInfoDTOList);
+        return affectedNum;
+    }
+
+    private String joinIds(List<Long> ids) {
+        if (ids == null) {
+            return "";
+        }
+        return ids.stream().map(Object::toString).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public int batchUpdateHostAgentStatus(DSLContext dslContext, boolean agentAlive, List<Long> hostIds) {
+        if (CollectionUtils.isEmpty(hostIds)) {
+            return 0;
+        }
+        int batchSize = 1000;
+        UByte agentStatus = UByte.valueOf(agentAlive ? 1 : 0);
+        List<Query> queryList = new ArrayList<>();
+        for (int start = 0; start < hostIds.size(); start += batchSize) {
+            List<ULong> subHostIds = hostIds.subList(start, Math.min(start + batchSize, hostIds.size())).stream()
+                .map(ULong::valueOf).collect(Collectors.toList());
+            queryList.add(dslContext.update(TABLE)
+                .set(TABLE.IS_AGENT_ALIVE, agentStatus)
+                .where(TABLE.HOST_ID.in(subHostIds))
+                .and(TABLE.IS_AGENT_ALIVE.ne(agentStatus))
+            );
+        }
+        int affectedNum = 0;
+        for (int result : dslContext.batch(queryList).execute()) {
+            affectedNum += result;
+        }
+        return affectedNum;
+    }
+
     @Override
     public int deleteAppHostInfoById(DSLContext dslContext, Long appId, Long appHostId) {
         int[] affectedNum = new int[]{-1};
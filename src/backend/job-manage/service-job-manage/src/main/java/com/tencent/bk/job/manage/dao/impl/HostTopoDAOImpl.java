@@ -209,6 +209,16 @@ public class HostTopoDAOImpl implements HostTopoDAO {
         return listHostTopoByConditions(dslContext, conditions);
     }
 
+    @Override
+    public List<HostTopoDTO> listHostTopoByHostIds(DSLContext dslContext, Collection<Long> hostIds) {
+        if (hostIds == null || hostIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Condition> conditions = new ArrayList<>();
+        conditions.add(defaultTable.HOST_ID.in(hostIds.stream().map(ULong::valueOf).collect(Collectors.toList())));
+        return listHostTopoByConditions(dslContext, conditions);
+    }
+
     @Override
     public List<HostTopoDTO> listHostTopoBySetId(DSLContext dslContext, Long setId) {
         List<Condition> conditions = new ArrayList<>();
@@ -0,0 +1,318 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.manager.host;
+
+import com.tencent.bk.job.common.cc.model.InstanceTopologyDTO;
+import com.tencent.bk.job.common.constant.CcNodeTypeEnum;
+import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.common.model.vo.HostInfoVO;
+import com.tencent.bk.job.manage.model.web.vo.CcTopologyNodeVO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * 业务拓扑主机索引。
+ * <p>
+ * 主机保存在数组中，每个拓扑节点使用 BitSet 记录节点下主机在数组中的下标，节点的主机数量预先计算。
+ * 主机变更时只更新主机所属模块的 BitSet，上层节点的主机集合在下一次查询时重新合并。
+ */
+public class AppTopologyHostIndex {
+    private final long appId;
+    /**
+     * 索引对应的业务主机数据版本
+     */
+    private volatile long version;
+    /**
+     * 拓扑加载时间
+     */
+    private volatile long topologyLoadTime;
+    private InstanceTopologyDTO topology;
+    /**
+     * 主机，下标即主机在 BitSet 中的位置，已删除主机的位置为 null 并在后续复用
+     */
+    private final List<ApplicationHostInfoDTO> hosts = new ArrayList<>();
+    private final Map<Long, Integer> hostSlots = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<Long, BitSet> moduleHosts = new HashMap<>();
+    /**
+     * 各拓扑节点下的主机，key 为 objectId:instanceId
+     */
+    private Map<String, BitSet> nodeHosts = Collections.emptyMap();
+    private boolean nodeHostsDirty = true;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public AppTopologyHostIndex(long appId, long version, InstanceTopologyDTO topology,
+                                Collection<ApplicationHostInfoDTO> appHosts) {
+        this.appId = appId;
+        this.version = version;
+        this.topology = topology;
+        this.topologyLoadTime = System.currentTimeMillis();
+        appHosts.forEach(this::addOrUpdateHost);
+    }
+
+    public long getAppId() {
+        return appId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getTopologyLoadTime() {
+        return topologyLoadTime;
+    }
+
+    /**
+     * 更新业务拓扑
+     */
+    public void updateTopology(InstanceTopologyDTO topology) {
+        lock.writeLock().lock();
+        try {
+            this.topology = topology;
+            this.topologyLoadTime = System.currentTimeMillis();
+            nodeHostsDirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 新增或者更新主机；主机已不属于当前业务时从索引中移除
+     */
+    public void updateHost(ApplicationHostInfoDTO host) {
+        lock.writeLock().lock();
+        try {
+            if (host.getAppId() == null || host.getAppId() != appId) {
+                removeHostInternal(host.getHostId());
+            } else {
+                addOrUpdateHost(host);
+            }
+            nodeHostsDirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除主机
+     */
+    public void removeHost(Long hostId) {
+        lock.writeLock().lock();
+        try {
+            removeHostInternal(hostId);
+            nodeHostsDirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean containsHost(Long hostId) {
+        lock.readLock().lock();
+        try {
+            return hostSlots.containsKey(hostId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addOrUpdateHost(ApplicationHostInfoDTO host) {
+        Integer slot = hostSlots.get(host.getHostId());
+        if (slot != null) {
+            clearModuleBits(hosts.get(slot), slot);
+            hosts.set(slot, host);
+        } else {
+            slot = freeSlots.isEmpty() ? hosts.size() : freeSlots.poll();
+            if (slot == hosts.size()) {
+                hosts.add(host);
+            } else {
+                hosts.set(slot, host);
+            }
+            hostSlots.put(host.getHostId(), slot);
+        }
+        if (host.getModuleId() != null) {
+            for (Long moduleId : host.getModuleId()) {
+                moduleHosts.computeIfAbsent(moduleId, k -> new BitSet()).set(slot);
+            }
+        }
+    }
+
+    private void removeHostInternal(Long hostId) {
+        Integer slot = hostSlots.remove(hostId);
+        if (slot == null) {
+            return;
+        }
+        clearModuleBits(hosts.get(slot), slot);
+        hosts.set(slot, null);
+        freeSlots.add(slot);
+    }
+
+    private void clearModuleBits(ApplicationHostInfoDTO host, int slot) {
+        if (host == null || host.getModuleId() == null) {
+            return;
+        }
+        for (Long moduleId : host.getModuleId()) {
+            BitSet bits = moduleHosts.get(moduleId);
+            if (bits != null) {
+                bits.clear(slot);
+                if (bits.isEmpty()) {
+                    moduleHosts.remove(moduleId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 构建带主机数量的拓扑树
+     *
+     * @param hostConverter 模块节点下主机的转换函数，为 null 时不返回主机，只返回主机数量
+     * @return 拓扑树
+     */
+    public CcTopologyNodeVO buildTopologyTree(Function<ApplicationHostInfoDTO, HostInfoVO> hostConverter) {
+        lockReadWithFreshNodeHosts();
+        try {
+            return topology == null ? null : buildNode(topology, hostConverter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取拓扑节点下的全部主机
+     *
+     * @param objectId   节点类型
+     * @param instanceId 节点ID
+     * @return 节点下的主机；节点不在业务拓扑中时返回 null
+     */
+    public List<ApplicationHostInfoDTO> listNodeHosts(String objectId, Long instanceId) {
+        lockReadWithFreshNodeHosts();
+        try {
+            BitSet bits = nodeHosts.get(nodeKey(objectId, instanceId));
+            if (bits == null) {
+                return null;
+            }
+            List<ApplicationHostInfoDTO> nodeHostList = new ArrayList<>(bits.cardinality());
+            for (int slot = bits.nextSetBit(0); slot >= 0; slot = bits.nextSetBit(slot + 1)) {
+                nodeHostList.add(hosts.get(slot));
+            }
+            return nodeHostList;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private CcTopologyNodeVO buildNode(InstanceTopologyDTO topologyNode,
+                                       Function<ApplicationHostInfoDTO, HostInfoVO> hostConverter) {
+        CcTopologyNodeVO node = new CcTopologyNodeVO();
+        node.setObjectId(topologyNode.getObjectId());
+        node.setObjectName(topologyNode.getObjectName());
+        node.setInstanceId(topologyNode.getInstanceId());
+        node.setInstanceName(topologyNode.getInstanceName());
+        BitSet bits = nodeHosts.get(nodeKey(topologyNode.getObjectId(), topologyNode.getInstanceId()));
+        node.setCount(bits == null ? 0 : bits.cardinality());
+        boolean isModule = CcNodeTypeEnum.MODULE.getType().equals(topologyNode.getObjectId());
+        if (isModule) {
+            // 模块不需要展开,其他的默认展开
+            node.setExpanded(false);
+            if (hostConverter != null) {
+                List<HostInfoVO> moduleHostList = new ArrayList<>(node.getCount());
+                if (bits != null) {
+                    for (int slot = bits.nextSetBit(0); slot >= 0; slot = bits.nextSetBit(slot + 1)) {
+                        moduleHostList.add(hostConverter.apply(hosts.get(slot)));
+                    }
+                }
+                node.setIpListStatus(moduleHostList);
+            }
+        }
+        List<CcTopologyNodeVO> children = new ArrayList<>();
+        if (topologyNode.getChild() != null) {
+            for (InstanceTopologyDTO child : topologyNode.getChild()) {
+                children.add(buildNode(child, hostConverter));
+            }
+        }
+        node.setChild(children);
+        return node;
+    }
+
+    /**
+     * 获取读锁，并保证持有读锁时各拓扑节点的主机集合是最新的。调用方需要释放读锁
+     */
+    private void lockReadWithFreshNodeHosts() {
+        lock.readLock().lock();
+        if (!nodeHostsDirty) {
+            return;
+        }
+        // 不能在持有读锁时获取写锁。刷新后在释放写锁之前获取读锁(锁降级)，保证刷新与读取之间不会有主机变更
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            if (nodeHostsDirty) {
+                Map<String, BitSet> newNodeHosts = new HashMap<>();
+                if (topology != null) {
+                    mergeNodeHosts(topology, newNodeHosts);
+                }
+                nodeHosts = newNodeHosts;
+                nodeHostsDirty = false;
+            }
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private BitSet mergeNodeHosts(InstanceTopologyDTO topologyNode, Map<String, BitSet> nodeHostsMap) {
+        BitSet bits = new BitSet();
+        if (CcNodeTypeEnum.MODULE.getType().equals(topologyNode.getObjectId())) {
+            BitSet moduleBits = moduleHosts.get(topologyNode.getInstanceId());
+            if (moduleBits != null) {
+                bits.or(moduleBits);
+            }
+        }
+        if (topologyNode.getChild() != null) {
+            for (InstanceTopologyDTO child : topologyNode.getChild()) {
+                bits.or(mergeNodeHosts(child, nodeHostsMap));
+            }
+        }
+        nodeHostsMap.put(nodeKey(topologyNode.getObjectId(), topologyNode.getInstanceId()), bits);
+        return bits;
+    }
+
+    private static String nodeKey(String objectId, Long instanceId) {
+        return objectId + ":" + instanceId;
+    }
+}
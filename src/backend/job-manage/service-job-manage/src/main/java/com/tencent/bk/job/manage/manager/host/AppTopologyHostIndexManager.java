@@ -0,0 +1,258 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.manager.host;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tencent.bk.job.common.cc.model.InstanceTopologyDTO;
+import com.tencent.bk.job.common.constant.AppTypeEnum;
+import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.common.model.dto.ApplicationInfoDTO;
+import com.tencent.bk.job.manage.common.TopologyHelper;
+import com.tencent.bk.job.manage.config.JobManageConfig;
+import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StopWatch;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 业务拓扑主机索引管理
+ * <p>
+ * 每个业务的主机数据维护一个 Redis 版本号，主机变更后版本号递增。
+ * 负责处理变更的节点在本地索引版本连续时直接增量更新索引，其他节点发现版本不一致时在下次查询时重建索引。
+ */
+@Slf4j
+@Component
+public class AppTopologyHostIndexManager {
+    private static final String REDIS_KEY_APP_HOST_VERSION_PREFIX = "job:manage:app-topo-host-index:version:";
+
+    private final JobManageConfig jobManageConfig;
+    private final TopologyHelper topologyHelper;
+    private final ApplicationHostDAO applicationHostDAO;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Cache<Long, AppTopologyHostIndex> indexCache;
+    private final ConcurrentHashMap<Long, Object> appLocks = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AppTopologyHostIndexManager(JobManageConfig jobManageConfig,
+                                       TopologyHelper topologyHelper,
+                                       ApplicationHostDAO applicationHostDAO,
+                                       RedisTemplate<String, String> redisTemplate) {
+        this.jobManageConfig = jobManageConfig;
+        this.topologyHelper = topologyHelper;
+        this.applicationHostDAO = applicationHostDAO;
+        this.redisTemplate = redisTemplate;
+        this.indexCache = CacheBuilder.newBuilder()
+            .maximumSize(jobManageConfig.getTopoHostIndexMaxApps())
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build();
+    }
+
+    /**
+     * 获取业务拓扑主机索引，索引不存在或者已过期时重建
+     *
+     * @param username 用户名
+     * @param appInfo  业务，仅支持普通业务
+     * @return 索引；未启用或者构建失败时返回 null，调用方需回退到原有查询方式
+     */
+    public AppTopologyHostIndex getIndex(String username, ApplicationInfoDTO appInfo) {
+        if (!jobManageConfig.isEnableTopoHostIndex() || appInfo.getAppType() != AppTypeEnum.NORMAL) {
+            return null;
+        }
+        Long appId = appInfo.getId();
+        try {
+            long version = getAppHostVersion(appId);
+            AppTopologyHostIndex index = indexCache.getIfPresent(appId);
+            if (index == null || index.getVersion() != version) {
+                synchronized (getAppLock(appId)) {
+                    index = indexCache.getIfPresent(appId);
+                    if (index == null || index.getVersion() != version) {
+                        index = buildIndex(username, appInfo, version);
+                        if (index == null) {
+                            return null;
+                        }
+                        indexCache.put(appId, index);
+                    }
+                }
+            }
+            if (isTopologyExpired(index)) {
+                refreshTopology(username, appInfo, index);
+            }
+            return index;
+        } catch (Throwable t) {
+            log.warn("Fail to get topology host index, appId={}", appId, t);
+            return null;
+        }
+    }
+
+    private AppTopologyHostIndex buildIndex(String username, ApplicationInfoDTO appInfo, long version) {
+        Long appId = appInfo.getId();
+        StopWatch watch = new StopWatch("buildTopologyHostIndex");
+        watch.start("getTopologyTreeByApplication");
+        InstanceTopologyDTO topology = topologyHelper.getTopologyTreeByApplication(username, appInfo);
+        watch.stop();
+        if (topology == null) {
+            return null;
+        }
+        watch.start("listHostInfoByAppId");
+        List<ApplicationHostInfoDTO> hosts = applicationHostDAO.listHostInfoByAppId(appId);
+        watch.stop();
+        watch.start("buildIndex");
+        AppTopologyHostIndex index = new AppTopologyHostIndex(appId, version, topology, hosts);
+        watch.stop();
+        log.info("Build topology host index, appId={}, version={}, hostNum={}, cost={}ms", appId, version,
+            hosts.size(), watch.getTotalTimeMillis());
+        if (log.isDebugEnabled()) {
+            log.debug(watch.prettyPrint());
+        }
+        return index;
+    }
+
+    private boolean isTopologyExpired(AppTopologyHostIndex index) {
+        return System.currentTimeMillis() - index.getTopologyLoadTime()
+            > jobManageConfig.getTopoHostIndexTopologyExpireSeconds() * 1000L;
+    }
+
+    private void refreshTopology(String username, ApplicationInfoDTO appInfo, AppTopologyHostIndex index) {
+        synchronized (getAppLock(appInfo.getId())) {
+            if (!isTopologyExpired(index)) {
+                return;
+            }
+            InstanceTopologyDTO topology = topologyHelper.getTopologyTreeByApplication(username, appInfo);
+            if (topology != null) {
+                index.updateTopology(topology);
+            }
+        }
+    }
+
+    /**
+     * 主机变更(主机属性、主机关系变更或者主机删除)且已写入DB后调用，递增相关业务的主机版本并增量更新本地索引
+     *
+     * @param hostId   主机ID
+     * @param oldAppId 变更前主机所属业务，可为 null
+     */
+    public void onHostChanged(Long hostId, Long oldAppId) {
+        if (hostId == null) {
+            return;
+        }
+        onHostsChanged(Collections.singletonMap(hostId, oldAppId));
+    }
+
+    /**
+     * 批量主机变更后调用，每个相关业务的主机版本只递增一次
+     *
+     * @param hostOldAppIds key:主机ID，value:变更前主机所属业务，可为 null
+     */
+    public void onHostsChanged(Map<Long, Long> hostOldAppIds) {
+        if (!jobManageConfig.isEnableTopoHostIndex() || hostOldAppIds.isEmpty()) {
+            return;
+        }
+        Map<Long, ApplicationHostInfoDTO> hosts = new HashMap<>();
+        applicationHostDAO.listHostInfoByHostIds(hostOldAppIds.keySet())
+            .forEach(host -> hosts.put(host.getHostId(), host));
+        Map<Long, Set<Long>> appHostIds = new HashMap<>();
+        hostOldAppIds.forEach((hostId, oldAppId) -> {
+            if (isValidAppId(oldAppId)) {
+                appHostIds.computeIfAbsent(oldAppId, k -> new HashSet<>()).add(hostId);
+            }
+            ApplicationHostInfoDTO host = hosts.get(hostId);
+            if (host != null && isValidAppId(host.getAppId())) {
+                appHostIds.computeIfAbsent(host.getAppId(), k -> new HashSet<>()).add(hostId);
+            }
+        });
+        appHostIds.forEach((appId, hostIds) -> {
+            try {
+                Long newVersion = redisTemplate.opsForValue().increment(buildVersionKey(appId));
+                synchronized (getAppLock(appId)) {
+                    AppTopologyHostIndex index = indexCache.getIfPresent(appId);
+                    if (index == null) {
+                        return;
+                    }
+                    if (newVersion != null && index.getVersion() == newVersion - 1) {
+                        for (Long hostId : hostIds) {
+                            ApplicationHostInfoDTO host = hosts.get(hostId);
+                            if (host == null) {
+                                index.removeHost(hostId);
+                            } else {
+                                index.updateHost(host);
+                            }
+                        }
+                        index.setVersion(newVersion);
+                    } else {
+                        indexCache.invalidate(appId);
+                    }
+                }
+            } catch (Throwable t) {
+                log.warn("Fail to update topology host index, appId={}, hostIds={}", appId, hostIds, t);
+                indexCache.invalidate(appId);
+            }
+        });
+    }
+
+    /**
+     * 业务主机全量同步后调用，使所有节点的业务索引失效
+     *
+     * @param appId 业务ID
+     */
+    public void invalidate(Long appId) {
+        if (!jobManageConfig.isEnableTopoHostIndex()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().increment(buildVersionKey(appId));
+        } catch (Throwable t) {
+            log.warn("Fail to increase app host version, appId={}", appId, t);
+        }
+        indexCache.invalidate(appId);
+    }
+
+    private long getAppHostVersion(Long appId) {
+        String version = redisTemplate.opsForValue().get(buildVersionKey(appId));
+        return version == null ? 0L : Long.parseLong(version);
+    }
+
+    private Object getAppLock(Long appId) {
+        return appLocks.computeIfAbsent(appId, k -> new Object());
+    }
+
+    private boolean isValidAppId(Long appId) {
+        return appId != null && appId > 0;
+    }
+
+    private String buildVersionKey(Long appId) {
+        return REDIS_KEY_APP_HOST_VERSION_PREFIX + appId;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.manager.host;
+
+import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.common.util.json.JsonUtils;
+import com.tencent.bk.job.manage.config.JobManageConfig;
+import com.tencent.bk.job.manage.model.inner.ServiceHostChangedMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 主机变更发布：主机信息变更写入DB后，将变更主机的 云区域ID:IP 发布到 Redis 频道，
+ * job-execute 等服务据此失效节点本地的主机缓存
+ */
+@Slf4j
+@Component
+public class HostChangePublisher {
+    private static final int MAX_HOSTS_PER_MESSAGE = 1000;
+
+    private final JobManageConfig jobManageConfig;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    public HostChangePublisher(JobManageConfig jobManageConfig, RedisTemplate<String, String> redisTemplate) {
+        this.jobManageConfig = jobManageConfig;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 将主机当前IP加入待发布集合
+     */
+    public static void addHostKey(Set<String> hostKeys, ApplicationHostInfoDTO host) {
+        if (host != null) {
+            addHostKey(hostKeys, host.getCloudAreaId(), host.getIp());
+        }
+    }
+
+    /**
+     * 将IP加入待发布集合，IP可为逗号分隔的多个IP
+     */
+    public static void addHostKey(Set<String> hostKeys, Long cloudAreaId, String ips) {
+        if (cloudAreaId == null || StringUtils.isBlank(ips)) {
+            return;
+        }
+        for (String ip : ips.split(",")) {
+            if (StringUtils.isNotBlank(ip)) {
+                hostKeys.add(cloudAreaId + ":" + ip.trim());
+            }
+        }
+    }
+
+    /**
+     * 发布主机变更，发布失败仅记录日志，订阅方的缓存依赖过期时间兜底
+     *
+     * @param hostKeys 云区域ID:IP 集合
+     */
+    public void publishHostsChanged(Collection<String> hostKeys) {
+        if (!jobManageConfig.isPublishHostChangeEnabled() || hostKeys == null || hostKeys.isEmpty()) {
+            return;
+        }
+        List<String> hostKeyList = new ArrayList<>(hostKeys);
+        for (int start = 0; start < hostKeyList.size(); start += MAX_HOSTS_PER_MESSAGE) {
+            List<String> batch = hostKeyList.subList(start, Math.min(start + MAX_HOSTS_PER_MESSAGE,
+                hostKeyList.size()));
+            ServiceHostChangedMessage message = new ServiceHostChangedMessage(System.currentTimeMillis(),
+                new ArrayList<>(batch));
+            try {
+                redisTemplate.convertAndSend(ServiceHostChangedMessage.CHANNEL, JsonUtils.toJson(message));
+            } catch (Throwable t) {
+                log.warn("Fail to publish {} changed hosts", batch.size(), t);
+            }
+        }
+        log.debug("Published {} changed hosts", hostKeyList.size());
+    }
+}
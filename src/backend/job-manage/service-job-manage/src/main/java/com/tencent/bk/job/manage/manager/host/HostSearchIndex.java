@@ -0,0 +1,190 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.manager.host;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 主机搜索索引，支持按 IP、IP 描述、操作系统名称进行子串匹配，与 LIKE '%keyword%' 语义一致(不区分大小写)。
+ * <p>
+ * 每个主机的可搜索文本保存在数组中，索引为 3-gram 到主机下标的倒排表。查询时选取关键字中倒排表最短的 3-gram
+ * 作为候选集，再用原始文本校验；长度不足 3 的关键字直接扫描全部文本。
+ * 倒排表只追加不删除，主机更新后残留的下标在校验阶段被过滤；索引不处理主机删除，由调用方通过DB条件过滤，
+ * 定期全量重建索引以回收空间。
+ */
+public class HostSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final List<Long> hostIds = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+    private final Map<Long, Integer> hostSlots = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 新增或更新主机
+     */
+    public void updateHost(Long hostId, String ip, String ipDesc, String os) {
+        if (hostId == null) {
+            return;
+        }
+        String text = buildText(ip, ipDesc, os);
+        lock.writeLock().lock();
+        try {
+            Integer slot = hostSlots.get(hostId);
+            if (slot != null) {
+                if (text.equals(texts.get(slot))) {
+                    return;
+                }
+            } else {
+                slot = hostIds.size();
+                hostIds.add(hostId);
+                texts.add(null);
+                hostSlots.put(hostId, slot);
+            }
+            texts.set(slot, text);
+            addPostings(slot, text);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return hostSlots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索 IP、IP 描述或操作系统名称包含任意一个关键字的主机
+     *
+     * @param keywords 关键字
+     * @param maxHits  最大命中数量
+     * @return 命中的主机 ID；命中数量超过 maxHits 时返回 null
+     */
+    public List<Long> search(Collection<String> keywords, int maxHits) {
+        lock.readLock().lock();
+        try {
+            BitSet hitSlots = new BitSet(texts.size());
+            for (String keyword : keywords) {
+                if (keyword == null) {
+                    continue;
+                }
+                String lowerKeyword = keyword.toLowerCase(Locale.ROOT);
+                if (lowerKeyword.length() < GRAM_LENGTH) {
+                    for (int slot = 0; slot < texts.size(); slot++) {
+                        matchSlot(slot, lowerKeyword, hitSlots);
+                    }
+                } else {
+                    IntList candidates = findShortestPosting(lowerKeyword);
+                    if (candidates == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < candidates.size; i++) {
+                        matchSlot(candidates.values[i], lowerKeyword, hitSlots);
+                    }
+                }
+                if (hitSlots.cardinality() > maxHits) {
+                    return null;
+                }
+            }
+            List<Long> result = new ArrayList<>(hitSlots.cardinality());
+            for (int slot = hitSlots.nextSetBit(0); slot >= 0; slot = hitSlots.nextSetBit(slot + 1)) {
+                result.add(hostIds.get(slot));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void matchSlot(int slot, String lowerKeyword, BitSet hitSlots) {
+        String text = texts.get(slot);
+        if (text != null && !hitSlots.get(slot) && text.contains(lowerKeyword)) {
+            hitSlots.set(slot);
+        }
+    }
+
+    private IntList findShortestPosting(String lowerKeyword) {
+        IntList shortest = null;
+        for (int i = 0; i + GRAM_LENGTH <= lowerKeyword.length(); i++) {
+            IntList posting = postings.get(lowerKeyword.substring(i, i + GRAM_LENGTH));
+            if (posting == null) {
+                // 任意一个 3-gram 不存在即不可能匹配
+                return null;
+            }
+            if (shortest == null || posting.size < shortest.size) {
+                shortest = posting;
+            }
+        }
+        return shortest;
+    }
+
+    private void addPostings(int slot, String text) {
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM_LENGTH);
+            if (gram.indexOf(FIELD_SEPARATOR) >= 0) {
+                continue;
+            }
+            IntList posting = postings.computeIfAbsent(gram, key -> new IntList());
+            // 同一主机文本中重复出现的 3-gram 只记录一次
+            if (posting.size == 0 || posting.values[posting.size - 1] != slot) {
+                posting.add(slot);
+            }
+        }
+    }
+
+    private static String buildText(String ip, String ipDesc, String os) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ip == null ? "" : ip).append(FIELD_SEPARATOR);
+        sb.append(ipDesc == null ? "" : ipDesc).append(FIELD_SEPARATOR);
+        sb.append(os == null ? "" : os);
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.manager.host;
+
+import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.manage.config.JobManageConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.OrderField;
+import org.jooq.Record5;
+import org.jooq.Result;
+import org.jooq.generated.tables.Host;
+import org.jooq.types.ULong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 主机搜索索引管理
+ * <p>
+ * 每个节点在内存中维护全量主机的搜索索引：本节点写入的主机变更实时更新索引，其他节点写入的变更通过定时
+ * 按 row_update_time 增量加载，并定期全量重建索引。索引只用于筛选候选主机ID，业务、模块、Agent状态等条件
+ * 仍由DB过滤，因此索引中残留的已删除主机不影响结果，在下次全量重建时清理。
+ */
+@Slf4j
+@Component
+public class HostSearchIndexManager {
+    private static final Host TABLE = Host.HOST;
+    private static final int LOAD_BATCH_SIZE = 10000;
+    /**
+     * 增量加载时向前多加载的时间，避免遗漏同一秒内稍后提交的变更
+     */
+    private static final long INCREMENTAL_OVERLAP_SECONDS = 5;
+
+    private final DSLContext context;
+    private final JobManageConfig jobManageConfig;
+    private final Object refreshLock = new Object();
+    private volatile HostSearchIndex index;
+    private volatile LocalDateTime lastRowUpdateTime;
+    private volatile long lastRebuildTime;
+
+    @Autowired
+    public HostSearchIndexManager(@Qualifier("job-manage-dsl-context") DSLContext context,
+                                  JobManageConfig jobManageConfig) {
+        this.context = context;
+        this.jobManageConfig = jobManageConfig;
+    }
+
+    /**
+     * 搜索 IP、IP 描述或操作系统名称包含任意一个关键字的主机
+     *
+     * @param searchContents 关键字
+     * @return 命中的主机ID；索引未启用、未就绪、关键字包含 LIKE 通配符或命中数量过多时返回 null，调用方需回退到DB查询
+     */
+    public List<Long> search(List<String> searchContents) {
+        HostSearchIndex currentIndex = index;
+        if (!jobManageConfig.isEnableHostSearchIndex() || currentIndex == null) {
+            return null;
+        }
+        for (String content : searchContents) {
+            if (content == null || content.contains("%") || content.contains("_")) {
+                return null;
+            }
+        }
+        return currentIndex.search(searchContents, jobManageConfig.getHostSearchIndexMaxHits());
+    }
+
+    /**
+     * 定时调用，增量加载变更的主机，到达重建周期时全量重建索引
+     */
+    public void refresh() {
+        if (!jobManageConfig.isEnableHostSearchIndex()) {
+            index = null;
+            return;
+        }
+        synchronized (refreshLock) {
+            try {
+                long rebuildIntervalMillis = jobManageConfig.getHostSearchIndexRebuildIntervalSeconds() * 1000L;
+                if (index == null || System.currentTimeMillis() - lastRebuildTime > rebuildIntervalMillis) {
+                    rebuild();
+                } else {
+                    loadUpdatedHosts();
+                }
+            } catch (Throwable t) {
+                log.warn("Fail to refresh host search index", t);
+            }
+        }
+    }
+
+    /**
+     * 主机写入DB后调用
+     */
+    public void onHostsSaved(Collection<ApplicationHostInfoDTO> hosts) {
+        HostSearchIndex currentIndex = index;
+        if (currentIndex == null || hosts == null) {
+            return;
+        }
+        for (ApplicationHostInfoDTO host : hosts) {
+            currentIndex.updateHost(host.getHostId(), host.getIp(), host.getIpDesc(), host.getOs());
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        HostSearchIndex newIndex = new HostSearchIndex();
+        LocalDateTime maxRowUpdateTime = loadHosts(newIndex, null);
+        index = newIndex;
+        lastRowUpdateTime = maxRowUpdateTime;
+        lastRebuildTime = System.currentTimeMillis();
+        log.info("Rebuild host search index, hostNum={}, cost={}ms", newIndex.size(),
+            lastRebuildTime - start);
+    }
+
+    private void loadUpdatedHosts() {
+        LocalDateTime updatedAfter = lastRowUpdateTime == null ? null :
+            lastRowUpdateTime.minusSeconds(INCREMENTAL_OVERLAP_SECONDS);
+        LocalDateTime maxRowUpdateTime = loadHosts(index, updatedAfter);
+        if (maxRowUpdateTime != null) {
+            lastRowUpdateTime = maxRowUpdateTime;
+        }
+    }
+
+    /**
+     * 分批加载主机：全量加载按主机ID分页；增量加载按 (row_update_time, host_id) 分页，
+     * 使用 idx_row_update_time 索引做范围扫描，避免每次增量加载都全表扫描
+     *
+     * @param target       目标索引
+     * @param updatedAfter 只加载该时间之后更新的主机，为 null 时加载全部
+     * @return 加载到的主机中最大的 row_update_time
+     */
+    private LocalDateTime loadHosts(HostSearchIndex target, LocalDateTime updatedAfter) {
+        LocalDateTime maxRowUpdateTime = updatedAfter;
+        ULong lastHostId = ULong.valueOf(0);
+        LocalDateTime lastUpdateTime = updatedAfter;
+        Result<Record5<ULong, String, String, String, LocalDateTime>> records;
+        do {
+            List<Condition> conditions = new ArrayList<>();
+            List<OrderField<?>> orderFields = new ArrayList<>();
+            if (updatedAfter == null) {
+                conditions.add(TABLE.HOST_ID.gt(lastHostId));
+            } else {
+                conditions.add(TABLE.ROW_UPDATE_TIME.ge(lastUpdateTime));
+                conditions.add(TABLE.ROW_UPDATE_TIME.gt(lastUpdateTime).or(TABLE.HOST_ID.gt(lastHostId)));
+                orderFields.add(TABLE.ROW_UPDATE_TIME.asc());
+            }
+            orderFields.add(TABLE.HOST_ID.asc());
+            records = context.select(TABLE.HOST_ID, TABLE.IP, TABLE.IP_DESC, TABLE.OS, TABLE.ROW_UPDATE_TIME)
+                .from(TABLE)
+                .where(conditions)
+                .orderBy(orderFields)
+                .limit(LOAD_BATCH_SIZE)
+                .fetch();
+            for (Record5<ULong, String, String, String, LocalDateTime> record : records) {
+                lastHostId = record.value1();
+                target.updateHost(lastHostId.longValue(), record.value2(), record.value3(), record.value4());
+                LocalDateTime rowUpdateTime = record.value5();
+                if (rowUpdateTime != null) {
+                    lastUpdateTime = rowUpdateTime;
+                    if (maxRowUpdateTime == null || rowUpdateTime.isAfter(maxRowUpdateTime)) {
+                        maxRowUpdateTime = rowUpdateTime;
+                    }
+                }
+            }
+        } while (records.size() == LOAD_BATCH_SIZE);
+        return maxRowUpdateTime;
+    }
+}
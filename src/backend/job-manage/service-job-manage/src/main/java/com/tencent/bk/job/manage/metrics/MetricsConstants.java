@@ -41,6 +41,20 @@ public class MetricsConstants {
     public static final String NAME_SYNC_HOST_EXECUTOR_QUEUE_SIZE = "sync.host.executor.queue.size";
     public static final String NAME_SYNC_AGENT_STATUS_EXECUTOR_POOL_SIZE = "sync.agentStatus.executor.pool.size";
     public static final String NAME_SYNC_AGENT_STATUS_EXECUTOR_QUEUE_SIZE = "sync.agentStatus.executor.queue.size";
+    // 待处理的主机事件数量
+    public static final String NAME_SYNC_HOST_EVENT_QUEUE_SIZE = "sync.hostEvent.queue.size";
+    // 最早的待处理主机事件已等待的时间(ms)
+    public static final String NAME_SYNC_HOST_EVENT_LAG_MILLIS = "sync.hostEvent.lag.millis";
+    // 接收的主机事件数量
+    public static final String NAME_SYNC_HOST_EVENT_RECEIVED = "sync.hostEvent.received";
+    // 合并后实际处理的主机事件数量
+    public static final String NAME_SYNC_HOST_EVENT_APPLIED = "sync.hostEvent.applied";
+    // 单个实例一轮Agent状态同步耗时
+    public static final String NAME_SYNC_AGENT_STATUS_PASS_TIME = "sync.agentStatus.pass.time";
+    // Agent状态同步检查的主机数量
+    public static final String NAME_SYNC_AGENT_STATUS_HOSTS_CHECKED = "sync.agentStatus.hosts.checked";
+    // Agent状态同步实际变更的主机数量
+    public static final String NAME_SYNC_AGENT_STATUS_HOSTS_CHANGED = "sync.agentStatus.hosts.changed";
     // 运营指标：业务类
     // 业务总量
     public static final String NAME_APPLICATION_COUNT = "application.count";
@@ -25,6 +25,9 @@
 package com.tencent.bk.job.manage.service;
 
 import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceAppHostChangesDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceResolvedHostsDTO;
+import com.tencent.bk.job.manage.model.inner.request.ServiceResolveHostsReq;
 
 import java.util.List;
 
@@ -38,5 +41,23 @@ public interface ApplicationHostService {
 
     List<ApplicationHostInfoDTO> getHostsByAppId(Long appId);
 
+    /**
+     * 获取业务下的主机变更，供其他服务增量同步主机缓存
+     *
+     * @param appId        业务ID
+     * @param updatedAfter 上次返回的变更水位，毫秒时间戳；为 null 时返回业务下的全部主机
+     * @return 主机变更
+     */
+    ServiceAppHostChangesDTO listAppHostChanges(Long appId, Long updatedAfter);
+
     long countHostsByOsType(String osType);
+
+    /**
+     * 批量解析执行目标中的静态主机、拓扑节点与动态分组
+     *
+     * @param appId 业务ID
+     * @param req   待解析的执行目标
+     * @return 解析结果
+     */
+    ServiceResolvedHostsDTO resolveHosts(Long appId, ServiceResolveHostsReq req);
 }
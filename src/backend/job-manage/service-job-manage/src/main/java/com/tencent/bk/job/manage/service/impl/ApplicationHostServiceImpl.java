@@ -24,15 +24,58 @@
 
 package com.tencent.bk.job.manage.service.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tencent.bk.job.common.cc.model.CcCloudIdDTO;
+import com.tencent.bk.job.common.cc.model.CcGroupHostPropDTO;
+import com.tencent.bk.job.common.cc.model.CcInstanceDTO;
+import com.tencent.bk.job.common.cc.sdk.CcClient;
+import com.tencent.bk.job.common.cc.sdk.CcClientFactory;
+import com.tencent.bk.job.common.constant.ErrorCode;
+import com.tencent.bk.job.common.exception.ParamErrorException;
+import com.tencent.bk.job.common.exception.ServiceException;
 import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.common.model.dto.ApplicationInfoDTO;
+import com.tencent.bk.job.common.util.JobContextUtil;
+import com.tencent.bk.job.manage.config.JobManageConfig;
 import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
+import com.tencent.bk.job.manage.dao.ApplicationInfoDAO;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndex;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndexManager;
+import com.tencent.bk.job.manage.model.inner.ServiceAppHostChangesDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceHostInfoDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceResolvedHostsDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceTaskNodeInfoDTO;
+import com.tencent.bk.job.manage.model.inner.request.ServiceResolveHostsReq;
 import com.tencent.bk.job.manage.service.ApplicationHostService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.jooq.DSLContext;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * @Description
@@ -41,14 +84,57 @@ import java.util.List;
  */
 @Slf4j
 @Service
-public class ApplicationHostServiceImpl implements ApplicationHostService {
+public class ApplicationHostServiceImpl implements ApplicationHostService, DisposableBean {
+    /**
+     * 从CMDB拉取拓扑节点/动态分组主机的最大并发数
+     */
+    private static final int CMDB_QUERY_THREAD_NUM = 10;
+    private static final String DEFAULT_USERNAME = "admin";
+    /**
+     * 增量查询主机变更时向前多查询的时间，避免遗漏同一秒内稍后提交的变更
+     */
+    private static final long HOST_CHANGES_OVERLAP_SECONDS = 5;
+
     private final DSLContext dslContext;
     private final ApplicationHostDAO applicationHostDAO;
+    private final ApplicationInfoDAO applicationInfoDAO;
+    private final AppTopologyHostIndexManager appTopologyHostIndexManager;
+    /**
+     * 动态分组主机缓存，key 为 appId:groupId，value 为 云区域ID:IP 列表
+     */
+    private final Cache<String, List<String>> dynamicGroupHostCache;
+    /**
+     * 从CMDB拉取拓扑节点/动态分组主机的共享线程池，队列满时由调用线程执行
+     */
+    private final ThreadPoolExecutor cmdbQueryExecutor;
 
     @Autowired
-    public ApplicationHostServiceImpl(DSLContext dslContext, ApplicationHostDAO applicationHostDAO) {
+    public ApplicationHostServiceImpl(DSLContext dslContext,
+                                      ApplicationHostDAO applicationHostDAO,
+                                      ApplicationInfoDAO applicationInfoDAO,
+                                      AppTopologyHostIndexManager appTopologyHostIndexManager,
+                                      JobManageConfig jobManageConfig) {
         this.dslContext = dslContext;
         this.applicationHostDAO = applicationHostDAO;
+        this.applicationInfoDAO = applicationInfoDAO;
+        this.appTopologyHostIndexManager = appTopologyHostIndexManager;
+        this.dynamicGroupHostCache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(jobManageConfig.getDynamicGroupHostCacheSeconds(), TimeUnit.SECONDS)
+            .build();
+        AtomicInteger threadSeq = new AtomicInteger(1);
+        this.cmdbQueryExecutor = new ThreadPoolExecutor(CMDB_QUERY_THREAD_NUM, CMDB_QUERY_THREAD_NUM, 60L,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(1000), r -> {
+            Thread thread = new Thread(r, "resolveHostsCmdbQuery-" + threadSeq.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.cmdbQueryExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void destroy() {
+        cmdbQueryExecutor.shutdown();
     }
 
     @Override
@@ -61,8 +147,267 @@ public class ApplicationHostServiceImpl implements ApplicationHostService {
         return applicationHostDAO.listHostInfoByAppId(appId);
     }
 
+    @Override
+    public ServiceAppHostChangesDTO listAppHostChanges(Long appId, Long updatedAfter) {
+        // 先统计再查询变更：统计之后发生的变更即使未包含在本次结果中，其更新时间也不早于返回的水位
+        Triple<Long, Long, LocalDateTime> hostStat = applicationHostDAO.getAppHostKeyStat(appId);
+        LocalDateTime updatedAfterTime = null;
+        if (updatedAfter != null) {
+            updatedAfterTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(updatedAfter), ZoneId.systemDefault())
+                .minusSeconds(HOST_CHANGES_OVERLAP_SECONDS);
+        }
+        List<ApplicationHostInfoDTO> hosts = applicationHostDAO.listHostInfoByAppId(appId, updatedAfterTime);
+
+        ServiceAppHostChangesDTO hostChanges = new ServiceAppHostChangesDTO();
+        hostChanges.setAppId(appId);
+        hostChanges.setHostKeyNum(hostStat.getLeft());
+        hostChanges.setHostKeyDigest(hostStat.getMiddle());
+        LocalDateTime lastUpdateTime = hostStat.getRight();
+        hostChanges.setWatermark(lastUpdateTime == null ? updatedAfter :
+            lastUpdateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        List<ServiceHostInfoDTO> changedHosts = new ArrayList<>(hosts.size());
+        for (ApplicationHostInfoDTO host : hosts) {
+            ServiceHostInfoDTO changedHost = buildHost(host.getAppId(), host.getCloudAreaId(), host.getIp());
+            changedHost.setHostId(host.getHostId());
+            changedHost.setDisplayIp(host.getDisplayIp());
+            changedHosts.add(changedHost);
+        }
+        hostChanges.setHosts(changedHosts);
+        return hostChanges;
+    }
+
     @Override
     public long countHostsByOsType(String osType) {
         return applicationHostDAO.countHostsByOsType(osType);
     }
+
+    @Override
+    public ServiceResolvedHostsDTO resolveHosts(Long appId, ServiceResolveHostsReq req) {
+        ApplicationInfoDTO appInfo = applicationInfoDAO.getCacheAppInfoById(appId);
+        if (appInfo == null) {
+            throw new ParamErrorException(ErrorCode.WRONG_APP_ID);
+        }
+        // key 为 云区域ID:IP
+        Map<String, ServiceHostInfoDTO> hosts = new LinkedHashMap<>();
+        if (CollectionUtils.isNotEmpty(req.getStaticHosts())) {
+            for (ServiceHostInfoDTO staticHost : req.getStaticHosts()) {
+                hosts.putIfAbsent(buildCloudIp(staticHost.getCloudAreaId(), staticHost.getIp()),
+                    buildHost(appId, staticHost.getCloudAreaId(), staticHost.getIp()));
+            }
+        }
+        ServiceResolvedHostsDTO result = new ServiceResolvedHostsDTO();
+        result.setTopoNodeHosts(resolveTopoNodeHosts(appInfo, req.getTopoNodes(), hosts));
+        result.setDynamicGroupHosts(resolveDynamicGroupHosts(appInfo, req.getDynamicGroupIds(), hosts));
+        fillHostDetail(hosts);
+        result.setHosts(new ArrayList<>(hosts.values()));
+        return result;
+    }
+
+    private Map<String, List<String>> resolveTopoNodeHosts(ApplicationInfoDTO appInfo,
+                                                           List<ServiceTaskNodeInfoDTO> topoNodes,
+                                                           Map<String, ServiceHostInfoDTO> hosts) {
+        Map<String, List<String>> topoNodeHosts = new LinkedHashMap<>();
+        if (CollectionUtils.isEmpty(topoNodes)) {
+            return topoNodeHosts;
+        }
+        Long appId = appInfo.getId();
+        // 普通业务优先使用内存中的拓扑主机索引，索引中不存在的节点再从CMDB查询
+        AppTopologyHostIndex index = appTopologyHostIndexManager.getIndex(DEFAULT_USERNAME, appInfo);
+        List<ServiceTaskNodeInfoDTO> cmdbNodes = new ArrayList<>();
+        for (ServiceTaskNodeInfoDTO node : topoNodes) {
+            List<ApplicationHostInfoDTO> nodeHosts = index == null ? null :
+                index.listNodeHosts(node.getType(), node.getId());
+            if (nodeHosts == null) {
+                cmdbNodes.add(node);
+            } else {
+                topoNodeHosts.put(ServiceResolvedHostsDTO.buildTopoNodeKey(node.getType(), node.getId()),
+                    addHosts(appId, nodeHosts, hosts));
+            }
+        }
+        if (!cmdbNodes.isEmpty()) {
+            CcClient ccClient = getCcClient();
+            List<Pair<ServiceTaskNodeInfoDTO, List<ApplicationHostInfoDTO>>> cmdbNodeHosts =
+                queryCmdbConcurrently(cmdbNodes, node -> ccClient.getHosts(appId,
+                    Collections.singletonList(new CcInstanceDTO(node.getType(), node.getId()))));
+            for (Pair<ServiceTaskNodeInfoDTO, List<ApplicationHostInfoDTO>> pair : cmdbNodeHosts) {
+                ServiceTaskNodeInfoDTO node = pair.getLeft();
+                topoNodeHosts.put(ServiceResolvedHostsDTO.buildTopoNodeKey(node.getType(), node.getId()),
+                    addHosts(appId, pair.getRight(), hosts));
+            }
+        }
+        return topoNodeHosts;
+    }
+
+    private List<String> addHosts(Long appId, List<ApplicationHostInfoDTO> nodeHosts,
+                                  Map<String, ServiceHostInfoDTO> hosts) {
+        if (nodeHosts == null) {
+            return Collections.emptyList();
+        }
+        Set<String> cloudIps = new LinkedHashSet<>();
+        for (ApplicationHostInfoDTO nodeHost : nodeHosts) {
+            if (nodeHost == null) {
+                continue;
+            }
+            String cloudIp = buildCloudIp(nodeHost.getCloudAreaId(), nodeHost.getIp());
+            if (cloudIps.add(cloudIp) && !hosts.containsKey(cloudIp)) {
+                ServiceHostInfoDTO host = buildHost(appId, nodeHost.getCloudAreaId(), nodeHost.getIp());
+                host.setHostId(nodeHost.getHostId());
+                host.setDisplayIp(nodeHost.getDisplayIp());
+                if (nodeHost.getGseAgentAlive() != null) {
+                    host.setAlive(nodeHost.getGseAgentAlive() ? 1 : 0);
+                }
+                hosts.put(cloudIp, host);
+            }
+        }
+        return new ArrayList<>(cloudIps);
+    }
+
+    /**
+     * 解析动态分组下的主机。动态分组的过滤规则由CMDB计算，因此仍从CMDB查询，但结果在本地短暂缓存
+     */
+    private Map<String, List<String>> resolveDynamicGroupHosts(ApplicationInfoDTO appInfo, List<String> groupIds,
+                                                               Map<String, ServiceHostInfoDTO> hosts) {
+        Map<String, List<String>> dynamicGroupHosts = new LinkedHashMap<>();
+        if (CollectionUtils.isEmpty(groupIds)) {
+            return dynamicGroupHosts;
+        }
+        Long appId = appInfo.getId();
+        Set<String> missGroupIds = new LinkedHashSet<>();
+        for (String groupId : groupIds) {
+            List<String> cloudIps = dynamicGroupHostCache.getIfPresent(buildDynamicGroupCacheKey(appId, groupId));
+            if (cloudIps == null) {
+                missGroupIds.add(groupId);
+            } else {
+                dynamicGroupHosts.put(groupId, cloudIps);
+            }
+        }
+        if (!missGroupIds.isEmpty()) {
+            CcClient ccClient = getCcClient();
+            List<Pair<String, List<String>>> loadedGroupHosts = queryCmdbConcurrently(missGroupIds,
+                groupId -> getDynamicGroupHostsFromCmdb(ccClient, appInfo, groupId));
+            for (Pair<String, List<String>> pair : loadedGroupHosts) {
+                dynamicGroupHostCache.put(buildDynamicGroupCacheKey(appId, pair.getLeft()), pair.getRight());
+                dynamicGroupHosts.put(pair.getLeft(), pair.getRight());
+            }
+        }
+        for (List<String> cloudIps : dynamicGroupHosts.values()) {
+            for (String cloudIp : cloudIps) {
+                if (!hosts.containsKey(cloudIp)) {
+                    int separatorIndex = cloudIp.indexOf(':');
+                    hosts.put(cloudIp, buildHost(appId, Long.valueOf(cloudIp.substring(0, separatorIndex)),
+                        cloudIp.substring(separatorIndex + 1)));
+                }
+            }
+        }
+        return dynamicGroupHosts;
+    }
+
+    CcClient getCcClient() {
+        return CcClientFactory.getCcClient();
+    }
+
+    /**
+     * 使用共享线程池并发从CMDB查询，任意一个查询失败时取消其余查询并抛出异常
+     *
+     * @param inputs 查询条件
+     * @param query  单个查询
+     * @return 查询条件与结果，与查询条件顺序一致
+     */
+    private <I, O> List<Pair<I, O>> queryCmdbConcurrently(Collection<I> inputs, Function<I, O> query) {
+        String requestId = JobContextUtil.getRequestId();
+        List<Pair<I, Future<O>>> futures = new ArrayList<>(inputs.size());
+        for (I input : inputs) {
+            futures.add(Pair.of(input, cmdbQueryExecutor.submit(() -> {
+                JobContextUtil.setRequestId(requestId);
+                return query.apply(input);
+            })));
+        }
+        List<Pair<I, O>> results = new ArrayList<>(futures.size());
+        try {
+            for (Pair<I, Future<O>> future : futures) {
+                results.add(Pair.of(future.getLeft(), future.getRight().get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(e, ErrorCode.SERVICE_INTERNAL_ERROR, "Interrupted while querying cmdb");
+        } catch (ExecutionException e) {
+            log.warn("Fail to query hosts from cmdb, input size: {}", inputs.size(), e.getCause());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ServiceException(e.getCause(), ErrorCode.CMDB_API_DATA_ERROR, "Fail to query cmdb");
+        } finally {
+            futures.forEach(future -> future.getRight().cancel(true));
+        }
+        return results;
+    }
+
+    private List<String> getDynamicGroupHostsFromCmdb(CcClient ccClient, ApplicationInfoDTO appInfo,
+                                                      String groupId) {
+        List<CcGroupHostPropDTO> groupHostList = ccClient.getCustomGroupIp(appInfo.getId(),
+            appInfo.getBkSupplierAccount(), DEFAULT_USERNAME, groupId);
+        List<String> cloudIps = new ArrayList<>();
+        if (groupHostList == null) {
+            return cloudIps;
+        }
+        for (CcGroupHostPropDTO groupHost : groupHostList) {
+            List<CcCloudIdDTO> cloudIdList = groupHost.getCloudIdList();
+            if (CollectionUtils.isEmpty(cloudIdList) || cloudIdList.get(0) == null) {
+                log.warn("Get hosts by dynamic group, cmdb return illegal host, skip it! appId={}, groupId={}, " +
+                    "hostIp={}", appInfo.getId(), groupId, groupHost.getIp());
+                continue;
+            }
+            cloudIps.add(buildCloudIp(cloudIdList.get(0).getInstanceId(), groupHost.getIp()));
+        }
+        return cloudIps;
+    }
+
+    /**
+     * 从本地主机表补充缺少主机ID或者Agent状态的主机信息
+     */
+    private void fillHostDetail(Map<String, ServiceHostInfoDTO> hosts) {
+        Map<Long, Set<String>> cloudAreaIps = new HashMap<>();
+        for (ServiceHostInfoDTO host : hosts.values()) {
+            if (host.getHostId() == null || host.getAlive() == null) {
+                cloudAreaIps.computeIfAbsent(host.getCloudAreaId(), k -> new LinkedHashSet<>()).add(host.getIp());
+            }
+        }
+        cloudAreaIps.forEach((cloudAreaId, ips) -> {
+            List<ApplicationHostInfoDTO> hostInfos = applicationHostDAO.listHostInfoBySourceAndIps(cloudAreaId, ips);
+            if (hostInfos == null) {
+                return;
+            }
+            for (ApplicationHostInfoDTO hostInfo : hostInfos) {
+                ServiceHostInfoDTO host = hosts.get(buildCloudIp(cloudAreaId, hostInfo.getIp()));
+                if (host == null) {
+                    continue;
+                }
+                if (host.getHostId() == null) {
+                    host.setHostId(hostInfo.getHostId());
+                }
+                if (host.getDisplayIp() == null) {
+                    host.setDisplayIp(hostInfo.getDisplayIp());
+                }
+                if (host.getAlive() == null && hostInfo.getGseAgentAlive() != null) {
+                    host.setAlive(hostInfo.getGseAgentAlive() ? 1 : 0);
+                }
+            }
+        });
+    }
+
+    private ServiceHostInfoDTO buildHost(Long appId, Long cloudAreaId, String ip) {
+        ServiceHostInfoDTO host = new ServiceHostInfoDTO();
+        host.setAppId(appId);
+        host.setCloudAreaId(cloudAreaId);
+        host.setIp(ip);
+        return host;
+    }
+
+    private String buildCloudIp(Long cloudAreaId, String ip) {
+        return cloudAreaId + ":" + ip;
+    }
+
+    private String buildDynamicGroupCacheKey(Long appId, String groupId) {
+        return appId + ":" + groupId;
+    }
 }
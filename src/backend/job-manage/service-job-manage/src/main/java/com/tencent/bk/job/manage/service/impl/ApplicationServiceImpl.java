@@ -50,6 +50,8 @@ import com.tencent.bk.job.manage.common.TopologyHelper;
 import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
 import com.tencent.bk.job.manage.dao.ApplicationInfoDAO;
 import com.tencent.bk.job.manage.dao.HostTopoDAO;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndex;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndexManager;
 import com.tencent.bk.job.manage.model.dto.HostTopoDTO;
 import com.tencent.bk.job.manage.model.dto.whiteip.CloudIPDTO;
 import com.tencent.bk.job.manage.model.web.request.AgentStatisticsReq;
@@ -89,6 +91,7 @@ public class ApplicationServiceImpl implements ApplicationService {
     private final AccountService accountService;
     private final CloudAreaService cloudAreaService;
     private final QueryAgentStatusClient queryAgentStatusClient;
+    private final AppTopologyHostIndexManager appTopologyHostIndexManager;
     private WhiteIPService whiteIPService;
 
     @Autowired
@@ -96,7 +99,8 @@ public class ApplicationServiceImpl implements ApplicationService {
                                   ApplicationInfoDAO applicationInfoDAO,
                                   HostTopoDAO hostTopoDAO, TopologyHelper topologyHelper,
                                   QueryAgentStatusClient queryAgentStatusClient, CloudAreaService cloudAreaService,
-                                  AccountService accountService) {
+                                  AccountService accountService,
+                                  AppTopologyHostIndexManager appTopologyHostIndexManager) {
         this.dslContext = dslContext;
         this.applicationHostDAO = applicationHostDAO;
         this.applicationInfoDAO = applicationInfoDAO;
@@ -105,6 +109,7 @@ public class ApplicationServiceImpl implements ApplicationService {
         this.queryAgentStatusClient = queryAgentStatusClient;
         this.cloudAreaService = cloudAreaService;
         this.accountService = accountService;
+        this.appTopologyHostIndexManager = appTopologyHostIndexManager;
     }
 
     public static List<String> buildIpList(List<ApplicationHostInfoDTO> hosts) {
@@ -413,6 +418,18 @@ public class ApplicationServiceImpl implements ApplicationService {
     public CcTopologyNodeVO listAppTopologyHostTree(String username, Long appId) {
         StopWatch watch = new StopWatch("listAppTopologyHostTree");
         ApplicationInfoDTO appInfo = getAppInfoById(appId);
+        if (appInfo.getAppType() == AppTypeEnum.NORMAL) {
+            watch.start("getTopologyHostIndex");
+            AppTopologyHostIndex index = appTopologyHostIndexManager.getIndex(username, appInfo);
+            watch.stop();
+            if (index != null) {
+                watch.start("buildTopologyHostTreeByIndex");
+                CcTopologyNodeVO topologyTree = buildTopologyHostTreeByIndex(index);
+                watch.stop();
+                log.debug(watch.toString());
+                return topologyTree;
+            }
+        }
         watch.start("listAppTopologyTree");
         CcTopologyNodeVO topologyTree = this.listAppTopologyTree(username, appId);
         watch.stop();
@@ -435,6 +452,38 @@ public class ApplicationServiceImpl implements ApplicationService {
         return topologyTree;
     }
 
+    /**
+     * 根据业务拓扑主机索引构建主机拓扑树，主机 Agent 状态实时从 GSE 查询
+     */
+    private CcTopologyNodeVO buildTopologyHostTreeByIndex(AppTopologyHostIndex index) {
+        // 同一主机可能属于多个模块，共用一个HostInfoVO
+        Map<Long, HostInfoVO> hostInfoVOMap = new HashMap<>();
+        List<ApplicationHostInfoDTO> mountedHosts = new ArrayList<>();
+        CcTopologyNodeVO topologyTree = index.buildTopologyTree(host ->
+            hostInfoVOMap.computeIfAbsent(host.getHostId(), hostId -> {
+                mountedHosts.add(host);
+                return convertToHostInfoVO(host);
+            }));
+        if (!mountedHosts.isEmpty()) {
+            Map<String, QueryAgentStatusClient.AgentStatus> agentStatusMap =
+                queryAgentStatusClient.batchGetAgentStatus(buildIpList(mountedHosts));
+            fillAgentStatus(agentStatusMap, new ArrayList<>(hostInfoVOMap.values()));
+        }
+        return topologyTree;
+    }
+
+    private HostInfoVO convertToHostInfoVO(ApplicationHostInfoDTO host) {
+        HostInfoVO hostInfoVO = new HostInfoVO();
+        hostInfoVO.setHostId(host.getHostId());
+        hostInfoVO.setOs(host.getOs());
+        hostInfoVO.setIp(host.getIp());
+        hostInfoVO.setIpDesc(host.getIpDesc());
+        hostInfoVO.setDisplayIp(host.getDisplayIp());
+        hostInfoVO.setCloudAreaInfo(new CloudAreaInfoVO(host.getCloudAreaId(),
+            CloudAreaService.getCloudAreaNameFromCache(host.getCloudAreaId())));
+        return hostInfoVO;
+    }
+
     /**
      * 建立moduleId与拓扑树module子节点映射Map
      * 顺便初始化IpListStatus
@@ -508,17 +557,7 @@ public class ApplicationServiceImpl implements ApplicationService {
         log.info("find {} hosts from DB", dbHosts.size());
         List<ApplicationHostInfoDTO> hosts = dbHosts;
         watch.stop();
-        List<HostInfoVO> hostInfoVOList = hosts.stream().map(it -> {
-            HostInfoVO hostInfoVO = new HostInfoVO();
-            hostInfoVO.setHostId(it.getHostId());
-            hostInfoVO.setOs(it.getOs());
-            hostInfoVO.setIp(it.getIp());
-            hostInfoVO.setIpDesc(it.getIpDesc());
-            hostInfoVO.setDisplayIp(it.getDisplayIp());
-            hostInfoVO.setCloudAreaInfo(new CloudAreaInfoVO(it.getCloudAreaId(),
-                CloudAreaService.getCloudAreaNameFromCache(it.getCloudAreaId())));
-            return hostInfoVO;
-        }).collect(Collectors.toList());
+        List<HostInfoVO> hostInfoVOList = hosts.stream().map(this::convertToHostInfoVO).collect(Collectors.toList());
         //批量设置agent状态
         if (updateAgentStatus) {
             watch.start("batchGetAgentStatus");
@@ -595,6 +634,18 @@ public class ApplicationServiceImpl implements ApplicationService {
     public CcTopologyNodeVO listAppTopologyHostCountTree(String username, Long appId) {
         StopWatch watch = new StopWatch("listAppTopologyHostCountTree");
         ApplicationInfoDTO appInfo = getAppInfoById(appId);
+        if (appInfo.getAppType() == AppTypeEnum.NORMAL) {
+            watch.start("getTopologyHostIndex");
+            AppTopologyHostIndex index = appTopologyHostIndexManager.getIndex(username, appInfo);
+            watch.stop();
+            if (index != null) {
+                watch.start("buildTopologyHostCountTreeByIndex");
+                CcTopologyNodeVO topologyTree = index.buildTopologyTree(null);
+                watch.stop();
+                log.debug(watch.toString());
+                return topologyTree;
+            }
+        }
         watch.start("listAppTopologyHostCountTree");
         CcTopologyNodeVO topologyTree = this.listAppTopologyTree(username, appId);
         watch.stop();
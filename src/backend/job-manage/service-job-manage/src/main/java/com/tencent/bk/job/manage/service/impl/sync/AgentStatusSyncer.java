@@ -0,0 +1,310 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.service.impl.sync;
+
+import com.tencent.bk.job.common.gse.service.QueryAgentStatusClient;
+import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.common.model.dto.ApplicationInfoDTO;
+import com.tencent.bk.job.common.redis.util.LockUtils;
+import com.tencent.bk.job.common.redis.util.RedisKeyHeartBeatThread;
+import com.tencent.bk.job.common.util.ip.IpUtils;
+import com.tencent.bk.job.manage.config.JobManageConfig;
+import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
+import com.tencent.bk.job.manage.metrics.MetricsConstants;
+import com.tencent.bk.job.manage.service.impl.ApplicationServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.jooq.DSLContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 主机Agent状态同步
+ * <p>
+ * 业务按ID分片，每个实例通过Redis锁与心跳认领分片，认领到的分片内的业务在线程池中并发同步。
+ * 每个实例单次最多认领 ceil(分片数/存活实例数) 个分片，同步完成后继续认领本轮尚未同步的分片，
+ * 使分片在实例间均匀分布，同时实例下线时其余实例可以接管其分片。
+ * 同一轮同步中已查询过的Agent状态在业务间复用，只有Agent状态发生变化的主机才会写入DB。
+ */
+@Slf4j
+@Component
+public class AgentStatusSyncer {
+    private static final String REDIS_KEY_SHARD_LOCK_PREFIX = "sync-agent-status-shard-lock-";
+    private static final String REDIS_KEY_SHARD_RUNNING_MACHINE_PREFIX = "sync-agent-status-shard-running-machine-";
+    private static final String REDIS_KEY_SHARD_LAST_SYNC_TIME_PREFIX = "sync-agent-status-shard-last-sync-time-";
+    private static final String REDIS_KEY_SYNC_INSTANCES = "sync-agent-status-instances";
+    /**
+     * 分片在本轮开始前该时间内或本轮开始后同步过，则认为本轮已同步，不再认领。同步周期为3min
+     */
+    private static final long SHARD_MIN_RESYNC_MILLS = 60_000L;
+    /**
+     * 超过该时间未参与同步的实例不再计入存活实例
+     */
+    private static final long INSTANCE_EXPIRE_MILLS = 7 * 60_000L;
+    private static final String machineIp = IpUtils.getFirstMachineIP();
+
+    private final DSLContext dslContext;
+    private final ApplicationHostDAO applicationHostDAO;
+    private final QueryAgentStatusClient queryAgentStatusClient;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final JobManageConfig jobManageConfig;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor syncWorkerExecutor;
+
+    @Autowired
+    public AgentStatusSyncer(@Qualifier("job-manage-dsl-context") DSLContext dslContext,
+                             ApplicationHostDAO applicationHostDAO,
+                             QueryAgentStatusClient queryAgentStatusClient,
+                             RedisTemplate<String, String> redisTemplate,
+                             JobManageConfig jobManageConfig,
+                             MeterRegistry meterRegistry) {
+        this.dslContext = dslContext;
+        this.applicationHostDAO = applicationHostDAO;
+        this.queryAgentStatusClient = queryAgentStatusClient;
+        this.redisTemplate = redisTemplate;
+        this.jobManageConfig = jobManageConfig;
+        this.meterRegistry = meterRegistry;
+        int concurrency = Math.max(1, jobManageConfig.getSyncAgentStatusConcurrency());
+        AtomicInteger threadSeq = new AtomicInteger(1);
+        this.syncWorkerExecutor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> new Thread(r, "syncAgentStatusWorker-" + threadSeq.getAndIncrement()));
+    }
+
+    /**
+     * 同步当前实例认领到的分片内业务的主机Agent状态
+     *
+     * @param normalApps 所有普通业务
+     */
+    public void syncAgentStatus(List<ApplicationInfoDTO> normalApps) {
+        int shardNum = Math.max(1, jobManageConfig.getSyncAgentStatusShardNum());
+        int maxClaimShardNum = computeMaxClaimShardNum(shardNum);
+        long startTime = System.currentTimeMillis();
+        LongAdder checkedHostNum = new LongAdder();
+        LongAdder changedHostNum = new LongAdder();
+        // 本轮同步已查询到的Agent状态，key为 云区域ID:IP
+        Map<String, Boolean> agentAliveMap = new ConcurrentHashMap<>();
+        List<Integer> syncedShards = new ArrayList<>();
+        int syncedAppNum = 0;
+        try {
+            // 每次最多认领 maxClaimShardNum 个分片，同步完成后继续认领其他实例未认领的分片
+            while (!Thread.currentThread().isInterrupted()) {
+                Map<Integer, RedisKeyHeartBeatThread> claimedShards = claimShards(shardNum, maxClaimShardNum,
+                    startTime);
+                if (claimedShards.isEmpty()) {
+                    break;
+                }
+                try {
+                    syncedAppNum += syncShards(normalApps, shardNum, claimedShards.keySet(), agentAliveMap,
+                        checkedHostNum, changedHostNum);
+                    markShardsSynced(claimedShards.keySet());
+                    syncedShards.addAll(claimedShards.keySet());
+                } finally {
+                    claimedShards.values().forEach(RedisKeyHeartBeatThread::stopAtOnce);
+                }
+            }
+        } finally {
+            if (syncedShards.isEmpty()) {
+                log.info("No agent status sync shard claimed, skip");
+            } else {
+                long timeConsuming = System.currentTimeMillis() - startTime;
+                List<Tag> tags = Collections.singletonList(Tag.of(MetricsConstants.TAG_MODULE,
+                    MetricsConstants.VALUE_MODULE_SYNC));
+                meterRegistry.timer(MetricsConstants.NAME_SYNC_AGENT_STATUS_PASS_TIME, tags)
+                    .record(timeConsuming, TimeUnit.MILLISECONDS);
+                meterRegistry.counter(MetricsConstants.NAME_SYNC_AGENT_STATUS_HOSTS_CHECKED, tags)
+                    .increment(checkedHostNum.sum());
+                meterRegistry.counter(MetricsConstants.NAME_SYNC_AGENT_STATUS_HOSTS_CHANGED, tags)
+                    .increment(changedHostNum.sum());
+                log.info("Finished:syncAgentStatus,shards={},maxClaimShardNum={},apps={},checkedHosts={}," +
+                        "queriedIps={},changedHosts={},timeConsuming={}ms", syncedShards, maxClaimShardNum,
+                    syncedAppNum, checkedHostNum.sum(), agentAliveMap.size(), changedHostNum.sum(), timeConsuming);
+            }
+        }
+    }
+
+    /**
+     * 登记当前实例并根据存活实例数计算单次最多认领的分片数
+     */
+    private int computeMaxClaimShardNum(int shardNum) {
+        long now = System.currentTimeMillis();
+        long liveInstanceNum = 1;
+        try {
+            redisTemplate.opsForZSet().add(REDIS_KEY_SYNC_INSTANCES, machineIp, now);
+            redisTemplate.opsForZSet().removeRangeByScore(REDIS_KEY_SYNC_INSTANCES, 0, now - INSTANCE_EXPIRE_MILLS);
+            redisTemplate.expire(REDIS_KEY_SYNC_INSTANCES, 1, TimeUnit.DAYS);
+            Long instanceNum = redisTemplate.opsForZSet().zCard(REDIS_KEY_SYNC_INSTANCES);
+            if (instanceNum != null && instanceNum > 0) {
+                liveInstanceNum = instanceNum;
+            }
+        } catch (Exception e) {
+            log.warn("Fail to count agent status sync instances, claim all shards", e);
+        }
+        return (int) ((shardNum + liveInstanceNum - 1) / liveInstanceNum);
+    }
+
+    private int syncShards(List<ApplicationInfoDTO> normalApps, int shardNum, Set<Integer> shards,
+                           Map<String, Boolean> agentAliveMap, LongAdder checkedHostNum, LongAdder changedHostNum) {
+        List<ApplicationInfoDTO> apps = normalApps.stream()
+            .filter(app -> shards.contains((int) Math.floorMod(app.getId(), (long) shardNum)))
+            .collect(Collectors.toList());
+        List<Future<?>> futures = new ArrayList<>(apps.size());
+        for (ApplicationInfoDTO app : apps) {
+            futures.add(syncWorkerExecutor.submit(() ->
+                syncAppAgentStatus(app, agentAliveMap, checkedHostNum, changedHostNum)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                log.error("syncAgentStatus of app fail:appId={}", apps.get(i).getId(), e.getCause());
+            } catch (InterruptedException e) {
+                log.warn("syncAgentStatus interrupted", e);
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return apps.size();
+    }
+
+    private void markShardsSynced(Collection<Integer> shards) {
+        String now = String.valueOf(System.currentTimeMillis());
+        for (Integer shard : shards) {
+            redisTemplate.opsForValue().set(REDIS_KEY_SHARD_LAST_SYNC_TIME_PREFIX + shard, now, 10,
+                TimeUnit.MINUTES);
+        }
+    }
+
+    private boolean isShardSyncedInRound(int shard, long roundStartTime) {
+        String lastSyncTime = redisTemplate.opsForValue().get(REDIS_KEY_SHARD_LAST_SYNC_TIME_PREFIX + shard);
+        return StringUtils.isNotBlank(lastSyncTime)
+            && Long.parseLong(lastSyncTime) >= roundStartTime - SHARD_MIN_RESYNC_MILLS;
+    }
+
+    /**
+     * 认领本轮尚未同步的分片，从随机位置开始，避免多个实例同时从第一个分片开始争抢
+     *
+     * @param shardNum         分片数量
+     * @param maxClaimShardNum 最多认领的分片数
+     * @param roundStartTime   本轮同步开始时间
+     * @return 认领到的分片及其心跳线程
+     */
+    private Map<Integer, RedisKeyHeartBeatThread> claimShards(int shardNum, int maxClaimShardNum,
+                                                              long roundStartTime) {
+        Map<Integer, RedisKeyHeartBeatThread> claimedShards = new HashMap<>();
+        int offset = ThreadLocalRandom.current().nextInt(shardNum);
+        for (int i = 0; i < shardNum && claimedShards.size() < maxClaimShardNum; i++) {
+            int shard = (offset + i) % shardNum;
+            String lockKey = REDIS_KEY_SHARD_LOCK_PREFIX + shard;
+            if (!LockUtils.tryGetDistributedLock(lockKey, machineIp, 5000)) {
+                continue;
+            }
+            try {
+                String runningMachineKey = REDIS_KEY_SHARD_RUNNING_MACHINE_PREFIX + shard;
+                String runningMachine = redisTemplate.opsForValue().get(runningMachineKey);
+                if (StringUtils.isNotBlank(runningMachine)) {
+                    log.debug("agentStatus sync shard {} already running on {}", shard, runningMachine);
+                    continue;
+                }
+                if (isShardSyncedInRound(shard, roundStartTime)) {
+                    continue;
+                }
+                // 释放锁之前写入运行标识，避免其他实例在心跳线程启动前认领同一分片
+                redisTemplate.opsForValue().set(runningMachineKey, machineIp, 5000L, TimeUnit.MILLISECONDS);
+                RedisKeyHeartBeatThread heartBeatThread = new RedisKeyHeartBeatThread(redisTemplate,
+                    runningMachineKey, machineIp, 5000L, 4000L);
+                heartBeatThread.setName("[" + heartBeatThread.getId() + "]-agentStatusSyncShardHeartBeatThread-"
+                    + shard);
+                heartBeatThread.start();
+                claimedShards.put(shard, heartBeatThread);
+            } finally {
+                LockUtils.releaseDistributedLock(lockKey, machineIp);
+            }
+        }
+        return claimedShards;
+    }
+
+    private void syncAppAgentStatus(ApplicationInfoDTO app, Map<String, Boolean> agentAliveMap,
+                                    LongAdder checkedHostNum, LongAdder changedHostNum) {
+        List<ApplicationHostInfoDTO> hosts = applicationHostDAO.listHostInfoByAppId(app.getId());
+        if (hosts.isEmpty()) {
+            return;
+        }
+        List<String> ipList = ApplicationServiceImpl.buildIpList(hosts);
+        List<String> unknownIpList = ipList.stream().filter(ip -> !agentAliveMap.containsKey(ip)).distinct()
+            .collect(Collectors.toList());
+        if (!unknownIpList.isEmpty()) {
+            Map<String, QueryAgentStatusClient.AgentStatus> agentStatusMap =
+                queryAgentStatusClient.batchGetAgentStatus(unknownIpList);
+            for (String ip : unknownIpList) {
+                QueryAgentStatusClient.AgentStatus agentStatus = agentStatusMap.get(ip);
+                agentAliveMap.put(ip, agentStatus != null && agentStatus.status == 1);
+            }
+        }
+        List<Long> aliveHostIds = new ArrayList<>();
+        List<Long> notAliveHostIds = new ArrayList<>();
+        for (int i = 0; i < hosts.size(); i++) {
+            ApplicationHostInfoDTO host = hosts.get(i);
+            boolean alive = agentAliveMap.getOrDefault(ipList.get(i), false);
+            if (host.getGseAgentAlive() != null && host.getGseAgentAlive() == alive) {
+                continue;
+            }
+            if (alive) {
+                aliveHostIds.add(host.getHostId());
+            } else {
+                notAliveHostIds.add(host.getHostId());
+            }
+        }
+        int changedNum = applicationHostDAO.batchUpdateHostAgentStatus(dslContext, true, aliveHostIds)
+            + applicationHostDAO.batchUpdateHostAgentStatus(dslContext, false, notAliveHostIds);
+        checkedHostNum.add(hosts.size());
+        changedHostNum.add(changedNum);
+        if (changedNum > 0) {
+            log.debug("agentStatus changed:appId={},toAlive={},toNotAlive={}", app.getId(), aliveHostIds.size(),
+                notAliveHostIds.size());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.service.impl.sync;
+
+import com.tencent.bk.job.common.cc.model.result.HostEventDetail;
+import com.tencent.bk.job.common.cc.model.result.ResourceEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 主机事件分区处理线程
+ * <p>
+ * 同一主机的事件总是提交到同一个分区，分区内按顺序处理。一个时间窗口内同一主机的多个事件只保留最后一个，
+ * 合并后的事件批量交给处理函数。处理失败的批次会退避重试，重试期间新到达的事件与其合并，不会丢失主机变更。
+ */
+@Slf4j
+public class HostEventsPartitionHandler extends Thread {
+    /**
+     * 处理失败后的初始重试间隔
+     */
+    private static final long RETRY_BASE_BACKOFF_MILLIS = 500L;
+    /**
+     * 处理失败后的最大重试间隔
+     */
+    private static final long RETRY_MAX_BACKOFF_MILLIS = 30_000L;
+
+    private final BlockingQueue<QueuedEvent> queue;
+    private final long coalesceWindowMillis;
+    private final int maxBatchSize;
+    private final Consumer<List<ResourceEvent<HostEventDetail>>> batchHandler;
+    /**
+     * 处理失败、等待重试的事件，只由当前线程访问
+     */
+    private Map<Long, QueuedEvent> retryEvents = Collections.emptyMap();
+    /**
+     * 等待重试的事件中最早的CMDB事件时间，没有等待重试的事件时为0
+     */
+    private volatile long retryEventsOldestTime = 0L;
+
+    public HostEventsPartitionHandler(int queueSize, long coalesceWindowMillis, int maxBatchSize,
+                                      Consumer<List<ResourceEvent<HostEventDetail>>> batchHandler) {
+        this.queue = new LinkedBlockingQueue<>(queueSize);
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * 提交事件，队列满时阻塞
+     */
+    public void commitEvent(ResourceEvent<HostEventDetail> event) throws InterruptedException {
+        Long eventTime = parseEventTimeMillis(event.getCursor());
+        queue.put(new QueuedEvent(event, eventTime != null ? eventTime : System.currentTimeMillis()));
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return 尚未处理的事件中最早的事件距离CMDB产生该事件的时间(ms)
+     */
+    public long getLagMillis() {
+        long oldestEventTime = retryEventsOldestTime;
+        QueuedEvent head = queue.peek();
+        if (head != null && (oldestEventTime == 0L || head.eventTime < oldestEventTime)) {
+            oldestEventTime = head.eventTime;
+        }
+        return oldestEventTime == 0L ? 0L : Math.max(0L, System.currentTimeMillis() - oldestEventTime);
+    }
+
+    @Override
+    public void run() {
+        int retryTimes = 0;
+        while (!isInterrupted()) {
+            Map<Long, QueuedEvent> hostLatestEvents = new LinkedHashMap<>(retryEvents);
+            try {
+                if (hostLatestEvents.isEmpty()) {
+                    addEvent(hostLatestEvents, queue.take());
+                }
+                long deadline = System.currentTimeMillis() + coalesceWindowMillis;
+                while (hostLatestEvents.size() < maxBatchSize) {
+                    long waitMillis = deadline - System.currentTimeMillis();
+                    QueuedEvent queuedEvent = waitMillis > 0 ? queue.poll(waitMillis, TimeUnit.MILLISECONDS) : null;
+                    if (queuedEvent == null) {
+                        break;
+                    }
+                    addEvent(hostLatestEvents, queuedEvent);
+                }
+            } catch (InterruptedException e) {
+                log.info("HostEventsPartitionHandler interrupted, exit, unhandled events: {}",
+                    hostLatestEvents.size() + queue.size());
+                return;
+            }
+            List<ResourceEvent<HostEventDetail>> events = new ArrayList<>(hostLatestEvents.size());
+            hostLatestEvents.values().forEach(queuedEvent -> events.add(queuedEvent.event));
+            try {
+                batchHandler.accept(events);
+                retryEvents = Collections.emptyMap();
+                retryEventsOldestTime = 0L;
+                retryTimes = 0;
+            } catch (Throwable t) {
+                // CMDB watch 游标已经前进，丢弃事件会导致主机变更直到下一次全量同步才生效，因此保留事件并退避重试
+                retryEvents = hostLatestEvents;
+                retryEventsOldestTime = hostLatestEvents.values().stream().mapToLong(e -> e.eventTime).min()
+                    .orElse(0L);
+                retryTimes++;
+                long backoffMillis = computeRetryBackoffMillis(retryTimes);
+                log.warn("Fail to handle host events, retry after {}ms, retryTimes: {}, events: {}", backoffMillis,
+                    retryTimes, events, t);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException e) {
+                    log.info("HostEventsPartitionHandler interrupted, exit, unhandled events: {}",
+                        hostLatestEvents.size() + queue.size());
+                    return;
+                }
+            }
+        }
+    }
+
+    static long computeRetryBackoffMillis(int retryTimes) {
+        int shift = Math.min(retryTimes - 1, 16);
+        return Math.min(RETRY_MAX_BACKOFF_MILLIS, RETRY_BASE_BACKOFF_MILLIS << shift);
+    }
+
+    private void addEvent(Map<Long, QueuedEvent> hostLatestEvents, QueuedEvent queuedEvent) {
+        // 同一主机只保留最后的事件，事件中包含主机的完整属性；事件时间保留最早的，用于计算延迟
+        hostLatestEvents.merge(queuedEvent.event.getDetail().getHostId(), queuedEvent,
+            (oldEvent, newEvent) -> new QueuedEvent(newEvent.event, Math.min(oldEvent.eventTime, newEvent.eventTime)));
+    }
+
+    /**
+     * 从CMDB事件游标中解析事件产生时间。
+     * <p>
+     * 游标为Base64编码的字段列表，字段之间以\r分隔，依次为：版本、资源类型、oid、集群时间(秒)、集群时间(纳秒)...
+     *
+     * @param cursor CMDB事件游标
+     * @return 事件产生时间(ms)，无法解析时返回null
+     */
+    static Long parseEventTimeMillis(String cursor) {
+        if (StringUtils.isBlank(cursor)) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] fields = decoded.split("\r");
+            if (fields.length < 4) {
+                return null;
+            }
+            long eventTimeMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(fields[3]));
+            // 防止游标格式变化时得到明显错误的时间
+            long now = System.currentTimeMillis();
+            if (eventTimeMillis <= 0 || eventTimeMillis > now + TimeUnit.MINUTES.toMillis(10)) {
+                return null;
+            }
+            return eventTimeMillis;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static class QueuedEvent {
+        private final ResourceEvent<HostEventDetail> event;
+        /**
+         * CMDB产生事件的时间，无法解析时为提交到队列的时间
+         */
+        private final long eventTime;
+
+        private QueuedEvent(ResourceEvent<HostEventDetail> event, long eventTime) {
+            this.event = event;
+            this.eventTime = eventTime;
+        }
+    }
+}
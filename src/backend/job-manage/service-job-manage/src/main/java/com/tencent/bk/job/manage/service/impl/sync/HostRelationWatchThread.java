@@ -30,6 +30,7 @@ import com.tencent.bk.job.common.cc.model.result.ResourceEvent;
 import com.tencent.bk.job.common.cc.model.result.ResourceWatchResult;
 import com.tencent.bk.job.common.cc.sdk.CcClient;
 import com.tencent.bk.job.common.cc.sdk.CcClientFactory;
+import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
 import com.tencent.bk.job.common.redis.util.LockUtils;
 import com.tencent.bk.job.common.redis.util.RedisKeyHeartBeatThread;
 import com.tencent.bk.job.common.util.TimeUtil;
@@ -37,6 +38,8 @@ import com.tencent.bk.job.common.util.ip.IpUtils;
 import com.tencent.bk.job.common.util.json.JsonUtils;
 import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
 import com.tencent.bk.job.manage.dao.HostTopoDAO;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndexManager;
+import com.tencent.bk.job.manage.manager.host.HostChangePublisher;
 import com.tencent.bk.job.manage.model.dto.HostTopoDTO;
 import com.tencent.bk.job.manage.service.SyncService;
 import lombok.extern.slf4j.Slf4j;
@@ -47,7 +50,9 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.util.StopWatch;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -78,6 +83,8 @@ public class HostRelationWatchThread extends Thread {
     private final RedisTemplate<String, String> redisTemplate;
     private final SyncService syncService;
     private final AppHostsUpdateHelper appHostsUpdateHelper;
+    private final AppTopologyHostIndexManager appTopologyHostIndexManager;
+    private final HostChangePublisher hostChangePublisher;
     private final List<AppHostRelationEventsHandler> eventsHandlerList;
     private final BlockingQueue<ResourceEvent<HostRelationEventDetail>> appHostRelationEventQueue =
         new LinkedBlockingQueue<>(10000);
@@ -87,13 +94,17 @@ public class HostRelationWatchThread extends Thread {
 
     public HostRelationWatchThread(DSLContext dslContext, ApplicationHostDAO applicationHostDAO,
                                    HostTopoDAO hostTopoDAO, RedisTemplate<String, String> redisTemplate,
-                                   SyncService syncService, AppHostsUpdateHelper appHostsUpdateHelper) {
+                                   SyncService syncService, AppHostsUpdateHelper appHostsUpdateHelper,
+                                   AppTopologyHostIndexManager appTopologyHostIndexManager,
+                                   HostChangePublisher hostChangePublisher) {
         this.dslContext = dslContext;
         this.applicationHostDAO = applicationHostDAO;
         this.hostTopoDAO = hostTopoDAO;
         this.redisTemplate = redisTemplate;
         this.syncService = syncService;
         this.appHostsUpdateHelper = appHostsUpdateHelper;
+        this.appTopologyHostIndexManager = appTopologyHostIndexManager;
+        this.hostChangePublisher = hostChangePublisher;
         this.setName("[" + getId() + "]-HostRelationWatchThread-" + instanceNum.getAndIncrement());
         this.eventsHandlerList = new ArrayList<>();
         // 初始内置1个Handler
@@ -204,6 +215,20 @@ public class HostRelationWatchThread extends Thread {
             default:
                 break;
         }
+        appTopologyHostIndexManager.onHostChanged(hostTopoDTO.getHostId(), hostTopoDTO.getAppId());
+        // 主机关系变化会改变主机所属业务
+        publishHostChanged(hostTopoDTO.getHostId());
+    }
+
+    private void publishHostChanged(Long hostId) {
+        try {
+            ApplicationHostInfoDTO host = applicationHostDAO.getHostById(hostId);
+            Set<String> hostKeys = new HashSet<>();
+            HostChangePublisher.addHostKey(hostKeys, host);
+            hostChangePublisher.publishHostsChanged(hostKeys);
+        } catch (Throwable t) {
+            log.warn("Fail to publish host change, hostId={}", hostId, t);
+        }
     }
 
     public String handleHostRelationWatchResult(ResourceWatchResult<HostRelationEventDetail> hostRelationWatchResult) {
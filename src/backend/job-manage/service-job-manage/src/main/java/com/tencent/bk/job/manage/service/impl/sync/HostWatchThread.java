@@ -35,9 +35,19 @@ import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
 import com.tencent.bk.job.common.redis.util.LockUtils;
 import com.tencent.bk.job.common.redis.util.RedisKeyHeartBeatThread;
 import com.tencent.bk.job.common.util.TimeUtil;
+import com.tencent.bk.job.common.util.Utils;
 import com.tencent.bk.job.common.util.ip.IpUtils;
 import com.tencent.bk.job.common.util.json.JsonUtils;
+import com.tencent.bk.job.manage.config.JobManageConfig;
 import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
+import com.tencent.bk.job.manage.dao.HostTopoDAO;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndexManager;
+import com.tencent.bk.job.manage.manager.host.HostChangePublisher;
+import com.tencent.bk.job.manage.metrics.MetricsConstants;
+import com.tencent.bk.job.manage.model.dto.HostTopoDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 import org.jooq.DSLContext;
@@ -46,11 +56,15 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.util.StopWatch;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Slf4j
 public class HostWatchThread extends Thread {
@@ -70,36 +84,60 @@ public class HostWatchThread extends Thread {
 
     private final DSLContext dslContext;
     private final ApplicationHostDAO applicationHostDAO;
+    private final HostTopoDAO hostTopoDAO;
     private final QueryAgentStatusClient queryAgentStatusClient;
     private final RedisTemplate<String, String> redisTemplate;
     private final AppHostsUpdateHelper appHostsUpdateHelper;
+    private final AppTopologyHostIndexManager appTopologyHostIndexManager;
+    private final HostChangePublisher hostChangePublisher;
     private final String REDIS_KEY_RESOURCE_WATCH_HOST_JOB_RUNNING_MACHINE = "resource-watch-host-job-running-machine";
-    private final List<AppHostEventsHandler> eventsHandlerList;
-    private final BlockingQueue<ResourceEvent<HostEventDetail>> appHostEventQueue = new LinkedBlockingQueue<>(10000);
-    private final Integer MAX_HANDLER_NUM = 1;
+    /**
+     * 按主机ID分区的事件处理线程，保证同一主机的事件按顺序处理
+     */
+    private final List<HostEventsPartitionHandler> eventsHandlerList;
     private final AtomicBoolean hostWatchFlag = new AtomicBoolean(true);
+    private final Counter receivedEventCounter;
+    private final Counter appliedEventCounter;
 
-    public HostWatchThread(DSLContext dslContext, ApplicationHostDAO applicationHostDAO,
+    public HostWatchThread(DSLContext dslContext, ApplicationHostDAO applicationHostDAO, HostTopoDAO hostTopoDAO,
                            QueryAgentStatusClient queryAgentStatusClient, RedisTemplate<String, String> redisTemplate
-        , AppHostsUpdateHelper appHostsUpdateHelper) {
+        , AppHostsUpdateHelper appHostsUpdateHelper, AppTopologyHostIndexManager appTopologyHostIndexManager,
+                           HostChangePublisher hostChangePublisher, JobManageConfig jobManageConfig,
+                           MeterRegistry meterRegistry) {
         this.dslContext = dslContext;
         this.applicationHostDAO = applicationHostDAO;
+        this.hostTopoDAO = hostTopoDAO;
         this.queryAgentStatusClient = queryAgentStatusClient;
         this.redisTemplate = redisTemplate;
         this.appHostsUpdateHelper = appHostsUpdateHelper;
+        this.appTopologyHostIndexManager = appTopologyHostIndexManager;
+        this.hostChangePublisher = hostChangePublisher;
         this.setName("[" + getId() + "]-HostWatchThread-" + instanceNum.getAndIncrement());
         this.eventsHandlerList = new ArrayList<>();
-        // 初始内置1个Handler
-        for (int i = 0; i < 1; i++) {
-            AppHostEventsHandler handler = new AppHostEventsHandler(appHostEventQueue);
-            handler.setName("[" + handler.getId() + "]-AppHostEventsHandler-" + (i + 1));
+        int handlerNum = Math.max(1, jobManageConfig.getHostEventHandlerNum());
+        for (int i = 0; i < handlerNum; i++) {
+            HostEventsPartitionHandler handler = new HostEventsPartitionHandler(
+                jobManageConfig.getHostEventQueueSize(),
+                jobManageConfig.getHostEventCoalesceWindowMillis(),
+                jobManageConfig.getHostEventBatchSize(),
+                this::handleEvents
+            );
+            handler.setName("[" + handler.getId() + "]-HostEventsPartitionHandler-" + (i + 1));
             eventsHandlerList.add(handler);
         }
+        List<Tag> tags = Collections.singletonList(Tag.of(MetricsConstants.TAG_MODULE,
+            MetricsConstants.VALUE_MODULE_SYNC));
+        meterRegistry.gauge(MetricsConstants.NAME_SYNC_HOST_EVENT_QUEUE_SIZE, tags, eventsHandlerList,
+            handlers -> handlers.stream().mapToInt(HostEventsPartitionHandler::getQueueSize).sum());
+        meterRegistry.gauge(MetricsConstants.NAME_SYNC_HOST_EVENT_LAG_MILLIS, tags, eventsHandlerList,
+            handlers -> handlers.stream().mapToLong(HostEventsPartitionHandler::getLagMillis).max().orElse(0L));
+        this.receivedEventCounter = meterRegistry.counter(MetricsConstants.NAME_SYNC_HOST_EVENT_RECEIVED, tags);
+        this.appliedEventCounter = meterRegistry.counter(MetricsConstants.NAME_SYNC_HOST_EVENT_APPLIED, tags);
     }
 
     private void init() {
-        for (AppHostEventsHandler appHostEventsHandler : eventsHandlerList) {
-            appHostEventsHandler.start();
+        for (HostEventsPartitionHandler handler : eventsHandlerList) {
+            handler.start();
         }
     }
 
@@ -107,58 +145,154 @@ public class HostWatchThread extends Thread {
         hostWatchFlag.set(value);
     }
 
-    private void dispatchEvent(ResourceEvent<HostEventDetail> event) {
-        ApplicationHostInfoDTO hostInfoDTO = HostEventDetail.toHostInfoDTO(event.getDetail());
-        Long hostId = hostInfoDTO.getHostId();
-        ApplicationHostInfoDTO oldHostInfoDTO = applicationHostDAO.getHostById(hostId);
-        Long appId = oldHostInfoDTO.getAppId();
-        List<AppHostEventsHandler> idleHandlerList = new ArrayList<>();
-        for (AppHostEventsHandler handler : eventsHandlerList) {
-            if (appId.equals(handler.getAppId())) {
-                handler.commitEvent(appId, event);
-                return;
-            } else if (handler.isIdle()) {
-                idleHandlerList.add(handler);
+    private void handleOneEvent(ResourceEvent<HostEventDetail> event) throws InterruptedException {
+        Long hostId = event.getDetail().getHostId();
+        HostEventsPartitionHandler handler =
+            eventsHandlerList.get((int) Math.floorMod(hostId, (long) eventsHandlerList.size()));
+        handler.commitEvent(event);
+        receivedEventCounter.increment();
+    }
+
+    /**
+     * 批量处理同一分区内合并后的主机事件，每个主机只有一个事件
+     */
+    private void handleEvents(List<ResourceEvent<HostEventDetail>> events) {
+        List<Long> hostIds = events.stream().map(event -> event.getDetail().getHostId()).collect(Collectors.toList());
+        Map<Long, ApplicationHostInfoDTO> oldHostMap = new HashMap<>();
+        applicationHostDAO.listHostInfoByHostIds(hostIds).forEach(host -> oldHostMap.put(host.getHostId(), host));
+        // 已属于业务的主机变更需要与业务主机同步互斥
+        Map<Long, List<ResourceEvent<HostEventDetail>>> appEventsMap = new HashMap<>();
+        List<ResourceEvent<HostEventDetail>> eventsWithoutApp = new ArrayList<>();
+        for (ResourceEvent<HostEventDetail> event : events) {
+            ApplicationHostInfoDTO oldHost = oldHostMap.get(event.getDetail().getHostId());
+            if (oldHost != null && oldHost.getAppId() != null) {
+                appEventsMap.computeIfAbsent(oldHost.getAppId(), k -> new ArrayList<>()).add(event);
+            } else {
+                eventsWithoutApp.add(event);
             }
         }
-        if (!idleHandlerList.isEmpty()) {
-            AppHostEventsHandler handler = idleHandlerList.get((int) (Math.random() * idleHandlerList.size()));
-            handler.commitEvent(appId, event);
-        } else if (eventsHandlerList.size() < MAX_HANDLER_NUM) {
-            AppHostEventsHandler handler = new AppHostEventsHandler(appHostEventQueue);
-            handler.setName("[" + handler.getId() + "]-AppHostEventsHandler-" + (eventsHandlerList.size() + 1));
-            handler.start();
-            eventsHandlerList.add(handler);
-            handler.commitEvent(appId, event);
-        } else {
-            AppHostEventsHandler handler = eventsHandlerList.get((int) (Math.random() * eventsHandlerList.size()));
-            handler.commitEvent(appId, event);
+        appEventsMap.forEach((appId, appEvents) -> {
+            try {
+                appHostsUpdateHelper.waitAndStartAppHostsUpdating(appId);
+                applyEvents(appEvents, oldHostMap);
+            } finally {
+                appHostsUpdateHelper.endToUpdateAppHosts(appId);
+            }
+        });
+        if (!eventsWithoutApp.isEmpty()) {
+            applyEvents(eventsWithoutApp, oldHostMap);
+        }
+        Map<Long, Long> hostOldAppIds = new HashMap<>();
+        Set<String> changedHostKeys = new HashSet<>();
+        for (Long hostId : hostIds) {
+            ApplicationHostInfoDTO oldHost = oldHostMap.get(hostId);
+            hostOldAppIds.put(hostId, oldHost == null ? null : oldHost.getAppId());
+            HostChangePublisher.addHostKey(changedHostKeys, oldHost);
         }
+        // 变更后的主机IP取自事件中的全部IP
+        for (ResourceEvent<HostEventDetail> event : events) {
+            ApplicationHostInfoDTO newHost = HostEventDetail.toHostInfoDTO(event.getDetail());
+            HostChangePublisher.addHostKey(changedHostKeys, newHost.getCloudAreaId(), newHost.getDisplayIp());
+        }
+        appTopologyHostIndexManager.onHostsChanged(hostOldAppIds);
+        hostChangePublisher.publishHostsChanged(changedHostKeys);
+        appliedEventCounter.increment(events.size());
     }
 
-    private void handleOneEventRelatedToApp(ResourceEvent<HostEventDetail> event) {
-        ApplicationHostInfoDTO hostInfoDTO = HostEventDetail.toHostInfoDTO(event.getDetail());
-        Long hostId = hostInfoDTO.getHostId();
-        ApplicationHostInfoDTO oldHostInfoDTO = applicationHostDAO.getHostById(hostId);
-        Long appId = oldHostInfoDTO.getAppId();
+    private void applyEvents(List<ResourceEvent<HostEventDetail>> events,
+                             Map<Long, ApplicationHostInfoDTO> oldHostMap) {
         try {
-            appHostsUpdateHelper.waitAndStartAppHostsUpdating(appId);
-            handleOneEventIndeed(event);
+            applyEventsInBatch(events, oldHostMap);
         } catch (Throwable t) {
-            log.error("Fail to handle hostEvent of appId {}, event:{}", appId, event, t);
-        } finally {
-            appHostsUpdateHelper.endToUpdateAppHosts(appId);
+            log.warn("Fail to apply {} host events in batch, try to apply one by one", events.size(), t);
+            for (ResourceEvent<HostEventDetail> event : events) {
+                try {
+                    handleOneEventIndeed(event);
+                } catch (Throwable e) {
+                    log.error("Fail to handle hostEvent:{}", event, e);
+                }
+            }
         }
     }
 
-    private void handleOneEvent(ResourceEvent<HostEventDetail> event) {
-        ApplicationHostInfoDTO hostInfoDTO = HostEventDetail.toHostInfoDTO(event.getDetail());
-        Long hostId = hostInfoDTO.getHostId();
-        ApplicationHostInfoDTO oldHostInfoDTO = applicationHostDAO.getHostById(hostId);
-        if (oldHostInfoDTO != null && oldHostInfoDTO.getAppId() != null) {
-            dispatchEvent(event);
-        } else {
-            handleOneEventIndeed(event);
+    private void applyEventsInBatch(List<ResourceEvent<HostEventDetail>> events,
+                                    Map<Long, ApplicationHostInfoDTO> oldHostMap) {
+        List<Long> deleteHostIds = new ArrayList<>();
+        List<ApplicationHostInfoDTO> saveHosts = new ArrayList<>();
+        for (ResourceEvent<HostEventDetail> event : events) {
+            ApplicationHostInfoDTO hostInfoDTO = HostEventDetail.toHostInfoDTO(event.getDetail());
+            switch (event.getEventType()) {
+                case ResourceWatchReq.EVENT_TYPE_CREATE:
+                case ResourceWatchReq.EVENT_TYPE_UPDATE:
+                    //去除没有IP的主机信息
+                    if (StringUtils.isBlank(hostInfoDTO.getDisplayIp())) {
+                        deleteHostIds.add(hostInfoDTO.getHostId());
+                    } else {
+                        saveHosts.add(hostInfoDTO);
+                    }
+                    break;
+                case ResourceWatchReq.EVENT_TYPE_DELETE:
+                    deleteHostIds.add(hostInfoDTO.getHostId());
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!saveHosts.isEmpty()) {
+            fillHostIpAndAgentStatus(saveHosts);
+            // 主机拓扑以主机关系表为准，与 syncHostTopo 一致
+            Map<Long, List<HostTopoDTO>> hostTopoMap = hostTopoDAO.listHostTopoByHostIds(dslContext,
+                saveHosts.stream().map(ApplicationHostInfoDTO::getHostId).collect(Collectors.toList()))
+                .stream().collect(Collectors.groupingBy(HostTopoDTO::getHostId));
+            for (ApplicationHostInfoDTO hostInfoDTO : saveHosts) {
+                List<HostTopoDTO> hostTopoList = hostTopoMap.getOrDefault(hostInfoDTO.getHostId(),
+                    Collections.emptyList());
+                ApplicationHostInfoDTO oldHostInfoDTO = oldHostMap.get(hostInfoDTO.getHostId());
+                if (!hostTopoList.isEmpty()) {
+                    hostInfoDTO.setAppId(hostTopoList.get(0).getAppId());
+                } else if (oldHostInfoDTO != null) {
+                    hostInfoDTO.setAppId(oldHostInfoDTO.getAppId());
+                } else {
+                    hostInfoDTO.setAppId(-1L);
+                }
+                hostInfoDTO.setSetId(hostTopoList.stream().map(HostTopoDTO::getSetId).collect(Collectors.toList()));
+                hostInfoDTO.setModuleId(hostTopoList.stream().map(HostTopoDTO::getModuleId)
+                    .collect(Collectors.toList()));
+                hostInfoDTO.setModuleType(hostTopoList.stream().map(it -> 1L).collect(Collectors.toList()));
+            }
+            applicationHostDAO.batchSaveAppHostInfoWithoutTopo(dslContext, saveHosts);
+        }
+        if (!deleteHostIds.isEmpty()) {
+            applicationHostDAO.batchDeleteAppHostInfoById(dslContext, null, deleteHostIds);
+        }
+    }
+
+    /**
+     * 批量查询Agent状态，多IP主机优先使用Agent正常的IP
+     */
+    private void fillHostIpAndAgentStatus(List<ApplicationHostInfoDTO> hosts) {
+        Set<String> cloudIps = new HashSet<>();
+        for (ApplicationHostInfoDTO host : hosts) {
+            for (String ip : Utils.getNotBlankSplitList(host.getDisplayIp(), ",")) {
+                cloudIps.add(host.getCloudAreaId() + ":" + ip);
+            }
+        }
+        Map<String, QueryAgentStatusClient.AgentStatus> agentStatusMap =
+            queryAgentStatusClient.batchGetAgentStatus(new ArrayList<>(cloudIps));
+        for (ApplicationHostInfoDTO host : hosts) {
+            List<String> ipList = Utils.getNotBlankSplitList(host.getDisplayIp(), ",");
+            String hostIp = ipList.get(0);
+            boolean alive = false;
+            for (String ip : ipList) {
+                QueryAgentStatusClient.AgentStatus agentStatus = agentStatusMap.get(host.getCloudAreaId() + ":" + ip);
+                if (agentStatus != null && agentStatus.status == 1) {
+                    hostIp = ip;
+                    alive = true;
+                    break;
+                }
+            }
+            host.setIp(hostIp);
+            host.setGseAgentAlive(alive);
         }
     }
 
@@ -227,7 +361,8 @@ public class HostWatchThread extends Thread {
         log.debug(JsonUtils.toJson(detail));
     }
 
-    public String handleHostWatchResult(ResourceWatchResult<HostEventDetail> hostWatchResult) {
+    public String handleHostWatchResult(ResourceWatchResult<HostEventDetail> hostWatchResult)
+        throws InterruptedException {
         String cursor = null;
         boolean isWatched = hostWatchResult.getWatched();
         if (isWatched) {
@@ -344,19 +479,4 @@ public class HostWatchThread extends Thread {
             }
         }
     }
-
-    /**
-     * 处理同一个业务的多个事件
-     */
-    class AppHostEventsHandler extends EventsHandler<HostEventDetail> {
-
-        public AppHostEventsHandler(BlockingQueue<ResourceEvent<HostEventDetail>> queue) {
-            super(queue);
-        }
-
-        @Override
-        void handleEvent(ResourceEvent<HostEventDetail> event) {
-            handleOneEventRelatedToApp(event);
-        }
-    }
 }
@@ -41,8 +41,11 @@ import com.tencent.bk.job.manage.config.JobManageConfig;
 import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
 import com.tencent.bk.job.manage.dao.ApplicationInfoDAO;
 import com.tencent.bk.job.manage.dao.HostTopoDAO;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndexManager;
+import com.tencent.bk.job.manage.manager.host.HostChangePublisher;
 import com.tencent.bk.job.manage.service.ApplicationService;
 import com.tencent.bk.job.manage.service.SyncService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 import org.jooq.DSLContext;
@@ -67,7 +70,6 @@ public class SyncServiceImpl implements SyncService {
 
     private static final String REDIS_KEY_SYNC_APP_JOB_LOCK = "sync-app-job-lock";
     private static final String REDIS_KEY_SYNC_HOST_JOB_LOCK = "sync-host-job-lock";
-    private static final String REDIS_KEY_SYNC_AGENT_STATUS_JOB_LOCK = "sync-agent-status-job-lock";
     private static final String REDIS_KEY_LAST_FINISH_TIME_SYNC_APP = "last-finish-time-sync-app";
     private static final String REDIS_KEY_LAST_FINISH_TIME_SYNC_HOST = "last-finish-time-sync-host";
     private static final String REDIS_KEY_LAST_FINISH_TIME_SYNC_AGENT_STATUS = "last-finish-time-sync-agent-status";
@@ -78,8 +80,7 @@ public class SyncServiceImpl implements SyncService {
     private static List<Long> allAppDeleteFailHostIds = new ArrayList<>();
 
     static {
-        List<String> keyList = Arrays.asList(REDIS_KEY_SYNC_APP_JOB_LOCK, REDIS_KEY_SYNC_HOST_JOB_LOCK,
-            REDIS_KEY_SYNC_AGENT_STATUS_JOB_LOCK);
+        List<String> keyList = Arrays.asList(REDIS_KEY_SYNC_APP_JOB_LOCK, REDIS_KEY_SYNC_HOST_JOB_LOCK);
         keyList.forEach(key -> {
             try {
                 //进程重启首先尝试释放上次加上的锁避免死锁
@@ -101,9 +102,12 @@ public class SyncServiceImpl implements SyncService {
     private final ThreadPoolExecutor syncAgentStatusExecutor;
     private final JobManageConfig jobManageConfig;
     private final RedisTemplate<String, String> redisTemplate;
+    private final AppTopologyHostIndexManager appTopologyHostIndexManager;
+    private final HostChangePublisher hostChangePublisher;
+    private final AgentStatusSyncer agentStatusSyncer;
+    private final MeterRegistry meterRegistry;
     private final String REDIS_KEY_SYNC_APP_JOB_RUNNING_MACHINE = "sync-app-job-running-machine";
     private final String REDIS_KEY_SYNC_HOST_JOB_RUNNING_MACHINE = "sync-host-job-running-machine";
-    private final String REDIS_KEY_SYNC_AGENT_STATUS_JOB_RUNNING_MACHINE = "sync-agent-status-job-running-machine";
     private final BlockingQueue<Pair<ApplicationInfoDTO, Integer>> appHostFailQueue = new LinkedBlockingDeque<>();
     private volatile LinkedBlockingQueue<Long> extraSyncAppQueue;
     private AppHostsUpdateHelper appHostsUpdateHelper;
@@ -120,7 +124,11 @@ public class SyncServiceImpl implements SyncService {
                            HostTopoDAO hostTopoDAO, ApplicationService applicationService,
                            QueryAgentStatusClient queryAgentStatusClient, JobManageConfig jobManageConfig,
                            RedisTemplate<String,
-                               String> redisTemplate) {
+                               String> redisTemplate,
+                           AppTopologyHostIndexManager appTopologyHostIndexManager,
+                           HostChangePublisher hostChangePublisher,
+                           AgentStatusSyncer agentStatusSyncer,
+                           MeterRegistry meterRegistry) {
         this.dslContext = dslContext;
         this.applicationInfoDAO = applicationInfoDAO;
         this.applicationHostDAO = applicationHostDAO;
@@ -129,6 +137,10 @@ public class SyncServiceImpl implements SyncService {
         this.queryAgentStatusClient = queryAgentStatusClient;
         this.jobManageConfig = jobManageConfig;
         this.redisTemplate = redisTemplate;
+        this.appTopologyHostIndexManager = appTopologyHostIndexManager;
+        this.hostChangePublisher = hostChangePublisher;
+        this.agentStatusSyncer = agentStatusSyncer;
+        this.meterRegistry = meterRegistry;
         this.enableSyncApp = jobManageConfig.isEnableSyncApp();
         this.enableSyncHost = jobManageConfig.isEnableSyncHost();
         this.enableSyncAgentStatus = jobManageConfig.isEnableSyncAgentStatus();
@@ -171,12 +183,13 @@ public class SyncServiceImpl implements SyncService {
             appWatchThread = new AppWatchThread(dslContext, applicationInfoDAO, applicationService, redisTemplate);
             appWatchThread.start();
             // 开一个常驻线程监听主机资源变动事件
-            hostWatchThread = new HostWatchThread(dslContext, applicationHostDAO, queryAgentStatusClient,
-                redisTemplate, appHostsUpdateHelper);
+            hostWatchThread = new HostWatchThread(dslContext, applicationHostDAO, hostTopoDAO, queryAgentStatusClient,
+                redisTemplate, appHostsUpdateHelper, appTopologyHostIndexManager, hostChangePublisher, jobManageConfig,
+                meterRegistry);
             hostWatchThread.start();
             // 开一个常驻线程监听主机关系资源变动事件
             hostRelationWatchThread = new HostRelationWatchThread(dslContext, applicationHostDAO, hostTopoDAO,
-                redisTemplate, this, appHostsUpdateHelper);
+                redisTemplate, this, appHostsUpdateHelper, appTopologyHostIndexManager, hostChangePublisher);
             hostRelationWatchThread.start();
         } else {
             log.info("resourceWatch not enabled, you can enable it in config file");
@@ -439,32 +452,12 @@ public class SyncServiceImpl implements SyncService {
         updateHosts(applicationInfoDTO, hosts);
         writeToDBTimeConsuming += (System.currentTimeMillis() - startTime);
         appHostsWatch.stop();
+        // 全量同步后主机变化无法逐个感知，使业务拓扑主机索引失效
+        appTopologyHostIndexManager.invalidate(applicationInfoDTO.getId());
         log.info("Performance:syncAppHosts:appId={},{}", applicationInfoDTO.getId(), appHostsWatch.toString());
         return Pair.of(cmdbInterfaceTimeConsuming, writeToDBTimeConsuming);
     }
 
-    private Pair<Long, Long> syncAppHostAgentStatus(ApplicationInfoDTO applicationInfoDTO) {
-        Long gseInterfaceTimeConsuming = 0L;
-        Long writeToDBTimeConsuming = 0L;
-        StopWatch appHostAgentStatusWatch = new StopWatch();
-        appHostAgentStatusWatch.start("listHostInfoByAppId");
-        List<ApplicationHostInfoDTO> localAppHosts = applicationHostDAO.listHostInfoByAppId(applicationInfoDTO.getId());
-        appHostAgentStatusWatch.stop();
-        appHostAgentStatusWatch.start("getAgentStatusByAppInfo from GSE");
-        Long startTime = System.currentTimeMillis();
-        applicationService.fillAgentStatus(localAppHosts);
-        gseInterfaceTimeConsuming += (System.currentTimeMillis() - startTime);
-        appHostAgentStatusWatch.stop();
-        appHostAgentStatusWatch.start("updateHosts to local DB");
-        startTime = System.currentTimeMillis();
-        updateHostsToDB(applicationInfoDTO, localAppHosts);
-        writeToDBTimeConsuming += (System.currentTimeMillis() - startTime);
-        appHostAgentStatusWatch.stop();
-        log.debug("Performance:syncAppHostAgentStatus:appId={},{}", applicationInfoDTO.getId(),
-            appHostAgentStatusWatch.toString());
-        return Pair.of(gseInterfaceTimeConsuming, writeToDBTimeConsuming);
-    }
-
     @Override
     public Long syncHost() {
         if (!enableSyncHost) {
@@ -676,79 +669,28 @@ public class SyncServiceImpl implements SyncService {
             return -1L;
         }
         log.info("syncAgentStatus arranged");
-        boolean lockGotten = LockUtils.tryGetDistributedLock(
-            REDIS_KEY_SYNC_AGENT_STATUS_JOB_LOCK, machineIp, 5000);
-        if (!lockGotten) {
-            log.info("syncAgentStatus lock not gotten, return");
-            return -1L;
-        }
-        String runningMachine = redisTemplate.opsForValue().get(REDIS_KEY_SYNC_AGENT_STATUS_JOB_RUNNING_MACHINE);
-        try {
-            if (StringUtils.isNotBlank(runningMachine)) {
-                //已有同步线程在跑，不再同步
-                log.info("syncAgentStatus thread already running on {}", runningMachine);
-                return 1L;
+        // 业务分片由各实例通过Redis认领，未认领到分片的实例直接结束
+        syncAgentStatusExecutor.execute(() -> {
+            log.info("start sync agentStatus at {},{}", TimeUtil.getCurrentTimeStr("HH:mm:ss"),
+                System.currentTimeMillis());
+            StopWatch watch = new StopWatch("syncAgentStatus");
+            watch.start("total");
+            try {
+                log.info(Thread.currentThread().getName() + ":begin to sync agentStatus from GSE");
+                List<ApplicationInfoDTO> localNormalApps =
+                    applicationInfoDAO.listAppInfo().stream().filter(app ->
+                        app.getAppType() == AppTypeEnum.NORMAL).collect(Collectors.toList());
+                agentStatusSyncer.syncAgentStatus(localNormalApps);
+                // 将最后同步时间写入Redis
+                redisTemplate.opsForValue().set(REDIS_KEY_LAST_FINISH_TIME_SYNC_AGENT_STATUS,
+                    "" + System.currentTimeMillis());
+            } catch (Throwable t) {
+                log.error("syncAgentStatus thread fail", t);
+            } finally {
+                watch.stop();
+                log.info("syncAgentStatus time consuming:" + watch.toString());
             }
-            syncAgentStatusExecutor.execute(() -> {
-                // 开一个心跳子线程，维护当前机器正在同步主机的状态
-                RedisKeyHeartBeatThread agentStatusSyncRedisKeyHeartBeatThread = new RedisKeyHeartBeatThread(
-                    redisTemplate,
-                    REDIS_KEY_SYNC_AGENT_STATUS_JOB_RUNNING_MACHINE,
-                    machineIp,
-                    5000L,
-                    4000L
-                );
-                agentStatusSyncRedisKeyHeartBeatThread.setName(
-                    "[" + agentStatusSyncRedisKeyHeartBeatThread.getId()
-                        + "]-agentStatusSyncRedisKeyHeartBeatThread"
-                );
-                agentStatusSyncRedisKeyHeartBeatThread.start();
-                log.info("start sync agentStatus at {},{}", TimeUtil.getCurrentTimeStr("HH:mm:ss"),
-                    System.currentTimeMillis());
-                StopWatch watch = new StopWatch("syncAgentStatus");
-                watch.start("total");
-                try {
-                    log.info(Thread.currentThread().getName() + ":begin to sync agentStatus from GSE");
-                    List<ApplicationInfoDTO> localApps = applicationInfoDAO.listAppInfo();
-                    Set<Long> localAppIds =
-                        localApps.stream().filter(app ->
-                            app.getAppType() == AppTypeEnum.NORMAL).map(ApplicationInfoDTO::getId)
-                            .collect(Collectors.toSet());
-                    log.info(String.format("localAppIds:%s", String.join(",",
-                        localAppIds.stream().map(Object::toString).collect(Collectors.toSet()))));
-                    List<ApplicationInfoDTO> localNormalApps =
-                        localApps.stream().filter(app ->
-                            app.getAppType() == AppTypeEnum.NORMAL).collect(Collectors.toList());
-                    Long gseInterfaceTimeConsuming = 0L;
-                    Long writeToDBTimeConsuming = 0L;
-                    for (ApplicationInfoDTO applicationInfoDTO : localNormalApps) {
-                        try {
-                            Pair<Long, Long> timeConsumingPair = syncAppHostAgentStatus(applicationInfoDTO);
-                            gseInterfaceTimeConsuming += timeConsumingPair.getFirst();
-                            writeToDBTimeConsuming += timeConsumingPair.getSecond();
-                        } catch (Throwable t) {
-                            log.error("syncAgentStatus of app fail:appId={}", applicationInfoDTO.getId(), t);
-                        }
-                    }
-                    log.info(Thread.currentThread().getName() + ":Finished:sync agentStatus from GSE," +
-                            "gseInterfaceTimeConsuming={}ms,writeToDBTimeConsuming={}ms,rate={}",
-                        gseInterfaceTimeConsuming, writeToDBTimeConsuming,
-                        gseInterfaceTimeConsuming / (0. + writeToDBTimeConsuming));
-                    // 将最后同步时间写入Redis
-                    redisTemplate.opsForValue().set(REDIS_KEY_LAST_FINISH_TIME_SYNC_AGENT_STATUS,
-                        "" + System.currentTimeMillis());
-                } catch (Throwable t) {
-                    log.error("syncAgentStatus thread fail", t);
-                } finally {
-                    agentStatusSyncRedisKeyHeartBeatThread.setRunFlag(false);
-                    watch.stop();
-                    log.info("syncAgentStatus time consuming:" + watch.toString());
-                }
-            });
-        } finally {
-            //释放锁
-            LockUtils.releaseDistributedLock(REDIS_KEY_SYNC_AGENT_STATUS_JOB_LOCK, machineIp);
-        }
+        });
         return 1L;
     }
 
@@ -990,10 +932,36 @@ public class SyncServiceImpl implements SyncService {
             }
             watch.stop();
         }
+        hostChangePublisher.publishHostsChanged(computeChangedHostKeys(localAppHosts, insertList, updateList,
+            deleteList));
         log.debug("Performance:UpdateHosts:appId={},{}", applicationInfoDTO.getId(), watch.toString());
         return 1;
     }
 
+    /**
+     * 计算业务主机同步中IP或者所属业务发生变化的主机
+     */
+    private Set<String> computeChangedHostKeys(List<ApplicationHostInfoDTO> localAppHosts,
+                                               List<ApplicationHostInfoDTO> insertList,
+                                               List<ApplicationHostInfoDTO> updateList,
+                                               List<ApplicationHostInfoDTO> deleteList) {
+        Set<String> changedHostKeys = new HashSet<>();
+        insertList.forEach(host -> HostChangePublisher.addHostKey(changedHostKeys, host));
+        deleteList.forEach(host -> HostChangePublisher.addHostKey(changedHostKeys, host));
+        Map<Long, ApplicationHostInfoDTO> localHostMap = new HashMap<>();
+        localAppHosts.forEach(host -> localHostMap.put(host.getHostId(), host));
+        for (ApplicationHostInfoDTO host : updateList) {
+            ApplicationHostInfoDTO localHost = localHostMap.get(host.getHostId());
+            if (localHost == null || !Objects.equals(localHost.getIp(), host.getIp())
+                || !Objects.equals(localHost.getCloudAreaId(), host.getCloudAreaId())
+                || !Objects.equals(localHost.getAppId(), host.getAppId())) {
+                HostChangePublisher.addHostKey(changedHostKeys, localHost);
+                HostChangePublisher.addHostKey(changedHostKeys, host);
+            }
+        }
+        return changedHostKeys;
+    }
+
     private Long getLastFinishTime(String key) {
         String lastFinishTimeStr = redisTemplate.opsForValue().get(key);
         if (lastFinishTimeStr == null) {
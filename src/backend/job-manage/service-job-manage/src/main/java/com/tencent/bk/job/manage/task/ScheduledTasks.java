@@ -25,6 +25,7 @@
 package com.tencent.bk.job.manage.task;
 
 import com.tencent.bk.job.manage.common.client.PAASClientFactory;
+import com.tencent.bk.job.manage.manager.host.HostSearchIndexManager;
 import com.tencent.bk.job.manage.service.SyncService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,15 +46,18 @@ public class ScheduledTasks {
     private EsbUserInfoUpdateTask esbUserInfoUpdateTask;
     private SyncService syncService;
     private UserUploadFileCleanTask userUploadFileCleanTask;
+    private HostSearchIndexManager hostSearchIndexManager;
 
     @Autowired
     public ScheduledTasks(
         EsbUserInfoUpdateTask esbUserInfoUpdateTask,
         SyncService syncService,
-        UserUploadFileCleanTask userUploadFileCleanTask) {
+        UserUploadFileCleanTask userUploadFileCleanTask,
+        HostSearchIndexManager hostSearchIndexManager) {
         this.esbUserInfoUpdateTask = esbUserInfoUpdateTask;
         this.syncService = syncService;
         this.userUploadFileCleanTask = userUploadFileCleanTask;
+        this.hostSearchIndexManager = hostSearchIndexManager;
     }
 
     /**
@@ -108,6 +112,18 @@ public class ScheduledTasks {
         }
     }
 
+    /**
+     * 主机搜索索引刷新：1min/次
+     */
+    @Scheduled(initialDelay = 10 * 1000, fixedDelay = 60 * 1000)
+    public void refreshHostSearchIndex() {
+        try {
+            hostSearchIndexManager.refresh();
+        } catch (Exception e) {
+            log.error("refreshHostSearchIndex fail", e);
+        }
+    }
+
     @Scheduled(cron = "0 4 * * * ?")
     public void cleanUserUploadFileTask() {
         log.info("Clean user upload file task begin");
@@ -33,6 +33,7 @@ import com.tencent.bk.job.manage.common.TopologyHelper;
 import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
 import com.tencent.bk.job.manage.dao.ApplicationInfoDAO;
 import com.tencent.bk.job.manage.dao.HostTopoDAO;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndexManager;
 import com.tencent.bk.job.manage.service.AccountService;
 import com.tencent.bk.job.manage.service.ApplicationService;
 import com.tencent.bk.job.manage.service.WhiteIPService;
@@ -77,7 +78,7 @@ public class WebAppResourceImplTest {
         hostTopoDAO = mock(HostTopoDAO.class);
         applicationService =
             new ApplicationServiceImpl(dslContext, applicationHostDAO, applicationInfoDAO, hostTopoDAO, topologyHelper,
-                queryAgentStatusClient, cloudAreaService, accountService);
+                queryAgentStatusClient, cloudAreaService, accountService, mock(AppTopologyHostIndexManager.class));
         authService = mock(AuthServiceImpl.class);
         applicationFavorService = mock(ApplicationFavorService.class);
         appResource = new WebAppResourceImpl(applicationService, applicationFavorService, authService);
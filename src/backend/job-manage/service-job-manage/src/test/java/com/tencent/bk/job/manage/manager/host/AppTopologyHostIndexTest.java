@@ -0,0 +1,201 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.manager.host;
+
+import com.tencent.bk.job.common.cc.model.InstanceTopologyDTO;
+import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.common.model.vo.HostInfoVO;
+import com.tencent.bk.job.manage.model.web.vo.CcTopologyNodeVO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AppTopologyHostIndexTest {
+
+    private static final long APP_ID = 2L;
+
+    private InstanceTopologyDTO buildNode(String objectId, long instanceId, InstanceTopologyDTO... children) {
+        InstanceTopologyDTO node = new InstanceTopologyDTO();
+        node.setObjectId(objectId);
+        node.setObjectName(objectId);
+        node.setInstanceId(instanceId);
+        node.setInstanceName(objectId + instanceId);
+        node.setChild(new ArrayList<>(Arrays.asList(children)));
+        return node;
+    }
+
+    private InstanceTopologyDTO buildTopology() {
+        return buildNode("biz", APP_ID,
+            buildNode("set", 3L, buildNode("module", 4L), buildNode("module", 5L)),
+            buildNode("set", 6L, buildNode("module", 7L)));
+    }
+
+    private ApplicationHostInfoDTO buildHost(long hostId, long appId, Long... moduleIds) {
+        ApplicationHostInfoDTO host = new ApplicationHostInfoDTO();
+        host.setHostId(hostId);
+        host.setAppId(appId);
+        host.setIp("127.0.0." + hostId);
+        host.setModuleId(Arrays.asList(moduleIds));
+        return host;
+    }
+
+    private HostInfoVO toHostInfoVO(ApplicationHostInfoDTO host) {
+        HostInfoVO hostInfoVO = new HostInfoVO();
+        hostInfoVO.setHostId(host.getHostId());
+        hostInfoVO.setIp(host.getIp());
+        return hostInfoVO;
+    }
+
+    private CcTopologyNodeVO findNode(CcTopologyNodeVO node, String objectId, long instanceId) {
+        if (objectId.equals(node.getObjectId()) && node.getInstanceId() == instanceId) {
+            return node;
+        }
+        for (CcTopologyNodeVO child : node.getChild()) {
+            CcTopologyNodeVO target = findNode(child, objectId, instanceId);
+            if (target != null) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    private List<Long> hostIds(CcTopologyNodeVO node) {
+        return node.getIpListStatus().stream().map(HostInfoVO::getHostId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testBuildTopologyTree() {
+        AppTopologyHostIndex index = new AppTopologyHostIndex(APP_ID, 0L, buildTopology(), Arrays.asList(
+            buildHost(1L, APP_ID, 4L),
+            buildHost(2L, APP_ID, 4L, 5L),
+            buildHost(3L, APP_ID, 7L)));
+
+        CcTopologyNodeVO tree = index.buildTopologyTree(this::toHostInfoVO);
+
+        assertThat(tree.getCount()).isEqualTo(3);
+        assertThat(findNode(tree, "set", 3L).getCount()).isEqualTo(2);
+        assertThat(findNode(tree, "set", 6L).getCount()).isEqualTo(1);
+        CcTopologyNodeVO module4 = findNode(tree, "module", 4L);
+        assertThat(module4.getExpanded()).isFalse();
+        assertThat(hostIds(module4)).containsExactly(1L, 2L);
+        assertThat(hostIds(findNode(tree, "module", 5L))).containsExactly(2L);
+        assertThat(tree.getIpListStatus()).isNull();
+    }
+
+    @Test
+    public void testBuildTopologyCountTree() {
+        AppTopologyHostIndex index = new AppTopologyHostIndex(APP_ID, 0L, buildTopology(), Arrays.asList(
+            buildHost(1L, APP_ID, 4L),
+            buildHost(2L, APP_ID, 5L)));
+
+        CcTopologyNodeVO tree = index.buildTopologyTree(null);
+
+        assertThat(tree.getCount()).isEqualTo(2);
+        assertThat(findNode(tree, "module", 4L).getCount()).isEqualTo(1);
+        assertThat(findNode(tree, "module", 4L).getIpListStatus()).isNull();
+        assertThat(findNode(tree, "module", 7L).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+        AppTopologyHostIndex index = new AppTopologyHostIndex(APP_ID, 0L, buildTopology(), Arrays.asList(
+            buildHost(1L, APP_ID, 4L),
+            buildHost(2L, APP_ID, 5L)));
+        // 触发一次节点主机集合计算，验证后续变更后重新计算
+        index.buildTopologyTree(null);
+
+        // 主机转移模块
+        index.updateHost(buildHost(1L, APP_ID, 7L));
+        // 主机转出业务
+        index.updateHost(buildHost(2L, 100L, 5L));
+        // 新增主机复用已删除主机的位置
+        index.updateHost(buildHost(3L, APP_ID, 4L));
+
+        CcTopologyNodeVO tree = index.buildTopologyTree(this::toHostInfoVO);
+        assertThat(tree.getCount()).isEqualTo(2);
+        assertThat(hostIds(findNode(tree, "module", 4L))).containsExactly(3L);
+        assertThat(findNode(tree, "module", 5L).getIpListStatus()).isEmpty();
+        assertThat(hostIds(findNode(tree, "module", 7L))).containsExactly(1L);
+        assertThat(index.containsHost(2L)).isFalse();
+
+        index.removeHost(1L);
+        tree = index.buildTopologyTree(null);
+        assertThat(tree.getCount()).isEqualTo(1);
+        assertThat(findNode(tree, "set", 6L).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testUpdateTopology() {
+        AppTopologyHostIndex index = new AppTopologyHostIndex(APP_ID, 0L, buildTopology(), Arrays.asList(
+            buildHost(1L, APP_ID, 4L),
+            buildHost(2L, APP_ID, 8L)));
+        assertThat(index.buildTopologyTree(null).getCount()).isEqualTo(1);
+
+        // 新增模块后，原来无法挂载的主机出现在拓扑树中
+        InstanceTopologyDTO topology = buildTopology();
+        topology.getChild().get(1).getChild().add(buildNode("module", 8L));
+        index.updateTopology(topology);
+
+        CcTopologyNodeVO tree = index.buildTopologyTree(null);
+        assertThat(tree.getCount()).isEqualTo(2);
+        assertThat(findNode(tree, "set", 6L).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testConcurrentUpdateAndRead() throws Exception {
+        AppTopologyHostIndex index = new AppTopologyHostIndex(APP_ID, 0L, buildTopology(), Arrays.asList(
+            buildHost(1L, APP_ID, 4L),
+            buildHost(2L, APP_ID, 5L)));
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            while (running.get()) {
+                for (long hostId = 100L; hostId < 150L; hostId++) {
+                    index.updateHost(buildHost(hostId, APP_ID, 4L, 7L));
+                }
+                for (long hostId = 100L; hostId < 150L; hostId++) {
+                    index.removeHost(hostId);
+                }
+            }
+        });
+        writer.start();
+        try {
+            // 节点主机集合刷新与读取之间不能有主机变更，否则会读取到已删除主机的空位
+            for (int i = 0; i < 20000; i++) {
+                assertThat(index.listNodeHosts("set", 3L)).doesNotContainNull();
+                CcTopologyNodeVO tree = index.buildTopologyTree(this::toHostInfoVO);
+                assertThat(findNode(tree, "module", 7L).getIpListStatus()).doesNotContainNull();
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.manager.host;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HostSearchIndexTest {
+
+    private HostSearchIndex buildIndex() {
+        HostSearchIndex index = new HostSearchIndex();
+        index.updateHost(1L, "10.0.0.1", "web-server-01", "CentOS 7");
+        index.updateHost(2L, "10.0.0.2", "db-server-01", "Windows Server 2012");
+        index.updateHost(3L, "192.168.1.10", null, "Ubuntu 18.04");
+        return index;
+    }
+
+    @Test
+    void testSearchSubstringInAnyField() {
+        HostSearchIndex index = buildIndex();
+        assertThat(index.search(Collections.singletonList("0.0.0"), 100)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.search(Collections.singletonList("SERVER-01"), 100)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.search(Collections.singletonList("ubuntu"), 100)).containsExactly(3L);
+        assertThat(index.search(Collections.singletonList("10"), 100)).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(index.search(Arrays.asList("centos", "168.1"), 100)).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(index.search(Collections.singletonList("not-exist"), 100)).isEmpty();
+        // 关键字不能跨字段匹配
+        assertThat(index.search(Collections.singletonList("01centos"), 100)).isEmpty();
+    }
+
+    @Test
+    void testUpdateHost() {
+        HostSearchIndex index = buildIndex();
+        index.updateHost(1L, "10.0.0.1", "cache-server", "CentOS 7");
+        assertThat(index.search(Collections.singletonList("web"), 100)).isEmpty();
+        assertThat(index.search(Collections.singletonList("cache"), 100)).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void testTooManyHits() {
+        HostSearchIndex index = buildIndex();
+        assertThat(index.search(Collections.singletonList("server"), 1)).isNull();
+    }
+}
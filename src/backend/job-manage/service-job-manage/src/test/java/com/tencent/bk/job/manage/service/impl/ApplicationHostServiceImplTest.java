@@ -0,0 +1,204 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.service.impl;
+
+import com.tencent.bk.job.common.cc.model.CcCloudIdDTO;
+import com.tencent.bk.job.common.cc.model.CcGroupHostPropDTO;
+import com.tencent.bk.job.common.cc.sdk.CcClient;
+import com.tencent.bk.job.common.constant.AppTypeEnum;
+import com.tencent.bk.job.common.constant.ErrorCode;
+import com.tencent.bk.job.common.exception.ServiceException;
+import com.tencent.bk.job.common.model.dto.ApplicationHostInfoDTO;
+import com.tencent.bk.job.common.model.dto.ApplicationInfoDTO;
+import com.tencent.bk.job.manage.config.JobManageConfig;
+import com.tencent.bk.job.manage.dao.ApplicationHostDAO;
+import com.tencent.bk.job.manage.dao.ApplicationInfoDAO;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndex;
+import com.tencent.bk.job.manage.manager.host.AppTopologyHostIndexManager;
+import com.tencent.bk.job.manage.model.inner.ServiceHostInfoDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceResolvedHostsDTO;
+import com.tencent.bk.job.manage.model.inner.ServiceTaskNodeInfoDTO;
+import com.tencent.bk.job.manage.model.inner.request.ServiceResolveHostsReq;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ApplicationHostServiceImplTest {
+    private static final long APP_ID = 2L;
+
+    private ApplicationHostDAO applicationHostDAO;
+    private AppTopologyHostIndex topologyHostIndex;
+    private CcClient ccClient;
+    private ApplicationHostServiceImpl applicationHostService;
+
+    private static ApplicationHostInfoDTO buildHostInfo(Long hostId, String ip, Boolean alive) {
+        ApplicationHostInfoDTO host = new ApplicationHostInfoDTO();
+        host.setHostId(hostId);
+        host.setAppId(APP_ID);
+        host.setCloudAreaId(0L);
+        host.setIp(ip);
+        host.setDisplayIp(ip);
+        host.setGseAgentAlive(alive);
+        return host;
+    }
+
+    private static ServiceTaskNodeInfoDTO buildNode(String type, Long id) {
+        ServiceTaskNodeInfoDTO node = new ServiceTaskNodeInfoDTO();
+        node.setType(type);
+        node.setId(id);
+        return node;
+    }
+
+    private static CcGroupHostPropDTO buildGroupHost(String ip) {
+        CcCloudIdDTO cloudId = new CcCloudIdDTO();
+        cloudId.setInstanceId(0L);
+        CcGroupHostPropDTO groupHost = new CcGroupHostPropDTO();
+        groupHost.setIp(ip);
+        groupHost.setCloudIdList(Collections.singletonList(cloudId));
+        return groupHost;
+    }
+
+    @BeforeEach
+    public void init() {
+        applicationHostDAO = mock(ApplicationHostDAO.class);
+        ApplicationInfoDAO applicationInfoDAO = mock(ApplicationInfoDAO.class);
+        AppTopologyHostIndexManager appTopologyHostIndexManager = mock(AppTopologyHostIndexManager.class);
+        JobManageConfig jobManageConfig = mock(JobManageConfig.class);
+        topologyHostIndex = mock(AppTopologyHostIndex.class);
+        ccClient = mock(CcClient.class);
+
+        ApplicationInfoDTO appInfo = new ApplicationInfoDTO();
+        appInfo.setId(APP_ID);
+        appInfo.setAppType(AppTypeEnum.NORMAL);
+        when(applicationInfoDAO.getCacheAppInfoById(APP_ID)).thenReturn(appInfo);
+        when(appTopologyHostIndexManager.getIndex(anyString(), any())).thenReturn(topologyHostIndex);
+        when(jobManageConfig.getDynamicGroupHostCacheSeconds()).thenReturn(60);
+
+        applicationHostService = new ApplicationHostServiceImpl(null, applicationHostDAO, applicationInfoDAO,
+            appTopologyHostIndexManager, jobManageConfig) {
+            @Override
+            CcClient getCcClient() {
+                return ccClient;
+            }
+        };
+    }
+
+    @AfterEach
+    public void destroy() {
+        applicationHostService.destroy();
+    }
+
+    @Test
+    public void testResolveHosts() {
+        // 模块1在拓扑索引中，模块2不在索引中需要从CMDB查询
+        when(topologyHostIndex.listNodeHosts("module", 1L)).thenReturn(Arrays.asList(
+            buildHostInfo(1L, "10.0.0.1", true), buildHostInfo(2L, "10.0.0.2", false)));
+        when(topologyHostIndex.listNodeHosts("module", 2L)).thenReturn(null);
+        when(ccClient.getHosts(eq(APP_ID), any())).thenReturn(Collections.singletonList(
+            buildHostInfo(3L, "10.0.0.3", true)));
+        when(ccClient.getCustomGroupIp(eq(APP_ID), any(), anyString(), eq("group1"))).thenReturn(Arrays.asList(
+            buildGroupHost("10.0.0.2"), buildGroupHost("10.0.0.4")));
+        when(applicationHostDAO.listHostInfoBySourceAndIps(eq(0L), anySet())).thenReturn(Arrays.asList(
+            buildHostInfo(1L, "10.0.0.1", true), buildHostInfo(4L, "10.0.0.4", false)));
+
+        ServiceResolveHostsReq req = new ServiceResolveHostsReq();
+        ServiceHostInfoDTO staticHost = new ServiceHostInfoDTO();
+        staticHost.setCloudAreaId(0L);
+        staticHost.setIp("10.0.0.1");
+        req.setStaticHosts(Collections.singletonList(staticHost));
+        req.setTopoNodes(Arrays.asList(buildNode("module", 1L), buildNode("module", 2L)));
+        req.setDynamicGroupIds(Collections.singletonList("group1"));
+        ServiceResolvedHostsDTO result = applicationHostService.resolveHosts(APP_ID, req);
+
+        assertThat(result.getTopoNodeHosts()).containsOnlyKeys("module:1", "module:2");
+        assertThat(result.getTopoNodeHosts().get("module:1")).containsExactly("0:10.0.0.1", "0:10.0.0.2");
+        assertThat(result.getTopoNodeHosts().get("module:2")).containsExactly("0:10.0.0.3");
+        assertThat(result.getDynamicGroupHosts().get("group1")).containsExactly("0:10.0.0.2", "0:10.0.0.4");
+
+        Map<String, ServiceHostInfoDTO> hosts = result.getHosts().stream()
+            .collect(Collectors.toMap(ServiceHostInfoDTO::getIp, host -> host));
+        assertThat(result.getHosts()).extracting(ServiceHostInfoDTO::getIp)
+            .containsExactly("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4");
+        // 静态主机与动态分组主机从主机表补充主机ID与Agent状态
+        assertThat(hosts.get("10.0.0.1").getHostId()).isEqualTo(1L);
+        assertThat(hosts.get("10.0.0.1").getAlive()).isEqualTo(1);
+        assertThat(hosts.get("10.0.0.2").getAlive()).isEqualTo(0);
+        assertThat(hosts.get("10.0.0.3").getHostId()).isEqualTo(3L);
+        assertThat(hosts.get("10.0.0.4").getHostId()).isEqualTo(4L);
+        assertThat(hosts.get("10.0.0.4").getAlive()).isEqualTo(0);
+        verify(ccClient, times(1)).getHosts(eq(APP_ID), any());
+    }
+
+    @Test
+    public void testDynamicGroupHostsCached() {
+        when(ccClient.getCustomGroupIp(eq(APP_ID), any(), anyString(), eq("group1"))).thenReturn(
+            Collections.singletonList(buildGroupHost("10.0.0.4")));
+        ServiceResolveHostsReq req = new ServiceResolveHostsReq();
+        req.setDynamicGroupIds(Collections.singletonList("group1"));
+
+        applicationHostService.resolveHosts(APP_ID, req);
+        ServiceResolvedHostsDTO result = applicationHostService.resolveHosts(APP_ID, req);
+        assertThat(result.getDynamicGroupHosts().get("group1")).containsExactly("0:10.0.0.4");
+        verify(ccClient, times(1)).getCustomGroupIp(eq(APP_ID), any(), anyString(), eq("group1"));
+    }
+
+    @Test
+    public void testResolveHostsFailWhenCmdbQueryFail() {
+        when(topologyHostIndex.listNodeHosts(anyString(), anyLong())).thenReturn(null);
+        List<ApplicationHostInfoDTO> nodeHosts = Collections.singletonList(buildHostInfo(3L, "10.0.0.3", true));
+        when(ccClient.getHosts(eq(APP_ID), any())).thenReturn(nodeHosts)
+            .thenThrow(new ServiceException(ErrorCode.CMDB_API_DATA_ERROR));
+
+        ServiceResolveHostsReq req = new ServiceResolveHostsReq();
+        req.setTopoNodes(Arrays.asList(buildNode("module", 1L), buildNode("module", 2L)));
+        assertThatThrownBy(() -> applicationHostService.resolveHosts(APP_ID, req))
+            .isInstanceOf(ServiceException.class);
+
+        when(ccClient.getCustomGroupIp(eq(APP_ID), any(), anyString(), anyString()))
+            .thenThrow(new ServiceException(ErrorCode.CMDB_API_DATA_ERROR));
+        ServiceResolveHostsReq groupReq = new ServiceResolveHostsReq();
+        groupReq.setDynamicGroupIds(Collections.singletonList("group1"));
+        assertThatThrownBy(() -> applicationHostService.resolveHosts(APP_ID, groupReq))
+            .isInstanceOf(ServiceException.class);
+    }
+}
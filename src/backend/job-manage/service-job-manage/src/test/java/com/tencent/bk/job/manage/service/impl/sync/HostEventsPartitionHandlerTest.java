@@ -0,0 +1,167 @@
+/*
+ * Tencent is pleased to support the open source community by making BK-JOB蓝鲸智云作业平台 available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * BK-JOB蓝鲸智云作业平台 is licensed under the MIT License.
+ *
+ * License for BK-JOB蓝鲸智云作业平台:
+ * --------------------------------------------------------------------
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+
+package com.tencent.bk.job.manage.service.impl.sync;
+
+import com.tencent.bk.job.common.cc.model.req.ResourceWatchReq;
+import com.tencent.bk.job.common.cc.model.result.HostEventDetail;
+import com.tencent.bk.job.common.cc.model.result.ResourceEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HostEventsPartitionHandlerTest {
+
+    private ResourceEvent<HostEventDetail> buildEvent(long hostId, String eventType, String displayIp) {
+        HostEventDetail detail = new HostEventDetail();
+        detail.setHostId(hostId);
+        detail.setHostInnerIp(displayIp);
+        ResourceEvent<HostEventDetail> event = new ResourceEvent<>();
+        event.setEventType(eventType);
+        event.setDetail(detail);
+        return event;
+    }
+
+    @Test
+    public void testCoalesceEventsOfSameHost() throws Exception {
+        List<List<ResourceEvent<HostEventDetail>>> batches = new CopyOnWriteArrayList<>();
+        HostEventsPartitionHandler handler = new HostEventsPartitionHandler(100, 500L, 100, batches::add);
+        handler.setDaemon(true);
+
+        handler.commitEvent(buildEvent(1L, ResourceWatchReq.EVENT_TYPE_CREATE, "127.0.0.1"));
+        handler.commitEvent(buildEvent(2L, ResourceWatchReq.EVENT_TYPE_CREATE, "127.0.0.2"));
+        handler.commitEvent(buildEvent(1L, ResourceWatchReq.EVENT_TYPE_UPDATE, "127.0.0.3"));
+        handler.commitEvent(buildEvent(2L, ResourceWatchReq.EVENT_TYPE_DELETE, "127.0.0.2"));
+        assertThat(handler.getQueueSize()).isEqualTo(4);
+        handler.start();
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(batches).hasSize(1);
+        List<ResourceEvent<HostEventDetail>> batch = batches.get(0);
+        assertThat(batch).hasSize(2);
+        assertThat(batch.get(0).getDetail().getHostId()).isEqualTo(1L);
+        assertThat(batch.get(0).getEventType()).isEqualTo(ResourceWatchReq.EVENT_TYPE_UPDATE);
+        assertThat(batch.get(0).getDetail().getHostInnerIp()).isEqualTo("127.0.0.3");
+        assertThat(batch.get(1).getDetail().getHostId()).isEqualTo(2L);
+        assertThat(batch.get(1).getEventType()).isEqualTo(ResourceWatchReq.EVENT_TYPE_DELETE);
+        assertThat(handler.getQueueSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testBatchSizeLimit() throws Exception {
+        List<List<ResourceEvent<HostEventDetail>>> batches = new CopyOnWriteArrayList<>();
+        HostEventsPartitionHandler handler = new HostEventsPartitionHandler(100, 500L, 2, batches::add);
+        handler.setDaemon(true);
+        for (long hostId = 1; hostId <= 5; hostId++) {
+            handler.commitEvent(buildEvent(hostId, ResourceWatchReq.EVENT_TYPE_CREATE, "127.0.0." + hostId));
+        }
+        handler.start();
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (batches.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<Long> hostIds = new ArrayList<>();
+        batches.forEach(batch -> {
+            assertThat(batch.size()).isLessThanOrEqualTo(2);
+            batch.forEach(event -> hostIds.add(event.getDetail().getHostId()));
+        });
+        assertThat(hostIds).containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    public void testRetryFailedBatch() throws Exception {
+        List<List<ResourceEvent<HostEventDetail>>> batches = new CopyOnWriteArrayList<>();
+        AtomicInteger handleTimes = new AtomicInteger(0);
+        HostEventsPartitionHandler handler = new HostEventsPartitionHandler(100, 100L, 100, events -> {
+            if (handleTimes.incrementAndGet() == 1) {
+                throw new RuntimeException("DB unavailable");
+            }
+            batches.add(events);
+        });
+        handler.setDaemon(true);
+        handler.commitEvent(buildEvent(1L, ResourceWatchReq.EVENT_TYPE_CREATE, "127.0.0.1"));
+        handler.start();
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (handleTimes.get() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // 重试前到达的事件与失败的事件合并处理
+        handler.commitEvent(buildEvent(1L, ResourceWatchReq.EVENT_TYPE_UPDATE, "127.0.0.3"));
+        handler.commitEvent(buildEvent(2L, ResourceWatchReq.EVENT_TYPE_CREATE, "127.0.0.2"));
+        while (batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(batches).hasSize(1);
+        List<ResourceEvent<HostEventDetail>> batch = batches.get(0);
+        assertThat(batch).hasSize(2);
+        assertThat(batch.get(0).getDetail().getHostId()).isEqualTo(1L);
+        assertThat(batch.get(0).getEventType()).isEqualTo(ResourceWatchReq.EVENT_TYPE_UPDATE);
+        assertThat(batch.get(1).getDetail().getHostId()).isEqualTo(2L);
+        assertThat(handler.getLagMillis()).isEqualTo(0L);
+    }
+
+    @Test
+    public void testExitOnInterrupt() throws Exception {
+        HostEventsPartitionHandler handler = new HostEventsPartitionHandler(100, 100L, 100, events -> {
+        });
+        handler.setDaemon(true);
+        handler.start();
+        handler.interrupt();
+        handler.join(TimeUnit.SECONDS.toMillis(5));
+        assertThat(handler.isAlive()).isFalse();
+    }
+
+    @Test
+    public void testParseEventTimeMillis() {
+        long eventTimeSeconds = System.currentTimeMillis() / 1000 - 30;
+        String cursor = Base64.getEncoder().encodeToString(("1\r3\r5f1e9d2c\r" + eventTimeSeconds + "\r7\r0")
+            .getBytes(StandardCharsets.UTF_8));
+        assertThat(HostEventsPartitionHandler.parseEventTimeMillis(cursor)).isEqualTo(eventTimeSeconds * 1000);
+
+        assertThat(HostEventsPartitionHandler.parseEventTimeMillis(null)).isNull();
+        assertThat(HostEventsPartitionHandler.parseEventTimeMillis("not-base64!")).isNull();
+        assertThat(HostEventsPartitionHandler.parseEventTimeMillis(Base64.getEncoder().encodeToString(
+            "1\r3".getBytes(StandardCharsets.UTF_8)))).isNull();
+    }
+
+    @Test
+    public void testRetryBackoff() {
+        assertThat(HostEventsPartitionHandler.computeRetryBackoffMillis(1)).isEqualTo(500L);
+        assertThat(HostEventsPartitionHandler.computeRetryBackoffMillis(2)).isEqualTo(1000L);
+        assertThat(HostEventsPartitionHandler.computeRetryBackoffMillis(100)).isEqualTo(30_000L);
+    }
+}
@@ -0,0 +1,44 @@
+USE job_execute;
+
+SET NAMES utf8mb4;
+
+-- 合并同一统计维度的重复记录，然后为统计维度添加唯一索引，统计值改为通过 ON DUPLICATE KEY UPDATE 累加
+CREATE TEMPORARY TABLE `tmp_statistics_duplicate` AS
+  SELECT MIN(`id`) AS `id`, `app_id`, `resource`, `dimension`, `dimension_value`, `date`,
+         SUM(CAST(`value` AS SIGNED)) AS `total_value`
+  FROM `statistics`
+  GROUP BY `app_id`, `resource`, `dimension`, `dimension_value`, `date`
+  HAVING COUNT(*) > 1;
+UPDATE `statistics` s JOIN `tmp_statistics_duplicate` t ON s.`id` = t.`id` SET s.`value` = t.`total_value`;
+DELETE s FROM `statistics` s JOIN `tmp_statistics_duplicate` t
+  ON s.`app_id` = t.`app_id` AND s.`resource` = t.`resource` AND s.`dimension` = t.`dimension`
+  AND s.`dimension_value` = t.`dimension_value` AND s.`date` = t.`date` AND s.`id` <> t.`id`;
+DROP TEMPORARY TABLE `tmp_statistics_duplicate`;
+
+DROP PROCEDURE IF EXISTS job_schema_update;
+
+DELIMITER <JOB_UBF>
+CREATE PROCEDURE job_schema_update()
+BEGIN
+  IF NOT EXISTS(SELECT 1
+                FROM information_schema.statistics
+                WHERE TABLE_SCHEMA = 'job_execute'
+                  AND TABLE_NAME = 'statistics'
+                  AND INDEX_NAME = 'uk_appId_res_dim_dimValue_date') THEN
+    ALTER TABLE `statistics` ADD UNIQUE INDEX `uk_appId_res_dim_dimValue_date`
+      (`app_id`,`resource`,`dimension`,`dimension_value`,`date`);
+  END IF;
+END <JOB_UBF>
+DELIMITER ;
+
+CALL job_schema_update();
+
+DROP PROCEDURE IF EXISTS job_schema_update;
+
+-- 已写入的统计批次，用于保证统计数据重复提交时不会重复累加
+CREATE TABLE IF NOT EXISTS `statistics_flush_batch` (
+  `batch_id` varchar(64) NOT NULL COMMENT '批次ID',
+  `create_time` bigint(20) UNSIGNED NOT NULL COMMENT '创建时间',
+  PRIMARY KEY (`batch_id`) USING BTREE,
+  INDEX `idx_create_time`(`create_time`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4;
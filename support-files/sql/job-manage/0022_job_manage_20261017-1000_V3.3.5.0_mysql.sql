@@ -0,0 +1,30 @@
+use job_manage;
+
+SET NAMES utf8mb4;
+
+-- 主机表添加 业务ID+更新时间 索引，用于按业务增量查询变更的主机；添加 更新时间 索引，用于主机搜索索引增量加载
+DROP PROCEDURE IF EXISTS job_schema_update;
+
+DELIMITER <JOB_UBF>
+CREATE PROCEDURE job_schema_update()
+BEGIN
+  IF NOT EXISTS(SELECT 1
+                FROM information_schema.statistics
+                WHERE TABLE_SCHEMA = 'job_manage'
+                  AND TABLE_NAME = 'host'
+                  AND INDEX_NAME = 'idx_app_id_row_update_time') THEN
+    ALTER TABLE `host` ADD INDEX `idx_app_id_row_update_time` (`app_id`,`row_update_time`);
+  END IF;
+  IF NOT EXISTS(SELECT 1
+                FROM information_schema.statistics
+                WHERE TABLE_SCHEMA = 'job_manage'
+                  AND TABLE_NAME = 'host'
+                  AND INDEX_NAME = 'idx_row_update_time') THEN
+    ALTER TABLE `host` ADD INDEX `idx_row_update_time` (`row_update_time`);
+  END IF;
+END <JOB_UBF>
+DELIMITER ;
+
+CALL job_schema_update();
+
+DROP PROCEDURE IF EXISTS job_schema_update;